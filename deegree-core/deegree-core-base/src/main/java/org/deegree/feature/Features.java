@@ -101,50 +101,61 @@ public class Features {
      * @return sorted feature collection, never <code>null</code>
      */
     public static FeatureCollection sortFc( final FeatureCollection fc, final SortProperty[] sortCrits ) {
-
-        // TODO
-        final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
-
         FeatureCollection sortedFc = fc;
         if ( sortCrits != null && sortCrits.length > 0 ) {
             List<Feature> sortedFeatures = new ArrayList<Feature>();
             for ( Feature feature : fc ) {
                 sortedFeatures.add( feature );
             }
-            Collections.sort( sortedFeatures, new Comparator<Feature>() {
-                @SuppressWarnings({ "unchecked", "synthetic-access" })
-                @Override
-                public int compare( Feature f1, Feature f2 ) {
-                    int order = 0;
-                    for ( SortProperty sortCrit : sortCrits ) {
-                        ValueReference propName = sortCrit.getSortProperty();
-                        try {
-                            // TODO handle multi properties correctly
-                            TypedObjectNode[] values1 = evaluator.eval( f1, propName );
-                            TypedObjectNode[] values2 = evaluator.eval( f2, propName );
-                            for ( TypedObjectNode value1 : values1 ) {
-                                if ( value1 != null ) {
-                                    for ( TypedObjectNode value2 : values2 ) {
-                                        if ( value2 != null ) {
-                                            Pair<Object, Object> comparablePair = getPrimitives( value1, value2 );
-                                            order = ( (Comparable<Object>) comparablePair.first ).compareTo( comparablePair.second );
-                                            if ( !sortCrit.getSortOrder() ) {
-                                                order *= -1;
-                                            }
+            Collections.sort( sortedFeatures, getComparator( sortCrits ) );
+            sortedFc = new GenericFeatureCollection( fc.getId(), sortedFeatures );
+        }
+        return sortedFc;
+    }
+
+    /**
+     * Returns a {@link Comparator} that orders {@link Feature}s according to the given sort criteria.
+     * 
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @return comparator, never <code>null</code>
+     */
+    public static Comparator<Feature> getComparator( final SortProperty[] sortCrits ) {
+
+        // TODO
+        final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+
+        return new Comparator<Feature>() {
+            @SuppressWarnings({ "unchecked", "synthetic-access" })
+            @Override
+            public int compare( Feature f1, Feature f2 ) {
+                int order = 0;
+                for ( SortProperty sortCrit : sortCrits ) {
+                    ValueReference propName = sortCrit.getSortProperty();
+                    try {
+                        // TODO handle multi properties correctly
+                        TypedObjectNode[] values1 = evaluator.eval( f1, propName );
+                        TypedObjectNode[] values2 = evaluator.eval( f2, propName );
+                        for ( TypedObjectNode value1 : values1 ) {
+                            if ( value1 != null ) {
+                                for ( TypedObjectNode value2 : values2 ) {
+                                    if ( value2 != null ) {
+                                        Pair<Object, Object> comparablePair = getPrimitives( value1, value2 );
+                                        order = ( (Comparable<Object>) comparablePair.first ).compareTo( comparablePair.second );
+                                        if ( !sortCrit.getSortOrder() ) {
+                                            order *= -1;
                                         }
                                     }
                                 }
                             }
-                        } catch ( Exception e ) {
-                            LOG.debug( "Cannot compare values: " + e.getMessage() );
                         }
+                    } catch ( Exception e ) {
+                        LOG.debug( "Cannot compare values: " + e.getMessage() );
                     }
-                    return order;
                 }
-            } );
-            sortedFc = new GenericFeatureCollection( fc.getId(), sortedFeatures );
-        }
-        return sortedFc;
+                return order;
+            }
+        };
     }
 
     /**
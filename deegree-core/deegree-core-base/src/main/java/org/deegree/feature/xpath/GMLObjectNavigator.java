@@ -310,18 +310,35 @@ class GMLObjectNavigator extends DefaultNavigator {
 
     /**
      * Returns the top-level document node.
+     * <p>
+     * If no root has been provided on construction, the document node is derived from the topmost ancestor of the
+     * context node. This allows to use a single compiled XPath for different roots.
+     * </p>
      * 
      * @param contextNode
      *            any node in the document
      * @return the root node
      */
+    @SuppressWarnings("unchecked")
     @Override
     public Object getDocumentNode( Object contextNode ) {
-        if ( documentNode == null ) {
-            String msg = "getDocumentNode(Object) not possible, no document node provided";
-            throw new UnsupportedOperationException( msg );
+        if ( documentNode != null ) {
+            return documentNode;
+        }
+        if ( contextNode instanceof DocumentNode ) {
+            return contextNode;
+        }
+        if ( contextNode instanceof XPathNode<?> ) {
+            XPathNode<?> node = (XPathNode<?>) contextNode;
+            while ( node.getParent() != null ) {
+                node = node.getParent();
+            }
+            if ( node instanceof GMLObjectNode<?, ?> ) {
+                return new DocumentNode( (GMLObjectNode<GMLObject, ? extends GMLObject>) node );
+            }
         }
-        return documentNode;
+        String msg = "getDocumentNode(Object) not possible, no document node provided";
+        throw new UnsupportedOperationException( msg );
     }
 
     /**
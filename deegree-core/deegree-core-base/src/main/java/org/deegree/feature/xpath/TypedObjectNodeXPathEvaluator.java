@@ -44,22 +44,21 @@ import org.deegree.commons.tom.ElementNode;
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
-import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.feature.Feature;
 import org.deegree.feature.xpath.node.GMLObjectNode;
 import org.deegree.feature.xpath.node.PropertyNode;
 import org.deegree.feature.xpath.node.XMLElementNode;
-import org.deegree.feature.xpath.node.XPathNode;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
-import org.jaxen.JaxenException;
-import org.jaxen.XPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * {@link XPathEvaluator} implementation for {@link TypedObjectNode} graphs.
+ * <p>
+ * Non-trivial {@link ValueReference}s are compiled once into a cached {@link ValueReferencePlan}.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -116,88 +115,17 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
             return props.toArray( propArray );
         }
 
-        TypedObjectNode[] resultValues = null;
-        try {
-            synchronized ( context ) {
-                XPath xpath = new GMLObjectXPath( propName.getAsText(), context );
-                xpath.setNamespaceContext( propName.getNsContext() );
-                List<?> selectedNodes;
-                selectedNodes = xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, context ) );
-                resultValues = new TypedObjectNode[selectedNodes.size()];
-                int i = 0;
-                for ( Object node : selectedNodes ) {
-                    if ( node instanceof XPathNode<?> ) {
-                        resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                    } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                        resultValues[i++] = new PrimitiveValue( node );
-                    } else {
-                        throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                    + node.getClass().getName() + "' (=" + node
-                                                    + ") during XPath-evaluation." );
-                    }
-                }
-            }
-        } catch ( JaxenException e ) {
-            e.printStackTrace();
-            throw new FilterEvaluationException( e.getMessage() );
-        }
-        return resultValues;
+        return ValueReferencePlan.get( propName ).evaluate( new GMLObjectNode<GMLObject, GMLObject>( null, context ) );
     }
 
     public TypedObjectNode[] eval( ElementNode element, ValueReference propName )
                             throws FilterEvaluationException {
-
-        TypedObjectNode[] resultValues = null;
-        try {
-            XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
-            xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new XMLElementNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
-        } catch ( JaxenException e ) {
-            throw new FilterEvaluationException( e.getMessage() );
-        }
-        return resultValues;
+        return ValueReferencePlan.get( propName ).evaluate( new XMLElementNode( null, element ) );
     }
 
     public TypedObjectNode[] eval( Property element, ValueReference propName )
                             throws FilterEvaluationException {
-
-        TypedObjectNode[] resultValues = null;
-        try {
-            XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
-            xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new PropertyNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
-        } catch ( JaxenException e ) {
-            throw new FilterEvaluationException( e.getMessage() );
-        }
-        return resultValues;
+        return ValueReferencePlan.get( propName ).evaluate( new PropertyNode( null, element ) );
     }
 
     @Override
@@ -0,0 +1,318 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.xpath.node.AttributeNode;
+import org.deegree.feature.xpath.node.ElementNode;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.PropertyNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.expression.ValueReference;
+import org.jaxen.JaxenException;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.Step;
+import org.jaxen.saxpath.Axis;
+
+/**
+ * Reusable, thread-safe evaluation plan for a {@link ValueReference}.
+ * <p>
+ * Plans are compiled once per expression (and namespace bindings) and cached. Relative location paths that consist of
+ * predicate-free child steps (optionally followed by a single attribute step) are evaluated by navigating the
+ * {@link Feature}/{@link Property} objects directly. All other expressions are evaluated by a compiled
+ * {@link GMLObjectXPath} that is shared between invocations.
+ * </p>
+ * 
+ * @see TypedObjectNodeXPathEvaluator
+ * 
+ * @since 3.4
+ */
+final class ValueReferencePlan {
+
+    private static final int MAX_CACHED_PLANS = 1024;
+
+    private static final Map<PlanKey, ValueReferencePlan> CACHE = new ConcurrentHashMap<PlanKey, ValueReferencePlan>();
+
+    private static final GMLObjectNavigator NAVIGATOR = new GMLObjectNavigator( null );
+
+    // direct navigation: names of the element steps, last one may be an attribute step
+    private final QName[] steps;
+
+    private final boolean attributeStep;
+
+    // fallback, only used if steps == null
+    private final GMLObjectXPath xpath;
+
+    private ValueReferencePlan( QName[] steps, boolean attributeStep ) {
+        this.steps = steps;
+        this.attributeStep = attributeStep;
+        this.xpath = null;
+    }
+
+    private ValueReferencePlan( GMLObjectXPath xpath ) {
+        this.steps = null;
+        this.attributeStep = false;
+        this.xpath = xpath;
+    }
+
+    /**
+     * Returns the (cached) evaluation plan for the given {@link ValueReference}.
+     * 
+     * @param valueRef
+     *            value reference, must not be <code>null</code>
+     * @return evaluation plan, never <code>null</code>
+     * @throws FilterEvaluationException
+     *             if the expression cannot be compiled
+     */
+    static ValueReferencePlan get( ValueReference valueRef )
+                            throws FilterEvaluationException {
+        PlanKey key = new PlanKey( valueRef );
+        ValueReferencePlan plan = CACHE.get( key );
+        if ( plan == null ) {
+            plan = compile( valueRef );
+            if ( CACHE.size() >= MAX_CACHED_PLANS ) {
+                CACHE.clear();
+            }
+            CACHE.put( key, plan );
+        }
+        return plan;
+    }
+
+    private static ValueReferencePlan compile( ValueReference valueRef )
+                            throws FilterEvaluationException {
+        QName[] steps = compileSteps( valueRef.getAsXPath(), valueRef.getNsContext() );
+        if ( steps != null ) {
+            return new ValueReferencePlan( steps, isAttributeStep( valueRef.getAsXPath() ) );
+        }
+        try {
+            GMLObjectXPath xpath = new GMLObjectXPath( valueRef.getAsText(), null );
+            xpath.setNamespaceContext( new NamespaceBindings( valueRef.getNsContext() ) );
+            return new ValueReferencePlan( xpath );
+        } catch ( JaxenException e ) {
+            throw new FilterEvaluationException( e.getMessage() );
+        }
+    }
+
+    private static QName[] compileSteps( Expr expr, NamespaceBindings nsContext ) {
+        if ( !( expr instanceof LocationPath ) || ( (LocationPath) expr ).isAbsolute() ) {
+            return null;
+        }
+        List<?> steps = ( (LocationPath) expr ).getSteps();
+        if ( steps.isEmpty() ) {
+            return null;
+        }
+        QName[] names = new QName[steps.size()];
+        for ( int i = 0; i < names.length; i++ ) {
+            Step step = (Step) steps.get( i );
+            if ( !( step instanceof NameStep ) || !step.getPredicates().isEmpty() ) {
+                return null;
+            }
+            boolean last = i == names.length - 1;
+            if ( !( step.getAxis() == Axis.CHILD || ( last && step.getAxis() == Axis.ATTRIBUTE ) ) ) {
+                return null;
+            }
+            NameStep nameStep = (NameStep) step;
+            if ( "*".equals( nameStep.getLocalName() ) ) {
+                return null;
+            }
+            String ns = "";
+            if ( !nameStep.getPrefix().isEmpty() ) {
+                ns = nsContext.translateNamespacePrefixToUri( nameStep.getPrefix() );
+                if ( ns == null ) {
+                    // let Jaxen report the unbound prefix
+                    return null;
+                }
+            }
+            names[i] = new QName( ns, nameStep.getLocalName() );
+        }
+        return names;
+    }
+
+    private static boolean isAttributeStep( Expr expr ) {
+        List<?> steps = ( (LocationPath) expr ).getSteps();
+        return ( (Step) steps.get( steps.size() - 1 ) ).getAxis() == Axis.ATTRIBUTE;
+    }
+
+    /**
+     * Evaluates the plan against the given context node.
+     * 
+     * @param contextNode
+     *            context node, must not be <code>null</code>
+     * @return selected values, never <code>null</code>
+     * @throws FilterEvaluationException
+     */
+    TypedObjectNode[] evaluate( XPathNode<?> contextNode )
+                            throws FilterEvaluationException {
+        if ( steps == null ) {
+            return evaluateXPath( contextNode );
+        }
+        List<XPathNode<?>> nodes = Collections.<XPathNode<?>> singletonList( contextNode );
+        for ( int i = 0; i < steps.length && !nodes.isEmpty(); i++ ) {
+            List<XPathNode<?>> selected = new ArrayList<XPathNode<?>>();
+            boolean attribute = attributeStep && i == steps.length - 1;
+            for ( XPathNode<?> node : nodes ) {
+                if ( attribute ) {
+                    selectAttributes( node, steps[i], selected );
+                } else {
+                    selectChildren( node, steps[i], selected );
+                }
+            }
+            nodes = selected;
+        }
+        TypedObjectNode[] values = new TypedObjectNode[nodes.size()];
+        int i = 0;
+        for ( XPathNode<?> node : nodes ) {
+            values[i++] = node.getValue();
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void selectChildren( XPathNode<?> node, QName name, List<XPathNode<?>> selected ) {
+        if ( node instanceof GMLObjectNode<?, ?> ) {
+            GMLObject object = ( (GMLObjectNode<?, ?>) node ).getValue();
+            if ( object instanceof Feature && !( object instanceof FeatureCollection ) ) {
+                GMLObjectNode<GMLObject, GMLObject> parent = (GMLObjectNode<GMLObject, GMLObject>) node;
+                for ( Property prop : object.getProperties( name ) ) {
+                    selected.add( new PropertyNode( parent, prop ) );
+                }
+                return;
+            }
+        }
+        Iterator<?> iter = NAVIGATOR.getChildAxisIterator( node );
+        while ( iter.hasNext() ) {
+            Object child = iter.next();
+            if ( child instanceof ElementNode<?> ) {
+                ElementNode<?> element = (ElementNode<?>) child;
+                if ( matches( name, element.getNamespaceUri(), element.getLocalName() ) ) {
+                    selected.add( element );
+                }
+            }
+        }
+    }
+
+    private void selectAttributes( XPathNode<?> node, QName name, List<XPathNode<?>> selected ) {
+        Iterator<?> iter = NAVIGATOR.getAttributeAxisIterator( node );
+        while ( iter.hasNext() ) {
+            AttributeNode<?> attr = (AttributeNode<?>) iter.next();
+            if ( matches( name, attr.getNamespaceUri(), attr.getLocalName() ) ) {
+                selected.add( attr );
+            }
+        }
+    }
+
+    private static boolean matches( QName name, String ns, String localName ) {
+        return name.getLocalPart().equals( localName )
+               && name.getNamespaceURI().equals( ns == null ? "" : ns );
+    }
+
+    private TypedObjectNode[] evaluateXPath( XPathNode<?> contextNode )
+                            throws FilterEvaluationException {
+        List<?> selectedNodes;
+        try {
+            selectedNodes = xpath.selectNodes( contextNode );
+        } catch ( JaxenException e ) {
+            throw new FilterEvaluationException( e.getMessage() );
+        }
+        TypedObjectNode[] resultValues = new TypedObjectNode[selectedNodes.size()];
+        int i = 0;
+        for ( Object node : selectedNodes ) {
+            if ( node instanceof XPathNode<?> ) {
+                resultValues[i++] = ( (XPathNode<?>) node ).getValue();
+            } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
+                resultValues[i++] = new PrimitiveValue( node );
+            } else {
+                throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
+                                            + node.getClass().getName() + "' (=" + node
+                                            + ") during XPath-evaluation." );
+            }
+        }
+        return resultValues;
+    }
+
+    /**
+     * Cache key: expression text plus the namespace bindings of the prefixes used in it.
+     */
+    private static final class PlanKey {
+
+        private final String text;
+
+        private final Map<String, String> bindings = new HashMap<String, String>();
+
+        private PlanKey( ValueReference valueRef ) {
+            text = valueRef.getAsText();
+            NamespaceBindings nsContext = valueRef.getNsContext();
+            Iterator<String> prefixes = nsContext.getPrefixes();
+            while ( prefixes.hasNext() ) {
+                String prefix = prefixes.next();
+                bindings.put( prefix, nsContext.translateNamespacePrefixToUri( prefix ) );
+            }
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof PlanKey ) ) {
+                return false;
+            }
+            PlanKey that = (PlanKey) o;
+            return text.equals( that.text ) && bindings.equals( that.bindings );
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + bindings.hashCode();
+        }
+    }
+}
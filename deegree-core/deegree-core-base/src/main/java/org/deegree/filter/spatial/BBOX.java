@@ -149,8 +149,7 @@ public class BBOX extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
-                    Envelope transformedBBox = (Envelope) getCompatibleGeometry( param1Value, param2 );
-                    return transformedBBox.intersects( param1Value );
+                    return getPreparedGeometry( param1Value, param2 ).intersects( param1Value );
                 }
             }
         } else if ( obj instanceof Feature ) {
@@ -158,8 +157,7 @@ public class BBOX extends SpatialOperator {
             Feature f = (Feature) obj;
             Envelope env = f.getEnvelope();
             if ( env != null ) {
-                Envelope transformedBBox = (Envelope) getCompatibleGeometry( env, param2 );
-                return transformedBBox.intersects( env );
+                return getPreparedGeometry( env, param2 ).intersects( env );
             }
         } else {
             LOG.warn( "Evaluating BBOX on non-Feature object and property name not specified." );
@@ -80,8 +80,7 @@ public class Intersects extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
-                    Geometry transformedGeom = getCompatibleGeometry( param1Value, geometry );
-                    return transformedGeom.intersects( param1Value );
+                    return getPreparedGeometry( param1Value, geometry ).intersects( param1Value );
                 }
             }
         } else if ( obj instanceof Feature ) {
@@ -92,8 +91,7 @@ public class Intersects extends SpatialOperator {
                 if ( prop.getValue() instanceof Geometry ) {
                     foundGeom = true;
                     Geometry geom = (Geometry) prop.getValue();
-                    Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                    if ( transformedGeom.intersects( geometry ) ) {
+                    if ( getPreparedGeometry( geom, geometry ).intersects( geom ) ) {
                         return true;
                     }
                 }
@@ -101,8 +99,7 @@ public class Intersects extends SpatialOperator {
             if ( !foundGeom ) {
                 Envelope env = f.getEnvelope();
                 if ( env != null ) {
-                    Geometry g = getCompatibleGeometry( geometry, env );
-                    if ( g.intersects( geometry ) ) {
+                    if ( getPreparedGeometry( env, geometry ).intersects( env ) ) {
                         return true;
                     }
                 }
@@ -111,8 +108,7 @@ public class Intersects extends SpatialOperator {
                 for ( Property prop : f.getExtraProperties().getProperties() ) {
                     if ( prop.getValue() instanceof Geometry ) {
                         Geometry geom = (Geometry) prop.getValue();
-                        Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                        if ( transformedGeom.intersects( geometry ) ) {
+                        if ( getPreparedGeometry( geom, geometry ).intersects( geom ) ) {
                             return true;
                         }
                     }
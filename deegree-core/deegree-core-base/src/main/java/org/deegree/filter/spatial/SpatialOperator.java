@@ -35,8 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -49,6 +49,7 @@ import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.standard.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +65,9 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    private final Map<String, Geometry> srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
+
+    private final Map<Geometry, PreparedGeometry> preparedLiterals = new ConcurrentHashMap<Geometry, PreparedGeometry>();
 
     protected final Expression propName;
 
@@ -193,7 +196,7 @@ public abstract class SpatialOperator implements Operator {
         Geometry transformedLiteral = literal;
         ICRS paramCRS = param.getCoordinateSystem();
         ICRS literalCRS = literal.getCoordinateSystem();
-        if ( literalCRS != null && !( paramCRS.equals( literalCRS ) ) ) {
+        if ( paramCRS != null && literalCRS != null && !( paramCRS.equals( literalCRS ) ) ) {
             LOG.debug( "Need transformed literal geometry for evaluation: " + literalCRS.getAlias() + " -> "
                        + paramCRS.getAlias() );
             transformedLiteral = srsNameToTransformedGeometry.get( paramCRS.getAlias() );
@@ -210,5 +213,31 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Returns a prepared version of the given geometry literal that has the same srs as the given geometry parameter.
+     * <p>
+     * The prepared literal is created once (per srs) and reused for all subsequent evaluations of this operator, so
+     * evaluating the operator against a stream of objects only pays for converting and indexing the literal once.
+     * </p>
+     * 
+     * @param param
+     *            geometry parameter, must not be <code>null</code>
+     * @param literal
+     *            geometry literal, must not be <code>null</code>
+     * @return prepared literal geometry with the same srs as the parameter geometry
+     * @throws FilterEvaluationException
+     *             if the transformation failed
+     */
+    protected PreparedGeometry getPreparedGeometry( Geometry param, Geometry literal )
+                            throws FilterEvaluationException {
+        Geometry transformedLiteral = getCompatibleGeometry( param, literal );
+        PreparedGeometry prepared = preparedLiterals.get( transformedLiteral );
+        if ( prepared == null ) {
+            prepared = new PreparedGeometry( transformedLiteral );
+            preparedLiterals.put( transformedLiteral, prepared );
+        }
+        return prepared;
+    }
+
     public abstract Object[] getParams();
 }
@@ -35,6 +35,9 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.gml;
 
+import java.io.File;
+import java.io.IOException;
+
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -60,6 +63,7 @@ import org.deegree.gml.feature.StreamFeatureCollection;
 import org.deegree.gml.geometry.GML2GeometryReader;
 import org.deegree.gml.geometry.GML3GeometryReader;
 import org.deegree.gml.geometry.GMLGeometryReader;
+import org.deegree.gml.reference.BoundedGmlDocumentIdContext;
 import org.deegree.gml.reference.GmlDocumentIdContext;
 import org.deegree.gml.reference.matcher.ReferencePatternMatcher;
 
@@ -124,11 +128,11 @@ import org.deegree.gml.reference.matcher.ReferencePatternMatcher;
  */
 public class GMLStreamReader {
 
-    private final XMLStreamReaderWrapper xmlStream;
+    private XMLStreamReaderWrapper xmlStream;
 
     private final GMLVersion version;
 
-    private final GmlDocumentIdContext idContext;
+    private GmlDocumentIdContext idContext;
 
     private GMLReferenceResolver resolver;
 
@@ -150,6 +154,8 @@ public class GMLStreamReader {
 
     private GMLReferenceResolver internalResolver;
 
+    private ReferencePatternMatcher referencePatternMatcher;
+
     /**
      * Creates a new {@link GMLStreamReader} instance.
      * 
@@ -197,6 +203,7 @@ public class GMLStreamReader {
      * @param referencePatternMatcher the matcher to add, may be <code>null</code> (all urls are resolved)
      */
     public void setReferencePatternMatcher( ReferencePatternMatcher referencePatternMatcher ) {
+        this.referencePatternMatcher = referencePatternMatcher;
         idContext.setReferencePatternMatcher( referencePatternMatcher );
     }
 
@@ -291,6 +298,47 @@ public class GMLStreamReader {
         return laxMode;
     }
 
+    /**
+     * Switches to a {@link BoundedGmlDocumentIdContext}, so the memory footprint for tracking ids and references does
+     * not grow with the size of the document (objects that are not kept in memory are re-parsed from the document on
+     * demand).
+     * <p>
+     * Must be invoked before anything has been read and requires a document that has been opened from a URL.
+     * </p>
+     * 
+     * @param maxObjects
+     *            maximum number of parsed objects to keep in memory
+     * @param spillDir
+     *            directory for temporary files, may be <code>null</code> (default temporary directory)
+     * @throws IOException
+     *             if the temporary files cannot be created
+     * @throws IllegalStateException
+     *             if reading has started already, the document has not been opened from a URL or the XML parser
+     *             does not provide character offsets (i.e. it is not a Stax2 parser such as Woodstox)
+     */
+    public void setBoundedIdContext( int maxObjects, File spillDir )
+                            throws IOException {
+        if ( xmlStream.getSystemId() == null ) {
+            String msg = "Bounded id context requires a document that has been opened from a URL.";
+            throw new IllegalStateException( msg );
+        }
+        if ( featureReader != null || geometryReader != null || dictReader != null ) {
+            throw new IllegalStateException( "Bounded id context must be set up before reading." );
+        }
+        if ( !xmlStream.hasStartingCharOffsets() ) {
+            String msg = "Bounded id context requires an XML parser that provides character offsets (Stax2).";
+            throw new IllegalStateException( msg );
+        }
+        String encoding = xmlStream.getEncoding() != null ? xmlStream.getEncoding()
+                                                          : xmlStream.getCharacterEncodingScheme();
+        BoundedGmlDocumentIdContext boundedContext = new BoundedGmlDocumentIdContext( version, xmlStream.getSystemId(),
+                                                                                      encoding, maxObjects, spillDir );
+        boundedContext.setApplicationSchema( schema );
+        boundedContext.setReferencePatternMatcher( referencePatternMatcher );
+        xmlStream = boundedContext.trackIds( xmlStream );
+        idContext = boundedContext;
+    }
+
     /**
      * Returns the deegree model representation for the GML object element event that the cursor of the underlying xml
      * stream points to.
@@ -442,6 +490,9 @@ public class GMLStreamReader {
     public void close()
                             throws XMLStreamException {
         xmlStream.close();
+        if ( idContext instanceof BoundedGmlDocumentIdContext ) {
+            ( (BoundedGmlDocumentIdContext) idContext ).close();
+        }
     }
 
     /**
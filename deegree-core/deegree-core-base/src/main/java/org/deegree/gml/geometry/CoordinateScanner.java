@@ -0,0 +1,375 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.COMMENT;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.ENTITY_REFERENCE;
+import static javax.xml.stream.XMLStreamConstants.PROCESSING_INSTRUCTION;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+
+/**
+ * Parses the numeric text content of <code>gml:pos</code>, <code>gml:posList</code> and <code>gml:coordinates</code>
+ * elements without creating intermediate strings.
+ * <p>
+ * The characters are taken directly from the buffer of the StAX reader (text content may be split into several
+ * events), tokens are collected in a reusable character buffer and the resulting values in a growable
+ * <code>double</code> array. Numbers with up to 15 significant digits and a decimal exponent within +/-22 are
+ * converted exactly by a single floating point operation, all other tokens are delegated to
+ * {@link Double#parseDouble(String)}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe, each reader uses its own scanner.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class CoordinateScanner {
+
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+                                           1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final int MAX_EXPONENT_DIGITS = 4;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // buffers that grew beyond this are not kept for the next element
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private char[] token = new char[32];
+
+    private int tokenLength;
+
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    private int numValues;
+
+    private String coordinateSeparators;
+
+    private String tupleSeparators;
+
+    private boolean whitespaceSeparatesTuples;
+
+    private int tupleLength;
+
+    private int tupleDimension;
+
+    /**
+     * Parses the whitespace separated values of the current element (e.g. <code>gml:posList</code>).
+     * <ul>
+     * <li>Precondition: cursor must point at the <code>START_ELEMENT</code> event</li>
+     * <li>Postcondition: cursor points at the corresponding <code>END_ELEMENT</code> event</li>
+     * </ul>
+     * 
+     * @param xmlStream
+     *            must not be <code>null</code>
+     * @return parsed values, never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double
+     * @throws XMLStreamException
+     */
+    double[] parseValues( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException, XMLStreamException {
+        coordinateSeparators = null;
+        tupleSeparators = null;
+        scan( xmlStream );
+        return drainValues();
+    }
+
+    /**
+     * Parses the tuples of the current element (e.g. <code>gml:coordinates</code>). All tuples must have the same
+     * number of values, this number can be retrieved using {@link #getTupleDimension()} afterwards.
+     * <ul>
+     * <li>Precondition: cursor must point at the <code>START_ELEMENT</code> event</li>
+     * <li>Postcondition: cursor points at the corresponding <code>END_ELEMENT</code> event</li>
+     * </ul>
+     * 
+     * @param xmlStream
+     *            must not be <code>null</code>
+     * @param cs
+     *            characters that separate the values of a tuple, must not be <code>null</code>
+     * @param ts
+     *            characters that separate the tuples, must not be <code>null</code>
+     * @return parsed values, never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double or the tuples differ in size
+     * @throws XMLStreamException
+     */
+    double[] parseTuples( XMLStreamReaderWrapper xmlStream, String cs, String ts )
+                            throws XMLParsingException, XMLStreamException {
+        coordinateSeparators = cs;
+        tupleSeparators = ts;
+        whitespaceSeparatesTuples = ts.trim().isEmpty();
+        tupleLength = 0;
+        tupleDimension = 0;
+        scan( xmlStream );
+        endTuple( xmlStream );
+        return drainValues();
+    }
+
+    /**
+     * Returns the number of values per tuple found by the last call to {@link #parseTuples}.
+     * 
+     * @return number of values per tuple, <code>0</code> if no tuple has been found
+     */
+    int getTupleDimension() {
+        return tupleDimension;
+    }
+
+    private void scan( XMLStreamReaderWrapper xmlStream )
+                            throws XMLStreamException {
+        if ( xmlStream.getEventType() != START_ELEMENT ) {
+            throw new XMLStreamException( "parser must be on START_ELEMENT to read next text", xmlStream.getLocation() );
+        }
+        tokenLength = 0;
+        numValues = 0;
+        int eventType = xmlStream.next();
+        while ( eventType != END_ELEMENT ) {
+            switch ( eventType ) {
+            case CHARACTERS:
+            case CDATA:
+            case SPACE:
+                scan( xmlStream, xmlStream.getTextCharacters(), xmlStream.getTextStart(), xmlStream.getTextLength() );
+                break;
+            case ENTITY_REFERENCE:
+                String text = xmlStream.getText();
+                scan( xmlStream, text.toCharArray(), 0, text.length() );
+                break;
+            case PROCESSING_INSTRUCTION:
+            case COMMENT:
+                // skipping
+                break;
+            case END_DOCUMENT:
+                throw new XMLStreamException( "unexpected end of document when reading element text content",
+                                              xmlStream.getLocation() );
+            case START_ELEMENT:
+                throw new XMLStreamException( "element text content may not contain START_ELEMENT",
+                                              xmlStream.getLocation() );
+            default:
+                throw new XMLStreamException( "Unexpected event type " + eventType, xmlStream.getLocation() );
+            }
+            eventType = xmlStream.next();
+        }
+        endToken( xmlStream );
+    }
+
+    private void scan( XMLStreamReaderWrapper xmlStream, char[] chars, int start, int length ) {
+        int end = start + length;
+        for ( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            if ( tupleSeparators != null ) {
+                if ( tupleSeparators.indexOf( c ) != -1 || ( whitespaceSeparatesTuples && isWhitespace( c ) ) ) {
+                    endToken( xmlStream );
+                    endTuple( xmlStream );
+                    continue;
+                }
+                if ( coordinateSeparators.indexOf( c ) != -1 ) {
+                    endToken( xmlStream );
+                    continue;
+                }
+            }
+            if ( isWhitespace( c ) ) {
+                endToken( xmlStream );
+            } else {
+                if ( tokenLength == token.length ) {
+                    token = Arrays.copyOf( token, tokenLength * 2 );
+                }
+                token[tokenLength++] = c;
+            }
+        }
+    }
+
+    private void endToken( XMLStreamReaderWrapper xmlStream ) {
+        if ( tokenLength == 0 ) {
+            return;
+        }
+        double value;
+        try {
+            value = parseDouble( token, 0, tokenLength );
+        } catch ( NumberFormatException e ) {
+            String msg = "Value '" + new String( token, 0, tokenLength ) + "' cannot be parsed as a double.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        tokenLength = 0;
+        if ( numValues == values.length ) {
+            values = Arrays.copyOf( values, numValues * 2 );
+        }
+        values[numValues++] = value;
+        tupleLength++;
+    }
+
+    private void endTuple( XMLStreamReaderWrapper xmlStream ) {
+        if ( tupleLength == 0 ) {
+            return;
+        }
+        if ( tupleDimension == 0 ) {
+            tupleDimension = tupleLength;
+        } else if ( tupleLength != tupleDimension ) {
+            String msg = "Cannot parse '" + xmlStream.getLocalName() + "': found a tuple with " + tupleLength
+                         + " values, but previous tuples have " + tupleDimension + " values.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        tupleLength = 0;
+    }
+
+    private double[] drainValues() {
+        double[] result = Arrays.copyOf( values, numValues );
+        if ( values.length > MAX_RETAINED_CAPACITY ) {
+            values = new double[INITIAL_CAPACITY];
+        }
+        if ( token.length > MAX_RETAINED_CAPACITY ) {
+            token = new char[32];
+        }
+        return result;
+    }
+
+    private static boolean isWhitespace( char c ) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    /**
+     * Parses the given characters as a double value, with the same result as {@link Double#parseDouble(String)}.
+     * 
+     * @param chars
+     *            character buffer, must not be <code>null</code>
+     * @param offset
+     *            index of the first character of the number
+     * @param length
+     *            number of characters, must be positive
+     * @return parsed value
+     * @throws NumberFormatException
+     *             if the characters do not represent a valid double value
+     */
+    static double parseDouble( char[] chars, int offset, int length )
+                            throws NumberFormatException {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        char c = chars[i];
+        if ( c == '-' || c == '+' ) {
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+            hasDigits = true;
+            if ( mantissa != 0 || c != '0' ) {
+                if ( ++significantDigits > MAX_EXACT_DIGITS ) {
+                    return parseDoubleSlow( chars, offset, length );
+                }
+                mantissa = mantissa * 10 + ( c - '0' );
+            }
+            i++;
+        }
+        if ( i < end && chars[i] == '.' ) {
+            i++;
+            while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+                hasDigits = true;
+                if ( mantissa != 0 || c != '0' ) {
+                    if ( ++significantDigits > MAX_EXACT_DIGITS ) {
+                        return parseDoubleSlow( chars, offset, length );
+                    }
+                    mantissa = mantissa * 10 + ( c - '0' );
+                }
+                exponent--;
+                i++;
+            }
+        }
+        if ( !hasDigits ) {
+            // e.g. 'NaN', 'Infinity' or invalid
+            return parseDoubleSlow( chars, offset, length );
+        }
+
+        if ( i < end && ( chars[i] == 'e' || chars[i] == 'E' ) ) {
+            i++;
+            boolean negativeExponent = false;
+            if ( i < end && ( chars[i] == '-' || chars[i] == '+' ) ) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+                if ( i - exponentStart == MAX_EXPONENT_DIGITS ) {
+                    return parseDoubleSlow( chars, offset, length );
+                }
+                explicitExponent = explicitExponent * 10 + ( c - '0' );
+                i++;
+            }
+            if ( i == exponentStart ) {
+                return parseDoubleSlow( chars, offset, length );
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if ( i != end ) {
+            // trailing characters, e.g. type suffixes
+            return parseDoubleSlow( chars, offset, length );
+        }
+
+        double value;
+        if ( mantissa == 0 ) {
+            value = 0.0;
+        } else if ( exponent >= 0 && exponent < POW10.length ) {
+            value = mantissa * POW10[exponent];
+        } else if ( exponent < 0 && -exponent < POW10.length ) {
+            value = mantissa / POW10[-exponent];
+        } else {
+            return parseDoubleSlow( chars, offset, length );
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow( char[] chars, int offset, int length ) {
+        return Double.parseDouble( new String( chars, offset, length ) );
+    }
+}
@@ -0,0 +1,462 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.reference;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
+import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.GMLReference;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link GmlDocumentIdContext} with a memory footprint that does not grow with the size of the document.
+ * <p>
+ * Instead of keeping all parsed {@link GMLObject}s, only the most recently added objects are kept in memory. For all
+ * other objects, only the character offset of the object element in the document is stored (in a
+ * {@link MappedGmlIdIndex}). When a reference to such an object is resolved, the object is parsed again from the
+ * document. Ids of local references are spilled to a temporary file, so {@link #resolveLocalRefs()} can still check
+ * them at the end of the document.
+ * </p>
+ * <p>
+ * Notes:
+ * <ul>
+ * <li>The document must be re-readable, i.e. it must have been opened from a URL.</li>
+ * <li>The offsets are recorded by the {@link XMLStreamReaderWrapper} returned by
+ * {@link #trackIds(XMLStreamReaderWrapper)}, which must be used for reading the document. This requires a Stax2
+ * parser (e.g. Woodstox), other parsers do not provide reliable character offsets.</li>
+ * <li>Instances are thread-safe, objects may be resolved concurrently.</li>
+ * <li>Re-parsing of objects is sequential: the document is only re-opened for objects that precede the position
+ * reached by the previous re-parse, so the cost of resolving references depends on their locality.</li>
+ * <li>{@link #getObjects()} only returns the objects that are currently kept in memory and {@link #getReferences()}
+ * is always empty.</li>
+ * </ul>
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class BoundedGmlDocumentIdContext extends GmlDocumentIdContext {
+
+    private static final Logger LOG = LoggerFactory.getLogger( BoundedGmlDocumentIdContext.class );
+
+    private static final String WRAPPER_ELEMENT = "BoundedGmlDocumentIdContext";
+
+    private static final XMLInputFactory xmlFac = XMLInputFactory.newInstance();
+
+    private final GMLVersion version;
+
+    private final String systemId;
+
+    private final String encoding;
+
+    private final MappedGmlIdIndex index;
+
+    private final Map<String, GMLObject> recentObjects;
+
+    // namespace bindings encountered in the document (needed for parsing fragments)
+    private final Map<String, String> prefixToNs = new LinkedHashMap<String, String>();
+
+    private final File localRefsFile;
+
+    private final DataOutputStream localRefs;
+
+    private AppSchema schema;
+
+    private DocumentReader documentReader;
+
+    /**
+     * Creates a new {@link BoundedGmlDocumentIdContext} instance.
+     * 
+     * @param version
+     *            GML version, must not be <code>null</code>
+     * @param systemId
+     *            URL of the document, must not be <code>null</code>
+     * @param encoding
+     *            character encoding of the document, may be <code>null</code> (UTF-8)
+     * @param maxObjects
+     *            maximum number of parsed objects to keep in memory
+     * @param spillDir
+     *            directory for temporary files, may be <code>null</code> (default temporary directory)
+     * @throws IOException
+     *             if the temporary files cannot be created
+     */
+    public BoundedGmlDocumentIdContext( GMLVersion version, String systemId, String encoding, final int maxObjects,
+                                        File spillDir ) throws IOException {
+        super( version );
+        this.version = version;
+        this.systemId = systemId;
+        this.encoding = encoding != null ? encoding : "UTF-8";
+        this.index = new MappedGmlIdIndex( spillDir, 1 << 16 );
+        this.recentObjects = new LinkedHashMap<String, GMLObject>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 4563186429216431094L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, GMLObject> eldest ) {
+                return size() > maxObjects;
+            }
+        };
+        localRefsFile = File.createTempFile( "gmlrefs", ".bin", spillDir );
+        localRefsFile.deleteOnExit();
+        localRefs = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( localRefsFile ) ) );
+    }
+
+    @Override
+    public void setApplicationSchema( AppSchema schema ) {
+        super.setApplicationSchema( schema );
+        this.schema = schema;
+    }
+
+    /**
+     * Returns an {@link XMLStreamReaderWrapper} that records the offsets of all elements with GML ids (and the namespace
+     * bindings) in this context.
+     * 
+     * @param xmlStream
+     *            stream for reading the document, must not be <code>null</code>
+     * @return wrapped stream, never <code>null</code>
+     * @throws IllegalArgumentException
+     *             if the stream does not provide character offsets (not a Stax2 reader)
+     */
+    public XMLStreamReaderWrapper trackIds( XMLStreamReaderWrapper xmlStream ) {
+        if ( !xmlStream.hasStartingCharOffsets() ) {
+            String msg = "Tracking ids requires a Stax2 reader that provides character offsets.";
+            throw new IllegalArgumentException( msg );
+        }
+        IdTrackingStreamReader tracker = new IdTrackingStreamReader( xmlStream );
+        if ( xmlStream.getEventType() == START_ELEMENT ) {
+            tracker.track();
+        }
+        return tracker;
+    }
+
+    synchronized void addLocation( String id, long offset ) {
+        if ( offset < 0 ) {
+            // the object could not be re-parsed after eviction
+            throw new ReferenceResolvingException( "No character offset available for object with id '" + id + "'." );
+        }
+        try {
+            index.put( id, offset );
+        } catch ( IOException e ) {
+            throw new ReferenceResolvingException( "Unable to index object with id '" + id + "': " + e.getMessage() );
+        }
+    }
+
+    synchronized void addNamespace( String prefix, String ns ) {
+        String key = prefix != null ? prefix : "";
+        String bound = prefixToNs.get( key );
+        if ( bound == null ) {
+            prefixToNs.put( key, ns );
+        } else if ( !bound.equals( ns ) ) {
+            LOG.debug( "Prefix '" + key + "' is rebound to '" + ns + "', keeping binding to '" + bound + "'." );
+        }
+    }
+
+    @Override
+    public synchronized void addObject( GMLObject object ) {
+        String id = object.getId();
+        if ( id != null && id.length() > 0 ) {
+            recentObjects.put( id, object );
+        }
+    }
+
+    @Override
+    public synchronized void addReference( GMLReference<?> ref ) {
+        if ( ref.getURI().startsWith( "#" ) ) {
+            try {
+                localRefs.writeUTF( ref.getURI().substring( 1 ) );
+            } catch ( IOException e ) {
+                throw new ReferenceResolvingException( "Unable to spill reference: " + e.getMessage() );
+            }
+        }
+    }
+
+    @Override
+    public synchronized GMLObject getObject( String id ) {
+        GMLObject object = recentObjects.get( id );
+        if ( object == null ) {
+            long offset = index.get( id );
+            if ( offset != -1 ) {
+                object = materialize( id, offset );
+                if ( object != null ) {
+                    recentObjects.put( id, object );
+                }
+            }
+        }
+        return object;
+    }
+
+    @Override
+    public GMLObject getObject( String uri, String baseURL ) {
+        if ( uri.startsWith( "#" ) ) {
+            return getObject( uri.substring( 1 ) );
+        }
+        return super.getObject( uri, baseURL );
+    }
+
+    @Override
+    public synchronized Map<String, GMLObject> getObjects() {
+        // snapshot: lookups in the access-ordered map are structural modifications
+        return Collections.unmodifiableMap( new LinkedHashMap<String, GMLObject>( recentObjects ) );
+    }
+
+    @Override
+    public List<GMLReference<?>> getReferences() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void resolveLocalRefs()
+                            throws ReferenceResolvingException {
+        DataInputStream is = null;
+        try {
+            localRefs.flush();
+            is = new DataInputStream( new BufferedInputStream( new FileInputStream( localRefsFile ) ) );
+            while ( true ) {
+                String id = null;
+                try {
+                    id = is.readUTF();
+                } catch ( EOFException e ) {
+                    break;
+                }
+                if ( !isKnown( id ) ) {
+                    String msg = "Cannot resolve reference to object with id '" + id
+                                 + "'. There is no object with this id in the document.";
+                    throw new ReferenceResolvingException( msg );
+                }
+            }
+        } catch ( IOException e ) {
+            throw new ReferenceResolvingException( "Unable to read spilled references: " + e.getMessage() );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+    /**
+     * Releases the temporary files and the reader used for re-parsing objects.
+     */
+    public void close() {
+        IOUtils.closeQuietly( localRefs );
+        localRefsFile.delete();
+        IOUtils.closeQuietly( index );
+        if ( documentReader != null ) {
+            IOUtils.closeQuietly( documentReader );
+            documentReader = null;
+        }
+    }
+
+    private synchronized boolean isKnown( String id ) {
+        return recentObjects.containsKey( id ) || index.get( id ) != -1;
+    }
+
+    private synchronized GMLObject materialize( String id, long offset ) {
+        LOG.debug( "Re-parsing object '" + id + "' at character offset " + offset + "." );
+        try {
+            if ( documentReader == null || documentReader.position > offset ) {
+                if ( documentReader != null ) {
+                    documentReader.close();
+                }
+                documentReader = new DocumentReader( new URL( systemId ), encoding );
+            }
+            documentReader.skipTo( offset );
+
+            StringBuilder wrapper = new StringBuilder( "<" + WRAPPER_ELEMENT );
+            for ( Map.Entry<String, String> binding : prefixToNs.entrySet() ) {
+                wrapper.append( binding.getKey().isEmpty() ? " xmlns" : " xmlns:" + binding.getKey() );
+                wrapper.append( "=\"" ).append( binding.getValue().replace( "\"", "&quot;" ) ).append( '"' );
+            }
+            wrapper.append( '>' );
+            documentReader.prefix( wrapper.toString() );
+
+            XMLStreamReader xmlStream = xmlFac.createXMLStreamReader( documentReader );
+            // wrapper element
+            xmlStream.nextTag();
+            // object element
+            xmlStream.nextTag();
+            GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( version,
+                                                                             new XMLStreamReaderWrapper( xmlStream,
+                                                                                                         systemId ) );
+            gmlReader.setApplicationSchema( schema );
+            gmlReader.setResolver( this );
+            GMLObject object = gmlReader.read();
+            // keeps the document reader open: objects behind its position can be reached without re-opening
+            xmlStream.close();
+            if ( object == null || !id.equals( object.getId() ) ) {
+                LOG.warn( "Unable to re-parse object with id '" + id + "' (index collision or unsupported element)." );
+                return null;
+            }
+            return object;
+        } catch ( Exception e ) {
+            String msg = "Unable to re-parse object with id '" + id + "' from '" + systemId + "': " + e.getMessage();
+            throw new ReferenceResolvingException( msg );
+        }
+    }
+
+    /**
+     * Character stream on the document that keeps track of its position and allows to prepend a prefix.
+     */
+    private static class DocumentReader extends Reader {
+
+        private final Reader reader;
+
+        private long position;
+
+        private String prefix;
+
+        private int prefixPos;
+
+        private DocumentReader( URL url, String encoding ) throws IOException {
+            reader = new BufferedReader( new InputStreamReader( url.openStream(), encoding ), 65536 );
+            reader.mark( 1 );
+            if ( reader.read() != '\uFEFF' ) {
+                // no byte order mark (which is not counted by the parser)
+                reader.reset();
+            }
+        }
+
+        private void skipTo( long offset )
+                                throws IOException {
+            while ( position < offset ) {
+                long skipped = reader.skip( offset - position );
+                if ( skipped <= 0 ) {
+                    throw new EOFException( "Unexpected end of document at character offset " + position + "." );
+                }
+                position += skipped;
+            }
+        }
+
+        private void prefix( String prefix ) {
+            this.prefix = prefix;
+            this.prefixPos = 0;
+        }
+
+        @Override
+        public int read( char[] cbuf, int off, int len )
+                                throws IOException {
+            if ( prefix != null && prefixPos < prefix.length() ) {
+                int n = Math.min( len, prefix.length() - prefixPos );
+                prefix.getChars( prefixPos, prefixPos + n, cbuf, off );
+                prefixPos += n;
+                return n;
+            }
+            int n = reader.read( cbuf, off, len );
+            if ( n > 0 ) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close()
+                                throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Records the offsets of elements with GML ids and the namespace bindings.
+     */
+    private class IdTrackingStreamReader extends XMLStreamReaderWrapper {
+
+        private IdTrackingStreamReader( XMLStreamReaderWrapper xmlStream ) {
+            super( xmlStream, xmlStream.getSystemId() );
+        }
+
+        @Override
+        public int next()
+                                throws XMLStreamException {
+            int event = super.next();
+            if ( event == START_ELEMENT ) {
+                track();
+            }
+            return event;
+        }
+
+        @Override
+        public int nextTag()
+                                throws XMLStreamException {
+            int event = super.nextTag();
+            if ( event == START_ELEMENT ) {
+                track();
+            }
+            return event;
+        }
+
+        private void track() {
+            for ( int i = 0; i < getNamespaceCount(); i++ ) {
+                addNamespace( getNamespacePrefix( i ), getNamespaceURI( i ) );
+            }
+            String id = getAttributeValue( version == GMLVersion.GML_32 ? GML3_2_NS : GMLNS, "id" );
+            if ( id == null && version == GMLVersion.GML_2 ) {
+                id = getAttributeValue( null, "fid" );
+            }
+            if ( id != null ) {
+                addLocation( id, getStartingCharOffset() );
+            }
+        }
+    }
+
+}
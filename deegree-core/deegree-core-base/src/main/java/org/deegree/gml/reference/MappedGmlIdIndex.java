@@ -0,0 +1,199 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.reference;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Disk-backed index that maps GML object ids to <code>long</code> values (e.g. document offsets).
+ * <p>
+ * Allows to keep track of the ids of huge GML documents without keeping them in the heap. The index is an open
+ * addressing hash table in a memory-mapped temporary file that stores 64 bit hashes of the ids (not the ids
+ * themselves), so the memory footprint does not depend on the id lengths. As a consequence, hash collisions are not
+ * detected, callers that need certainty have to verify the identity of the indexed object. When the table is half
+ * full, a table of twice the size is appended to the file and the entries are rehashed into it. The region of the old
+ * table is not reused, so the file is at most twice as large as the current table.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class MappedGmlIdIndex implements Closeable {
+
+    // 8 bytes hash, 8 bytes value
+    private static final int SLOT_SIZE = 16;
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE;
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private MappedByteBuffer slots;
+
+    private int capacity;
+
+    private int size;
+
+    /**
+     * Creates a new {@link MappedGmlIdIndex} instance.
+     * 
+     * @param dir
+     *            directory for the index file, may be <code>null</code> (default temporary directory)
+     * @param initialCapacity
+     *            initial number of slots, must be positive
+     * @throws IOException
+     *             if the index file cannot be created
+     */
+    public MappedGmlIdIndex( File dir, int initialCapacity ) throws IOException {
+        file = File.createTempFile( "gmlidindex", ".bin", dir );
+        file.deleteOnExit();
+        raf = new RandomAccessFile( file, "rw" );
+        map( initialCapacity );
+    }
+
+    private void map( int newCapacity )
+                            throws IOException {
+        long offset = raf.length();
+        long length = (long) newCapacity * SLOT_SIZE;
+        raf.setLength( offset + length );
+        slots = raf.getChannel().map( READ_WRITE, offset, length );
+        capacity = newCapacity;
+        size = 0;
+    }
+
+    /**
+     * Adds the given id to the index (replacing a previous entry for the same id).
+     * 
+     * @param id
+     *            object id, must not be <code>null</code>
+     * @param value
+     *            value to store, must not be negative
+     * @throws IOException
+     *             if the index file cannot be enlarged
+     */
+    public synchronized void put( String id, long value )
+                            throws IOException {
+        if ( ( size + 1 ) * 2 > capacity ) {
+            grow();
+        }
+        put( hash( id ), value );
+    }
+
+    private void put( long hash, long value ) {
+        int slot = findSlot( hash );
+        if ( slots.getLong( slot * SLOT_SIZE ) == 0 ) {
+            slots.putLong( slot * SLOT_SIZE, hash );
+            size++;
+        }
+        slots.putLong( slot * SLOT_SIZE + 8, value );
+    }
+
+    /**
+     * Returns the value stored for the given id.
+     * 
+     * @param id
+     *            object id, must not be <code>null</code>
+     * @return stored value, or <code>-1</code> if the id is not in the index
+     */
+    public synchronized long get( String id ) {
+        long hash = hash( id );
+        int slot = findSlot( hash );
+        if ( slots.getLong( slot * SLOT_SIZE ) == 0 ) {
+            return -1;
+        }
+        return slots.getLong( slot * SLOT_SIZE + 8 );
+    }
+
+    /**
+     * Returns the number of indexed ids.
+     * 
+     * @return number of indexed ids
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int findSlot( long hash ) {
+        int slot = (int) ( ( hash ^ ( hash >>> 32 ) ) & 0x7fffffff ) % capacity;
+        while ( true ) {
+            long slotHash = slots.getLong( slot * SLOT_SIZE );
+            if ( slotHash == 0 || slotHash == hash ) {
+                return slot;
+            }
+            slot = ( slot + 1 ) % capacity;
+        }
+    }
+
+    private void grow()
+                            throws IOException {
+        if ( capacity == MAX_CAPACITY ) {
+            throw new IOException( "GML id index is full (" + size + " entries)." );
+        }
+        MappedByteBuffer oldSlots = slots;
+        int oldCapacity = capacity;
+        map( (int) Math.min( (long) oldCapacity * 2, MAX_CAPACITY ) );
+        for ( int i = 0; i < oldCapacity; i++ ) {
+            long hash = oldSlots.getLong( i * SLOT_SIZE );
+            if ( hash != 0 ) {
+                put( hash, oldSlots.getLong( i * SLOT_SIZE + 8 ) );
+            }
+        }
+    }
+
+    // 64 bit FNV-1a, 0 is reserved for empty slots
+    private static long hash( String id ) {
+        long hash = 0xcbf29ce484222325L;
+        for ( int i = 0; i < id.length(); i++ ) {
+            hash ^= id.charAt( i );
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    @Override
+    public synchronized void close()
+                            throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+}
@@ -0,0 +1,180 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.expression.ValueReference;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TypedObjectNodeXPathEvaluator} and the compiled {@link ValueReferencePlan}s.
+ */
+public class TypedObjectNodeXPathEvaluatorTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final QName NAME = new QName( NS, "name", "app" );
+
+    private static final QName FRIEND = new QName( NS, "friend", "app" );
+
+    private final NamespaceBindings nsContext = new NamespaceBindings().addNamespace( "app", NS ).addNamespace( "gml",
+                                                                                                              GML3_2_NS );
+
+    private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+
+    private Feature alice;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        pts.add( new FeaturePropertyType( FRIEND, 0, -1, null, null, null, BOTH ) );
+        GenericFeatureType ft = new GenericFeatureType( new QName( NS, "Person", "app" ), pts, false );
+
+        Feature bob = createPerson( ft, "PERSON_2", "Bob" );
+        Feature carol = createPerson( ft, "PERSON_3", "Carol" );
+        alice = createPerson( ft, "PERSON_1", "Alice" );
+        alice.getProperties().add( new GenericProperty( pts.get( 1 ), bob ) );
+        alice.getProperties().add( new GenericProperty( pts.get( 1 ), carol ) );
+    }
+
+    private Feature createPerson( GenericFeatureType ft, String id, String name ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new GenericProperty( ft.getPropertyDeclaration( NAME ), new PrimitiveValue( name ) ) );
+        return new GenericFeature( ft, id, props, null );
+    }
+
+    @Test
+    public void testChildSteps()
+                            throws Exception {
+        assertValues( "app:friend/app:Person/app:name", "Bob", "Carol" );
+    }
+
+    @Test
+    public void testAttributeStep()
+                            throws Exception {
+        assertValues( "app:friend/app:Person/@gml:id", "PERSON_2", "PERSON_3" );
+    }
+
+    @Test
+    public void testPredicateFallback()
+                            throws Exception {
+        assertValues( "app:friend/app:Person[app:name='Carol']/@gml:id", "PERSON_3" );
+    }
+
+    @Test
+    public void testAbsolutePathFallback()
+                            throws Exception {
+        assertValues( "/app:Person/app:name", "Alice" );
+    }
+
+    @Test
+    public void testNoMatch()
+                            throws Exception {
+        assertValues( "app:friend/app:Dog/app:name" );
+    }
+
+    @Test
+    public void testPlanIsCached()
+                            throws Exception {
+        ValueReference first = new ValueReference( "app:friend/app:Person/app:name", nsContext );
+        ValueReference second = new ValueReference( "app:friend/app:Person/app:name", nsContext );
+        assertSame( ValueReferencePlan.get( first ), ValueReferencePlan.get( second ) );
+
+        NamespaceBindings otherNs = new NamespaceBindings().addNamespace( "app", "http://www.example.org/other" );
+        ValueReference third = new ValueReference( "app:friend/app:Person/app:name", otherNs );
+        assertTrue( ValueReferencePlan.get( first ) != ValueReferencePlan.get( third ) );
+        assertEquals( 0, evaluator.eval( alice, third ).length );
+    }
+
+    @Test(expected = FilterEvaluationException.class)
+    public void testUnboundPrefix()
+                            throws Exception {
+        evaluator.eval( alice, new ValueReference( "foo:friend/foo:Person", nsContext ) );
+    }
+
+    private void assertValues( String xpath, String... expected )
+                            throws Exception {
+        ValueReference valueRef = new ValueReference( xpath, nsContext );
+        TypedObjectNode[] values = evaluator.eval( alice, valueRef );
+        assertEquals( expected.length, values.length );
+        for ( int i = 0; i < expected.length; i++ ) {
+            assertEquals( expected[i], getText( values[i] ) );
+        }
+
+        // must agree with plain Jaxen evaluation
+        GMLObjectXPath jaxen = new GMLObjectXPath( xpath, alice );
+        jaxen.setNamespaceContext( nsContext );
+        List<?> nodes = jaxen.selectNodes( new GMLObjectNode<Feature, Feature>( null, alice ) );
+        assertEquals( nodes.size(), values.length );
+        for ( int i = 0; i < values.length; i++ ) {
+            assertEquals( getText( ( (XPathNode<?>) nodes.get( i ) ).getValue() ), getText( values[i] ) );
+        }
+    }
+
+    private String getText( TypedObjectNode node ) {
+        if ( node instanceof Property ) {
+            return ( (Property) node ).getValue().toString();
+        }
+        return node.toString();
+    }
+}
@@ -0,0 +1,163 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates the {@link SpatialOperator}s (which use prepared literal geometries) against a grid of candidate geometries
+ * and compares the results with the plain topological predicates of the {@link Geometry} API.
+ */
+public class SpatialOperatorEvaluationTest {
+
+    private static final QName GEOM = new QName( "http://www.deegree.org/app", "geom", "app" );
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+
+    private final ValueReference geomRef = new ValueReference( GEOM );
+
+    private GenericFeatureType ft;
+
+    // concave (L-shaped) literal
+    private Polygon literal;
+
+    private List<Geometry> candidates;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new GeometryPropertyType( GEOM, 0, 1, null, null, GEOMETRY, DIM_2, BOTH ) );
+        ft = new GenericFeatureType( new QName( "http://www.deegree.org/app", "Parcel", "app" ), pts, false );
+
+        literal = polygon( 0, 0, 10, 0, 10, 4, 4, 4, 4, 10, 0, 10, 0, 0 );
+        candidates = new ArrayList<Geometry>();
+        for ( int x = -3; x <= 12; x += 3 ) {
+            for ( int y = -3; y <= 12; y += 3 ) {
+                candidates.add( geomFac.createPoint( null, x, y, null ) );
+                candidates.add( polygon( x, y, x + 2, y, x + 2, y + 2, x, y + 2, x, y ) );
+            }
+        }
+        candidates.add( literal );
+        candidates.add( polygon( -1, -1, 11, -1, 11, 11, -1, 11, -1, -1 ) );
+    }
+
+    @Test
+    public void testPreparedOperatorsAgreeWithGeometryPredicates()
+                            throws Exception {
+        SpatialOperator[] ops = new SpatialOperator[] { new Intersects( geomRef, literal ),
+                                                       new Disjoint( geomRef, literal ),
+                                                       new Within( geomRef, literal ),
+                                                       new Contains( geomRef, literal ),
+                                                       new Touches( geomRef, literal ),
+                                                       new Overlaps( geomRef, literal ),
+                                                       new Crosses( geomRef, literal ) };
+        for ( Geometry candidate : candidates ) {
+            Feature f = createFeature( candidate );
+            assertEquals( candidate.intersects( literal ), ops[0].evaluate( f, evaluator ) );
+            assertEquals( candidate.isDisjoint( literal ), ops[1].evaluate( f, evaluator ) );
+            assertEquals( candidate.isWithin( literal ), ops[2].evaluate( f, evaluator ) );
+            assertEquals( candidate.contains( literal ), ops[3].evaluate( f, evaluator ) );
+            assertEquals( candidate.touches( literal ), ops[4].evaluate( f, evaluator ) );
+            assertEquals( candidate.overlaps( literal ), ops[5].evaluate( f, evaluator ) );
+            assertEquals( candidate.crosses( literal ), ops[6].evaluate( f, evaluator ) );
+        }
+    }
+
+    @Test
+    public void testBBOX()
+                            throws Exception {
+        Envelope bbox = geomFac.createEnvelope( 5, 5, 8, 8, null );
+        BBOX op = new BBOX( geomRef, bbox );
+        for ( Geometry candidate : candidates ) {
+            assertEquals( candidate.intersects( bbox ), op.evaluate( createFeature( candidate ), evaluator ) );
+        }
+        // bbox is inside the envelope of the literal, but inside its notch
+        assertFalse( op.evaluate( createFeature( literal ), evaluator ) );
+        assertTrue( new BBOX( geomRef, geomFac.createEnvelope( 2, 2, 3, 3, null ) ).evaluate( createFeature( literal ),
+                                                                                               evaluator ) );
+    }
+
+    @Test
+    public void testIntersectsWithoutPropertyName()
+                            throws Exception {
+        Intersects op = new Intersects( null, literal );
+        assertTrue( op.evaluate( createFeature( geomFac.createPoint( null, 2, 8, null ) ), evaluator ) );
+        assertFalse( op.evaluate( createFeature( geomFac.createPoint( null, 8, 8, null ) ), evaluator ) );
+    }
+
+    private Feature createFeature( Geometry geom ) {
+        List<Property> props = Collections.<Property> singletonList( new GenericProperty(
+                                                                                          ft.getPropertyDeclaration( GEOM ),
+                                                                                          geom ) );
+        return new GenericFeature( ft, null, new ArrayList<Property>( props ), null );
+    }
+
+    private Polygon polygon( double... coords ) {
+        Ring ring = geomFac.createLinearRing( null, null, new PackedPoints( null, coords, 2 ) );
+        return geomFac.createPolygon( null, null, ring, null );
+    }
+}
@@ -0,0 +1,151 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark that compares the {@link CoordinateScanner} with the former <code>getElementText()</code> /
+ * {@link StringTokenizer} / {@link Double#parseDouble(String)} approach for decoding <code>gml:posList</code> elements.
+ * <p>
+ * Not executed as part of the unit tests, run {@link #main(String[])} from the test classpath (add
+ * <code>-prof gc</code> to the JMH options to compare the allocation rates).
+ * </p>
+ * 
+ * @since 3.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateParsingBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int numPoints;
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private final CoordinateScanner scanner = new CoordinateScanner();
+
+    private String posList;
+
+    @Setup
+    public void createPosList() {
+        Random random = new Random( 4711 );
+        StringBuilder sb = new StringBuilder( "<gml:posList xmlns:gml=\"http://www.opengis.net/gml\">" );
+        for ( int i = 0; i < numPoints; i++ ) {
+            double x = 350000 + random.nextDouble() * 100000;
+            double y = 5600000 + random.nextDouble() * 100000;
+            sb.append( String.format( Locale.US, "%.3f %.3f ", x, y ) );
+        }
+        sb.append( "</gml:posList>" );
+        posList = sb.toString();
+    }
+
+    @Benchmark
+    public Points tokenizer()
+                            throws XMLStreamException {
+        XMLStreamReaderWrapper xmlStream = open();
+        StringTokenizer st = new StringTokenizer( xmlStream.getElementText() );
+        List<String> tokens = new ArrayList<String>();
+        while ( st.hasMoreTokens() ) {
+            tokens.add( st.nextToken() );
+        }
+        List<Point> points = new ArrayList<Point>();
+        int tokenPos = 0;
+        for ( int i = 0; i < tokens.size() / 2; i++ ) {
+            double[] pointCoords = new double[2];
+            for ( int j = 0; j < 2; j++ ) {
+                pointCoords[j] = Double.parseDouble( tokens.get( tokenPos++ ) );
+            }
+            points.add( geomFac.createPoint( null, pointCoords, null ) );
+        }
+        return geomFac.createPoints( points );
+    }
+
+    @Benchmark
+    public Points scanner()
+                            throws XMLStreamException {
+        XMLStreamReaderWrapper xmlStream = open();
+        return geomFac.createPoints( null, scanner.parseValues( xmlStream ), 2 );
+    }
+
+    private XMLStreamReaderWrapper open()
+                            throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader( new StringReader( posList ) );
+        XMLStreamReaderWrapper xmlStream = new XMLStreamReaderWrapper( reader, null );
+        xmlStream.nextTag();
+        return xmlStream;
+    }
+
+    public static void main( String[] args )
+                            throws RunnerException {
+        new Runner( new OptionsBuilder().include( CoordinateParsingBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
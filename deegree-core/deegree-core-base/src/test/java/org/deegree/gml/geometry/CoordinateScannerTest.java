@@ -0,0 +1,158 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoordinateScanner}.
+ * 
+ * @since 3.4
+ */
+public class CoordinateScannerTest {
+
+    @Test
+    public void testParseDoubleMatchesJdk() {
+        String[] values = { "0", "-0", "+1", "1.", ".5", "-0.000", "3.14159265358979", "123456789012345",
+                           "1234567890123456789", "0.1", "0.30000000000000004", "7.0E-10", "1e22", "1e23", "1e-22",
+                           "4.9e-324", "1.7976931348623157E308", "2.2250738585072014E-308", "-12.5e+3", "007.50",
+                           "NaN", "-Infinity", "1.0d", "3f", "563843.1244", "5933234.000001" };
+        for ( String value : values ) {
+            char[] chars = ( "  " + value + "  " ).toCharArray();
+            double expected = Double.parseDouble( value );
+            double actual = CoordinateScanner.parseDouble( chars, 2, value.length() );
+            assertEquals( value, Double.doubleToLongBits( expected ), Double.doubleToLongBits( actual ) );
+        }
+    }
+
+    @Test
+    public void testParseDoubleRandom() {
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 100000; i++ ) {
+            double d = ( random.nextDouble() - 0.5 ) * Math.pow( 10, random.nextInt( 20 ) - 6 );
+            String value = i % 2 == 0 ? Double.toString( d ) : String.format( Locale.US, "%.6f", d );
+            char[] chars = value.toCharArray();
+            assertEquals( value, Double.parseDouble( value ), CoordinateScanner.parseDouble( chars, 0, chars.length ),
+                          0.0 );
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoubleInvalid() {
+        char[] chars = "1.2.3".toCharArray();
+        CoordinateScanner.parseDouble( chars, 0, chars.length );
+    }
+
+    @Test
+    public void testParseValuesAcrossTextEvents()
+                            throws Exception {
+        XMLStreamReaderWrapper xmlStream = open( "<posList>1.5 2<!-- c -->.5\n\t3<![CDATA[.5 4]]> 5&#x20;6</posList>" );
+        double[] values = new CoordinateScanner().parseValues( xmlStream );
+        assertArrayEquals( new double[] { 1.5, 2.5, 3.5, 4, 5, 6 }, values, 0.0 );
+        assertEquals( "posList", xmlStream.getLocalName() );
+    }
+
+    @Test
+    public void testParseValuesReusesScanner()
+                            throws Exception {
+        CoordinateScanner scanner = new CoordinateScanner();
+        StringBuilder sb = new StringBuilder( "<posList>" );
+        for ( int i = 0; i < 1000; i++ ) {
+            sb.append( i ).append( ".25 " );
+        }
+        sb.append( "</posList>" );
+        double[] values = scanner.parseValues( open( sb.toString() ) );
+        assertEquals( 1000, values.length );
+        assertEquals( 999.25, values[999], 0.0 );
+        assertEquals( 0, scanner.parseValues( open( "<pos/>" ) ).length );
+        assertArrayEquals( new double[] { 7, 8 }, scanner.parseValues( open( "<pos> 7 8 </pos>" ) ), 0.0 );
+    }
+
+    @Test
+    public void testParseTuples()
+                            throws Exception {
+        CoordinateScanner scanner = new CoordinateScanner();
+        double[] values = scanner.parseTuples( open( "<coordinates>1,2 3,4\n5,6</coordinates>" ), ",", " " );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, values, 0.0 );
+        assertEquals( 2, scanner.getTupleDimension() );
+
+        values = scanner.parseTuples( open( "<coordinates>1;2;3| 4;5;6 |</coordinates>" ), ";", "|" );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, values, 0.0 );
+        assertEquals( 3, scanner.getTupleDimension() );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void testParseTuplesDifferentDimensions()
+                            throws Exception {
+        new CoordinateScanner().parseTuples( open( "<coordinates>1,2 3,4,5</coordinates>" ), ",", " " );
+    }
+
+    @Test
+    public void testInvalidValue()
+                            throws Exception {
+        try {
+            new CoordinateScanner().parseValues( open( "<posList>1 2 x3 4</posList>" ) );
+            fail();
+        } catch ( XMLParsingException e ) {
+            assertTrue( e.getMessage().contains( "Value 'x3' cannot be parsed as a double." ) );
+        }
+    }
+
+    private static XMLStreamReaderWrapper open( String xml )
+                            throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty( XMLInputFactory.IS_COALESCING, false );
+        XMLStreamReader reader = factory.createXMLStreamReader( new StringReader( xml ) );
+        XMLStreamReaderWrapper xmlStream = new XMLStreamReaderWrapper( reader, null );
+        xmlStream.nextTag();
+        return xmlStream;
+    }
+}
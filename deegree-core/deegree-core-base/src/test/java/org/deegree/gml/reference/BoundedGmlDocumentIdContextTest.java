@@ -0,0 +1,157 @@
+package org.deegree.gml.reference;
+
+import static org.deegree.gml.GMLInputFactory.createGMLStreamReader;
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.geometry.multi.MultiCurve;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.gml.GMLStreamReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoundedGmlDocumentIdContext}.
+ */
+public class BoundedGmlDocumentIdContextTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                         + "<gml:MultiCurve xmlns:gml=\"http://www.opengis.net/gml\" "
+                                         + "xmlns:xlink=\"http://www.w3.org/1999/xlink\" gml:id=\"mc\">\n";
+
+    private File file;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        file = File.createTempFile( "bounded", ".gml" );
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testReferencesResolvedByReparsing()
+                            throws Exception {
+        FileUtils.writeStringToFile( file, HEADER + lineString( "l1", "0 0 1 1" ) + lineString( "l2", "2 2 3 3" )
+                                           + lineString( "l3", "4 4 5 5" )
+                                           + "<gml:curveMember xlink:href=\"#l1\"/>\n</gml:MultiCurve>", "UTF-8" );
+        GMLStreamReader gmlReader = createGMLStreamReader( GML_31, file.toURI().toURL() );
+        gmlReader.setBoundedIdContext( 1, null );
+        MultiCurve<Curve> multiCurve = (MultiCurve<Curve>) gmlReader.readGeometry();
+        GmlDocumentIdContext idContext = gmlReader.getIdContext();
+        assertTrue( idContext.getObjects().size() <= 1 );
+        idContext.resolveLocalRefs();
+
+        Curve ref = multiCurve.get( 3 );
+        assertEquals( 2, ref.getControlPoints().size() );
+        assertEquals( 1.0, ref.getControlPoints().get( 1 ).get0(), 0.0 );
+
+        GMLObject reparsed = idContext.getObject( "l1" );
+        assertTrue( reparsed instanceof LineString );
+        assertEquals( "l1", reparsed.getId() );
+        assertNotNull( idContext.getObject( "l3" ) );
+        // backwards again (re-opens the document)
+        assertEquals( "l2", idContext.getObject( "l2" ).getId() );
+        assertNull( idContext.getObject( "unknown" ) );
+        gmlReader.close();
+    }
+
+    @Test(expected = ReferenceResolvingException.class)
+    public void testUnresolvableLocalReference()
+                            throws Exception {
+        FileUtils.writeStringToFile( file, HEADER + lineString( "l1", "0 0 1 1" )
+                                           + "<gml:curveMember xlink:href=\"#missing\"/>\n</gml:MultiCurve>", "UTF-8" );
+        GMLStreamReader gmlReader = createGMLStreamReader( GML_31, file.toURI().toURL() );
+        gmlReader.setBoundedIdContext( 1, null );
+        try {
+            gmlReader.readGeometry();
+            gmlReader.getIdContext().resolveLocalRefs();
+        } finally {
+            gmlReader.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentResolving()
+                            throws Exception {
+        StringBuilder doc = new StringBuilder( HEADER );
+        for ( int i = 0; i < 50; i++ ) {
+            doc.append( lineString( "l" + i, i + " " + i + " " + ( i + 1 ) + " " + ( i + 1 ) ) );
+        }
+        FileUtils.writeStringToFile( file, doc + "</gml:MultiCurve>", "UTF-8" );
+        GMLStreamReader gmlReader = createGMLStreamReader( GML_31, file.toURI().toURL() );
+        gmlReader.setBoundedIdContext( 2, null );
+        gmlReader.readGeometry();
+        final GmlDocumentIdContext idContext = gmlReader.getIdContext();
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for ( int i = 0; i < 200; i++ ) {
+                final String id = "l" + ( ( i * 7 ) % 50 );
+                results.add( executor.submit( new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return idContext.getObject( id ).getId();
+                    }
+                } ) );
+            }
+            for ( int i = 0; i < 200; i++ ) {
+                assertEquals( "l" + ( ( i * 7 ) % 50 ), results.get( i ).get() );
+            }
+        } finally {
+            executor.shutdown();
+            gmlReader.close();
+        }
+        assertTrue( idContext.getObjects().size() <= 2 );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresCharacterOffsets()
+                            throws Exception {
+        FileUtils.writeStringToFile( file, HEADER + lineString( "l1", "0 0 1 1" ) + "</gml:MultiCurve>", "UTF-8" );
+        InputStream is = new FileInputStream( file );
+        try {
+            XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader( is );
+            // hides the Stax2 interface of the parser
+            XMLStreamReaderWrapper xmlStream = new XMLStreamReaderWrapper( new StreamReaderDelegate( xmlReader ),
+                                                                           file.toURI().toString() );
+            createGMLStreamReader( GML_31, xmlStream ).setBoundedIdContext( 1, null );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+    private static String lineString( String id, String posList ) {
+        return "<gml:curveMember><gml:LineString gml:id=\"" + id + "\"><gml:posList>" + posList
+               + "</gml:posList></gml:LineString></gml:curveMember>\n";
+    }
+
+}
@@ -0,0 +1,660 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.commons.index;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.deegree.commons.utils.Pair;
+import org.slf4j.Logger;
+
+/**
+ * <code>PackedRTree</code> is a static, bulk loaded R-tree that keeps all nodes in flat primitive buffers instead of
+ * an object graph.
+ * <p>
+ * On bulk insertion the entries are sorted by the Hilbert value of their center and packed bottom up into nodes of a
+ * fixed size. The leaf level holds one node per entry, every upper level is appended behind the level below, the root
+ * is the last node. Children of a node are located by arithmetic, so neither the build nor a query allocates per node
+ * objects. Queries can be answered through a {@link Visitor} (or a {@link LongVisitor} for trees holding
+ * <code>long</code> values) or a lazy {@link #iterator(float[]) iterator} without creating any intermediate
+ * collections.
+ * </p>
+ * <p>
+ * Trees holding {@link Long} values can be written to disk with {@link #writeTreeToDisk(String)}. The file is opened
+ * with {@link #loadFromDisk(String)} by memory mapping it, so the index does not occupy heap space and is not
+ * deserialized at all.
+ * </p>
+ * <p>
+ * Single inserts and removals are not supported, the tree has to be rebuilt with {@link #insertBulk(List)}. Once
+ * built, the tree may be queried concurrently.
+ * </p>
+ * 
+ * @param <T>
+ *            of objects the tree will hold.
+ * 
+ * @since 3.4
+ */
+public class PackedRTree<T> extends SpatialIndex<T> {
+
+    private static final Logger LOG = getLogger( PackedRTree.class );
+
+    private static final int MAGIC = 0x44505254;
+
+    private static final int VERSION = 1;
+
+    private static final int DEFAULT_NODE_SIZE = 16;
+
+    // a tree with a node size of at least 2 never has more levels
+    private static final int MAX_LEVELS = 32;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // order of the hilbert curve, must be < 16 so that value and entry index fit into one long
+    private static final int HILBERT_ORDER = 15;
+
+    private static final int HILBERT_MAX = ( 1 << HILBERT_ORDER ) - 1;
+
+    private final int nodeSize;
+
+    private int numItems;
+
+    // end offsets (exclusive) of the levels in the node buffer, leaf level first
+    private int[] levelBounds = new int[0];
+
+    // minx, miny, maxx, maxy for every node
+    private FloatBuffer boxes = FloatBuffer.allocate( 0 );
+
+    // leaf values of heap trees
+    private Object[] objects;
+
+    // leaf values of memory mapped trees
+    private LongBuffer values;
+
+    private boolean extraFlag;
+
+    /**
+     * Visitor receiving the objects matched by a query.
+     * 
+     * @param <T>
+     *            of objects the tree holds
+     */
+    public interface Visitor<T> {
+
+        /**
+         * @param object
+         *            a matching object
+         * @return false, if the query should be aborted
+         */
+        boolean visit( T object );
+    }
+
+    /**
+     * Visitor receiving the <code>long</code> values matched by a query, without boxing them.
+     */
+    public interface LongVisitor {
+
+        /**
+         * @param value
+         *            a matching value
+         * @return false, if the query should be aborted
+         */
+        boolean visit( long value );
+    }
+
+    /**
+     * @param nodeSize
+     *            the maximum number of children of a node, values smaller than 2 select the default of 16
+     */
+    public PackedRTree( int nodeSize ) {
+        this.nodeSize = nodeSize < 2 ? DEFAULT_NODE_SIZE : nodeSize;
+    }
+
+    private PackedRTree( int nodeSize, int numItems, int[] levelBounds, FloatBuffer boxes, LongBuffer values,
+                         boolean extraFlag ) {
+        this.nodeSize = nodeSize;
+        this.numItems = numItems;
+        this.levelBounds = levelBounds;
+        this.boxes = boxes;
+        this.values = values;
+        this.extraFlag = extraFlag;
+    }
+
+    /**
+     * @return the number of entries of this tree
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * @return the bbox of all entries (minx, miny, maxx, maxy), or <code>null</code> if the tree is empty
+     */
+    public float[] getEnvelope() {
+        if ( numItems == 0 ) {
+            return null;
+        }
+        int root = 4 * ( levelBounds[levelBounds.length - 1] - 1 );
+        return new float[] { boxes.get( root ), boxes.get( root + 1 ), boxes.get( root + 2 ), boxes.get( root + 3 ) };
+    }
+
+    @Override
+    public Collection<T> query( float[] envelope ) {
+        final List<T> result = new ArrayList<T>();
+        query( envelope, new Visitor<T>() {
+            @Override
+            public boolean visit( T object ) {
+                result.add( object );
+                return true;
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Passes all objects intersecting the given envelope to the visitor.
+     * 
+     * @param envelope
+     *            to intersect (minx, miny, maxx, maxy)
+     * @param visitor
+     *            to receive the matching objects
+     */
+    public void query( float[] envelope, Visitor<T> visitor ) {
+        if ( numItems == 0 ) {
+            return;
+        }
+        int level = levelBounds.length - 1;
+        query( envelope, level, levelBounds[level] - 1, null, visitor );
+    }
+
+    /**
+     * Passes the values of all entries intersecting the given envelope to the visitor. The tree must hold
+     * {@link Long} values.
+     * 
+     * @param envelope
+     *            to intersect (minx, miny, maxx, maxy)
+     * @param visitor
+     *            to receive the matching values
+     */
+    public void query( float[] envelope, LongVisitor visitor ) {
+        if ( numItems == 0 ) {
+            return;
+        }
+        int level = levelBounds.length - 1;
+        query( envelope, level, levelBounds[level] - 1, visitor, null );
+    }
+
+    /**
+     * Returns an iterator over all objects intersecting the given envelope. The tree is traversed lazily, i.e. only as
+     * far as the iterator is consumed.
+     * 
+     * @param envelope
+     *            to intersect (minx, miny, maxx, maxy)
+     * @return iterator over the matching objects, never <code>null</code>
+     */
+    public Iterator<T> iterator( final float[] envelope ) {
+        return new Iterator<T>() {
+
+            // pending nodes and their levels, at most nodeSize - 1 siblings remain per level
+            private final int[] nodes = new int[levelBounds.length * nodeSize + 1];
+
+            private final int[] levels = new int[nodes.length];
+
+            private int depth;
+
+            private int next = -1;
+
+            {
+                if ( numItems > 0 ) {
+                    nodes[0] = levelBounds[levelBounds.length - 1] - 1;
+                    levels[0] = levelBounds.length - 1;
+                    depth = 1;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                while ( next < 0 && depth > 0 ) {
+                    int node = nodes[--depth];
+                    int level = levels[depth];
+                    if ( !intersects( envelope, node ) ) {
+                        continue;
+                    }
+                    if ( level == 0 ) {
+                        next = node;
+                    } else {
+                        int levelStart = levelBounds[level - 1];
+                        int childStart = ( level == 1 ? 0 : levelBounds[level - 2] ) + ( node - levelStart ) * nodeSize;
+                        int childEnd = Math.min( childStart + nodeSize, levelStart );
+                        // push in reverse order, so children are visited in the same order as by query()
+                        for ( int child = childEnd - 1; child >= childStart; --child ) {
+                            nodes[depth] = child;
+                            levels[depth++] = level - 1;
+                        }
+                    }
+                }
+                return next >= 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public T next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                next = -1;
+                if ( values != null ) {
+                    return (T) Long.valueOf( values.get( node ) );
+                }
+                return (T) objects[node];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> boolean query( float[] envelope, int level, int node, LongVisitor longVisitor, Visitor<V> visitor ) {
+        if ( !intersects( envelope, node ) ) {
+            return true;
+        }
+        if ( level == 0 ) {
+            if ( longVisitor != null ) {
+                return longVisitor.visit( values != null ? values.get( node ) : (Long) objects[node] );
+            }
+            if ( values != null ) {
+                return visitor.visit( (V) Long.valueOf( values.get( node ) ) );
+            }
+            return visitor.visit( (V) objects[node] );
+        }
+        int levelStart = levelBounds[level - 1];
+        int childStart = ( level == 1 ? 0 : levelBounds[level - 2] ) + ( node - levelStart ) * nodeSize;
+        int childEnd = Math.min( childStart + nodeSize, levelStart );
+        for ( int child = childStart; child < childEnd; ++child ) {
+            if ( !query( envelope, level - 1, child, longVisitor, visitor ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean intersects( float[] envelope, int node ) {
+        int i = 4 * node;
+        return boxes.get( i ) <= envelope[2] && boxes.get( i + 1 ) <= envelope[3] && boxes.get( i + 2 ) >= envelope[0]
+               && boxes.get( i + 3 ) >= envelope[1];
+    }
+
+    /**
+     * Builds the tree from the given entries, replacing any former content. Entries with a <code>null</code> envelope
+     * are ignored.
+     */
+    @Override
+    public void insertBulk( List<Pair<float[], T>> listOfObjects ) {
+        int n = 0;
+        float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE, maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE;
+        for ( Pair<float[], T> p : listOfObjects ) {
+            float[] box = p.first;
+            if ( box != null ) {
+                ++n;
+                minx = Math.min( minx, box[0] );
+                miny = Math.min( miny, box[1] );
+                maxx = Math.max( maxx, box[2] );
+                maxy = Math.max( maxy, box[3] );
+            }
+        }
+
+        // sort key: hilbert value in the upper bits, index into the list in the lower 31 bits
+        long[] keys = new long[n];
+        double w = maxx - minx, h = maxy - miny;
+        int k = 0, idx = 0;
+        for ( Pair<float[], T> p : listOfObjects ) {
+            float[] box = p.first;
+            if ( box != null ) {
+                int x = w == 0 ? 0 : (int) ( HILBERT_MAX * ( ( box[0] + box[2] ) / 2 - minx ) / w );
+                int y = h == 0 ? 0 : (int) ( HILBERT_MAX * ( ( box[1] + box[3] ) / 2 - miny ) / h );
+                keys[k++] = ( hilbert( x, y ) << 31 ) | idx;
+            }
+            ++idx;
+        }
+        Arrays.sort( keys );
+
+        int[] bounds = computeLevelBounds( n, nodeSize );
+        float[] nodes = new float[4 * ( n == 0 ? 0 : bounds[bounds.length - 1] )];
+        Object[] objs = new Object[n];
+        for ( int i = 0; i < n; ++i ) {
+            Pair<float[], T> p = listOfObjects.get( (int) ( keys[i] & Integer.MAX_VALUE ) );
+            System.arraycopy( p.first, 0, nodes, 4 * i, 4 );
+            objs[i] = p.second;
+        }
+        packUpperLevels( nodes, bounds, nodeSize );
+
+        this.numItems = n;
+        this.levelBounds = bounds;
+        this.boxes = FloatBuffer.wrap( nodes );
+        this.objects = objs;
+        this.values = null;
+    }
+
+    private static int[] computeLevelBounds( int numItems, int nodeSize ) {
+        if ( numItems == 0 ) {
+            return new int[0];
+        }
+        List<Integer> bounds = new ArrayList<Integer>();
+        int levelSize = numItems;
+        int end = numItems;
+        bounds.add( end );
+        while ( levelSize > 1 ) {
+            levelSize = ( levelSize + nodeSize - 1 ) / nodeSize;
+            end += levelSize;
+            bounds.add( end );
+        }
+        int[] result = new int[bounds.size()];
+        for ( int i = 0; i < result.length; ++i ) {
+            result[i] = bounds.get( i );
+        }
+        return result;
+    }
+
+    private static void packUpperLevels( float[] nodes, int[] bounds, int nodeSize ) {
+        int parent = bounds.length == 0 ? 0 : bounds[0];
+        for ( int level = 1; level < bounds.length; ++level ) {
+            int start = level == 1 ? 0 : bounds[level - 2];
+            int end = bounds[level - 1];
+            for ( int i = start; i < end; i += nodeSize ) {
+                float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE, maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE;
+                int last = Math.min( i + nodeSize, end );
+                for ( int c = i; c < last; ++c ) {
+                    minx = Math.min( minx, nodes[4 * c] );
+                    miny = Math.min( miny, nodes[4 * c + 1] );
+                    maxx = Math.max( maxx, nodes[4 * c + 2] );
+                    maxy = Math.max( maxy, nodes[4 * c + 3] );
+                }
+                nodes[4 * parent] = minx;
+                nodes[4 * parent + 1] = miny;
+                nodes[4 * parent + 2] = maxx;
+                nodes[4 * parent + 3] = maxy;
+                ++parent;
+            }
+        }
+    }
+
+    /**
+     * Computes the distance of the cell (x, y) along a hilbert curve of order {@value #HILBERT_ORDER}.
+     */
+    static long hilbert( int x, int y ) {
+        long d = 0;
+        for ( int s = 1 << ( HILBERT_ORDER - 1 ); s > 0; s >>= 1 ) {
+            int rx = ( x & s ) > 0 ? 1 : 0;
+            int ry = ( y & s ) > 0 ? 1 : 0;
+            d += (long) s * s * ( ( 3 * rx ) ^ ry );
+            if ( ry == 0 ) {
+                if ( rx == 1 ) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    @Override
+    public void clear() {
+        numItems = 0;
+        levelBounds = new int[0];
+        boxes = FloatBuffer.allocate( 0 );
+        objects = null;
+        values = null;
+    }
+
+    /**
+     * Not supported, the tree can only be built with {@link #insertBulk(List)}.
+     */
+    @Override
+    public boolean insert( float[] envelope, T object ) {
+        throw new UnsupportedOperationException( "A packed rtree does not support single inserts." );
+    }
+
+    /**
+     * Not supported, the tree can only be built with {@link #insertBulk(List)}.
+     */
+    @Override
+    public boolean remove( T object ) {
+        throw new UnsupportedOperationException( "A packed rtree does not support removals." );
+    }
+
+    /**
+     * @return the extra flag, which is stored along with the tree
+     */
+    public boolean getExtraFlag() {
+        return extraFlag;
+    }
+
+    /**
+     * @param extraFlag
+     *            an application specific flag to be stored along with the tree
+     */
+    public void setExtraFlag( boolean extraFlag ) {
+        this.extraFlag = extraFlag;
+    }
+
+    /**
+     * Writes the tree to the given file. The tree must hold {@link Long} values.
+     * <p>
+     * The tree is written to a temporary file first, which then replaces the given file atomically (if supported by
+     * the file system). Trees that are still mapped from an earlier version of the file are not affected.
+     * </p>
+     * 
+     * @param output
+     *            file name
+     * @throws IOException
+     */
+    public void writeTreeToDisk( String output )
+                            throws IOException {
+        int headerSize = headerSize( levelBounds.length );
+        int numNodes = numItems == 0 ? 0 : levelBounds[levelBounds.length - 1];
+        checkMappable( headerSize, numItems, numNodes, output );
+
+        File target = new File( output ).getAbsoluteFile();
+        File tmp = File.createTempFile( target.getName(), ".tmp", target.getParentFile() );
+        boolean moved = false;
+        try {
+            FileOutputStream os = new FileOutputStream( tmp );
+            try {
+                FileChannel channel = os.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate( WRITE_BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+                buffer.putInt( MAGIC );
+                buffer.putInt( VERSION );
+                buffer.putInt( nodeSize );
+                buffer.putInt( numItems );
+                buffer.putInt( extraFlag ? 1 : 0 );
+                buffer.putInt( levelBounds.length );
+                for ( int bound : levelBounds ) {
+                    buffer.putInt( bound );
+                }
+                while ( buffer.position() < headerSize ) {
+                    buffer.put( (byte) 0 );
+                }
+                for ( int i = 0; i < numItems; ++i ) {
+                    buffer = ensureRemaining( channel, buffer, 8 );
+                    buffer.putLong( values != null ? values.get( i ) : (Long) objects[i] );
+                }
+                for ( int i = 0; i < 4 * numNodes; ++i ) {
+                    buffer = ensureRemaining( channel, buffer, 4 );
+                    buffer.putFloat( boxes.get( i ) );
+                }
+                buffer.flip();
+                while ( buffer.hasRemaining() ) {
+                    channel.write( buffer );
+                }
+                channel.force( true );
+            } finally {
+                os.close();
+            }
+            try {
+                Files.move( tmp.toPath(), target.toPath(), REPLACE_EXISTING, ATOMIC_MOVE );
+            } catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( tmp.toPath(), target.toPath(), REPLACE_EXISTING );
+            }
+            moved = true;
+        } finally {
+            if ( !moved && !tmp.delete() ) {
+                LOG.debug( "Could not delete temporary file {}.", tmp );
+            }
+        }
+    }
+
+    private static ByteBuffer ensureRemaining( FileChannel channel, ByteBuffer buffer, int bytes )
+                            throws IOException {
+        if ( buffer.remaining() < bytes ) {
+            buffer.flip();
+            while ( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    // a mapped buffer is limited to Integer.MAX_VALUE bytes
+    private static long checkMappable( int headerSize, int numItems, int numNodes, String fileName )
+                            throws IOException {
+        long length = headerSize + 8L * numItems + 16L * numNodes;
+        if ( length > Integer.MAX_VALUE ) {
+            throw new IOException( "The packed rtree index " + fileName + " would exceed 2 GB (" + numItems
+                                   + " entries)." );
+        }
+        return length;
+    }
+
+    /**
+     * Opens a tree written with {@link #writeTreeToDisk(String)} by memory mapping the file.
+     * 
+     * @param fileName
+     *            of the tree
+     * @return the memory mapped tree
+     * @throws IOException
+     *             if the file could not be read or is not a packed rtree file
+     */
+    public static PackedRTree<Long> loadFromDisk( String fileName )
+                            throws IOException {
+        File f = new File( fileName );
+        RandomAccessFile file = new RandomAccessFile( f, "r" );
+        try {
+            if ( file.length() < headerSize( 0 ) ) {
+                throw new IOException( "The file " + fileName + " is not a packed rtree index." );
+            }
+            // the mapping stays valid after the file is closed
+            MappedByteBuffer buffer = file.getChannel().map( MapMode.READ_ONLY, 0, file.length() );
+            buffer.order( ByteOrder.LITTLE_ENDIAN );
+            if ( buffer.getInt() != MAGIC ) {
+                throw new IOException( "The file " + fileName + " is not a packed rtree index." );
+            }
+            int version = buffer.getInt();
+            if ( version != VERSION ) {
+                throw new IOException( "Unsupported packed rtree index version " + version + " in " + fileName + "." );
+            }
+            int nodeSize = buffer.getInt();
+            int numItems = buffer.getInt();
+            boolean extraFlag = buffer.getInt() == 1;
+            int numLevels = buffer.getInt();
+            if ( nodeSize < 2 || numItems < 0 || numLevels < 0 || numLevels > MAX_LEVELS
+                 || file.length() < headerSize( numLevels ) ) {
+                throw new IOException( "The packed rtree index " + fileName + " has an invalid header." );
+            }
+            int headerSize = headerSize( numLevels );
+            int[] levelBounds = new int[numLevels];
+            for ( int i = 0; i < numLevels; ++i ) {
+                levelBounds[i] = buffer.getInt();
+            }
+            // the bounds of a valid tree are strictly increasing and determined by its size
+            if ( !Arrays.equals( levelBounds, computeLevelBounds( numItems, nodeSize ) ) ) {
+                throw new IOException( "The packed rtree index " + fileName + " has invalid level bounds." );
+            }
+            int numNodes = numItems == 0 ? 0 : levelBounds[numLevels - 1];
+            if ( file.length() != checkMappable( headerSize, numItems, numNodes, fileName ) ) {
+                throw new IOException( "The packed rtree index " + fileName + " is truncated." );
+            }
+            // the length check makes sure the offsets fit into an int
+            int valuesLength = (int) ( 8L * numItems );
+            buffer.position( headerSize );
+            ByteBuffer slice = buffer.slice().order( ByteOrder.LITTLE_ENDIAN );
+            slice.limit( valuesLength );
+            LongBuffer values = slice.asLongBuffer();
+            buffer.position( headerSize + valuesLength );
+            slice = buffer.slice().order( ByteOrder.LITTLE_ENDIAN );
+            FloatBuffer boxes = slice.asFloatBuffer();
+            LOG.debug( "Mapped packed rtree index {} with {} entries.", fileName, numItems );
+            return new PackedRTree<Long>( nodeSize, numItems, levelBounds, boxes, values, extraFlag );
+        } finally {
+            file.close();
+        }
+    }
+
+    // header fields and level bounds, padded to keep the long values aligned
+    private static int headerSize( int numLevels ) {
+        int size = 4 * ( 6 + numLevels );
+        return ( size + 7 ) & ~7;
+    }
+
+}
@@ -0,0 +1,321 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.net;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.protocol.HttpContext;
+import org.deegree.workspace.Destroyable;
+import org.deegree.workspace.Initializable;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+
+/**
+ * Process-wide pool of keep-alive HTTP connections that is shared by all clients that access remote services (e.g.
+ * cascaded WMS, WMTS or WFS).
+ * <p>
+ * Creating a {@link DefaultHttpClient} for every request means a new TCP (and TLS) handshake for every request. Clients
+ * returned by {@link #createHttpClient()} are cheap to create, but lease their connections from a common pool that
+ * limits the number of connections per host and keeps idle connections open for reuse. Proxy settings, credentials and
+ * timeouts can still be set per client.
+ * </p>
+ * <p>
+ * The pool is created on demand and set up anew when the first workspace is initialized. It is shut down when the last
+ * initialized workspace is destroyed, so destroying one workspace does not affect the clients of other workspaces in the
+ * same process. It is configured by the following system properties:
+ * <ul>
+ * <li><code>deegree.http.maxConnections</code>: maximum number of pooled connections (default: 200)</li>
+ * <li><code>deegree.http.maxConnectionsPerHost</code>: maximum number of pooled connections per host (default: 20)</li>
+ * <li><code>deegree.http.keepAlive</code>: seconds an idle connection is kept open, if the server does not announce a
+ * shorter period (default: 30)</li>
+ * <li><code>deegree.http.connectionRequestTimeout</code>: seconds to wait for a free pooled connection before failing
+ * (default: 60)</li>
+ * </ul>
+ * </p>
+ * <p>
+ * NOTE: A connection is returned to the pool only after the response entity has been consumed completely or its content
+ * stream has been closed.
+ * </p>
+ * 
+ * @since 3.4
+ */
+@SuppressWarnings("deprecation")
+public final class HttpConnectionPool implements Initializable, Destroyable {
+
+    private static final Logger LOG = getLogger( HttpConnectionPool.class );
+
+    /** System property for the maximum number of pooled connections. */
+    public static final String MAX_CONNECTIONS_PROPERTY = "deegree.http.maxConnections";
+
+    /** System property for the maximum number of pooled connections per host. */
+    public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "deegree.http.maxConnectionsPerHost";
+
+    /** System property for the number of seconds an idle connection is kept open. */
+    public static final String KEEP_ALIVE_PROPERTY = "deegree.http.keepAlive";
+
+    /** System property for the number of seconds to wait for a free pooled connection. */
+    public static final String CONNECTION_REQUEST_TIMEOUT_PROPERTY = "deegree.http.connectionRequestTimeout";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 200;
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    private static final int DEFAULT_KEEP_ALIVE_SECS = 30;
+
+    private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_SECS = 60;
+
+    private static PoolingClientConnectionManager connManager;
+
+    private static ScheduledExecutorService scheduler;
+
+    private static ExecutorService asyncExecutor;
+
+    private static long keepAliveMillis;
+
+    private static long connectionRequestTimeoutMillis;
+
+    private static int users;
+
+    private boolean acquired;
+
+    @Override
+    public void init( Workspace workspace ) {
+        if ( !acquired ) {
+            acquire();
+            acquired = true;
+        }
+        PoolingClientConnectionManager manager = getConnectionManager();
+        LOG.info( "Pooling HTTP connections to remote services (max. {} in total, {} per host, keep-alive {} ms).",
+                  new Object[] { manager.getMaxTotal(), manager.getDefaultMaxPerRoute(), keepAliveMillis } );
+    }
+
+    @Override
+    public void destroy( Workspace workspace ) {
+        release( acquired );
+        acquired = false;
+    }
+
+    /**
+     * Creates a new {@link DefaultHttpClient} that uses the shared connection pool.
+     * <p>
+     * The client must not be shut down (via its connection manager). Parameters, credentials and proxies may be set
+     * on the returned client, they don't affect other clients.
+     * </p>
+     *
+     * @return new client, never <code>null</code>
+     */
+    public static DefaultHttpClient createHttpClient() {
+        DefaultHttpClient client = new DefaultHttpClient( getConnectionManager() );
+        final long maxKeepAlive = keepAliveMillis;
+        HttpClientParams.setConnectionManagerTimeout( client.getParams(), connectionRequestTimeoutMillis );
+        client.setKeepAliveStrategy( new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
+                long keepAlive = super.getKeepAliveDuration( response, context );
+                if ( keepAlive < 0 || keepAlive > maxKeepAlive ) {
+                    keepAlive = maxKeepAlive;
+                }
+                return keepAlive;
+            }
+        } );
+        return client;
+    }
+
+    /**
+     * Executes the given (blocking) HTTP task asynchronously.
+     * <p>
+     * The tasks are executed by a thread pool that is limited to the maximum number of pooled connections, so waiting
+     * for the returned {@link Future} is the only blocking operation for the caller.
+     * </p>
+     *
+     * @param task
+     *            task to execute, must not be <code>null</code>
+     * @return future result of the task, never <code>null</code>
+     */
+    public static <T> Future<T> submit( Callable<T> task ) {
+        return getAsyncExecutor().submit( task );
+    }
+
+    /**
+     * Aborts the given request (i.e. a blocking connect or read) when the deadline has passed.
+     * 
+     * @param request
+     *            request to abort, must not be <code>null</code>
+     * @param deadline
+     *            time (in milliseconds since the epoch) to abort the request at
+     * @return task that aborts the request, should be cancelled when the request has been completed, never
+     *         <code>null</code>
+     */
+    public static Future<?> abortAt( final HttpUriRequest request, long deadline ) {
+        return getScheduler().schedule( new Runnable() {
+            @Override
+            public void run() {
+                LOG.debug( "Aborting request on '{}', deadline has passed.", request.getURI() );
+                request.abort();
+            }
+        }, Math.max( deadline - System.currentTimeMillis(), 0 ), MILLISECONDS );
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        getConnectionManager();
+        return scheduler;
+    }
+
+    private static synchronized PoolingClientConnectionManager getConnectionManager() {
+        if ( connManager == null ) {
+            int maxTotal = getIntProperty( MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS );
+            int maxPerRoute = getIntProperty( MAX_CONNECTIONS_PER_HOST_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST );
+            keepAliveMillis = SECONDS.toMillis( getIntProperty( KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECS ) );
+            connectionRequestTimeoutMillis = SECONDS.toMillis( getIntProperty( CONNECTION_REQUEST_TIMEOUT_PROPERTY,
+                                                                               DEFAULT_CONNECTION_REQUEST_TIMEOUT_SECS ) );
+            connManager = new PoolingClientConnectionManager( SchemeRegistryFactory.createSystemDefault() );
+            connManager.setMaxTotal( maxTotal );
+            connManager.setDefaultMaxPerRoute( Math.min( maxPerRoute, maxTotal ) );
+
+            final PoolingClientConnectionManager manager = connManager;
+            final long idleMillis = keepAliveMillis;
+            scheduler = Executors.newSingleThreadScheduledExecutor( new DaemonThreadFactory( "scheduler" ) );
+            scheduler.scheduleWithFixedDelay( new Runnable() {
+                @Override
+                public void run() {
+                    manager.closeExpiredConnections();
+                    manager.closeIdleConnections( idleMillis, MILLISECONDS );
+                }
+            }, idleMillis, idleMillis, MILLISECONDS );
+        }
+        return connManager;
+    }
+
+    private static synchronized ExecutorService getAsyncExecutor() {
+        if ( asyncExecutor == null ) {
+            int maxThreads = getConnectionManager().getMaxTotal();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor( maxThreads, maxThreads, 60, SECONDS,
+                                                                  new LinkedBlockingQueue<Runnable>(),
+                                                                  new DaemonThreadFactory( "async" ) );
+            executor.allowCoreThreadTimeOut( true );
+            asyncExecutor = executor;
+        }
+        return asyncExecutor;
+    }
+
+    private static synchronized void acquire() {
+        if ( users++ == 0 ) {
+            // first user, pick up changed system properties
+            shutdown();
+        }
+    }
+
+    private static synchronized void release( boolean acquired ) {
+        if ( acquired && users > 0 ) {
+            users--;
+        }
+        if ( users == 0 ) {
+            shutdown();
+        } else {
+            LOG.debug( "Keeping pooled HTTP connections, still used by {} workspace(s).", users );
+        }
+    }
+
+    private static synchronized void shutdown() {
+        if ( asyncExecutor != null ) {
+            asyncExecutor.shutdownNow();
+            asyncExecutor = null;
+        }
+        if ( scheduler != null ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if ( connManager != null ) {
+            LOG.debug( "Shutting down pooled HTTP connections." );
+            connManager.shutdown();
+            connManager = null;
+        }
+    }
+
+    private static int getIntProperty( String name, int defaultValue ) {
+        String value = System.getProperty( name );
+        if ( value != null ) {
+            try {
+                int i = Integer.parseInt( value.trim() );
+                if ( i > 0 ) {
+                    return i;
+                }
+            } catch ( NumberFormatException e ) {
+                // fall through
+            }
+            LOG.warn( "Ignoring invalid value '{}' of system property '{}', using {}.",
+                      new Object[] { value, name, defaultValue } );
+        }
+        return defaultValue;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+        private final String name;
+
+        DaemonThreadFactory( String name ) {
+            this.name = "deegree-http-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, name + threadNumber.getAndIncrement() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
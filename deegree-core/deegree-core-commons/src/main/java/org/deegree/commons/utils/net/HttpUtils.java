@@ -41,7 +41,9 @@ import static java.lang.System.getProperty;
 import static java.net.URLEncoder.encode;
 import static java.util.Arrays.asList;
 import static javax.imageio.ImageIO.read;
+import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.deegree.commons.utils.ArrayUtils.join;
+import static org.deegree.commons.utils.net.HttpConnectionPool.createHttpClient;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.image.BufferedImage;
@@ -248,7 +250,7 @@ public class HttpUtils {
     public static <T> T post( Worker<T> worker, String url, InputStream postBody, Map<String, String> headers )
                             throws IOException {
         DURL u = new DURL( url );
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         HttpPost post = new HttpPost( url );
         post.setEntity( new InputStreamEntity( postBody, -1 ) );
         if ( headers != null ) {
@@ -256,7 +258,7 @@ public class HttpUtils {
                 post.addHeader( key, headers.get( key ) );
             }
         }
-        return worker.work( client.execute( post ).getEntity().getContent() );
+        return work( worker, client.execute( post ).getEntity() );
     }
 
     /**
@@ -274,7 +276,7 @@ public class HttpUtils {
                             throws IOException {
         DURL u = new DURL( url );
         LOG.debug( "Sending HTTP POST against {}", url );
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         client.setKeepAliveStrategy( new DefaultConnectionKeepAliveStrategy() {
             @Override
             public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
@@ -299,7 +301,7 @@ public class HttpUtils {
         }
         HttpEntity entity = client.execute( post ).getEntity();
         LOG.debug( "Received response with content type {}", entity.getContentType() );
-        return worker.work( entity.getContent() );
+        return work( worker, entity );
     }
 
     /**
@@ -317,7 +319,7 @@ public class HttpUtils {
                             throws IOException {
         DURL u = new DURL( url );
         LOG.debug( "Sending HTTP POST against {}", url );
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         client.setKeepAliveStrategy( new DefaultConnectionKeepAliveStrategy() {
             @Override
             public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
@@ -343,7 +345,7 @@ public class HttpUtils {
         HttpResponse resp = client.execute( post );
         HttpEntity entity = resp.getEntity();
         LOG.debug( "Received response with content type {}", entity.getContentType() );
-        return new Pair<T, HttpResponse>( worker.work( entity.getContent() ), resp );
+        return new Pair<T, HttpResponse>( work( worker, entity ), resp );
     }
 
     private static void authenticate( DefaultHttpClient client, String user, String pass, DURL u ) {
@@ -377,7 +379,7 @@ public class HttpUtils {
                               String pass )
                             throws IOException {
         DURL u = new DURL( url );
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         HttpPost post = new HttpPost( url );
         if ( user != null && pass != null ) {
             authenticate( client, user, pass, u );
@@ -388,7 +390,7 @@ public class HttpUtils {
                 post.addHeader( key, headers.get( key ) );
             }
         }
-        return worker.work( client.execute( post ).getEntity().getContent() );
+        return work( worker, client.execute( post ).getEntity() );
     }
 
     /**
@@ -431,7 +433,7 @@ public class HttpUtils {
         if ( !u.getURL().getProtocol().equalsIgnoreCase( "http" ) ) {
             return worker.work( u.getURL().openStream() );
         }
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         if ( user != null && pass != null ) {
             authenticate( client, user, pass, u );
         }
@@ -442,7 +444,7 @@ public class HttpUtils {
             }
         }
 
-        return worker.work( client.execute( get ).getEntity().getContent() );
+        return work( worker, client.execute( get ).getEntity() );
     }
 
     /**
@@ -467,7 +469,7 @@ public class HttpUtils {
         if ( !u.valid() ) {
             return null;
         }
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         if ( user != null && pass != null ) {
             authenticate( client, user, pass, u );
         }
@@ -478,7 +480,7 @@ public class HttpUtils {
             }
         }
         HttpResponse response = client.execute( get );
-        return new Pair<T, HttpResponse>( worker.work( response.getEntity().getContent() ), response );
+        return new Pair<T, HttpResponse>( work( worker, response.getEntity() ), response );
     }
 
     public static void handleProxies( String protocol, DefaultHttpClient client, String host ) {
@@ -541,7 +543,7 @@ public class HttpUtils {
         if ( !u.valid() ) {
             return null;
         }
-        DefaultHttpClient client = enableProxyUsage( new DefaultHttpClient(), u );
+        DefaultHttpClient client = createHttpClient( worker, u );
         client.setKeepAliveStrategy( new DefaultConnectionKeepAliveStrategy() {
             @Override
             public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
@@ -562,7 +564,27 @@ public class HttpUtils {
             }
         }
         HttpResponse response = client.execute( get );
-        return new Pair<T, HttpResponse>( worker.work( response.getEntity().getContent() ), response );
+        return new Pair<T, HttpResponse>( work( worker, response.getEntity() ), response );
+    }
+
+    private static DefaultHttpClient createHttpClient( Worker<?> worker, DURL url ) {
+        // streams are handed out to the caller, who may never close them, so they don't get a pooled connection
+        DefaultHttpClient client = worker == STREAM ? new DefaultHttpClient() : createHttpClient();
+        return enableProxyUsage( client, url );
+    }
+
+    private static <T> T work( Worker<T> worker, HttpEntity entity )
+                            throws IOException {
+        InputStream is = entity.getContent();
+        if ( worker == STREAM ) {
+            return worker.work( is );
+        }
+        try {
+            return worker.work( is );
+        } finally {
+            // returns the connection to the pool
+            closeQuietly( is );
+        }
     }
 
     /**
@@ -48,6 +48,7 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import org.codehaus.stax2.XMLStreamReader2;
 import org.deegree.commons.xml.XMLParsingException;
 
 /**
@@ -385,6 +386,39 @@ public class XMLStreamReaderWrapper implements XMLStreamReader {
         return reader.getLocation();
     }
 
+    /**
+     * Returns the character offset of the start of the current event.
+     * <p>
+     * In contrast to {@link Location#getCharacterOffset()}, the offset does not overflow for documents with more than
+     * 2^31 characters (if the underlying reader is a Stax2 reader, e.g. Woodstox).
+     * </p>
+     * 
+     * @return character offset of the current event, <code>-1</code> if not available (underlying reader is not a
+     *         Stax2 reader)
+     */
+    public long getStartingCharOffset() {
+        if ( reader instanceof XMLStreamReaderWrapper ) {
+            return ( (XMLStreamReaderWrapper) reader ).getStartingCharOffset();
+        }
+        if ( reader instanceof XMLStreamReader2 ) {
+            return ( (XMLStreamReader2) reader ).getLocationInfo().getStartingCharOffset();
+        }
+        // Location#getCharacterOffset() may refer to the end of the event (and overflows), so it is not usable here
+        return -1;
+    }
+
+    /**
+     * Returns whether {@link #getStartingCharOffset()} is available for the underlying reader.
+     * 
+     * @return <code>true</code>, if the underlying reader is a Stax2 reader, <code>false</code> otherwise
+     */
+    public boolean hasStartingCharOffsets() {
+        if ( reader instanceof XMLStreamReaderWrapper ) {
+            return ( (XMLStreamReaderWrapper) reader ).hasStartingCharOffsets();
+        }
+        return reader instanceof XMLStreamReader2;
+    }
+
     @Override
     public final QName getName() {
         return reader.getName();
@@ -0,0 +1,245 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.commons.utils.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PackedRTree} against a linear scan.
+ * 
+ * @since 3.4
+ */
+public class PackedRTreeTest {
+
+    private List<Pair<float[], Long>> entries;
+
+    @Before
+    public void createEntries() {
+        Random random = new Random( 42 );
+        entries = new ArrayList<Pair<float[], Long>>();
+        for ( long i = 0; i < 5000; ++i ) {
+            float x = random.nextFloat() * 1000, y = random.nextFloat() * 1000;
+            float w = random.nextFloat() * 10, h = random.nextFloat() * 10;
+            entries.add( new Pair<float[], Long>( new float[] { x, y, x + w, y + h }, i ) );
+        }
+        // null envelopes are skipped
+        entries.add( new Pair<float[], Long>( null, -1l ) );
+    }
+
+    private List<Long> scan( float[] box ) {
+        List<Long> result = new ArrayList<Long>();
+        for ( Pair<float[], Long> p : entries ) {
+            float[] b = p.first;
+            if ( b != null && b[0] <= box[2] && b[1] <= box[3] && b[2] >= box[0] && b[3] >= box[1] ) {
+                result.add( p.second );
+            }
+        }
+        return result;
+    }
+
+    private static List<Long> sorted( Collection<Long> values ) {
+        List<Long> list = new ArrayList<Long>( values );
+        Collections.sort( list );
+        return list;
+    }
+
+    private void assertQueries( PackedRTree<Long> tree ) {
+        assertEquals( 5000, tree.size() );
+        Random random = new Random( 7 );
+        for ( int i = 0; i < 200; ++i ) {
+            float x = random.nextFloat() * 1000, y = random.nextFloat() * 1000;
+            float[] box = new float[] { x, y, x + random.nextFloat() * 100, y + random.nextFloat() * 100 };
+            assertEquals( scan( box ), sorted( tree.query( box ) ) );
+        }
+    }
+
+    @Test
+    public void testQuery() {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( entries );
+        assertQueries( tree );
+    }
+
+    @Test
+    public void testLongVisitor() {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 4 );
+        tree.insertBulk( entries );
+        final List<Long> values = new ArrayList<Long>();
+        float[] box = new float[] { 100, 100, 300, 300 };
+        tree.query( box, new PackedRTree.LongVisitor() {
+            @Override
+            public boolean visit( long value ) {
+                values.add( value );
+                return true;
+            }
+        } );
+        assertEquals( scan( box ), sorted( values ) );
+    }
+
+    @Test
+    public void testVisitorAbort() {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( entries );
+        final int[] count = new int[1];
+        tree.query( new float[] { 0, 0, 1000, 1000 }, new PackedRTree.Visitor<Long>() {
+            @Override
+            public boolean visit( Long object ) {
+                return ++count[0] < 10;
+            }
+        } );
+        assertEquals( 10, count[0] );
+    }
+
+    @Test
+    public void testIterator() {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 4 );
+        tree.insertBulk( entries );
+        float[] box = new float[] { 100, 100, 300, 300 };
+        List<Long> values = new ArrayList<Long>();
+        Iterator<Long> iter = tree.iterator( box );
+        while ( iter.hasNext() ) {
+            values.add( iter.next() );
+        }
+        assertEquals( new ArrayList<Long>( tree.query( box ) ), values );
+        assertFalse( new PackedRTree<Long>( 16 ).iterator( box ).hasNext() );
+    }
+
+    @Test
+    public void testEmpty() {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( new ArrayList<Pair<float[], Long>>() );
+        assertTrue( tree.query( new float[] { 0, 0, 1, 1 } ).isEmpty() );
+    }
+
+    @Test
+    public void testWriteAndMap()
+                            throws IOException {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( entries );
+        tree.setExtraFlag( true );
+        File file = File.createTempFile( "packedrtree", ".pri" );
+        file.deleteOnExit();
+        tree.writeTreeToDisk( file.getPath() );
+        PackedRTree<Long> mapped = PackedRTree.loadFromDisk( file.getPath() );
+        assertTrue( mapped.getExtraFlag() );
+        assertArrayEquals( tree.getEnvelope(), mapped.getEnvelope(), 0 );
+        assertQueries( mapped );
+    }
+
+    @Test
+    public void testRewriteWhileMapped()
+                            throws IOException {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( entries );
+        File file = File.createTempFile( "packedrtree", ".pri" );
+        file.deleteOnExit();
+        tree.writeTreeToDisk( file.getPath() );
+        PackedRTree<Long> mapped = PackedRTree.loadFromDisk( file.getPath() );
+
+        PackedRTree<Long> small = new PackedRTree<Long>( 16 );
+        small.insertBulk( entries.subList( 0, 10 ) );
+        small.writeTreeToDisk( file.getPath() );
+
+        // the earlier mapping still sees the complete old tree
+        assertQueries( mapped );
+        assertEquals( 10, PackedRTree.loadFromDisk( file.getPath() ).size() );
+        File[] leftovers = file.getParentFile().listFiles();
+        for ( File f : leftovers ) {
+            assertFalse( f.getName().startsWith( file.getName() ) && f.getName().endsWith( ".tmp" ) );
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadInvalidFile()
+                            throws IOException {
+        File file = File.createTempFile( "packedrtree", ".pri" );
+        file.deleteOnExit();
+        RTree<Long> old = new RTree<Long>( new float[] { 0, 0, 1000, 1000 }, 16 );
+        old.insertBulk( entries.subList( 0, 100 ) );
+        old.writeTreeToDisk( file.getPath() );
+        PackedRTree.loadFromDisk( file.getPath() );
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadInvalidNumberOfLevels()
+                            throws IOException {
+        // number of levels
+        PackedRTree.loadFromDisk( writeCorrupted( 20, Integer.MAX_VALUE ).getPath() );
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadInvalidLevelBounds()
+                            throws IOException {
+        // end of the leaf level
+        PackedRTree.loadFromDisk( writeCorrupted( 24, 1 ).getPath() );
+    }
+
+    private File writeCorrupted( long offset, int value )
+                            throws IOException {
+        PackedRTree<Long> tree = new PackedRTree<Long>( 16 );
+        tree.insertBulk( entries );
+        File file = File.createTempFile( "packedrtree", ".pri" );
+        file.deleteOnExit();
+        tree.writeTreeToDisk( file.getPath() );
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            raf.seek( offset );
+            // header values are little endian
+            raf.writeInt( Integer.reverseBytes( value ) );
+        } finally {
+            raf.close();
+        }
+        return file;
+    }
+
+}
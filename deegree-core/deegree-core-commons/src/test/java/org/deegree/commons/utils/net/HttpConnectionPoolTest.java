@@ -0,0 +1,229 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.net;
+
+import static org.deegree.commons.utils.net.HttpConnectionPool.MAX_CONNECTIONS_PER_HOST_PROPERTY;
+import static org.deegree.commons.utils.net.HttpConnectionPool.MAX_CONNECTIONS_PROPERTY;
+import static org.deegree.commons.utils.net.HttpConnectionPool.createHttpClient;
+import static org.deegree.commons.utils.net.HttpConnectionPool.submit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HttpConnectionPool}.
+ */
+@SuppressWarnings("deprecation")
+public class HttpConnectionPoolTest {
+
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 2\r\n\r\nok";
+
+    private final HttpConnectionPool pool = new HttpConnectionPool();
+
+    @After
+    public void tearDown() {
+        System.clearProperty( MAX_CONNECTIONS_PROPERTY );
+        System.clearProperty( MAX_CONNECTIONS_PER_HOST_PROPERTY );
+        pool.destroy( null );
+    }
+
+    @Test
+    public void testClientsShareConnectionManager() {
+        ClientConnectionManager manager = createHttpClient().getConnectionManager();
+        assertSame( manager, createHttpClient().getConnectionManager() );
+    }
+
+    @Test
+    public void testLimitsFromSystemProperties() {
+        System.setProperty( MAX_CONNECTIONS_PROPERTY, "10" );
+        System.setProperty( MAX_CONNECTIONS_PER_HOST_PROPERTY, "50" );
+        pool.init( null );
+        PoolingClientConnectionManager manager = getConnectionManager();
+        assertEquals( 10, manager.getMaxTotal() );
+        // limited by the total number of connections
+        assertEquals( 10, manager.getDefaultMaxPerRoute() );
+    }
+
+    @Test
+    public void testInvalidSystemPropertiesIgnored() {
+        System.setProperty( MAX_CONNECTIONS_PROPERTY, "-1" );
+        System.setProperty( MAX_CONNECTIONS_PER_HOST_PROPERTY, "many" );
+        pool.init( null );
+        PoolingClientConnectionManager manager = getConnectionManager();
+        assertEquals( 200, manager.getMaxTotal() );
+        assertEquals( 20, manager.getDefaultMaxPerRoute() );
+    }
+
+    @Test
+    public void testDestroyShutsDownPool() {
+        ClientConnectionManager manager = createHttpClient().getConnectionManager();
+        pool.destroy( null );
+        assertNotSame( manager, createHttpClient().getConnectionManager() );
+    }
+
+    @Test
+    public void testDestroyKeepsPoolOfOtherWorkspace() {
+        HttpConnectionPool other = new HttpConnectionPool();
+        pool.init( null );
+        other.init( null );
+        try {
+            ClientConnectionManager manager = createHttpClient().getConnectionManager();
+            pool.destroy( null );
+            // destroying twice must not release the other workspace's reference
+            pool.destroy( null );
+            assertSame( manager, createHttpClient().getConnectionManager() );
+            other.destroy( null );
+            assertNotSame( manager, createHttpClient().getConnectionManager() );
+        } finally {
+            other.destroy( null );
+        }
+    }
+
+    @Test
+    public void testKeepAliveLimited() {
+        DefaultHttpClient client = createHttpClient();
+        HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        assertEquals( 30000, client.getConnectionKeepAliveStrategy().getKeepAliveDuration( response,
+                                                                                           new BasicHttpContext() ) );
+        response.setHeader( "Keep-Alive", "timeout=5" );
+        assertEquals( 5000, client.getConnectionKeepAliveStrategy().getKeepAliveDuration( response,
+                                                                                          new BasicHttpContext() ) );
+        response.setHeader( "Keep-Alive", "timeout=3600" );
+        assertEquals( 30000, client.getConnectionKeepAliveStrategy().getKeepAliveDuration( response,
+                                                                                           new BasicHttpContext() ) );
+    }
+
+    @Test
+    public void testSubmit()
+                            throws Exception {
+        String result = submit( new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        } ).get();
+        assertEquals( true, result.startsWith( "deegree-http-async-" ) );
+    }
+
+    @Test
+    public void testConnectionReused()
+                            throws Exception {
+        final ServerSocket server = new ServerSocket( 0 );
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while ( true ) {
+                        Socket socket = server.accept();
+                        accepted.incrementAndGet();
+                        serve( socket );
+                    }
+                } catch ( IOException e ) {
+                    // server socket closed
+                }
+            }
+        };
+        acceptor.setDaemon( true );
+        acceptor.start();
+        try {
+            String url = "http://localhost:" + server.getLocalPort() + "/";
+            for ( int i = 0; i < 3; i++ ) {
+                HttpResponse response = createHttpClient().execute( new HttpGet( url ) );
+                assertEquals( "ok", EntityUtils.toString( response.getEntity() ) );
+            }
+            assertEquals( 1, accepted.get() );
+        } finally {
+            server.close();
+        }
+    }
+
+    private static PoolingClientConnectionManager getConnectionManager() {
+        return (PoolingClientConnectionManager) createHttpClient().getConnectionManager();
+    }
+
+    private static void serve( final Socket socket ) {
+        Thread handler = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStreamReader reader = new InputStreamReader( socket.getInputStream(), "US-ASCII" );
+                    BufferedReader in = new BufferedReader( reader );
+                    OutputStream out = socket.getOutputStream();
+                    String line;
+                    while ( ( line = in.readLine() ) != null ) {
+                        if ( line.isEmpty() ) {
+                            out.write( RESPONSE.getBytes( "US-ASCII" ) );
+                            out.flush();
+                        }
+                    }
+                } catch ( IOException e ) {
+                    // connection closed
+                } finally {
+                    try {
+                        socket.close();
+                    } catch ( IOException e ) {
+                        // ignore
+                    }
+                }
+            }
+        };
+        handler.setDaemon( true );
+        handler.start();
+    }
+
+}
@@ -68,7 +68,7 @@ public abstract class Transformer {
 
     // private final ICoordinateSystemReference tCRS;
 
-    private Transformation definedTransformation = null;
+    private volatile Transformation definedTransformation = null;
 
     /**
      * Creates a new Transformer object, with the given target CRS.
@@ -232,22 +232,22 @@ public abstract class Transformer {
      * @return the transformation needed to convert from given source to the constructed target crs.
      * @throws TransformationException
      */
-    private synchronized Transformation checkOrCreateTransformation( ICRS sourceCRS,
-                                                                     List<Transformation> toBeUsedTransformations )
+    private Transformation checkOrCreateTransformation( ICRS sourceCRS, List<Transformation> toBeUsedTransformations )
                             throws TransformationException {
-        if ( definedTransformation == null
-             || !( definedTransformation.getSourceCRS().equals( sourceCRS ) && definedTransformation.getTargetCRS().equals(
-                                                                                                                            targetCRS ) ) ) {
-            definedTransformation = CRSManager.getTransformation( null, sourceCRS, targetCRS, toBeUsedTransformations );
+        Transformation transformation = definedTransformation;
+        if ( transformation == null
+             || !( transformation.getSourceCRS().equals( sourceCRS ) && transformation.getTargetCRS().equals(
+                                                                                                             targetCRS ) ) ) {
+            transformation = CRSManager.getTransformation( null, sourceCRS, targetCRS, toBeUsedTransformations );
             if ( LOG.isDebugEnabled() ) {
-                if ( definedTransformation == null ) {
+                if ( transformation == null ) {
                     LOG.debug( "Identity transformation (null)." );
                 } else {
-                    LOG.debug( "Resulting transform: {}",
-                               definedTransformation.getTransformationPath( null ).toString() );
+                    LOG.debug( "Resulting transform: {}", transformation.getTransformationPath( null ).toString() );
                 }
             }
+            definedTransformation = transformation;
         }
-        return definedTransformation;
+        return transformation;
     }
 }
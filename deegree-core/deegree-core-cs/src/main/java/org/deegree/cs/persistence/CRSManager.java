@@ -98,6 +98,14 @@ public class CRSManager implements Initializable, Destroyable {
 
     private static Map<String, TransformationFactory> idToTransF = new HashMap<String, TransformationFactory>();
 
+    private static final TransformationCache transformationCache = new TransformationCache();
+
+    /**
+     * System property holding a comma separated list of crs names, the transformations between which are resolved
+     * eagerly when the workspace is initialized.
+     */
+    public static final String WARM_UP_PROPERTY = "deegree.cs.transformation.warmup";
+
     private Workspace workspace;
 
     private static boolean defaultInitialized = false;
@@ -130,14 +138,29 @@ public class CRSManager implements Initializable, Destroyable {
         this.workspace = workspace;
         initDefault();
         init( new File( ( (DefaultWorkspace) workspace ).getLocation(), "crs" ) );
+        String warmUpCrs = System.getProperty( WARM_UP_PROPERTY );
+        if ( warmUpCrs != null && !warmUpCrs.trim().isEmpty() ) {
+            List<ICRS> crsList = new ArrayList<ICRS>();
+            for ( String name : warmUpCrs.split( "," ) ) {
+                try {
+                    crsList.add( lookup( name.trim() ) );
+                } catch ( UnknownCRSException e ) {
+                    LOG.warn( "Skipping unknown crs '{}' configured for transformation warm-up.", name.trim() );
+                }
+            }
+            warmUp( crsList, crsList );
+        }
     }
 
     @Override
     public void destroy( Workspace workspace ) {
         LOG.info( "Clear CRS store and transformation map" );
-        idToCRSStore.clear();
-        idToTransF.clear();
-        storeIds.clear();
+        synchronized ( CRSManager.class ) {
+            idToCRSStore.clear();
+            idToTransF.clear();
+            storeIds.clear();
+            transformationCache.clear();
+        }
         defaultInitialized = false;
         new CRSManager().initDefault();
     }
@@ -275,6 +298,7 @@ public class CRSManager implements Initializable, Destroyable {
             }
             LOG.info( "Registering global crs store with id '" + id + "', type: '" + crss.getClass().getName() + "'" );
             idToTransF.put( id, new TransformationFactory( crss ) );
+            transformationCache.clear();
             idToCRSStore.put( id, crss );
             if ( prefer ) {
                 storeIds.add( 0, id );
@@ -689,7 +713,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
                             throws IllegalArgumentException, TransformationException {
         return getTransformation( storeId, sourceCRS, targetCRS, null );
     }
@@ -713,9 +737,62 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
-                                                                 List<Transformation> transformationsToBeUsed )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                    List<Transformation> transformationsToBeUsed )
                             throws IllegalArgumentException, TransformationException {
+        long generation = transformationCache.getGeneration();
+        TransformationCache.Key key = transformationCache.createKey( storeId, sourceCRS, targetCRS,
+                                                                     transformationsToBeUsed );
+        if ( key != null ) {
+            TransformationCache.Entry entry = transformationCache.get( key );
+            if ( entry != null ) {
+                return entry.transformation;
+            }
+        }
+        synchronized ( CRSManager.class ) {
+            Transformation transformation = createTransformation( storeId, sourceCRS, targetCRS,
+                                                                  transformationsToBeUsed );
+            if ( key != null ) {
+                transformationCache.put( key, transformation, generation );
+            }
+            return transformation;
+        }
+    }
+
+    /**
+     * Resolves the {@link Transformation} chains between all given source and target crs and keeps them in the
+     * transformation cache, so that later lookups (e.g. of the first requests after startup) do not have to create
+     * them. Pairs which can not be resolved are skipped.
+     * 
+     * @param sourceCRSs
+     *            start crs of the transformations, must not be <code>null</code>
+     * @param targetCRSs
+     *            end crs of the transformations, must not be <code>null</code>
+     * @return the number of transformation chains which have been resolved
+     */
+    public static int warmUp( Collection<? extends ICRS> sourceCRSs, Collection<? extends ICRS> targetCRSs ) {
+        long start = currentTimeMillis();
+        int resolved = 0;
+        for ( ICRS source : sourceCRSs ) {
+            for ( ICRS target : targetCRSs ) {
+                if ( source == target ) {
+                    continue;
+                }
+                try {
+                    getTransformation( null, source, target, null );
+                    resolved++;
+                } catch ( Exception e ) {
+                    LOG.debug( "No transformation from {} to {} for warm-up.", source.getAlias(), target.getAlias() );
+                }
+            }
+        }
+        LOG.info( "Resolved {} crs transformation chains in {} ms.", resolved, currentTimeMillis() - start );
+        return resolved;
+    }
+
+    private static Transformation createTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                        List<Transformation> transformationsToBeUsed )
+                            throws TransformationException {
         if ( storeId != null ) {
             TransformationFactory fac = getTransformationFactory( storeId );
             return fac.createFromCoordinateSystems( sourceCRS, targetCRS, transformationsToBeUsed );
@@ -763,6 +840,7 @@ public class CRSManager implements Initializable, Destroyable {
             storeIds.remove( id );
             idToCRSStore.remove( id );
             idToTransF.remove( id );
+            transformationCache.clear();
         }
     }
 
@@ -0,0 +1,211 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.persistence;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.refs.coordinatesystem.CRSRef;
+import org.deegree.cs.transformations.Transformation;
+
+/**
+ * Process-wide, bounded cache of the {@link Transformation} chains resolved by the {@link CRSManager}.
+ * <p>
+ * Entries are keyed by store id, source and target crs and the list of transformations that must be used. The crs
+ * (and transformations) are compared by identity after resolving {@link CRSRef}s, which is cheap and never yields a
+ * wrong chain, because the {@link CRSStore}s hand out the same instances for the same codes. An identity result
+ * (<code>null</code>) is cached as well. Lookups do not block; the cache is cleared when the store configuration
+ * changes or when it grows beyond its maximum size. Every {@link #clear()} starts a new generation, chains that have
+ * been created in an earlier generation (i.e. from outdated store definitions) are not cached.
+ * </p>
+ * 
+ * @since 3.4
+ */
+final class TransformationCache {
+
+    private static final int MAX_ENTRIES = 1024;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Creates a cache key for the given lookup.
+     * 
+     * @return the key, or <code>null</code> if the lookup can not be cached (e.g. an unresolvable crs reference)
+     */
+    Key createKey( String storeId, ICRS sourceCRS, ICRS targetCRS, List<Transformation> transformationsToBeUsed ) {
+        ICRS source = resolve( sourceCRS );
+        ICRS target = resolve( targetCRS );
+        if ( source == null || target == null ) {
+            return null;
+        }
+        Transformation[] toBeUsed = null;
+        if ( transformationsToBeUsed != null && !transformationsToBeUsed.isEmpty() ) {
+            toBeUsed = transformationsToBeUsed.toArray( new Transformation[transformationsToBeUsed.size()] );
+        }
+        return new Key( storeId, source, target, toBeUsed );
+    }
+
+    /**
+     * @return the cached entry for the given key, or <code>null</code> if no chain has been cached yet
+     */
+    Entry get( Key key ) {
+        return entries.get( key );
+    }
+
+    /**
+     * @return the current generation, must be determined before the chain to be cached is created
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the given chain (may be <code>null</code> for the identity transformation), unless the cache has been
+     * cleared since the given generation.
+     */
+    void put( Key key, Transformation transformation, long createdInGeneration ) {
+        if ( entries.size() >= MAX_ENTRIES ) {
+            entries.clear();
+        }
+        Entry entry = new Entry( transformation );
+        entries.put( key, entry );
+        if ( generation.get() != createdInGeneration ) {
+            // cleared concurrently, the chain may stem from outdated definitions
+            entries.remove( key, entry );
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private static ICRS resolve( ICRS crs ) {
+        if ( crs instanceof CRSRef ) {
+            try {
+                return ( (CRSRef) crs ).getReferencedObject();
+            } catch ( ReferenceResolvingException e ) {
+                return null;
+            }
+        }
+        return crs;
+    }
+
+    /**
+     * Holder of a cached chain, used to distinguish cached identity transformations from cache misses.
+     */
+    static final class Entry {
+
+        final Transformation transformation;
+
+        private Entry( Transformation transformation ) {
+            this.transformation = transformation;
+        }
+    }
+
+    static final class Key {
+
+        private final String storeId;
+
+        private final ICRS source;
+
+        private final ICRS target;
+
+        private final Transformation[] toBeUsed;
+
+        private final int hash;
+
+        private Key( String storeId, ICRS source, ICRS target, Transformation[] toBeUsed ) {
+            this.storeId = storeId;
+            this.source = source;
+            this.target = target;
+            this.toBeUsed = toBeUsed;
+            int h = storeId == null ? 0 : storeId.hashCode();
+            h = 31 * h + System.identityHashCode( source );
+            h = 31 * h + System.identityHashCode( target );
+            if ( toBeUsed != null ) {
+                for ( Transformation t : toBeUsed ) {
+                    h = 31 * h + System.identityHashCode( t );
+                }
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object other ) {
+            if ( this == other ) {
+                return true;
+            }
+            if ( !( other instanceof Key ) ) {
+                return false;
+            }
+            Key that = (Key) other;
+            if ( hash != that.hash || source != that.source || target != that.target ) {
+                return false;
+            }
+            if ( storeId == null ? that.storeId != null : !storeId.equals( that.storeId ) ) {
+                return false;
+            }
+            if ( toBeUsed == null || that.toBeUsed == null ) {
+                return toBeUsed == that.toBeUsed;
+            }
+            if ( toBeUsed.length != that.toBeUsed.length ) {
+                return false;
+            }
+            for ( int i = 0; i < toBeUsed.length; i++ ) {
+                if ( toBeUsed[i] != that.toBeUsed[i] ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
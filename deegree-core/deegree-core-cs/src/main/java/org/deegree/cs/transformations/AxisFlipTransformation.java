@@ -73,6 +73,15 @@ public class AxisFlipTransformation extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count ) {
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            double tmpX = xyz[pos];
+            xyz[pos] = xyz[pos + 1];
+            xyz[pos + 1] = tmpX;
+        }
+    }
+
     @Override
     public boolean isIdentity() {
         return false;
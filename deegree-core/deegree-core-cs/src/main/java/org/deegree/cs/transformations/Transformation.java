@@ -36,7 +36,7 @@
 
 package org.deegree.cs.transformations;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.vecmath.Point3d;
@@ -144,9 +144,9 @@ public abstract class Transformation extends CRSIdentifiable {
     }
 
     /**
-     * Wraps the incoming coordinates into a List<Point3d> and calls the {@link #doTransform(List)}. The source array
-     * will be read according to the dimension of the source CRS {@link #getSourceDimension()} and the target
-     * coordinates will be put according to the dimension of the targetCRS {@link #getTargetDimension()}. If the
+     * Copies the incoming coordinates into a packed array and calls {@link #doTransform(double[], int, int)}. The
+     * source array will be read according to the dimension of the source CRS {@link #getSourceDimension()} and the
+     * target coordinates will be put according to the dimension of the targetCRS {@link #getTargetDimension()}. If the
      * sourceDim &lt; 2 or &gt; 3 a transformation exception will be thrown.
      * 
      * @param srcOrdinates
@@ -199,19 +199,29 @@ public abstract class Transformation extends CRSIdentifiable {
             throw new IllegalArgumentException( Messages.getMessage( "CRS_TRANSFORM_LAST_LT_START" ) );
         }
 
-        List<Point3d> sourceCoords = new LinkedList<Point3d>();
         final int dim = getSourceDimension();
         if ( dim > 3 || dim < 2 ) {
             throw new TransformationException( Messages.getMessage( "CRS_TRANSFORM_WRONG_CRS_DIM", "source" ) );
         }
+        final int dimDest = getTargetDimension();
+        if ( dimDest > 3 || dimDest < 2 ) {
+            throw new TransformationException( Messages.getMessage( "CRS_TRANSFORM_WRONG_CRS_DIM", "target" ) );
+        }
+        int count = 0;
         for ( int i = startPositionSrc; ( ( i + ( dim - 1 ) ) < ( startPositionSrc + length ) ); i += dim ) {
-            sourceCoords.add( new Point3d( srcOrdinates[i], srcOrdinates[i + 1], ( dim == 3 ) ? srcOrdinates[i + 2] : 0 ) );
+            count++;
+        }
+        final double[] xyz = new double[count * 3];
+        for ( int i = startPositionSrc, j = 0; j < xyz.length; i += dim ) {
+            xyz[j++] = srcOrdinates[i];
+            xyz[j++] = srcOrdinates[i + 1];
+            xyz[j++] = ( dim == 3 ) ? srcOrdinates[i + 2] : 0;
         }
-        List<Point3d> result = doTransform( sourceCoords );
+        doTransform( xyz, 0, count );
         if ( startPositionDest < 0 ) {
             startPositionDest = 0;
         }
-        final int requiredSpace = result.size() * getTargetDimension();
+        final int requiredSpace = count * dimDest;
         if ( destOrdinates == null ) {
             startPositionDest = 0;
             destOrdinates = new double[requiredSpace];
@@ -222,22 +232,50 @@ public abstract class Transformation extends CRSIdentifiable {
             System.arraycopy( destOrdinates, 0, tmp, 0, startPositionDest );
             destOrdinates = tmp;
         }
-        final int dimDest = getTargetDimension();
-        if ( dimDest > 3 || dimDest < 2 ) {
-            throw new TransformationException( Messages.getMessage( "CRS_TRANSFORM_WRONG_CRS_DIM", "target" ) );
-        }
         int arrayPos = startPositionDest;
-        for ( Point3d coord : result ) {
-            destOrdinates[arrayPos++] = coord.x;
-            destOrdinates[arrayPos++] = coord.y;
+        for ( int j = 0; j < xyz.length; j += 3 ) {
+            destOrdinates[arrayPos++] = xyz[j];
+            destOrdinates[arrayPos++] = xyz[j + 1];
             if ( dimDest == 3 ) {
-                destOrdinates[arrayPos++] = coord.z;
+                destOrdinates[arrayPos++] = xyz[j + 2];
             }
         }
     }
 
     /**
-     * Transforms a single point3d (by calling the doTransform( List<Point3d>).
+     * Transforms packed coordinates in place. Every coordinate occupies three consecutive ordinates (x, y, z) of the
+     * given array, a missing z value should be given as {@link Double#NaN}.
+     * <p>
+     * This is the batch kernel used for transforming complete coordinate sequences. The default implementation wraps
+     * the coordinates into {@link Point3d} objects and calls {@link #doTransform(List)}, subclasses should override it
+     * with an allocation-free implementation.
+     * </p>
+     * 
+     * @param xyz
+     *            the packed coordinates, will receive the transformed coordinates, never <code>null</code>
+     * @param offset
+     *            the index of the x ordinate of the first coordinate to transform
+     * @param count
+     *            the number of coordinates to transform
+     * @throws TransformationException
+     *             if the coordinates could not be transformed from the sourceCRS to the targetCRS
+     */
+    public void doTransform( double[] xyz, int offset, int count )
+                            throws TransformationException {
+        List<Point3d> points = new ArrayList<Point3d>( count );
+        for ( int i = 0, pos = offset; i < count; i++, pos += 3 ) {
+            points.add( new Point3d( xyz[pos], xyz[pos + 1], xyz[pos + 2] ) );
+        }
+        int pos = offset;
+        for ( Point3d p : doTransform( points ) ) {
+            xyz[pos++] = p.x;
+            xyz[pos++] = p.y;
+            xyz[pos++] = p.z;
+        }
+    }
+
+    /**
+     * Transforms a single point3d in place (by calling {@link #doTransform(double[], int, int)}).
      * 
      * @param coordinate
      *            to transform, if <code>null</code> null will be returned.
@@ -250,9 +288,12 @@ public abstract class Transformation extends CRSIdentifiable {
         if ( coordinate == null ) {
             return null;
         }
-        List<Point3d> coord = new LinkedList<Point3d>();
-        coord.add( coordinate );
-        return doTransform( coord ).get( 0 );
+        double[] xyz = new double[] { coordinate.x, coordinate.y, coordinate.z };
+        doTransform( xyz, 0, 1 );
+        coordinate.x = xyz[0];
+        coordinate.y = xyz[1];
+        coordinate.z = xyz[2];
+        return coordinate;
     }
 
     /**
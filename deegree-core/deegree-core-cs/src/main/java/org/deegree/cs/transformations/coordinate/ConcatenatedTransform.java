@@ -125,6 +125,15 @@ public class ConcatenatedTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count )
+                            throws TransformationException {
+        if ( !isIdentitiy ) {
+            firstTransform.doTransform( xyz, offset, count );
+            secondTransform.doTransform( xyz, offset, count );
+        }
+    }
+
     @Override
     public void inverse() {
         super.inverse();
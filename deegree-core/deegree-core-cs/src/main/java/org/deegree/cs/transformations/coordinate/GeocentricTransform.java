@@ -191,26 +191,89 @@ public class GeocentricTransform extends Transformation {
         return result;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count ) {
+        if ( isInverseTransform() ) {
+            toGeographic( xyz, offset, count );
+        } else {
+            toGeoCentric( xyz, offset, count );
+        }
+    }
+
     /**
      * Converts geocentric coordinates (x, y, z) to geodetic coordinates (longitude, latitude, height), according to the
-     * current ellipsoid parameters. The method used here is derived from "An Improved Algorithm for Geocentric to
-     * Geodetic Coordinate Conversion", by Ralph Toms, Feb 1996 UCRL-JC-123138.
+     * current ellipsoid parameters.
      * 
      * @param srcPts
      *            the points which must be transformed.
+     * @see #toGeographic(double[], int, int)
      */
     protected void toGeographic( List<Point3d> srcPts ) {
+        double[] xyz = toPacked( srcPts );
+        toGeographic( xyz, 0, srcPts.size() );
+        fromPacked( xyz, srcPts );
+    }
+
+    /**
+     * Converts geographic (longitude, latitude, height) to cartesian (x,y,z) coordinates.
+     * 
+     * @param srcPts
+     *            to convert.
+     * @see #toGeoCentric(double[], int, int)
+     */
+    protected void toGeoCentric( List<Point3d> srcPts ) {
+        double[] xyz = toPacked( srcPts );
+        toGeoCentric( xyz, 0, srcPts.size() );
+        fromPacked( xyz, srcPts );
+    }
+
+    private static double[] toPacked( List<Point3d> srcPts ) {
+        double[] xyz = new double[srcPts.size() * 3];
+        int pos = 0;
+        for ( Point3d p : srcPts ) {
+            xyz[pos++] = p.x;
+            xyz[pos++] = p.y;
+            xyz[pos++] = p.z;
+        }
+        return xyz;
+    }
+
+    private static void fromPacked( double[] xyz, List<Point3d> srcPts ) {
+        int pos = 0;
         for ( Point3d p : srcPts ) {
+            p.x = xyz[pos++];
+            p.y = xyz[pos++];
+            p.z = xyz[pos++];
+        }
+    }
+
+    /**
+     * Converts geocentric coordinates (x, y, z) to geodetic coordinates (longitude, latitude, height), according to the
+     * current ellipsoid parameters. The method used here is derived from "An Improved Algorithm for Geocentric to
+     * Geodetic Coordinate Conversion", by Ralph Toms, Feb 1996 UCRL-JC-123138.
+     * 
+     * @param xyz
+     *            the packed coordinates which must be transformed (in place).
+     * @param offset
+     *            index of the first ordinate
+     * @param count
+     *            number of coordinates
+     */
+    protected void toGeographic( double[] xyz, int offset, int count ) {
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = xyz[pos];
+            final double y = xyz[pos + 1];
+            final double z = xyz[pos + 2];
             // Note: Variable names follow the notation used in Toms, Feb 1996
 
-            final double T0 = p.z * AD_C; // initial estimate of vertical component
-            final double W = length( p.x, p.y );// distance from Z axis
+            final double T0 = z * AD_C; // initial estimate of vertical component
+            final double W = length( x, y );// distance from Z axis
             final double S0 = length( T0, W );// initial estimate of horizontal component
 
             final double sin_B0 = T0 / S0; // sin(B0), B0 is estimate of Bowring variable
             final double cos_B0 = W / S0; // cos(B0)
             final double sin3_B0 = sin_B0 * sin_B0 * sin_B0; // cube of sin(B0)
-            final double T1 = p.z + semiMinorAxis * ep2 * sin3_B0; // corrected estimate of vertical component
+            final double T1 = z + semiMinorAxis * ep2 * sin3_B0; // corrected estimate of vertical component
 
             // numerator of cos(phi1)
             final double sum = W - semiMajorAxis * squaredEccentricity * ( cos_B0 * cos_B0 * cos_B0 );
@@ -223,8 +286,8 @@ public class GeocentricTransform extends Transformation {
             final double cosPhi = sum / S1; // cos(phi)
 
             // Lambda in tom.
-            p.x = Math.atan2( p.y, p.x );// longitude;
-            p.y = Math.atan( sinPhi / cosPhi );// latitude;
+            xyz[pos] = Math.atan2( y, x );// longitude;
+            xyz[pos + 1] = Math.atan( sinPhi / cosPhi );// latitude;
             if ( hasHeight ) {
                 double height;
                 // rn = radius of curvature of the prime vertical, of the ellipsoid at location
@@ -235,11 +298,11 @@ public class GeocentricTransform extends Transformation {
                 } else if ( cosPhi <= -COS_67P5 ) {
                     height = W / -cosPhi - rn;
                 } else {
-                    height = p.z / sinPhi + rn * ( squaredEccentricity - 1.0 );
+                    height = z / sinPhi + rn * ( squaredEccentricity - 1.0 );
                 }
-                p.z = height;
+                xyz[pos + 2] = height;
             } else {
-                p.z = defaultHeightValue;
+                xyz[pos + 2] = defaultHeightValue;
             }
         }
     }
@@ -247,27 +310,32 @@ public class GeocentricTransform extends Transformation {
     /**
      * Converts geographic (longitude, latitude, height) to cartesian (x,y,z) coordinates.
      * 
-     * @param srcPts
-     *            to convert.
+     * @param xyz
+     *            the packed coordinates which must be transformed (in place).
+     * @param offset
+     *            index of the first ordinate
+     * @param count
+     *            number of coordinates
      */
-    protected void toGeoCentric( List<Point3d> srcPts ) {
-        for ( Point3d p : srcPts ) {
-            final double lambda = p.x; // Longitude
-            final double phi = p.y; // Latitude
-            // first check the p.z value if it is defined, if not, use the defaultheight value, which will be
+    protected void toGeoCentric( double[] xyz, int offset, int count ) {
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double lambda = xyz[pos]; // Longitude
+            final double phi = xyz[pos + 1]; // Latitude
+            double z = xyz[pos + 2];
+            // first check the z value if it is defined, if not, use the defaultheight value, which will be
             // initialized with 0 or the configured compound crs value.
-            if ( Double.isNaN( p.z ) || Math.abs( p.z ) < EPS11 ) {
-                p.z = defaultHeightValue;
+            if ( Double.isNaN( z ) || Math.abs( z ) < EPS11 ) {
+                z = defaultHeightValue;
             }
-            final double h = hasHeight ? p.z : 0; // Height above the ellipsoid (metres).
+            final double h = hasHeight ? z : 0; // Height above the ellipsoid (metres).
 
             final double cosPhi = Math.cos( phi );
             final double sinPhi = Math.sin( phi );
             final double rn = semiMajorAxis / Math.sqrt( 1 - squaredEccentricity * ( sinPhi * sinPhi ) );
 
-            p.x = ( rn + h ) * cosPhi * Math.cos( lambda );
-            p.y = ( rn + h ) * cosPhi * Math.sin( lambda );
-            p.z = ( rn * ( 1 - squaredEccentricity ) + h ) * sinPhi;
+            xyz[pos] = ( rn + h ) * cosPhi * Math.cos( lambda );
+            xyz[pos + 1] = ( rn + h ) * cosPhi * Math.sin( lambda );
+            xyz[pos + 2] = ( rn * ( 1 - squaredEccentricity ) + h ) * sinPhi;
         }
     }
 
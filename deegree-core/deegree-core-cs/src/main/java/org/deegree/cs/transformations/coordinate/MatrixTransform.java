@@ -296,6 +296,30 @@ public class MatrixTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count ) {
+        if ( isIdentity() ) {
+            return;
+        }
+        if ( isInverseTransform() ) {
+            if ( matrix3D != null ) {
+                transform( invertMatrix3D, xyz, offset, count );
+            } else if ( matrix4D != null ) {
+                transform( invertMatrix4D, xyz, offset, count );
+            } else {
+                transform( invertMatrix, xyz, offset, count );
+            }
+        } else {
+            if ( matrix3D != null ) {
+                transform( matrix3D, xyz, offset, count );
+            } else if ( matrix4D != null ) {
+                transform( matrix4D, xyz, offset, count );
+            } else {
+                transform( matrix, xyz, offset, count );
+            }
+        }
+    }
+
     /**
      * @return the dimension of input points.
      */
@@ -462,6 +486,81 @@ public class MatrixTransform extends Transformation {
 
     }
 
+    /**
+     * Packed coordinate version of {@link #transform(GMatrix, List)}.
+     */
+    private void transform( GMatrix gm, double[] xyz, int offset, int count ) {
+        final int outputDimension = numRow - 1;
+        if ( numCol - 1 > 3 ) {
+            throw new IllegalArgumentException( "Number of collumns: " + numCol
+                                                + " of the given matrix exceed the maximum dimension (3) supported by"
+                                                + " this Transformation" );
+        }
+        if ( outputDimension > 3 ) {
+            throw new IllegalArgumentException( "Number of rows: " + numRow
+                                                + " of the given matrix exceed the maximum dimension (3) supported by"
+                                                + " this Transformation" );
+        }
+        final double[] tmpPoint = new double[numRow];
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = xyz[pos];
+            final double y = xyz[pos + 1];
+            final double z = xyz[pos + 2];
+            for ( int row = 0; row < numRow; ++row ) {
+                tmpPoint[row] = gm.getElement( row, 0 ) * x;
+                if ( numCol >= 2 ) {
+                    tmpPoint[row] += gm.getElement( row, 1 ) * y;
+                    if ( numCol >= 3 ) {
+                        tmpPoint[row] += gm.getElement( row, 2 )
+                                         * ( ( !Double.isNaN( z ) && !Double.isInfinite( z ) ) ? z : 1 );
+                        if ( numCol == 4 ) { // assume 1
+                            tmpPoint[row] += gm.getElement( row, 3 );
+                        }
+                    }
+                }
+            }
+            final double w = tmpPoint[outputDimension];
+            if ( outputDimension >= 1 ) {
+                xyz[pos] = tmpPoint[0] / w;
+                if ( outputDimension >= 2 ) {
+                    xyz[pos + 1] = tmpPoint[1] / w;
+                    if ( outputDimension == 3 ) {
+                        xyz[pos + 2] = tmpPoint[2] / w;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packed coordinate version of {@link #transform(Matrix4d, List)}.
+     */
+    private void transform( Matrix4d m, double[] xyz, int offset, int count ) {
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = xyz[pos];
+            final double y = xyz[pos + 1];
+            final double z = xyz[pos + 2];
+            xyz[pos] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+            xyz[pos + 1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+            xyz[pos + 2] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+        }
+    }
+
+    /**
+     * Packed coordinate version of {@link #transform(Matrix3d, List)}.
+     */
+    private void transform( Matrix3d m, double[] xyz, int offset, int count ) {
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = xyz[pos];
+            final double y = xyz[pos + 1];
+            final boolean zIsNaN = Double.isNaN( xyz[pos + 2] );
+            final double z = zIsNaN ? 1 : xyz[pos + 2];
+            xyz[pos] = m.m00 * x + m.m01 * y + m.m02 * z;
+            xyz[pos + 1] = m.m10 * x + m.m11 * y + m.m12 * z;
+            xyz[pos + 2] = zIsNaN ? Double.NaN : m.m20 * x + m.m21 * y + m.m22 * z;
+        }
+    }
+
     /**
      * Use the given GMatrix to transform the given points inplace.
      * 
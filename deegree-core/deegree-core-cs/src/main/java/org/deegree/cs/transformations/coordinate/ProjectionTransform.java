@@ -150,6 +150,25 @@ public class ProjectionTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count ) {
+        final boolean inverse = isInverseTransform();
+        final boolean swapIn = inverse ? swapAxisTarget : swapAxisSource;
+        final boolean swapOut = inverse ? swapAxisSource : swapAxisTarget;
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = swapIn ? xyz[pos + 1] : xyz[pos];
+            final double y = swapIn ? xyz[pos] : xyz[pos + 1];
+            try {
+                Point2d tmp = inverse ? projectedCRS.doInverseProjection( x, y ) : projectedCRS.doProjection( x, y );
+                xyz[pos] = swapOut ? tmp.y : tmp.x;
+                xyz[pos + 1] = swapOut ? tmp.x : tmp.y;
+            } catch ( ProjectionException e ) {
+                LOG.trace( "Stack trace:", e );
+                LOG.warn( "Transformation error: {}", e.getLocalizedMessage() );
+            }
+        }
+    }
+
     /**
      * @param srcPts
      */
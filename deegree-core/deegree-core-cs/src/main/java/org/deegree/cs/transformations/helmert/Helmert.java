@@ -477,28 +477,14 @@ public class Helmert extends Transformation {
     }
 
     @Override
-    public synchronized List<Point3d> doTransform( List<Point3d> srcPts )
+    public List<Point3d> doTransform( List<Point3d> srcPts )
                             throws TransformationException {
 
         if ( srcPts == null || srcPts.size() == 0 ) {
             return srcPts;
         }
 
-        // lazy instantiation
-        if ( transformMatrix == null ) {
-            transformMatrix = getAsAffineTransform();
-        }
-        Matrix4d matrix = transformMatrix;
-
-        // create the inverse matrix
-        if ( isInverseTransform() ) {
-            if ( inverseMatrix == null ) {
-                inverseMatrix = getAsAffineTransform();
-                inverseMatrix.invert();
-            }
-            matrix = inverseMatrix;
-        }
-
+        Matrix4d matrix = getMatrix();
         for ( Point3d p : srcPts ) {
             boolean zIsNaN = Double.isNaN( p.z );
             if ( zIsNaN ) {
@@ -513,6 +499,40 @@ public class Helmert extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int count ) {
+        if ( count == 0 ) {
+            return;
+        }
+        Matrix4d m = getMatrix();
+        for ( int pos = offset, end = offset + 3 * count; pos < end; pos += 3 ) {
+            final double x = xyz[pos];
+            final double y = xyz[pos + 1];
+            final boolean zIsNaN = Double.isNaN( xyz[pos + 2] );
+            final double z = zIsNaN ? 1 : xyz[pos + 2];
+            xyz[pos] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+            xyz[pos + 1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+            xyz[pos + 2] = zIsNaN ? Double.NaN : m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+        }
+    }
+
+    /**
+     * @return the (lazily created) matrix to use for the current direction of this transformation
+     */
+    private synchronized Matrix4d getMatrix() {
+        if ( transformMatrix == null ) {
+            transformMatrix = getAsAffineTransform();
+        }
+        if ( isInverseTransform() ) {
+            if ( inverseMatrix == null ) {
+                inverseMatrix = getAsAffineTransform();
+                inverseMatrix.invert();
+            }
+            return inverseMatrix;
+        }
+        return transformMatrix;
+    }
+
     @Override
     public String getImplementationName() {
         return "Helmert";
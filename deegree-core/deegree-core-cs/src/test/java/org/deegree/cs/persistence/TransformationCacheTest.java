@@ -0,0 +1,117 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.persistence;
+
+import static java.util.Collections.singletonList;
+import static org.deegree.cs.transformations.CRSDefines.geographic_4314;
+import static org.deegree.cs.transformations.CRSDefines.projected_25832;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.transformations.Transformation;
+import org.deegree.cs.transformations.coordinate.IdentityTransform;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TransformationCache} and the cached lookup in {@link CRSManager}.
+ * 
+ * @since 3.4
+ */
+public class TransformationCacheTest {
+
+    @Test
+    public void testKeysCompareByIdentity() {
+        TransformationCache cache = new TransformationCache();
+        TransformationCache.Key key = cache.createKey( null, geographic_4314, projected_25832, null );
+        assertEquals( key, cache.createKey( null, geographic_4314, projected_25832, null ) );
+        assertEquals( key, cache.createKey( null, geographic_4314, projected_25832,
+                                            Collections.<Transformation> emptyList() ) );
+        assertFalse( key.equals( cache.createKey( null, projected_25832, geographic_4314, null ) ) );
+        assertFalse( key.equals( cache.createKey( "store", geographic_4314, projected_25832, null ) ) );
+
+        List<Transformation> toBeUsed = singletonList( (Transformation) new IdentityTransform( geographic_4314,
+                                                                                                projected_25832 ) );
+        TransformationCache.Key forced = cache.createKey( null, geographic_4314, projected_25832, toBeUsed );
+        assertFalse( key.equals( forced ) );
+        assertEquals( forced, cache.createKey( null, geographic_4314, projected_25832, toBeUsed ) );
+    }
+
+    @Test
+    public void testIdentityResultsAreCached() {
+        TransformationCache cache = new TransformationCache();
+        TransformationCache.Key key = cache.createKey( null, geographic_4314, geographic_4314, null );
+        assertNull( cache.get( key ) );
+        cache.put( key, null, cache.getGeneration() );
+        assertNotNull( cache.get( key ) );
+        assertNull( cache.get( key ).transformation );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testChainOfClearedGenerationIsNotCached() {
+        TransformationCache cache = new TransformationCache();
+        TransformationCache.Key key = cache.createKey( null, geographic_4314, projected_25832, null );
+        long generation = cache.getGeneration();
+        cache.clear();
+        cache.put( key, null, generation );
+        assertNull( cache.get( key ) );
+        cache.put( key, null, cache.getGeneration() );
+        assertNotNull( cache.get( key ) );
+    }
+
+    @Test
+    public void testGetTransformationReturnsCachedChain()
+                            throws Exception {
+        Transformation first = CRSManager.getTransformation( null, geographic_4314, projected_25832 );
+        assertNotNull( first );
+        assertSame( first, CRSManager.getTransformation( null, geographic_4314, projected_25832 ) );
+    }
+
+    @Test
+    public void testWarmUp() {
+        List<ICRS> crs = Arrays.<ICRS> asList( geographic_4314, projected_25832 );
+        assertEquals( 2, CRSManager.warmUp( crs, crs ) );
+    }
+}
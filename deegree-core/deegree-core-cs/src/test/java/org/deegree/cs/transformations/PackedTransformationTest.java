@@ -0,0 +1,168 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.transformations;
+
+import static java.lang.Math.toRadians;
+import static org.deegree.cs.transformations.CRSDefines.geocentric_dummy;
+import static org.deegree.cs.transformations.CRSDefines.geographic_4314;
+import static org.deegree.cs.transformations.CRSDefines.projected_25832;
+import static org.deegree.cs.transformations.CRSDefines.projected_25832_lat_lon;
+import static org.deegree.cs.transformations.CRSDefines.projected_25832_yx;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.deegree.cs.CRSCodeType;
+import org.deegree.cs.CRSIdentifiable;
+import org.deegree.cs.coordinatesystems.GeographicCRS;
+import org.deegree.cs.transformations.coordinate.ConcatenatedTransform;
+import org.deegree.cs.transformations.coordinate.GeocentricTransform;
+import org.deegree.cs.transformations.coordinate.ProjectionTransform;
+import org.deegree.cs.transformations.helmert.Helmert;
+import org.junit.Test;
+
+/**
+ * Checks that the packed coordinate kernels ({@link Transformation#doTransform(double[], int, int)}) yield the same
+ * results as the {@link Point3d} based implementations.
+ */
+public class PackedTransformationTest {
+
+    // lon/lat (radians) around Bonn, with and without height
+    private static final double[] GEOGRAPHIC = new double[] { toRadians( 7.1 ), toRadians( 50.7 ), Double.NaN,
+                                                             toRadians( 9.5 ), toRadians( 52.1 ), 120.5,
+                                                             toRadians( 6.0 ), toRadians( 48.0 ), 0 };
+
+    @Test
+    public void testProjectionTransform()
+                            throws Exception {
+        assertSameResults( new ProjectionTransform( projected_25832 ), GEOGRAPHIC );
+        assertSameResults( new ProjectionTransform( projected_25832_lat_lon ), swapped( GEOGRAPHIC ) );
+        assertSameResults( new ProjectionTransform( projected_25832_yx ), GEOGRAPHIC );
+
+        Transformation t = new ProjectionTransform( projected_25832 );
+        double[] projected = GEOGRAPHIC.clone();
+        t.doTransform( projected, 0, 3 );
+        t.inverse();
+        assertSameResults( t, projected );
+        t.doTransform( projected, 0, 3 );
+        assertEquals( GEOGRAPHIC[0], projected[0], 1E-9 );
+        assertEquals( GEOGRAPHIC[4], projected[4], 1E-9 );
+    }
+
+    @Test
+    public void testGeocentricAndHelmert()
+                            throws Exception {
+        GeocentricTransform geocentric = new GeocentricTransform( geographic_4314, geocentric_dummy );
+        assertSameResults( geocentric, GEOGRAPHIC );
+
+        Helmert helmert = createHelmert();
+        double[] xyz = GEOGRAPHIC.clone();
+        geocentric.doTransform( xyz, 0, 3 );
+        assertSameResults( helmert, xyz );
+        helmert.inverse();
+        assertSameResults( helmert, xyz );
+
+        geocentric.inverse();
+        assertSameResults( geocentric, xyz );
+    }
+
+    @Test
+    public void testConcatenatedTransform()
+                            throws Exception {
+        Transformation chain = new ConcatenatedTransform( new GeocentricTransform( geographic_4314, geocentric_dummy ),
+                                                          createHelmert(),
+                                                          new CRSIdentifiable( new CRSCodeType( "chain" ) ) );
+        assertSameResults( chain, GEOGRAPHIC );
+        chain.inverse();
+        assertSameResults( chain, transformPoints( new GeocentricTransform( geographic_4314, geocentric_dummy ),
+                                                   GEOGRAPHIC ) );
+    }
+
+    @Test
+    public void testOffset()
+                            throws Exception {
+        Transformation t = new ProjectionTransform( projected_25832 );
+        double[] xyz = new double[GEOGRAPHIC.length + 4];
+        System.arraycopy( GEOGRAPHIC, 0, xyz, 1, GEOGRAPHIC.length );
+        t.doTransform( xyz, 4, 1 );
+        double[] expected = transformPoints( t, GEOGRAPHIC );
+        assertEquals( GEOGRAPHIC[0], xyz[1], 0 );
+        assertArrayEquals( new double[] { expected[3], expected[4] }, new double[] { xyz[4], xyz[5] }, 1E-9 );
+        assertEquals( GEOGRAPHIC[6], xyz[7], 0 );
+    }
+
+    private Helmert createHelmert() {
+        return new Helmert( 598.1, 73.7, 418.2, 0.202, 0.045, -2.455, 6.7, geographic_4314, GeographicCRS.WGS84,
+                            new CRSCodeType[] { new CRSCodeType( "1777" ) } );
+    }
+
+    private void assertSameResults( Transformation t, double[] coords )
+                            throws Exception {
+        double[] expected = transformPoints( t, coords );
+        double[] packed = coords.clone();
+        t.doTransform( packed, 0, coords.length / 3 );
+        assertArrayEquals( expected, packed, 1E-9 );
+    }
+
+    private double[] transformPoints( Transformation t, double[] coords )
+                            throws Exception {
+        List<Point3d> points = new ArrayList<Point3d>();
+        for ( int i = 0; i < coords.length; i += 3 ) {
+            points.add( new Point3d( coords[i], coords[i + 1], coords[i + 2] ) );
+        }
+        double[] result = new double[coords.length];
+        int i = 0;
+        for ( Point3d p : t.doTransform( points ) ) {
+            result[i++] = p.x;
+            result[i++] = p.y;
+            result[i++] = p.z;
+        }
+        return result;
+    }
+
+    private double[] swapped( double[] coords ) {
+        double[] result = coords.clone();
+        for ( int i = 0; i < result.length; i += 3 ) {
+            result[i] = coords[i + 1];
+            result[i + 1] = coords[i];
+        }
+        return result;
+    }
+}
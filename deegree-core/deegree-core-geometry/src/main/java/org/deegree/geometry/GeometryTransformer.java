@@ -42,8 +42,6 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.vecmath.Point3d;
-
 import org.deegree.commons.uom.Length;
 import org.deegree.cs.Transformer;
 import org.deegree.cs.coordinatesystems.CRS;
@@ -110,6 +108,7 @@ import org.deegree.geometry.primitive.segments.LineStringSegment;
 import org.deegree.geometry.primitive.segments.OffsetCurve;
 import org.deegree.geometry.primitive.segments.CurveSegment.CurveSegmentType;
 import org.deegree.geometry.standard.curvesegments.AffinePlacement;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.slf4j.Logger;
 
@@ -538,29 +537,31 @@ public class GeometryTransformer extends Transformer {
         double axis0Step = span0 / ( pointsPerSide + 1 );
         double axis1Step = span1 / ( pointsPerSide + 1 );
 
-        List<Point3d> points = new ArrayList<Point3d>( pointsPerSide * 4 + 4 );
         double zValue = Double.NaN;
         if ( trans.getSourceCRS() != null ) {
             zValue = trans.getSourceCRS().getDimension() == 3 ? 1 : Double.NaN;
         }
 
+        int numCoords = ( pointsPerSide + 2 ) * 4;
+        double[] xyz = new double[numCoords * 3];
+        int pos = 0;
         for ( int i = 0; i <= pointsPerSide + 1; i++ ) {
-            points.add( new Point3d( axis0Min + i * axis0Step, axis1Min, zValue ) );
-            points.add( new Point3d( axis0Min + i * axis0Step, axis1Max, zValue ) );
-            points.add( new Point3d( axis0Min, axis1Min + i * axis1Step, zValue ) );
-            points.add( new Point3d( axis0Max, axis1Min + i * axis1Step, zValue ) );
+            pos = setCoordinate( xyz, pos, axis0Min + i * axis0Step, axis1Min, zValue );
+            pos = setCoordinate( xyz, pos, axis0Min + i * axis0Step, axis1Max, zValue );
+            pos = setCoordinate( xyz, pos, axis0Min, axis1Min + i * axis1Step, zValue );
+            pos = setCoordinate( xyz, pos, axis0Max, axis1Min + i * axis1Step, zValue );
         }
 
-        points = trans.doTransform( points );
+        trans.doTransform( xyz, 0, numCoords );
         axis0Min = Double.MAX_VALUE;
         axis1Min = Double.MAX_VALUE;
         axis0Max = Double.NEGATIVE_INFINITY;
         axis1Max = Double.NEGATIVE_INFINITY;
-        for ( Point3d p : points ) {
-            axis0Min = Math.min( p.x, axis0Min );
-            axis1Min = Math.min( p.y, axis1Min );
-            axis0Max = Math.max( p.x, axis0Max );
-            axis1Max = Math.max( p.y, axis1Max );
+        for ( int i = 0; i < xyz.length; i += 3 ) {
+            axis0Min = Math.min( xyz[i], axis0Min );
+            axis1Min = Math.min( xyz[i + 1], axis1Min );
+            axis0Max = Math.max( xyz[i], axis0Max );
+            axis1Max = Math.max( xyz[i + 1], axis1Max );
         }
 
         // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
@@ -816,25 +817,48 @@ public class GeometryTransformer extends Transformer {
     private Points transform( Points points, Transformation trans )
                             throws TransformationException {
 
-        List<Point> result = new ArrayList<Point>( points.size() );
+        final int size = points.size();
+        final double[] xyz = new double[size * 3];
+        boolean hasIds = false;
+        int pos = 0;
         for ( Point point : points ) {
-            Point3d coord = new Point3d( point.get0(), point.get1(), point.get2() );
-            Point3d tmp = new Point3d( coord );
-
-            tmp = trans.doTransform( coord );
+            pos = setCoordinate( xyz, pos, point.get0(), point.get1(), point.get2() );
+            hasIds |= point.getId() != null;
+        }
+        if ( points.getDimension() < 3 && !hasIds ) {
+            trans.doTransform( xyz, 0, size );
+            double[] xy = new double[size * 2];
+            for ( int i = 0, j = 0; i < xyz.length; i += 3 ) {
+                xy[j++] = xyz[i];
+                xy[j++] = xyz[i + 1];
+            }
+            return new PackedPoints( getTargetCRS(), xy, 2 );
+        }
 
-            if ( Double.isNaN( point.get2() ) ) {
-                result.add( geomFactory.createPoint( point.getId(), new double[] { tmp.x, tmp.y }, getTargetCRS() ) );
-            } else {
+        final double[] srcZ = new double[size];
+        for ( int i = 0; i < size; i++ ) {
+            srcZ[i] = xyz[i * 3 + 2];
+        }
+        trans.doTransform( xyz, 0, size );
+        final boolean passZ = trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2;
+        for ( int i = 0; i < size; i++ ) {
+            if ( Double.isNaN( srcZ[i] ) ) {
+                xyz[i * 3 + 2] = Double.NaN;
+            } else if ( passZ ) {
                 // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
-                if ( trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2 ) {
-                    tmp.z = point.get2();
-                }
-                result.add( geomFactory.createPoint( point.getId(), new double[] { tmp.x, tmp.y, tmp.z },
-                                                     getTargetCRS() ) );
+                xyz[i * 3 + 2] = srcZ[i];
             }
         }
-        return new PointsList( result );
+        if ( hasIds ) {
+            List<Point> result = new ArrayList<Point>( size );
+            int i = 0;
+            for ( Point point : points ) {
+                result.add( createPoint( point.getId(), xyz, 3 * i, srcZ[i] ) );
+                i++;
+            }
+            return new PointsList( result );
+        }
+        return new PackedPoints( getTargetCRS(), xyz, 3 );
     }
 
     /**
@@ -844,18 +868,28 @@ public class GeometryTransformer extends Transformer {
      */
     private Point transform( Point geo, Transformation trans )
                             throws TransformationException {
-
-        Point3d coord = new Point3d( geo.get0(), geo.get1(), geo.get2() );
-        Point3d result = new Point3d( coord );
-
-        result = trans.doTransform( coord );
-        if ( Double.isNaN( geo.get2() ) ) {
-            return geomFactory.createPoint( geo.getId(), new double[] { result.x, result.y }, getTargetCRS() );
-        } else if ( trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2 ) {
+        double[] xyz = new double[] { geo.get0(), geo.get1(), geo.get2() };
+        trans.doTransform( xyz, 0, 1 );
+        if ( !Double.isNaN( geo.get2() ) && trans.getSourceCRS().getDimension() == 2
+             && trans.getTargetCRS().getDimension() == 2 ) {
             // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
-            result.z = geo.get2();
+            xyz[2] = geo.get2();
+        }
+        return createPoint( geo.getId(), xyz, 0, geo.get2() );
+    }
+
+    private Point createPoint( String id, double[] xyz, int pos, double srcZ ) {
+        if ( Double.isNaN( srcZ ) ) {
+            return geomFactory.createPoint( id, new double[] { xyz[pos], xyz[pos + 1] }, getTargetCRS() );
         }
-        return geomFactory.createPoint( geo.getId(), new double[] { result.x, result.y, result.z }, getTargetCRS() );
+        return geomFactory.createPoint( id, new double[] { xyz[pos], xyz[pos + 1], xyz[pos + 2] }, getTargetCRS() );
+    }
+
+    private static int setCoordinate( double[] xyz, int pos, double x, double y, double z ) {
+        xyz[pos] = x;
+        xyz[pos + 1] = y;
+        xyz[pos + 2] = z;
+        return pos + 3;
     }
 
     /**
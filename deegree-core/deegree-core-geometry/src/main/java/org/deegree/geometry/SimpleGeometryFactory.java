@@ -58,6 +58,7 @@ import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
 import org.deegree.geometry.standard.multi.DefaultMultiLineString;
 import org.deegree.geometry.standard.multi.DefaultMultiPoint;
 import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.deegree.geometry.standard.primitive.DefaultLineString;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
@@ -177,6 +178,21 @@ public class SimpleGeometryFactory {
         return inspect( new PointsList( points ) );
     }
 
+    /**
+     * Creates a {@link Points} object from the given packed coordinates.
+     * 
+     * @param crs
+     *            coordinate reference system, may be null
+     * @param coordinates
+     *            coordinates of the points, one after another, must not be <code>null</code>
+     * @param dimension
+     *            number of coordinates per point
+     * @return created {@link Points}
+     */
+    public Points createPoints( ICRS crs, double[] coordinates, int dimension ) {
+        return inspect( new PackedPoints( crs, coordinates, dimension ) );
+    }
+
     /**
      * Creates a {@link Polygon} surface.
      * 
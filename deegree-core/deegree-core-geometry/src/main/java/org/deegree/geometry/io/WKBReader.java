@@ -37,19 +37,40 @@ package org.deegree.geometry.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.Geometry;
-import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
 
-import org.locationtech.jts.io.InputStreamInStream;
 import org.locationtech.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * The geometries are decoded directly into {@link PackedPoints} based deegree geometries. Besides OGC WKB, the
+ * PostGIS EWKB flags (Z, M, SRID) and the ISO type codes for Z/M geometries are understood. M values are skipped. If
+ * no crs is given, the crs is derived from an embedded EWKB SRID (as EPSG code). Empty geometries are returned as
+ * <code>null</code>.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,20 +79,268 @@ import org.locationtech.jts.io.ParseException;
  */
 public class WKBReader {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    static final int WKB_POINT = 1;
+
+    static final int WKB_LINESTRING = 2;
+
+    static final int WKB_POLYGON = 3;
+
+    static final int WKB_MULTIPOINT = 4;
+
+    static final int WKB_MULTILINESTRING = 5;
+
+    static final int WKB_MULTIPOLYGON = 6;
+
+    static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    static final int EWKB_Z = 0x80000000;
+
+    static final int EWKB_M = 0x40000000;
+
+    static final int EWKB_SRID = 0x20000000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+
+    private byte[] buffer;
+
+    private int pos;
+
+    private int limit;
+
+    private boolean littleEndian;
+
+    private ICRS crs;
+
+    private WKBReader( byte[] wkb, InputStream in, ICRS crs ) {
+        this.buffer = wkb;
+        this.limit = wkb.length;
+        this.in = in;
+        this.crs = crs;
+    }
 
     public static Geometry read( byte[] wkb, ICRS crs )
                             throws ParseException {
-        // org.locationtech.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS( new org.locationtech.jts.io.WKBReader().read( wkb ), crs );
+        try {
+            return new WKBReader( wkb, null, crs ).readGeometry();
+        } catch ( IOException e ) {
+            // only thrown when reading from a stream
+            throw new ParseException( e );
+        }
     }
 
     public static Geometry read( InputStream is, ICRS crs )
                             throws IOException, ParseException {
-        // org.locationtech.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS(
-                                          new org.locationtech.jts.io.WKBReader().read( new InputStreamInStream( is ) ),
-                                          crs );
+        WKBReader reader = new WKBReader( new byte[BUFFER_SIZE], is, crs );
+        reader.limit = 0;
+        return reader.readGeometry();
+    }
+
+    private Geometry readGeometry()
+                            throws IOException, ParseException {
+        byte byteOrder = readByte();
+        if ( byteOrder != 0 && byteOrder != 1 ) {
+            throw new ParseException( "Invalid WKB byte order marker: " + byteOrder );
+        }
+        littleEndian = byteOrder == 1;
+        int typeCode = readInt();
+        boolean hasZ = ( typeCode & EWKB_Z ) != 0;
+        boolean hasM = ( typeCode & EWKB_M ) != 0;
+        if ( ( typeCode & EWKB_SRID ) != 0 ) {
+            int srid = readInt();
+            if ( crs == null && srid > 0 ) {
+                crs = CRSManager.getCRSRef( "EPSG:" + srid );
+            }
+        }
+        int type = typeCode & 0x0FFFFFFF;
+        if ( type >= 1000 ) {
+            int isoDim = type / 1000;
+            hasZ |= isoDim == 1 || isoDim == 3;
+            hasM |= isoDim == 2 || isoDim == 3;
+            type = type % 1000;
+        }
+        int dim = hasZ ? 3 : 2;
+        int skip = hasM ? 1 : 0;
+        switch ( type ) {
+        case WKB_POINT:
+            double[] coords = readCoordinates( 1, dim, skip );
+            if ( Double.isNaN( coords[0] ) && Double.isNaN( coords[1] ) ) {
+                return null;
+            }
+            return new DefaultPoint( null, crs, null, coords );
+        case WKB_LINESTRING:
+            Points points = readPoints( dim, skip );
+            return points == null ? null : new DefaultLineString( null, crs, null, points );
+        case WKB_POLYGON:
+            return readPolygon( dim, skip );
+        case WKB_MULTIPOINT:
+            List<Point> pointMembers = readMembers( Point.class );
+            return pointMembers.isEmpty() ? null : new DefaultMultiPoint( null, crs, null, pointMembers );
+        case WKB_MULTILINESTRING:
+            List<LineString> lineStrings = readMembers( LineString.class );
+            return lineStrings.isEmpty() ? null : new DefaultMultiLineString( null, crs, null, lineStrings );
+        case WKB_MULTIPOLYGON:
+            List<Polygon> polygons = readMembers( Polygon.class );
+            return polygons.isEmpty() ? null : new DefaultMultiPolygon( null, crs, null, polygons );
+        case WKB_GEOMETRYCOLLECTION:
+            List<Geometry> members = readMembers( Geometry.class );
+            return members.isEmpty() ? null : new DefaultMultiGeometry<Geometry>( null, crs, null, members );
+        default:
+            throw new ParseException( "Unsupported WKB geometry type: " + type );
+        }
+    }
+
+    private Polygon readPolygon( int dim, int skip )
+                            throws IOException, ParseException {
+        // every ring has at least its point count
+        int numRings = readCount( 4 );
+        if ( numRings == 0 ) {
+            return null;
+        }
+        Points exterior = readPoints( dim, skip );
+        List<Ring> interiorRings = new ArrayList<Ring>( initialCapacity( numRings - 1, 4 ) );
+        for ( int i = 1; i < numRings; i++ ) {
+            Points interior = readPoints( dim, skip );
+            if ( interior != null ) {
+                interiorRings.add( new DefaultLinearRing( null, crs, null, interior ) );
+            }
+        }
+        if ( exterior == null ) {
+            return null;
+        }
+        return new DefaultPolygon( null, crs, null, new DefaultLinearRing( null, crs, null, exterior ), interiorRings );
+    }
+
+    private <T extends Geometry> List<T> readMembers( Class<T> memberType )
+                            throws IOException, ParseException {
+        // every member has at least its byte order and type code
+        int numMembers = readCount( 5 );
+        List<T> members = new ArrayList<T>( initialCapacity( numMembers, 5 ) );
+        for ( int i = 0; i < numMembers; i++ ) {
+            Geometry member = readGeometry();
+            if ( member == null ) {
+                continue;
+            }
+            if ( !memberType.isInstance( member ) ) {
+                throw new ParseException( "Invalid WKB member geometry: expected " + memberType.getSimpleName() );
+            }
+            members.add( memberType.cast( member ) );
+        }
+        return members;
+    }
+
+    private Points readPoints( int dim, int skip )
+                            throws IOException, ParseException {
+        int numPoints = readCount( 8 * ( dim + skip ) );
+        if ( numPoints == 0 ) {
+            return null;
+        }
+        return new PackedPoints( crs, readCoordinates( numPoints, dim, skip ), dim );
+    }
+
+    private double[] readCoordinates( int numPoints, int dim, int skip )
+                            throws IOException, ParseException {
+        long length = (long) numPoints * dim;
+        if ( length > Integer.MAX_VALUE ) {
+            throw new ParseException( "Invalid WKB point count: " + numPoints );
+        }
+        // the remaining length of a stream is unknown, so the array grows while reading
+        double[] coords = new double[(int) ( in == null ? length : Math.min( length, BUFFER_SIZE ) )];
+        int i = 0;
+        for ( int p = 0; p < numPoints; p++ ) {
+            if ( i + dim > coords.length ) {
+                coords = Arrays.copyOf( coords, (int) Math.min( length, 2L * coords.length ) );
+            }
+            for ( int d = 0; d < dim; d++ ) {
+                coords[i++] = readDouble();
+            }
+            for ( int d = 0; d < skip; d++ ) {
+                readDouble();
+            }
+        }
+        return coords;
+    }
+
+    /**
+     * Reads an element count and checks it against the number of bytes that are left, so corrupt input cannot trigger
+     * huge allocations. For streams, only the sign can be checked.
+     * 
+     * @param minBytesPerElement
+     *            minimum number of bytes that each of the counted elements occupies
+     */
+    private int readCount( int minBytesPerElement )
+                            throws IOException, ParseException {
+        int count = readInt();
+        if ( count < 0 ) {
+            throw new ParseException( "Invalid WKB element count: " + count );
+        }
+        if ( in == null && (long) count * minBytesPerElement > limit - pos ) {
+            throw new ParseException( "Invalid WKB element count: " + count + " (only " + ( limit - pos )
+                                      + " bytes left)." );
+        }
+        return count;
+    }
+
+    private int initialCapacity( int count, int minBytesPerElement ) {
+        return Math.min( count, Math.max( limit - pos, 0 ) / minBytesPerElement );
+    }
+
+    private byte readByte()
+                            throws IOException, ParseException {
+        ensure( 1 );
+        return buffer[pos++];
+    }
+
+    private int readInt()
+                            throws IOException, ParseException {
+        ensure( 4 );
+        byte[] b = buffer;
+        int p = pos;
+        pos += 4;
+        if ( littleEndian ) {
+            return ( b[p] & 0xff ) | ( b[p + 1] & 0xff ) << 8 | ( b[p + 2] & 0xff ) << 16 | ( b[p + 3] & 0xff ) << 24;
+        }
+        return ( b[p] & 0xff ) << 24 | ( b[p + 1] & 0xff ) << 16 | ( b[p + 2] & 0xff ) << 8 | ( b[p + 3] & 0xff );
+    }
+
+    private double readDouble()
+                            throws IOException, ParseException {
+        ensure( 8 );
+        byte[] b = buffer;
+        int p = pos;
+        pos += 8;
+        long bits;
+        if ( littleEndian ) {
+            bits = ( b[p] & 0xffL ) | ( b[p + 1] & 0xffL ) << 8 | ( b[p + 2] & 0xffL ) << 16
+                   | ( b[p + 3] & 0xffL ) << 24 | ( b[p + 4] & 0xffL ) << 32 | ( b[p + 5] & 0xffL ) << 40
+                   | ( b[p + 6] & 0xffL ) << 48 | ( b[p + 7] & 0xffL ) << 56;
+        } else {
+            bits = ( b[p] & 0xffL ) << 56 | ( b[p + 1] & 0xffL ) << 48 | ( b[p + 2] & 0xffL ) << 40
+                   | ( b[p + 3] & 0xffL ) << 32 | ( b[p + 4] & 0xffL ) << 24 | ( b[p + 5] & 0xffL ) << 16
+                   | ( b[p + 6] & 0xffL ) << 8 | ( b[p + 7] & 0xffL );
+        }
+        return Double.longBitsToDouble( bits );
+    }
+
+    private void ensure( int numBytes )
+                            throws IOException, ParseException {
+        if ( limit - pos >= numBytes ) {
+            return;
+        }
+        if ( in == null ) {
+            throw new ParseException( "Unexpected end of WKB at byte " + pos + "." );
+        }
+        int remaining = limit - pos;
+        System.arraycopy( buffer, pos, buffer, 0, remaining );
+        pos = 0;
+        limit = remaining;
+        while ( limit < numBytes ) {
+            int read = in.read( buffer, limit, buffer.length - limit );
+            if ( read < 0 ) {
+                throw new ParseException( "Unexpected end of WKB stream." );
+            }
+            limit += read;
+        }
     }
-}
\ No newline at end of file
+}
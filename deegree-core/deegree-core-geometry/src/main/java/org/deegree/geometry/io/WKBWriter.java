@@ -35,21 +35,45 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import static org.deegree.geometry.io.WKBReader.EWKB_Z;
+import static org.deegree.geometry.io.WKBReader.WKB_GEOMETRYCOLLECTION;
+import static org.deegree.geometry.io.WKBReader.WKB_LINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTILINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOINT;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOLYGON;
+import static org.deegree.geometry.io.WKBReader.WKB_POINT;
+import static org.deegree.geometry.io.WKBReader.WKB_POLYGON;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiLineString;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
 import org.deegree.geometry.refs.GeometryReference;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
-import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.points.PackedPoints;
 
-import org.locationtech.jts.io.OutputStreamOutStream;
 import org.locationtech.jts.io.ParseException;
 
 /**
  * Writes {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Points, line strings, linear rings, polygons with linear rings and (multi) geometries composed of these are encoded
+ * directly (big endian, Z flagged as in EWKB for 3D geometries) into a byte array of the exact size. Other geometries
+ * are encoded via their JTS representation.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,24 +82,198 @@ import org.locationtech.jts.io.ParseException;
  */
 public class WKBWriter {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    private final byte[] wkb;
+
+    private final int dim;
+
+    private int pos;
+
+    private WKBWriter( byte[] wkb, int dim ) {
+        this.wkb = wkb;
+        this.dim = dim;
+    }
 
     public static byte[] write( Geometry geom )
                             throws ParseException {
-        if ( geom instanceof GeometryReference ) {
-            geom = ( (GeometryReference<Geometry>) geom ).getReferencedObject();
+        geom = resolve( geom );
+        int dim = geom.getCoordinateDimension() == 3 ? 3 : 2;
+        if ( !isDirectlyEncodable( geom ) ) {
+            // org.locationtech.jts.io.WKBWriter is not thread safe
+            org.locationtech.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+            return new org.locationtech.jts.io.WKBWriter( dim ).write( jtsGeom );
         }
-        // org.locationtech.jts.io.WKBWriter is not thread safe
-        int dim = geom.getCoordinateDimension();
-        return new org.locationtech.jts.io.WKBWriter(dim).write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+        WKBWriter writer = new WKBWriter( new byte[getSize( geom, dim )], dim );
+        writer.writeGeometry( geom );
+        return writer.wkb;
     }
 
     public static void write( Geometry geom, OutputStream os )
                             throws IOException, ParseException {
-        // org.locationtech.jts.io.WKBWriter is not thread safe
-        //TODO: test for dimentionality here aswell?
-        new org.locationtech.jts.io.WKBWriter().write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry(),
-                                                         new OutputStreamOutStream( os ) );
+        os.write( write( geom ) );
+    }
+
+    private static Geometry resolve( Geometry geom ) {
+        if ( geom instanceof GeometryReference ) {
+            return ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        return geom;
+    }
+
+    private static boolean isDirectlyEncodable( Geometry geom ) {
+        geom = resolve( geom );
+        if ( geom instanceof Point || geom instanceof LineString || geom instanceof LinearRing ) {
+            return true;
+        }
+        if ( geom instanceof Polygon ) {
+            Polygon polygon = (Polygon) geom;
+            if ( !( resolve( polygon.getExteriorRing() ) instanceof LinearRing ) ) {
+                return false;
+            }
+            for ( Ring ring : polygon.getInteriorRings() ) {
+                if ( !( resolve( ring ) instanceof LinearRing ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if ( geom instanceof MultiGeometry<?> ) {
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                if ( member instanceof MultiGeometry<?> || !isDirectlyEncodable( member ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static int getSize( Geometry geom, int dim ) {
+        geom = resolve( geom );
+        if ( geom instanceof Point ) {
+            return 5 + 8 * dim;
+        }
+        if ( geom instanceof Polygon ) {
+            Polygon polygon = (Polygon) geom;
+            int size = 9 + 4 + 8 * dim * getControlPoints( polygon.getExteriorRing() ).size();
+            for ( Ring ring : polygon.getInteriorRings() ) {
+                size += 4 + 8 * dim * getControlPoints( ring ).size();
+            }
+            return size;
+        }
+        if ( geom instanceof MultiGeometry<?> ) {
+            int size = 9;
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                size += getSize( member, dim );
+            }
+            return size;
+        }
+        return 9 + 8 * dim * getControlPoints( geom ).size();
+    }
+
+    private static Points getControlPoints( Geometry curve ) {
+        curve = resolve( curve );
+        if ( curve instanceof LinearRing ) {
+            return ( (LinearRing) curve ).getControlPoints();
+        }
+        return ( (LineString) curve ).getControlPoints();
+    }
+
+    private void writeGeometry( Geometry geom ) {
+        geom = resolve( geom );
+        if ( geom instanceof Point ) {
+            writeHeader( WKB_POINT );
+            writePoint( (Point) geom );
+        } else if ( geom instanceof Polygon ) {
+            Polygon polygon = (Polygon) geom;
+            List<Ring> interiorRings = polygon.getInteriorRings();
+            writeHeader( WKB_POLYGON );
+            writeInt( 1 + interiorRings.size() );
+            writePoints( getControlPoints( polygon.getExteriorRing() ) );
+            for ( Ring ring : interiorRings ) {
+                writePoints( getControlPoints( ring ) );
+            }
+        } else if ( geom instanceof MultiGeometry<?> ) {
+            MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+            writeHeader( getMultiType( multi ) );
+            writeInt( multi.size() );
+            for ( Geometry member : multi ) {
+                writeGeometry( member );
+            }
+        } else {
+            writeHeader( WKB_LINESTRING );
+            writePoints( getControlPoints( geom ) );
+        }
+    }
+
+    private static int getMultiType( MultiGeometry<?> multi ) {
+        if ( multi instanceof MultiPoint ) {
+            return WKB_MULTIPOINT;
+        }
+        if ( multi instanceof MultiLineString ) {
+            return WKB_MULTILINESTRING;
+        }
+        if ( multi instanceof MultiPolygon ) {
+            return WKB_MULTIPOLYGON;
+        }
+        // multi curves / multi surfaces that only contain line strings / polygons
+        boolean lineStrings = !multi.isEmpty();
+        boolean polygons = !multi.isEmpty();
+        for ( Geometry member : multi ) {
+            member = resolve( member );
+            lineStrings &= member instanceof LineString;
+            polygons &= member instanceof Polygon;
+        }
+        if ( lineStrings ) {
+            return WKB_MULTILINESTRING;
+        }
+        return polygons ? WKB_MULTIPOLYGON : WKB_GEOMETRYCOLLECTION;
+    }
+
+    private void writeHeader( int type ) {
+        // big endian
+        wkb[pos++] = 0;
+        writeInt( dim == 3 ? type | EWKB_Z : type );
+    }
+
+    private void writePoint( Point p ) {
+        writeDouble( p.get0() );
+        writeDouble( p.get1() );
+        if ( dim == 3 ) {
+            writeDouble( p.getCoordinateDimension() > 2 ? p.get2() : Double.NaN );
+        }
+    }
+
+    private void writePoints( Points points ) {
+        int size = points.size();
+        writeInt( size );
+        if ( points instanceof PackedPoints && points.getDimension() == dim ) {
+            double[] coords = points.getAsArray();
+            for ( int i = 0; i < size * dim; i++ ) {
+                writeDouble( coords[i] );
+            }
+            return;
+        }
+        for ( int i = 0; i < size; i++ ) {
+            writePoint( points.get( i ) );
+        }
+    }
+
+    private void writeInt( int value ) {
+        wkb[pos++] = (byte) ( value >>> 24 );
+        wkb[pos++] = (byte) ( value >>> 16 );
+        wkb[pos++] = (byte) ( value >>> 8 );
+        wkb[pos++] = (byte) value;
+    }
+
+    private void writeDouble( double value ) {
+        long bits = Double.doubleToLongBits( value );
+        wkb[pos++] = (byte) ( bits >>> 56 );
+        wkb[pos++] = (byte) ( bits >>> 48 );
+        wkb[pos++] = (byte) ( bits >>> 40 );
+        wkb[pos++] = (byte) ( bits >>> 32 );
+        wkb[pos++] = (byte) ( bits >>> 24 );
+        wkb[pos++] = (byte) ( bits >>> 16 );
+        wkb[pos++] = (byte) ( bits >>> 8 );
+        wkb[pos++] = (byte) bits;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard;
+
+import org.deegree.geometry.Geometry;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * A {@link Geometry} that has been prepared for repeated evaluation of topological predicates against many other
+ * geometries.
+ * <p>
+ * Wraps a JTS {@link org.locationtech.jts.geom.prep.PreparedGeometry} (which indexes the segments of the geometry
+ * once) and the envelope of the geometry, which allows to short-circuit most tests against far away geometries. All
+ * predicates have the prepared geometry as the first operand, e.g. {@link #contains(Geometry)} returns
+ * <code>true</code> iff the prepared geometry contains the argument. Instances are thread-safe.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class PreparedGeometry {
+
+    private static final PreparedGeometryFactory FACTORY = new PreparedGeometryFactory();
+
+    private final Geometry geometry;
+
+    private final org.locationtech.jts.geom.prep.PreparedGeometry prepared;
+
+    private final Envelope envelope;
+
+    /**
+     * Creates a new {@link PreparedGeometry} instance.
+     * 
+     * @param geometry
+     *            geometry to be prepared, must not be <code>null</code>
+     */
+    public PreparedGeometry( Geometry geometry ) {
+        this.geometry = geometry;
+        this.prepared = FACTORY.create( AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry() );
+        this.envelope = prepared.getGeometry().getEnvelopeInternal();
+    }
+
+    /**
+     * Returns the geometry that has been prepared.
+     * 
+     * @return the prepared geometry, never <code>null</code>
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry intersects the given geometry
+     */
+    public boolean intersects( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !envelope.intersects( jtsGeom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return prepared.intersects( jtsGeom );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry and the given geometry are disjoint
+     */
+    public boolean isDisjoint( Geometry geometry ) {
+        return !intersects( geometry );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry contains the given geometry
+     */
+    public boolean contains( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !envelope.covers( jtsGeom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return prepared.contains( jtsGeom );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry is within the given geometry
+     */
+    public boolean isWithin( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !jtsGeom.getEnvelopeInternal().covers( envelope ) ) {
+            return false;
+        }
+        return prepared.within( jtsGeom );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry touches the given geometry
+     */
+    public boolean touches( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !envelope.intersects( jtsGeom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return prepared.touches( jtsGeom );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry overlaps the given geometry
+     */
+    public boolean overlaps( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !envelope.intersects( jtsGeom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return prepared.overlaps( jtsGeom );
+    }
+
+    /**
+     * @param geometry
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code> iff the prepared geometry crosses the given geometry
+     */
+    public boolean crosses( Geometry geometry ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry( geometry );
+        if ( !envelope.intersects( jtsGeom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return prepared.crosses( jtsGeom );
+    }
+
+    private static org.locationtech.jts.geom.Geometry getJTSGeometry( Geometry geometry ) {
+        return AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+    }
+}
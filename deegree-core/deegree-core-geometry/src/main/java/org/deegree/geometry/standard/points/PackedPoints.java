@@ -101,12 +101,6 @@ public class PackedPoints implements Points {
 
             private int idx = 0;
 
-            @SuppressWarnings("synthetic-access")
-            private double[] pointCoordinates = new double[dimension];
-
-            @SuppressWarnings("synthetic-access")
-            private DefaultPoint point = new DefaultPoint( null, crs, null, pointCoordinates );
-
             @Override
             public boolean hasNext() {
                 return idx < coordinates.length;
@@ -117,11 +111,11 @@ public class PackedPoints implements Points {
                 if ( !hasNext() ) {
                     throw new NoSuchElementException();
                 }
-                for ( int i = 0; i < dimension; i++ ) {
-                    pointCoordinates[i] = coordinates[idx + i];
-                }
+                // a new point per call, callers may keep references to the returned points
+                double[] pointCoordinates = new double[dimension];
+                System.arraycopy( coordinates, idx, pointCoordinates, 0, dimension );
                 idx += dimension;
-                return point;
+                return new DefaultPoint( null, crs, null, pointCoordinates );
             }
 
             @Override
@@ -152,7 +146,7 @@ public class PackedPoints implements Points {
 
     @Override
     public Envelope expandEnvelope( Envelope env ) {
-        for ( int i = 0; i < coordinates.length; i += 2 ) {
+        for ( int i = 0; i < coordinates.length; i += dimension ) {
             env.expandToInclude( coordinates[i], coordinates[i + 1] );
         }
         return env;
@@ -202,7 +196,12 @@ public class PackedPoints implements Points {
     public Coordinate[] toCoordinateArray() {
         Coordinate[] coords = new Coordinate[coordinates.length / dimension];
         for ( int i = 0; i < coords.length; i++ ) {
-            coords[i] = new Coordinate( coordinates[i * 2], coordinates[i * 2 + 1] );
+            int idx = i * dimension;
+            if ( dimension > 2 ) {
+                coords[i] = new Coordinate( coordinates[idx], coordinates[idx + 1], coordinates[idx + 2] );
+            } else {
+                coords[i] = new Coordinate( coordinates[idx], coordinates[idx + 1] );
+            }
         }
         return coords;
     }
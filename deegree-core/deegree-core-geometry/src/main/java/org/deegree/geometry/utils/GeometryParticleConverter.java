@@ -53,4 +53,33 @@ public interface GeometryParticleConverter extends ParticleConverter<Geometry> {
     public String getSrid();
 
     public ICRS getCrs();
+
+    /**
+     * Returns an SQL snippet for selecting the geometry simplified to the given tolerance (e.g. the pixel size of a
+     * map request).
+     * 
+     * @param tableAlias
+     *            alias of the table that contains the geometry column, can be <code>null</code>
+     * @param tolerance
+     *            simplification tolerance in units of the storage crs, must be positive
+     * @return SQL snippet, never <code>null</code> (same as {@link #getSelectSnippet(String)} if the database does not
+     *         support simplification)
+     */
+    public default String getSelectSnippet( String tableAlias, double tolerance ) {
+        return getSelectSnippet( tableAlias );
+    }
+
+    /**
+     * Returns an SQL condition that only matches point geometries and geometries with a bounding box that is at least
+     * as wide or as high as the given extent.
+     * 
+     * @param tableAlias
+     *            alias of the table that contains the geometry column, can be <code>null</code>
+     * @param minExtent
+     *            minimum width or height in units of the storage crs, must be positive
+     * @return SQL condition, or <code>null</code> if not supported by the database
+     */
+    public default String getMinimumExtentCondition( String tableAlias, double minExtent ) {
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.ParseException;
+
+/**
+ * Tests for the direct {@link WKBReader} / {@link WKBWriter} implementation, using the JTS codec as reference.
+ * 
+ * @since 3.4
+ */
+public class WKBCodecTest {
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    private static Ring createRing( double... coords ) {
+        return fac.createLinearRing( null, null, new PackedPoints( null, coords, 2 ) );
+    }
+
+    private static Polygon createPolygon( double o ) {
+        Ring exterior = createRing( o, o, o + 10, o, o + 10, o + 10, o, o + 10, o, o );
+        Ring interior = createRing( o + 2, o + 2, o + 4, o + 2, o + 4, o + 4, o + 2, o + 2 );
+        return fac.createPolygon( null, null, exterior, Collections.singletonList( interior ) );
+    }
+
+    private static boolean equalsExact( Geometry geom, Geometry other ) {
+        org.locationtech.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+        return jtsGeom.equalsExact( ( (AbstractDefaultGeometry) other ).getJTSGeometry() );
+    }
+
+    @Test
+    public void testWriteMatchesJTS()
+                            throws Exception {
+        double[] coords = new double[] { 0, 0, 1, 1, 2, 0 };
+        LineString line = fac.createLineString( null, null, new PackedPoints( null, coords, 2 ) );
+        Point point3d = fac.createPoint( null, new double[] { 1, 2, 3 }, null );
+        MultiPolygon multi = fac.createMultiPolygon( null, null,
+                                                     Arrays.asList( createPolygon( 0 ), createPolygon( 20 ) ) );
+        for ( Geometry geom : new Geometry[] { line, point3d, multi } ) {
+            org.locationtech.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+            int dim = geom.getCoordinateDimension();
+            assertArrayEquals( new org.locationtech.jts.io.WKBWriter( dim ).write( jtsGeom ), WKBWriter.write( geom ) );
+        }
+    }
+
+    @Test
+    public void testReadEWKBLittleEndianWithSRID()
+                            throws Exception {
+        org.locationtech.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) createPolygon( 5 ) ).getJTSGeometry();
+        jtsGeom.setSRID( 4326 );
+        byte[] ewkb = new org.locationtech.jts.io.WKBWriter( 2, ByteOrderValues.LITTLE_ENDIAN, true ).write( jtsGeom );
+
+        Polygon polygon = (Polygon) WKBReader.read( ewkb, null );
+        assertEquals( "EPSG:4326", polygon.getCoordinateSystem().getAlias() );
+        assertEquals( 1, polygon.getInteriorRings().size() );
+        assertTrue( polygon.getExteriorRing().getControlPoints() instanceof PackedPoints );
+        assertTrue( equalsExact( createPolygon( 5 ), polygon ) );
+    }
+
+    @Test
+    public void testRoundTripFromStream()
+                            throws Exception {
+        Point point3d = fac.createPoint( null, new double[] { 1, 2, 3 }, null );
+        MultiPolygon multi = fac.createMultiPolygon( null, null,
+                                                     Arrays.asList( createPolygon( 0 ), createPolygon( 20 ) ) );
+        for ( Geometry geom : new Geometry[] { point3d, multi } ) {
+            Geometry read = WKBReader.read( new ByteArrayInputStream( WKBWriter.write( geom ) ), null );
+            assertEquals( geom.getCoordinateDimension(), read.getCoordinateDimension() );
+            assertTrue( equalsExact( geom, read ) );
+        }
+    }
+
+    @Test
+    public void testReadEmptyGeometry()
+                            throws Exception {
+        org.locationtech.jts.geom.GeometryFactory jtsFac = new org.locationtech.jts.geom.GeometryFactory();
+        byte[] wkb = new org.locationtech.jts.io.WKBWriter().write( jtsFac.createLineString( new Coordinate[0] ) );
+        assertNull( WKBReader.read( wkb, null ) );
+    }
+
+    @Test(expected = ParseException.class)
+    public void testRejectCountBeyondInput()
+                            throws Exception {
+        double[] coords = new double[] { 0, 0, 1, 1, 2, 0 };
+        byte[] wkb = WKBWriter.write( fac.createLineString( null, null, new PackedPoints( null, coords, 2 ) ) );
+        // big endian point count after byte order and type code
+        wkb[5] = 0x7f;
+        WKBReader.read( wkb, null );
+    }
+
+    @Test
+    public void testReadLargeLineStringFromStream()
+                            throws Exception {
+        double[] coords = new double[3 * 5000];
+        for ( int i = 0; i < coords.length; i++ ) {
+            coords[i] = i;
+        }
+        LineString line = fac.createLineString( null, null, new PackedPoints( null, coords, 3 ) );
+        LineString read = (LineString) WKBReader.read( new ByteArrayInputStream( WKBWriter.write( line ) ), null );
+        assertArrayEquals( coords, read.getControlPoints().getAsArray(), 0.0 );
+    }
+}
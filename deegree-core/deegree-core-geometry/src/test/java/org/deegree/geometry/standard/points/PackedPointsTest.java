@@ -0,0 +1,95 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard.points;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.Iterator;
+
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Unit tests for {@link PackedPoints}.
+ * 
+ * @since 3.4
+ */
+public class PackedPointsTest {
+
+    private static final double[] XYZ = { 1, 2, 100, -3, 7, 200, 5, -4, 300 };
+
+    @Test
+    public void testExpandEnvelope3D() {
+        Envelope env = new PackedPoints( null, XYZ, 3 ).expandEnvelope( new Envelope() );
+        assertEquals( -3, env.getMinX(), 0.0 );
+        assertEquals( 5, env.getMaxX(), 0.0 );
+        assertEquals( -4, env.getMinY(), 0.0 );
+        assertEquals( 7, env.getMaxY(), 0.0 );
+    }
+
+    @Test
+    public void testToCoordinateArray3D() {
+        Coordinate[] coords = new PackedPoints( null, XYZ, 3 ).toCoordinateArray();
+        assertEquals( 3, coords.length );
+        assertEquals( -3, coords[1].x, 0.0 );
+        assertEquals( 7, coords[1].y, 0.0 );
+        assertEquals( 200, coords[1].z, 0.0 );
+    }
+
+    @Test
+    public void testToCoordinateArray2D() {
+        Coordinate[] coords = new PackedPoints( null, new double[] { 1, 2, 3, 4 }, 2 ).toCoordinateArray();
+        assertEquals( 2, coords.length );
+        assertEquals( 3, coords[1].x, 0.0 );
+        assertEquals( 4, coords[1].y, 0.0 );
+    }
+
+    @Test
+    public void testIteratorReturnsIndependentPoints() {
+        Iterator<Point> iter = new PackedPoints( null, XYZ, 3 ).iterator();
+        Point first = iter.next();
+        Point second = iter.next();
+        assertNotSame( first, second );
+        assertEquals( 1, first.get0(), 0.0 );
+        assertEquals( 100, first.get2(), 0.0 );
+        assertEquals( -3, second.get0(), 0.0 );
+    }
+
+}
@@ -247,7 +247,9 @@ public final class ConfigUtils {
         if ( cfg.isOpaque() != null ) {
             opaque = cfg.isOpaque();
         }
-        return new MapOptions( quali, interpol, alias, maxFeats, rad, opaque );
+        MapOptions options = new MapOptions( quali, interpol, alias, maxFeats, rad, opaque );
+        options.setGeneralization( cfg.isGeneralization() );
+        return options;
     }
 
     public static Map<String, Dimension<?>> parseDimensions( String layerName, List<DimensionType> dimensions ) {
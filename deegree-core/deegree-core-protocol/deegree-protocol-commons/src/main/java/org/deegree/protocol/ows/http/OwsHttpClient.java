@@ -38,8 +38,11 @@ package org.deegree.protocol.ows.http;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.deegree.commons.utils.io.StreamBufferStore;
+import org.deegree.commons.utils.net.HttpConnectionPool;
 
 /**
  * Performs HTTP requests against remote OWS.
@@ -70,6 +73,35 @@ public interface OwsHttpClient {
     OwsHttpResponse doGet( URL endPoint, Map<String, String> params, Map<String, String> headers )
                             throws IOException;
 
+    /**
+     * Performs an HTTP-GET request to the specified service endpoint that is aborted when the deadline has passed.
+     * <p>
+     * NOTE: The caller <b>must</b> call {@link OwsHttpResponseImpl#close()} on the returned object eventually,
+     * otherwise the HTTP connection will not be freed.
+     * </p>
+     * <p>
+     * The default implementation ignores the deadline.
+     * </p>
+     * 
+     * @param endPoint
+     *            service endpoint to send to request to, must not be <code>null</code>
+     * @param params
+     *            KVP parameters, may be <code>null</code>
+     * @param headers
+     *            HTTP headers, may be <code>null</code>
+     * @param deadline
+     *            time (in milliseconds since the epoch) after which connecting to the service or reading the response
+     *            is aborted, zero or negative for no deadline
+     * @return service response, never <code>null</code>
+     * @throws IOException
+     *             if the request fails or has been aborted
+     */
+    default OwsHttpResponse doGet( URL endPoint, Map<String, String> params, Map<String, String> headers,
+                                   long deadline )
+                            throws IOException {
+        return doGet( endPoint, params, headers );
+    }
+
     /**
      * Performs an HTTP-POST request to the specified service endpoint.
      * <p>
@@ -90,4 +122,35 @@ public interface OwsHttpClient {
      */
     OwsHttpResponse doPost( URL endPoint, String contentType, StreamBufferStore body, Map<String, String> headers )
                             throws IOException;
+
+    /**
+     * Performs an HTTP-GET request to the specified service endpoint asynchronously.
+     * <p>
+     * The default implementation performs {@link #doGet(URL, Map, Map)} on the threads of the
+     * {@link HttpConnectionPool}.
+     * </p>
+     * <p>
+     * NOTE: The caller <b>must</b> call {@link OwsHttpResponseImpl#close()} on the object returned by the future
+     * eventually, otherwise the HTTP connection will not be freed.
+     * </p>
+     * 
+     * @param endPoint
+     *            service endpoint to send to request to, must not be <code>null</code>
+     * @param params
+     *            KVP parameters, may be <code>null</code>
+     * @param headers
+     *            HTTP headers, may be <code>null</code>
+     * @return future service response, never <code>null</code>, an {@link IOException} is reported as cause of the
+     *         {@link java.util.concurrent.ExecutionException}
+     */
+    default Future<OwsHttpResponse> doGetAsync( final URL endPoint, final Map<String, String> params,
+                                                final Map<String, String> headers ) {
+        return HttpConnectionPool.submit( new Callable<OwsHttpResponse>() {
+            @Override
+            public OwsHttpResponse call()
+                                    throws IOException {
+                return doGet( endPoint, params, headers );
+            }
+        } );
+    }
 }
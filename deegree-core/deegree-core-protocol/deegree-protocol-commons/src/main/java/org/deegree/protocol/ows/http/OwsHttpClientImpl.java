@@ -35,6 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.protocol.ows.http;
 
+import static org.deegree.commons.utils.net.HttpConnectionPool.abortAt;
+import static org.deegree.commons.utils.net.HttpConnectionPool.createHttpClient;
 import static org.deegree.commons.utils.net.HttpUtils.handleProxies;
 
 import java.io.IOException;
@@ -44,21 +46,27 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpConnectionParams;
 import org.deegree.commons.utils.io.StreamBufferStore;
+import org.deegree.commons.utils.net.HttpConnectionPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Default implementation of {@link OwsHttpClient}.
+ * <p>
+ * All instances share the keep-alive connections of the {@link HttpConnectionPool}.
+ * </p>
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -119,8 +127,16 @@ public class OwsHttpClientImpl implements OwsHttpClient {
     @Override
     public OwsHttpResponse doGet( URL endPoint, Map<String, String> params, Map<String, String> headers )
                             throws IOException {
+        return doGet( endPoint, params, headers, -1 );
+    }
+
+    @Override
+    public OwsHttpResponse doGet( URL endPoint, Map<String, String> params, Map<String, String> headers,
+                                  long deadline )
+                            throws IOException {
 
         OwsHttpResponseImpl response = null;
+        Future<?> abortTask = null;
         URI query = null;
         try {
             URL normalizedEndpointUrl = normalizeGetUrl( endPoint );
@@ -141,14 +157,27 @@ public class OwsHttpClientImpl implements OwsHttpClient {
 
             query = new URI( sb.toString() );
             HttpGet httpGet = new HttpGet( query );
+            setHeaders( httpGet, headers );
             DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
+            if ( deadline > 0 ) {
+                long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 ) {
+                    throw new IOException( "Deadline has passed before sending the request." );
+                }
+                int soTimeout = (int) Math.min( remaining, readTimeoutMillis );
+                HttpConnectionParams.setSoTimeout( httpGet.getParams(), soTimeout );
+                abortTask = abortAt( httpGet, deadline );
+            }
             LOG.debug( "Performing GET request: " + query );
             HttpResponse httpResponse = httpClient.execute( httpGet );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), sb.toString() );
+            response = new OwsHttpResponseImpl( httpResponse, httpGet, sb.toString() );
+            response.setAbortTask( abortTask );
         } catch ( Throwable e ) {
-            e.printStackTrace();
+            if ( abortTask != null ) {
+                abortTask.cancel( false );
+            }
             String msg = "Error performing GET request on '" + query + "': " + e.getMessage();
-            throw new IOException( msg );
+            throw new IOException( msg, e );
         }
         return response;
     }
@@ -160,6 +189,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
         OwsHttpResponse response = null;
         try {
             HttpPost httpPost = new HttpPost( endPoint.toURI() );
+            setHeaders( httpPost, headers );
             DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
             LOG.debug( "Performing POST request on " + endPoint );
             LOG.debug( "post size: " + body.size() );
@@ -167,16 +197,24 @@ public class OwsHttpClientImpl implements OwsHttpClient {
             entity.setContentType( contentType );
             httpPost.setEntity( entity );
             HttpResponse httpResponse = httpClient.execute( httpPost );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), endPoint.toString() );
+            response = new OwsHttpResponseImpl( httpResponse, httpPost, endPoint.toString() );
         } catch ( Throwable e ) {
             String msg = "Error performing POST request on '" + endPoint + "': " + e.getMessage();
-            throw new IOException( msg );
+            throw new IOException( msg, e );
         }
         return response;
     }
 
+    private void setHeaders( HttpRequestBase request, Map<String, String> headers ) {
+        if ( headers != null ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                request.addHeader( header.getKey(), header.getValue() );
+            }
+        }
+    }
+
     private DefaultHttpClient getInitializedHttpClient( URL url ) {
-        DefaultHttpClient client = new DefaultHttpClient();
+        DefaultHttpClient client = createHttpClient();
         setTimeouts( client );
         setProxies( url, client );
         setCredentials( url, client );
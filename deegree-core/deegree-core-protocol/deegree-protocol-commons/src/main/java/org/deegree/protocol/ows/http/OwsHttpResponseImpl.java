@@ -40,9 +40,11 @@ import static org.deegree.commons.xml.stax.XMLStreamUtils.skipStartDocument;
 import static org.deegree.protocol.ows.exception.OWSExceptionReader.isExceptionReport;
 import static org.deegree.protocol.ows.exception.OWSExceptionReader.parseExceptionReport;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -52,7 +54,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.slf4j.Logger;
@@ -62,6 +64,9 @@ import org.slf4j.LoggerFactory;
  * Encapsulates an HTTP response from an OGC web service.
  * <p>
  * NOTE: The receiver <b>must</b> call {@link #close()} eventually, otherwise the HTTP connection will not be freed.
+ * If the response has been read completely (or only a few bytes are left, e.g. after the end marker of an image), the
+ * connection is returned to the pool for reuse. Otherwise, the request is aborted, so the remainder of a possibly large
+ * response does not have to be downloaded.
  * </p>
  * 
  * @version $Revision$, $Date$
@@ -72,33 +77,54 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     private static final XMLInputFactory xmlFac = XMLInputFactory.newInstance();
 
+    // maximum number of unread bytes that are skipped on close in order to keep the connection
+    static final int MAX_DRAIN_BYTES = 8 * 1024;
+
     private final HttpResponse httpResponse;
 
-    private final ClientConnectionManager connManager;
+    private final HttpUriRequest request;
 
     private final String url;
 
-    private final InputStream is;
+    private final ResponseStream is;
+
+    private final long contentLength;
+
+    private Future<?> abortTask;
+
+    private boolean closed;
 
     /**
      * Creates a new {@link OwsHttpResponseImpl} instance.
      * 
      * @param httpResponse
-     * @param httpClient
+     * @param request
+     *            request that has been answered by the response, used to abort it, must not be <code>null</code>
      * @param url
      * @throws IllegalStateException
      * @throws IOException
      */
-    OwsHttpResponseImpl( HttpResponse httpResponse, ClientConnectionManager connManager, String url )
+    OwsHttpResponseImpl( HttpResponse httpResponse, HttpUriRequest request, String url )
                             throws IllegalStateException, IOException {
         this.httpResponse = httpResponse;
-        this.connManager = connManager;
+        this.request = request;
         this.url = url;
         HttpEntity entity = httpResponse.getEntity();
         if ( entity == null ) {
             // TODO exception
         }
-        is = entity.getContent();
+        is = new ResponseStream( entity.getContent() );
+        contentLength = entity.getContentLength();
+    }
+
+    /**
+     * Sets the task that aborts the request at its deadline, it is cancelled when the response is closed.
+     * 
+     * @param abortTask
+     *            task, may be <code>null</code> (no deadline)
+     */
+    void setAbortTask( Future<?> abortTask ) {
+        this.abortTask = abortTask;
     }
 
     @Override
@@ -175,7 +201,106 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
     }
 
     @Override
-    public void close() {
-        connManager.shutdown();
+    public synchronized void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        if ( abortTask != null ) {
+            abortTask.cancel( false );
+        }
+        if ( !is.eof && !drain() ) {
+            // closing the stream would download the remainder of the response in order to reuse the connection
+            LOG.debug( "Response of '" + url + "' has not been read completely, aborting request." );
+            request.abort();
+            return;
+        }
+        // returns the (pooled) connection for reuse
+        try {
+            is.closeContent();
+        } catch ( IOException e ) {
+            LOG.debug( "Error closing response stream of '" + url + "': " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Skips the rest of the response, if it is small.
+     * 
+     * @return <code>true</code>, if the response has been read completely, <code>false</code> otherwise
+     */
+    private boolean drain() {
+        if ( contentLength >= 0 && contentLength - is.bytesRead > MAX_DRAIN_BYTES ) {
+            return false;
+        }
+        byte[] buffer = new byte[1024];
+        try {
+            long drained = 0;
+            while ( drained <= MAX_DRAIN_BYTES ) {
+                int n = is.read( buffer, 0, buffer.length );
+                if ( n == -1 ) {
+                    return true;
+                }
+                drained += n;
+            }
+        } catch ( IOException e ) {
+            LOG.debug( "Error draining response stream of '" + url + "': " + e.getMessage() );
+        }
+        return false;
+    }
+
+    /**
+     * Keeps track of whether the response has been read completely. Closing the stream closes the response.
+     */
+    private class ResponseStream extends FilterInputStream {
+
+        private volatile boolean eof;
+
+        private long bytesRead;
+
+        private ResponseStream( InputStream in ) {
+            super( in );
+        }
+
+        @Override
+        public int read()
+                                throws IOException {
+            int b = super.read();
+            if ( b == -1 ) {
+                eof = true;
+            } else {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+                                throws IOException {
+            int n = super.read( b, off, len );
+            if ( n == -1 ) {
+                eof = true;
+            } else {
+                bytesRead += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( long n )
+                                throws IOException {
+            long skipped = super.skip( n );
+            bytesRead += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            OwsHttpResponseImpl.this.close();
+        }
+
+        private void closeContent()
+                                throws IOException {
+            super.close();
+        }
     }
 }
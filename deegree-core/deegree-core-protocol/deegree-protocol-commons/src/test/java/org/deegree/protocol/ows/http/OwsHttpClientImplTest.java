@@ -0,0 +1,167 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.protocol.ows.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.net.HttpConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OwsHttpClientImpl} against a local HTTP server.
+ */
+public class OwsHttpClientImplTest {
+
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private ServerSocket server;
+
+    private volatile int bodySize;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        server = new ServerSocket( 0 );
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while ( true ) {
+                        Socket socket = server.accept();
+                        accepted.incrementAndGet();
+                        serve( socket );
+                    }
+                } catch ( IOException e ) {
+                    // server socket closed
+                }
+            }
+        };
+        acceptor.setDaemon( true );
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        server.close();
+        new HttpConnectionPool().destroy( null );
+    }
+
+    @Test
+    public void testConnectionReusedAfterPartialRead()
+                            throws Exception {
+        // e.g. an image that is read up to its end marker only
+        bodySize = OwsHttpResponseImpl.MAX_DRAIN_BYTES / 2;
+        for ( int i = 0; i < 3; i++ ) {
+            readAndClose( 100 );
+        }
+        assertEquals( 1, accepted.get() );
+    }
+
+    @Test
+    public void testLargeUnreadResponseAborted()
+                            throws Exception {
+        bodySize = 1024 * 1024;
+        readAndClose( 100 );
+        readAndClose( 100 );
+        assertEquals( 2, accepted.get() );
+    }
+
+    private void readAndClose( int bytes )
+                            throws Exception {
+        OwsHttpClient client = new OwsHttpClientImpl();
+        OwsHttpResponse response = client.doGet( new URL( "http://localhost:" + server.getLocalPort() + "/" ), null,
+                                                 null );
+        InputStream is = response.getAsBinaryStream();
+        try {
+            for ( int i = 0; i < bytes; i++ ) {
+                assertEquals( 'x', is.read() );
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private void serve( final Socket socket ) {
+        Thread handler = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStreamReader reader = new InputStreamReader( socket.getInputStream(), "US-ASCII" );
+                    BufferedReader in = new BufferedReader( reader );
+                    OutputStream out = socket.getOutputStream();
+                    String line;
+                    while ( ( line = in.readLine() ) != null ) {
+                        if ( line.isEmpty() ) {
+                            int size = bodySize;
+                            String header = "HTTP/1.1 200 OK\r\nContent-Type: image/png\r\nContent-Length: " + size
+                                            + "\r\n\r\n";
+                            out.write( header.getBytes( "US-ASCII" ) );
+                            byte[] body = new byte[size];
+                            Arrays.fill( body, (byte) 'x' );
+                            out.write( body );
+                            out.flush();
+                        }
+                    }
+                } catch ( IOException e ) {
+                    // connection closed
+                } finally {
+                    try {
+                        socket.close();
+                    } catch ( IOException e ) {
+                        // ignore
+                    }
+                }
+            }
+        };
+        handler.setDaemon( true );
+        handler.start();
+    }
+
+}
@@ -39,8 +39,6 @@ package org.deegree.protocol.wms.client;
 import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
 import static java.lang.Math.abs;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
-import static org.deegree.commons.proxy.ProxySettings.getHttpProxyPassword;
-import static org.deegree.commons.proxy.ProxySettings.getHttpProxyUser;
 import static org.deegree.commons.utils.ArrayUtils.join;
 import static org.deegree.commons.utils.kvp.KVPUtils.toQueryString;
 import static org.deegree.commons.utils.math.MathUtils.round;
@@ -60,12 +58,12 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -79,9 +77,10 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.deegree.commons.concurrent.Executor;
 import org.deegree.commons.ows.exception.OWSException;
-import org.deegree.commons.proxy.ProxySettings;
 import org.deegree.commons.struct.Tree;
 import org.deegree.commons.tom.ows.Version;
 import org.deegree.commons.utils.Pair;
@@ -295,6 +294,32 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
         return getMap( getMap, hardParameters, timeout, false );
     }
 
+    /**
+     * Performs a GetMap request that is aborted when the deadline has passed. In contrast to a timeout, no thread is
+     * left blocked by a remote WMS that does not respond in time.
+     * 
+     * @param hardParameters
+     *            parameters to override in the request, may be null
+     * @param deadline
+     *            time (in milliseconds since the epoch) after which the request is aborted
+     * @throws IOException
+     */
+    public Pair<BufferedImage, String> getMapUntil( GetMap getMap, Map<String, String> hardParameters, long deadline )
+                            throws IOException {
+        if ( VERSION_111.equals( wmsVersion ) ) {
+            Worker worker = new Worker( getMap.getLayers(), getMap.getStyles(), getMap.getWidth(), getMap.getHeight(),
+                                        getMap.getBoundingBox(), getMap.getCoordinateSystem(), getMap.getFormat(),
+                                        getMap.getTransparent(), false, false, null, hardParameters );
+            worker.deadline = deadline;
+            try {
+                return worker.call();
+            } catch ( Throwable e ) {
+                throw new IOException( e.getMessage(), e );
+            }
+        }
+        throw new IllegalArgumentException( "GetMap request for other versions than 1.1.1 are not supported yet." );
+    }
+
     /**
      * @param hardParameters
      *            parameters to override in the request, may be null
@@ -447,6 +472,9 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
 
         private final Map<String, String> hardParameters;
 
+        // time after which the HTTP request is aborted, -1 for none
+        private long deadline = -1;
+
         Worker( List<LayerRef> layers, List<StyleRef> styles, int width, int height, Envelope bbox, ICRS srs,
                 String format, boolean transparent, boolean errorsInImage, boolean validate,
                 List<String> validationErrors, Map<String, String> hardParameters ) {
@@ -563,29 +591,28 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
 
                 URL theUrl = new URL( url );
                 LOG.debug( "Connecting to URL " + theUrl );
-                URLConnection conn = ProxySettings.openURLConnection( theUrl, ProxySettings.getHttpProxyUser( true ),
-                                                                      ProxySettings.getHttpProxyPassword( true ),
-                                                                      httpBasicUser, httpBasicPass );
-                conn.setConnectTimeout( connectionTimeout * 1000 );
-                conn.setReadTimeout( requestTimeout * 1000 );
-                conn.connect();
-                LOG.debug( "Connected." );
-                if ( LOG.isTraceEnabled() ) {
-                    LOG.trace( "Requesting from " + theUrl );
-                    LOG.trace( "Content type is " + conn.getContentType() );
-                    LOG.trace( "Content encoding is " + conn.getContentEncoding() );
-                }
-                if ( conn.getContentType() != null && conn.getContentType().startsWith( format ) ) {
-                    res.first = IMAGE.work( conn.getInputStream() );
-                } else if ( conn.getContentType() != null
-                            && conn.getContentType().startsWith( "application/vnd.ogc.se_xml" ) ) {
-                    res.second = XmlHttpUtils.XML.work( conn.getInputStream() ).toString();
-                } else { // try and find out the hard way
-                    res.first = IMAGE.work( conn.getInputStream() );
-                    if ( res.first == null ) {
-                        conn = theUrl.openConnection();
-                        res.second = XmlHttpUtils.XML.work( conn.getInputStream() ).toString();
+                OwsHttpResponse response = httpClient.doGet( theUrl, null, null, deadline );
+                try {
+                    LOG.debug( "Connected." );
+                    String contentType = getContentType( response );
+                    if ( LOG.isTraceEnabled() ) {
+                        LOG.trace( "Requesting from " + theUrl );
+                        LOG.trace( "Content type is " + contentType );
+                    }
+                    InputStream is = response.getAsBinaryStream();
+                    if ( contentType != null && contentType.startsWith( format ) ) {
+                        res.first = IMAGE.work( is );
+                    } else if ( contentType != null && contentType.startsWith( "application/vnd.ogc.se_xml" ) ) {
+                        res.second = XmlHttpUtils.XML.work( is ).toString();
+                    } else { // try and find out the hard way
+                        byte[] bytes = IOUtils.toByteArray( is );
+                        res.first = IMAGE.work( new ByteArrayInputStream( bytes ) );
+                        if ( res.first == null ) {
+                            res.second = XmlHttpUtils.XML.work( new ByteArrayInputStream( bytes ) ).toString();
+                        }
                     }
+                } finally {
+                    closeQuietly( response );
                 }
 
                 // hack to ensure correct raster transformations. 4byte_abgr seems to be working best with current api
@@ -775,26 +802,29 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
 
         URL theUrl = new URL( query );
         LOG.debug( "Connecting to URL " + theUrl );
-        URLConnection conn = ProxySettings.openURLConnection( theUrl, getHttpProxyUser( true ),
-                                                              getHttpProxyPassword( true ), httpBasicUser,
-                                                              httpBasicPass );
-        conn.setConnectTimeout( connectionTimeout * 1000 );
-        conn.setReadTimeout( requestTimeout * 1000 );
-        conn.connect();
+        OwsHttpResponse response = httpClient.doGet( theUrl, null, null );
         LOG.debug( "Connected." );
 
-        String fld = conn.getHeaderField( "Content-Type" );
+        String fld = getContentType( response );
         if ( fld != null && !( fld.startsWith( getMap.getFormat() ) || fld.startsWith( "image" ) ) ) {
             XMLInputFactory fac = XMLInputFactory.newInstance();
             try {
-                OWSExceptionReport rep = OWSExceptionReader.parseExceptionReport( fac.createXMLStreamReader( conn.getInputStream() ) );
+                OWSExceptionReport rep = OWSExceptionReader.parseExceptionReport( fac.createXMLStreamReader( response.getAsBinaryStream() ) );
                 throw rep.getExceptions().get( 0 );
             } catch ( Throwable e ) {
                 throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+            } finally {
+                closeQuietly( response );
             }
         }
 
-        return conn.getInputStream();
+        // closing the stream releases the connection
+        return response.getAsBinaryStream();
+    }
+
+    private static String getContentType( OwsHttpResponse response ) {
+        Header header = response.getAsHttpResponse().getFirstHeader( "Content-Type" );
+        return header == null ? null : header.getValue();
     }
 
     private boolean axisFlipped( ICRS crs ) {
@@ -0,0 +1,172 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+/**
+ * Removes vertices that do not contribute to the rendered result from screen coordinate sequences.
+ * <p>
+ * Coordinates are passed as packed <code>double</code> arrays (x0, y0, x1, y1, ...) in pixel units. The arrays are
+ * modified in place, the methods return the number of remaining points. The first and the last point of a sequence
+ * are always kept.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class GeometryGeneralizer {
+
+    private GeometryGeneralizer() {
+        // only static methods
+    }
+
+    /**
+     * Drops every point that lies within the given distance of the previously kept point.
+     * 
+     * @param coords
+     *            packed screen coordinates, modified in place
+     * @param numPoints
+     *            number of points in coords
+     * @param tolerance
+     *            minimum distance between two kept points, in pixels
+     * @return the number of remaining points
+     */
+    static int filterNearPoints( double[] coords, int numPoints, double tolerance ) {
+        if ( numPoints < 3 ) {
+            return numPoints;
+        }
+        double tol2 = tolerance * tolerance;
+        int last = numPoints - 1;
+        int kept = 1;
+        double x = coords[0], y = coords[1];
+        for ( int i = 1; i < last; ++i ) {
+            double dx = coords[2 * i] - x;
+            double dy = coords[2 * i + 1] - y;
+            if ( dx * dx + dy * dy >= tol2 ) {
+                x = coords[2 * i];
+                y = coords[2 * i + 1];
+                coords[2 * kept] = x;
+                coords[2 * kept + 1] = y;
+                ++kept;
+            }
+        }
+        coords[2 * kept] = coords[2 * last];
+        coords[2 * kept + 1] = coords[2 * last + 1];
+        return kept + 1;
+    }
+
+    /**
+     * Simplifies the sequence with the Douglas-Peucker algorithm (iterative, no recursion).
+     * 
+     * @param coords
+     *            packed screen coordinates, modified in place
+     * @param numPoints
+     *            number of points in coords
+     * @param tolerance
+     *            maximum distance of a dropped point to the simplified line, in pixels
+     * @return the number of remaining points
+     */
+    static int douglasPeucker( double[] coords, int numPoints, double tolerance ) {
+        if ( numPoints < 3 ) {
+            return numPoints;
+        }
+        double tol2 = tolerance * tolerance;
+        boolean[] keep = new boolean[numPoints];
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+
+        // pairs of start/end indices of the sections that still need to be examined
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = numPoints - 1;
+        while ( top > 0 ) {
+            int end = stack[--top];
+            int start = stack[--top];
+            double maxDist = -1;
+            int maxIndex = -1;
+            for ( int i = start + 1; i < end; ++i ) {
+                double d = segmentDistanceSquared( coords, i, start, end );
+                if ( d > maxDist ) {
+                    maxDist = d;
+                    maxIndex = i;
+                }
+            }
+            if ( maxIndex != -1 && maxDist > tol2 ) {
+                keep[maxIndex] = true;
+                if ( top + 4 > stack.length ) {
+                    int[] newStack = new int[stack.length * 2];
+                    System.arraycopy( stack, 0, newStack, 0, top );
+                    stack = newStack;
+                }
+                stack[top++] = start;
+                stack[top++] = maxIndex;
+                stack[top++] = maxIndex;
+                stack[top++] = end;
+            }
+        }
+
+        int kept = 0;
+        for ( int i = 0; i < numPoints; ++i ) {
+            if ( keep[i] ) {
+                coords[2 * kept] = coords[2 * i];
+                coords[2 * kept + 1] = coords[2 * i + 1];
+                ++kept;
+            }
+        }
+        return kept;
+    }
+
+    private static double segmentDistanceSquared( double[] coords, int point, int start, int end ) {
+        double px = coords[2 * point], py = coords[2 * point + 1];
+        double ax = coords[2 * start], ay = coords[2 * start + 1];
+        double bx = coords[2 * end], by = coords[2 * end + 1];
+        double dx = bx - ax, dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = 0;
+        if ( len2 > 0 ) {
+            t = ( ( px - ax ) * dx + ( py - ay ) * dy ) / len2;
+            t = t < 0 ? 0 : ( t > 1 ? 1 : t );
+        }
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+}
@@ -41,7 +41,11 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.rendering.r2d;
 
+import static java.lang.Math.abs;
+import static java.lang.Math.floor;
 import static org.deegree.commons.utils.math.MathUtils.isZero;
+import static org.deegree.rendering.r2d.GeometryGeneralizer.douglasPeucker;
+import static org.deegree.rendering.r2d.GeometryGeneralizer.filterNearPoints;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.geom.AffineTransform;
@@ -78,8 +82,13 @@ class GeometryHelper {
 
     private GeometryTransformer transformer;
 
+    // distance in pixels below which vertices are dropped when generalizing
+    private static final double GENERALIZATION_TOLERANCE = 0.5;
+
     private AffineTransform worldToScreen;
 
+    private boolean generalize;
+
     GeometryHelper( Envelope bbox, int width, AffineTransform worldToScreen ) {
         this.worldToScreen = worldToScreen;
         try {
@@ -92,6 +101,53 @@ class GeometryHelper {
         }
     }
 
+    /**
+     * @param generalize
+     *            true, if vertices that do not contribute to the rendered result should be dropped
+     */
+    void setGeneralization( boolean generalize ) {
+        this.generalize = generalize;
+    }
+
+    /**
+     * @return true, if generalization is enabled
+     */
+    boolean isGeneralization() {
+        return generalize;
+    }
+
+    /**
+     * @param geom
+     *            a geometry in the world crs, never <code>null</code>
+     * @return true, if the envelope of the geometry is smaller than one pixel in both dimensions
+     */
+    boolean isBelowPixelSize( Geometry geom ) {
+        Envelope env = geom.getEnvelope();
+        return env.getSpan0() * abs( worldToScreen.getScaleX() ) < 1
+               && env.getSpan1() * abs( worldToScreen.getScaleY() ) < 1;
+    }
+
+    /**
+     * @param geom
+     *            a geometry in the world crs, never <code>null</code>
+     * @return a closed path around the pixel that contains the center of the geometry's envelope, in screen
+     *         coordinates
+     */
+    Double toPixel( Geometry geom ) {
+        Envelope env = geom.getEnvelope();
+        double[] center = new double[] { env.getMin().get0() + env.getSpan0() / 2,
+                                        env.getMin().get1() + env.getSpan1() / 2 };
+        worldToScreen.transform( center, 0, center, 0, 1 );
+        double x = floor( center[0] ), y = floor( center[1] );
+        Double pixel = new Double( Double.WIND_NON_ZERO, 5 );
+        pixel.moveTo( x, y );
+        pixel.lineTo( x + 1, y );
+        pixel.lineTo( x + 1, y + 1 );
+        pixel.lineTo( x, y + 1 );
+        pixel.closePath();
+        return pixel;
+    }
+
     Double fromCurve( Curve curve, boolean close ) {
         Double line = new Double();
 
@@ -100,6 +156,9 @@ class GeometryHelper {
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
+        if ( generalize ) {
+            return fromPointsGeneralized( points, close );
+        }
         Iterator<Point> iter = points.iterator();
         Point p = iter.next();
         double x = p.get0(), y = p.get1();
@@ -122,6 +181,35 @@ class GeometryHelper {
         return line;
     }
 
+    private Double fromPointsGeneralized( Points points, boolean close ) {
+        int numPoints = points.size();
+        double[] coords = new double[numPoints * 2];
+        int i = 0;
+        for ( Point p : points ) {
+            coords[i++] = p.get0();
+            coords[i++] = p.get1();
+        }
+        worldToScreen.transform( coords, 0, coords, 0, numPoints );
+
+        numPoints = filterNearPoints( coords, numPoints, GENERALIZATION_TOLERANCE );
+        numPoints = douglasPeucker( coords, numPoints, GENERALIZATION_TOLERANCE );
+
+        Double line = new Double( Double.WIND_NON_ZERO, numPoints + 1 );
+        line.moveTo( coords[0], coords[1] );
+        int last = numPoints - 1;
+        for ( i = 1; i < last; ++i ) {
+            line.lineTo( coords[2 * i], coords[2 * i + 1] );
+        }
+        if ( last > 0 ) {
+            if ( close && isZero( coords[0] - coords[2 * last] ) && isZero( coords[1] - coords[2 * last + 1] ) ) {
+                line.closePath();
+            } else {
+                line.lineTo( coords[2 * last], coords[2 * last + 1] );
+            }
+        }
+        return line;
+    }
+
     <T extends Geometry> T transform( T g ) {
         if ( g == null ) {
             LOG.warn( "Trying to transform null geometry." );
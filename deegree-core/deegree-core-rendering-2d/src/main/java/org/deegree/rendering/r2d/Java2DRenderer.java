@@ -135,6 +135,16 @@ public class Java2DRenderer implements Renderer {
         initRenderers( null );
     }
 
+    /**
+     * @param generalize
+     *            true, if vertices and features smaller than a pixel should be dropped or collapsed before rendering
+     */
+    public void setGeneralization( boolean generalize ) {
+        if ( rendererContext.geomHelper != null ) {
+            rendererContext.geomHelper.setGeneralization( generalize );
+        }
+    }
+
     private void initRenderers( Envelope bbox ) {
         rendererContext = new RendererContext( pixelSize, res, graphics, this, bbox, width, worldToScreen );
     }
@@ -186,7 +196,13 @@ public class Java2DRenderer implements Renderer {
             renderGeometry = rendererContext.geomHelper.transform( geom );
         }
         if ( renderGeometry instanceof Curve ) {
-            final Double line = rendererContext.geomHelper.fromCurve( (Curve) renderGeometry, false );
+            final GeometryHelper geomHelper = rendererContext.geomHelper;
+            final Double line;
+            if ( geomHelper.isGeneralization() && geomHelper.isBelowPixelSize( renderGeometry ) ) {
+                line = geomHelper.toPixel( renderGeometry );
+            } else {
+                line = geomHelper.fromCurve( (Curve) renderGeometry, false );
+            }
             rendererContext.strokeRenderer.applyStroke( styling.stroke, styling.uom, line, styling.perpendicularOffset,
                                                         styling.perpendicularOffsetType );
         } else if ( renderGeometry instanceof Surface ) {
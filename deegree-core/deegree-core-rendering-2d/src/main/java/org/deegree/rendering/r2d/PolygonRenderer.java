@@ -86,6 +86,10 @@ class PolygonRenderer {
     }
 
     void render( PolygonStyling styling, Surface surface ) {
+        if ( geomHelper.isGeneralization() && geomHelper.isBelowPixelSize( surface ) ) {
+            renderPixel( styling, geomHelper.toPixel( surface ) );
+            return;
+        }
         for ( SurfacePatch patch : surface.getPatches() ) {
             if ( patch instanceof PolygonPatch ) {
                 LinkedList<Double> lines = new LinkedList<Double>();
@@ -94,7 +98,13 @@ class PolygonRenderer {
                 // just appending the holes appears to work, the Java2D rendering mechanism can determine that they lie
                 // inside and thus no substraction etc. is needed. This speeds up things SIGNIFICANTLY
                 GeneralPath polygon = new GeneralPath( WIND_EVEN_ODD );
+                boolean exterior = true;
                 for ( Curve curve : polygonPatch.getBoundaryRings() ) {
+                    if ( !exterior && geomHelper.isGeneralization() && geomHelper.isBelowPixelSize( curve ) ) {
+                        // invisible hole
+                        continue;
+                    }
+                    exterior = false;
                     Double d = geomHelper.fromCurve( curve, true );
                     lines.add( d );
                     polygon.append( d, false );
@@ -112,6 +122,12 @@ class PolygonRenderer {
         }
     }
 
+    private void renderPixel( PolygonStyling styling, Double pixel ) {
+        fillRenderer.applyFill( styling.fill, styling.uom );
+        graphics.fill( pixel );
+        strokeRenderer.applyStroke( styling.stroke, styling.uom, pixel, 0, null );
+    }
+
     void render( PointStyling styling, Surface surface ) {
         for ( SurfacePatch patch : surface.getPatches() ) {
             if ( patch instanceof PolygonPatch ) {
@@ -54,6 +54,8 @@ public class MapOptions {
 
     private boolean opaque;
 
+    private Boolean generalization;
+
     public MapOptions( Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
                        int featureInfoRadius ) {
         this( quality, interpol, antialias, maxFeatures, featureInfoRadius, false );
@@ -159,6 +161,21 @@ public class MapOptions {
         this.opaque = opaque;
     }
 
+    /**
+     * @return true, if geometries are generalized to the pixel size before rendering, null if not set
+     */
+    public Boolean getGeneralization() {
+        return generalization;
+    }
+
+    /**
+     * @param generalization
+     *            true, if geometries are to be generalized to the pixel size before rendering, null if not set
+     */
+    public void setGeneralization( Boolean generalization ) {
+        this.generalization = generalization;
+    }
+
     /**
      * <code>Quality</code>
      * 
@@ -108,6 +108,11 @@ public class MapOptionsMaps {
         return opts == null ? null : opts.getInterpolation();
     }
 
+    public Boolean getGeneralization( String layer ) {
+        MapOptions opts = options.get( layer );
+        return opts == null ? null : opts.getGeneralization();
+    }
+
     public void setMaxFeatures( String layer, int maxFeatures ) {
         if ( options.get( layer ) == null ) {
             options.put( layer, new MapOptions( null, null, null, maxFeatures, -1 ) );
@@ -148,9 +153,21 @@ public class MapOptionsMaps {
         }
     }
 
+    public void setGeneralization( String layer, Boolean generalization ) {
+        if ( options.get( layer ) == null ) {
+            MapOptions opts = new MapOptions( null, null, null, -1, -1 );
+            opts.setGeneralization( generalization );
+            options.put( layer, opts );
+        } else {
+            options.get( layer ).setGeneralization( generalization );
+        }
+    }
+
     public MapOptions get( String layer ) {
-        return new MapOptions( getQuality( layer ), getInterpolation( layer ), getAntialias( layer ),
-                               getMaxFeatures( layer ), getFeatureInfoRadius( layer ) );
+        MapOptions opts = new MapOptions( getQuality( layer ), getInterpolation( layer ), getAntialias( layer ),
+                                          getMaxFeatures( layer ), getFeatureInfoRadius( layer ) );
+        opts.setGeneralization( getGeneralization( layer ) );
+        return opts;
     }
 
 }
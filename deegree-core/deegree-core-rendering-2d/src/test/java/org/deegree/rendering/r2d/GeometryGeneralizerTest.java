@@ -0,0 +1,113 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.rendering.r2d.GeometryGeneralizer.douglasPeucker;
+import static org.deegree.rendering.r2d.GeometryGeneralizer.filterNearPoints;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link GeometryGeneralizer}.
+ * 
+ * @since 3.4
+ */
+public class GeometryGeneralizerTest {
+
+    private static final double DELTA = 1E-9;
+
+    @Test
+    public void filterNearPointsKeepsDistantPoints() {
+        double[] coords = { 0, 0, 10, 0, 10, 10, 0, 10 };
+        assertEquals( 4, filterNearPoints( coords, 4, 0.5 ) );
+    }
+
+    @Test
+    public void filterNearPointsDropsSubPixelPoints() {
+        double[] coords = { 0, 0, 0.1, 0.1, 0.2, 0.1, 5, 5, 5.3, 5, 5.4, 5 };
+        int numPoints = filterNearPoints( coords, 6, 0.5 );
+        assertEquals( 3, numPoints );
+        assertEquals( 5, coords[2], DELTA );
+        assertEquals( 5.4, coords[4], DELTA );
+    }
+
+    @Test
+    public void filterNearPointsKeepsEndPoints() {
+        double[] coords = { 0, 0, 0.1, 0, 0.2, 0 };
+        int numPoints = filterNearPoints( coords, 3, 0.5 );
+        assertEquals( 2, numPoints );
+        assertEquals( 0, coords[0], DELTA );
+        assertEquals( 0.2, coords[2], DELTA );
+    }
+
+    @Test
+    public void douglasPeuckerDropsCollinearPoints() {
+        double[] coords = { 0, 0, 1, 0.1, 2, -0.1, 3, 0, 4, 0 };
+        int numPoints = douglasPeucker( coords, 5, 0.5 );
+        assertEquals( 2, numPoints );
+        assertEquals( 4, coords[2], DELTA );
+    }
+
+    @Test
+    public void douglasPeuckerKeepsCorners() {
+        double[] coords = { 0, 0, 5, 0.2, 10, 0, 10, 10, 0, 10, 0, 0 };
+        int numPoints = douglasPeucker( coords, 6, 0.5 );
+        assertEquals( 5, numPoints );
+        assertEquals( 10, coords[2], DELTA );
+        assertEquals( 0, coords[3], DELTA );
+        assertEquals( 0, coords[8], DELTA );
+        assertEquals( 0, coords[9], DELTA );
+    }
+
+    @Test
+    public void douglasPeuckerLongSequence() {
+        int n = 100000;
+        double[] coords = new double[2 * n];
+        for ( int i = 0; i < n; ++i ) {
+            coords[2 * i] = i * 0.01;
+            coords[2 * i + 1] = Math.sin( i * 0.01 ) * 100;
+        }
+        int numPoints = douglasPeucker( coords, n, 0.5 );
+        assertEquals( true, numPoints > 2 && numPoints < n / 10 );
+    }
+
+}
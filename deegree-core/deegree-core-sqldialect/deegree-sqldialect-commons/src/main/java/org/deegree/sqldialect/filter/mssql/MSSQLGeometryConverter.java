@@ -97,6 +97,12 @@ public class MSSQLGeometryConverter implements GeometryParticleConverter {
         return tableAlias + "." + column + ".ToString()";
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        String reduced = ( tableAlias == null ? "" : ( tableAlias + "." ) ) + column + ".Reduce(" + tolerance + ")";
+        return reduced + ( is2d ? ".STAsBinary()" : ".ToString()" );
+    }
+
     public String getSetSnippet( Geometry particle ) {
         if ( is2d )
             return "geometry::STGeomFromWKB(?, " + srid + ")";
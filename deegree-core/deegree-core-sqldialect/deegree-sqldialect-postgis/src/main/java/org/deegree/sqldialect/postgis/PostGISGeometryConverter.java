@@ -97,6 +97,30 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        String prefix = useLegacyPredicates ? "" : "ST_";
+        String simplify = useLegacyPredicates ? "Simplify" : "ST_SimplifyPreserveTopology";
+        return prefix + "AsEWKB(" + prefix + "SnapToGrid(" + simplify + "(" + getQualifiedColumn( tableAlias ) + ","
+               + tolerance + ")," + tolerance + "))";
+    }
+
+    @Override
+    public String getMinimumExtentCondition( String tableAlias, double minExtent ) {
+        String prefix = useLegacyPredicates ? "" : "ST_";
+        String col = getQualifiedColumn( tableAlias );
+        return "(" + prefix + "Dimension(" + col + ")=0 OR " + prefix + "XMax(" + col + ")-" + prefix + "XMin(" + col
+               + ")>=" + minExtent + " OR " + prefix + "YMax(" + col + ")-" + prefix + "YMin(" + col + ")>="
+               + minExtent + ")";
+    }
+
+    private String getQualifiedColumn( String tableAlias ) {
+        if ( tableAlias != null ) {
+            return tableAlias + "." + column;
+        }
+        return column;
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
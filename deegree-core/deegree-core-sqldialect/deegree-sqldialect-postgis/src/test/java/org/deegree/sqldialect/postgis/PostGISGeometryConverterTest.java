@@ -0,0 +1,86 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SQL snippets of the {@link PostGISGeometryConverter}.
+ * 
+ * @since 3.4
+ */
+public class PostGISGeometryConverterTest {
+
+    @Test
+    public void testSelectSnippet() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "the_geom", null, "4326", false );
+        assertEquals( "ST_AsEWKB(X1.the_geom)", converter.getSelectSnippet( "X1" ) );
+        assertEquals( "ST_AsEWKB(the_geom)", converter.getSelectSnippet( null ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "the_geom", null, "4326", false );
+        assertEquals( "ST_AsEWKB(ST_SnapToGrid(ST_SimplifyPreserveTopology(X1.the_geom,0.5),0.5))",
+                      converter.getSelectSnippet( "X1", 0.5 ) );
+        assertEquals( "ST_AsEWKB(ST_SnapToGrid(ST_SimplifyPreserveTopology(the_geom,2.0),2.0))",
+                      converter.getSelectSnippet( null, 2.0 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippetLegacy() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "the_geom", null, "4326", true );
+        assertEquals( "AsEWKB(SnapToGrid(Simplify(X1.the_geom,0.5),0.5))", converter.getSelectSnippet( "X1", 0.5 ) );
+    }
+
+    @Test
+    public void testMinimumExtentCondition() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "the_geom", null, "4326", false );
+        String expected = "(ST_Dimension(X1.the_geom)=0 OR ST_XMax(X1.the_geom)-ST_XMin(X1.the_geom)>=1.5"
+                          + " OR ST_YMax(X1.the_geom)-ST_YMin(X1.the_geom)>=1.5)";
+        assertEquals( expected, converter.getMinimumExtentCondition( "X1", 1.5 ) );
+    }
+
+    @Test
+    public void testMinimumExtentConditionLegacy() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "the_geom", null, "4326", true );
+        String expected = "(Dimension(the_geom)=0 OR XMax(the_geom)-XMin(the_geom)>=1.5"
+                          + " OR YMax(the_geom)-YMin(the_geom)>=1.5)";
+        assertEquals( expected, converter.getMinimumExtentCondition( null, 1.5 ) );
+    }
+}
@@ -0,0 +1,95 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link Tile} whose encoded image has a known length and can be written to a channel directly, without going through
+ * {@link #getAsStream()} and intermediate buffers.
+ * <p>
+ * File backed implementations should return the file from {@link #getFile()}, so the servlet container can send it
+ * without any copies, and use {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}
+ * otherwise. Note that the latter only avoids copies for file or socket channels, a channel that wraps an output
+ * stream is still written through a transfer buffer.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public interface TransferableTile extends Tile {
+
+    /**
+     * Returns the length of the encoded tile image.
+     * 
+     * @return the number of bytes {@link #transferTo(WritableByteChannel)} will write, or -1 if not known in advance
+     * @throws TileIOException
+     *             if accessing the encoded tile image failed
+     */
+    long getEncodedLength()
+                            throws TileIOException;
+
+    /**
+     * Writes the encoded tile image to the given channel. The channel is not closed.
+     * 
+     * @param target
+     *            channel to write to, must not be <code>null</code>
+     * @return the number of bytes written
+     * @throws TileIOException
+     *             if accessing the encoded tile image failed
+     * @throws IOException
+     *             if writing to the channel failed
+     */
+    long transferTo( WritableByteChannel target )
+                            throws TileIOException, IOException;
+
+    /**
+     * Returns the file that contains exactly the encoded tile image, so the servlet container can send it from the file
+     * system by itself (e.g. Tomcat's sendfile support).
+     * 
+     * @return the file, or <code>null</code> if the tile is not stored in a file of its own
+     */
+    default File getFile() {
+        return null;
+    }
+
+}
@@ -0,0 +1,448 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.genericxml.GenericXMLElement;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.GMLReference;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Surface;
+
+/**
+ * {@link FeatureStoreCache} for concurrent access with LRU eviction, bounded by the number of objects and by their
+ * estimated memory footprint, and with optional expiry.
+ * <p>
+ * The cache is split into independently locked segments (selected by the hash of the object id), so lookups of
+ * different objects rarely contend. Every segment evicts its least recently used objects as soon as it exceeds its
+ * share of the bounds. Hit, miss and eviction counts are available for monitoring.
+ * </p>
+ * 
+ * @see FeatureStore
+ * 
+ * @since 3.4
+ */
+public class ConcurrentFeatureStoreCache implements FeatureStoreCache {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private static final int MAX_NESTING = 16;
+
+    private final Segment[] segments;
+
+    private final int maxEntriesPerSegment;
+
+    private final long maxMemoryPerSegment;
+
+    private final long timeToLiveNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Creates a new {@link ConcurrentFeatureStoreCache} instance.
+     * 
+     * @param maxEntries
+     *            maximum number of cached objects, must be positive
+     * @param maxMemory
+     *            maximum estimated memory footprint of the cached objects in bytes, must be positive
+     * @param timeToLive
+     *            time after which cached objects expire, <code>0</code> for no expiry
+     * @param unit
+     *            unit of <code>timeToLive</code>, must not be <code>null</code>
+     * @throws IllegalArgumentException
+     *             if one of the bounds is not positive or the time to live is negative
+     */
+    public ConcurrentFeatureStoreCache( int maxEntries, long maxMemory, long timeToLive, TimeUnit unit ) {
+        this( maxEntries, maxMemory, timeToLive, unit, DEFAULT_SEGMENTS );
+    }
+
+    ConcurrentFeatureStoreCache( int maxEntries, long maxMemory, long timeToLive, TimeUnit unit, int maxSegments ) {
+        if ( maxEntries < 1 || maxMemory < 1 || timeToLive < 0 ) {
+            String msg = "Invalid feature cache configuration: max entries: " + maxEntries + ", max memory: "
+                         + maxMemory + ", time to live: " + timeToLive;
+            throw new IllegalArgumentException( msg );
+        }
+        int numSegments = 1;
+        while ( numSegments < maxSegments && numSegments * 2 <= maxEntries ) {
+            numSegments *= 2;
+        }
+        segments = new Segment[numSegments];
+        for ( int i = 0; i < numSegments; i++ ) {
+            segments[i] = new Segment();
+        }
+        maxEntriesPerSegment = ( maxEntries + numSegments - 1 ) / numSegments;
+        maxMemoryPerSegment = ( maxMemory + numSegments - 1 ) / numSegments;
+        timeToLiveNanos = unit.toNanos( timeToLive );
+    }
+
+    @Override
+    public GMLObject get( String id ) {
+        Segment segment = getSegment( id );
+        GMLObject obj = null;
+        segment.lock.lock();
+        try {
+            CacheEntry entry = segment.map.get( id );
+            if ( entry != null ) {
+                if ( entry.isExpired( System.nanoTime() ) ) {
+                    segment.remove( id );
+                    expirations.incrementAndGet();
+                } else {
+                    obj = entry.obj;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        if ( obj == null ) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return obj;
+    }
+
+    @Override
+    public void add( GMLObject obj ) {
+        String id = obj.getId();
+        if ( id == null ) {
+            return;
+        }
+        long footprint = estimateFootprint( obj );
+        Segment segment = getSegment( id );
+        if ( footprint > maxMemoryPerSegment ) {
+            // would evict everything else in the segment
+            remove( id );
+            return;
+        }
+        long expires = timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos : 0;
+        segment.lock.lock();
+        try {
+            segment.remove( id );
+            segment.map.put( id, new CacheEntry( obj, footprint, expires ) );
+            segment.memory += footprint;
+            Iterator<CacheEntry> lru = segment.map.values().iterator();
+            while ( segment.map.size() > maxEntriesPerSegment || segment.memory > maxMemoryPerSegment ) {
+                CacheEntry eldest = lru.next();
+                lru.remove();
+                segment.memory -= eldest.footprint;
+                evictions.incrementAndGet();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove( String id ) {
+        Segment segment = getSegment( id );
+        segment.lock.lock();
+        try {
+            segment.remove( id );
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for ( Segment segment : segments ) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+                segment.memory = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached objects.
+     * 
+     * @return number of cached objects
+     */
+    public int size() {
+        int size = 0;
+        for ( Segment segment : segments ) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated memory footprint of the cached objects.
+     * 
+     * @return estimated footprint in bytes
+     */
+    public long getEstimatedMemory() {
+        long memory = 0;
+        for ( Segment segment : segments ) {
+            segment.lock.lock();
+            try {
+                memory += segment.memory;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached object.
+     * 
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a cached object.
+     * 
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of successful lookups.
+     * 
+     * @return hit rate between <code>0</code> and <code>1</code>, <code>0</code> if there have been no lookups yet
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Returns the number of objects that have been evicted to respect the size bounds.
+     * 
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of objects that have been discarded because their time to live has passed.
+     * 
+     * @return number of expirations
+     */
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "objects: " + size() + ", estimated memory: " + ( getEstimatedMemory() / 1024 ) + " KB, hits: "
+               + getHitCount() + ", misses: " + getMissCount() + ", hit rate: " + getHitRate() + ", evictions: "
+               + getEvictionCount() + ", expirations: " + getExpirationCount();
+    }
+
+    private Segment getSegment( String id ) {
+        int h = id.hashCode();
+        h ^= ( h >>> 16 );
+        return segments[h & ( segments.length - 1 )];
+    }
+
+    /**
+     * Returns a rough estimate of the heap memory occupied by the given object, including inline property values.
+     * 
+     * @param obj
+     *            object, must not be <code>null</code>
+     * @return estimated footprint in bytes
+     */
+    static long estimateFootprint( GMLObject obj ) {
+        return estimateObject( obj, 0 );
+    }
+
+    private static long estimateObject( GMLObject obj, int depth ) {
+        if ( obj instanceof Geometry ) {
+            return 64 + 8 * countOrdinates( (Geometry) obj );
+        }
+        long size = 64 + estimateString( obj.getId() );
+        List<Property> props = obj.getProperties();
+        if ( props != null ) {
+            for ( Property prop : props ) {
+                size += 48;
+                if ( prop.getAttributes() != null ) {
+                    size += 64 * prop.getAttributes().size();
+                }
+                List<TypedObjectNode> children = prop.getChildren();
+                if ( children != null ) {
+                    for ( TypedObjectNode child : children ) {
+                        size += estimateNode( child, depth );
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long estimateNode( TypedObjectNode node, int depth ) {
+        if ( node == null ) {
+            return 0;
+        }
+        if ( node instanceof PrimitiveValue ) {
+            return 32 + estimateString( ( (PrimitiveValue) node ).getAsText() );
+        }
+        if ( node instanceof GMLReference<?> ) {
+            // referenced objects are cached on their own
+            return 48;
+        }
+        if ( node instanceof GMLObject ) {
+            return depth < MAX_NESTING ? estimateObject( (GMLObject) node, depth + 1 ) : 64;
+        }
+        if ( node instanceof GenericXMLElement ) {
+            GenericXMLElement el = (GenericXMLElement) node;
+            long size = 48;
+            if ( el.getAttributes() != null ) {
+                size += 64 * el.getAttributes().size();
+            }
+            if ( el.getChildren() != null && depth < MAX_NESTING ) {
+                for ( TypedObjectNode child : el.getChildren() ) {
+                    size += estimateNode( child, depth + 1 );
+                }
+            }
+            return size;
+        }
+        return 32;
+    }
+
+    private static long estimateString( String s ) {
+        return s == null ? 0 : 40 + 2 * s.length();
+    }
+
+    private static long countOrdinates( Geometry geom ) {
+        try {
+            if ( geom instanceof Point ) {
+                return geom.getCoordinateDimension();
+            }
+            if ( geom instanceof Curve ) {
+                return countOrdinates( ( (Curve) geom ).getControlPoints() );
+            }
+            if ( geom instanceof Surface ) {
+                Surface surface = (Surface) geom;
+                long ordinates = countOrdinates( surface.getExteriorRingCoordinates() );
+                List<Points> interiors = surface.getInteriorRingsCoordinates();
+                if ( interiors != null ) {
+                    for ( Points interior : interiors ) {
+                        ordinates += countOrdinates( interior );
+                    }
+                }
+                return ordinates;
+            }
+            if ( geom instanceof MultiGeometry<?> ) {
+                long ordinates = 0;
+                for ( Geometry member : (MultiGeometry<?>) geom ) {
+                    ordinates += 8 + countOrdinates( member );
+                }
+                return ordinates;
+            }
+        } catch ( RuntimeException e ) {
+            // geometry variants without a simple coordinate representation
+        }
+        return 64;
+    }
+
+    private static long countOrdinates( Points points ) {
+        return points == null ? 0 : (long) points.size() * points.getDimension();
+    }
+
+    private static class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // access order = LRU iteration order
+        private final Map<String, CacheEntry> map = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true );
+
+        private long memory;
+
+        private void remove( String id ) {
+            CacheEntry old = map.remove( id );
+            if ( old != null ) {
+                memory -= old.footprint;
+            }
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final GMLObject obj;
+
+        private final long footprint;
+
+        private final long expires;
+
+        private CacheEntry( GMLObject obj, long footprint, long expires ) {
+            this.obj = obj;
+            this.footprint = footprint;
+            this.expires = expires;
+        }
+
+        private boolean isExpired( long now ) {
+            return expires != 0 && now - expires > 0;
+        }
+    }
+}
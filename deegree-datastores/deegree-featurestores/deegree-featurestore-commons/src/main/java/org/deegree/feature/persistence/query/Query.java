@@ -80,7 +80,13 @@ public class Query {
         /** If present, the store can use a different LOD for the scale. */
         HINT_SCALE,
         /** If present, the store can simplify geometries according to the resolution. */
-        HINT_RESOLUTION
+        HINT_RESOLUTION,
+        /**
+         * If present, only the given number of features (Integer) from the start of the result will be used, so the
+         * store can stop early (e.g. only keep the first features when sorting). Unlike the maximum number of features,
+         * this does not affect the number of hits.
+         */
+        HINT_RESULT_LIMIT
     }
 
     private final TypeName[] typeNames;
@@ -190,10 +196,34 @@ public class Query {
         this.projections = emptyList();
     }
 
+    private Query( Query query ) {
+        this.typeNames = query.typeNames;
+        this.filter = query.filter;
+        this.sortBy = query.sortBy;
+        this.maxFeatures = query.maxFeatures;
+        this.hints.putAll( query.hints );
+        this.projections = query.projections;
+    }
+
     public Object getHint( QueryHint code ) {
         return hints.get( code );
     }
 
+    /**
+     * Returns a copy of this query with the given hint. This query is not modified.
+     * 
+     * @param code
+     *            hint to be set, must not be <code>null</code>
+     * @param value
+     *            value of the hint, must not be <code>null</code>
+     * @return copy of this query with the hint, never <code>null</code>
+     */
+    public Query withHint( QueryHint code, Object value ) {
+        Query query = new Query( this );
+        query.hints.put( code, value );
+        return query;
+    }
+
     /**
      * Tries to extract a {@link BBOX} constraint from the query {@link Filter} that can be used as a pre-filtering step
      * to narrow the result set.
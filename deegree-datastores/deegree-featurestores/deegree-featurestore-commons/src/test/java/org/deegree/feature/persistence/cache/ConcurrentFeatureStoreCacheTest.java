@@ -0,0 +1,200 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentFeatureStoreCache}.
+ * 
+ * @since 3.4
+ */
+public class ConcurrentFeatureStoreCacheTest {
+
+    private static final QName NAME = new QName( "http://www.deegree.org/app", "name", "app" );
+
+    private final FeatureType ft = new GenericFeatureType( new QName( "http://www.deegree.org/app", "Parcel", "app" ),
+                                                           Collections.<PropertyType> singletonList( createNamePt() ),
+                                                           false );
+
+    @Test
+    public void testLruEviction() {
+        ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache( 3, Long.MAX_VALUE, 0, SECONDS, 1 );
+        Feature a = createFeature( "A", "a" );
+        Feature b = createFeature( "B", "b" );
+        Feature c = createFeature( "C", "c" );
+        cache.add( a );
+        cache.add( b );
+        cache.add( c );
+        // A becomes the most recently used object, so B is the eldest one
+        assertSame( a, cache.get( "A" ) );
+        cache.add( createFeature( "D", "d" ) );
+
+        assertEquals( 3, cache.size() );
+        assertSame( a, cache.get( "A" ) );
+        assertNull( cache.get( "B" ) );
+        assertSame( c, cache.get( "C" ) );
+        assertEquals( 1, cache.getEvictionCount() );
+    }
+
+    @Test
+    public void testMemoryBound() {
+        Feature a = createFeature( "A", "aaaaaaaaaa" );
+        long footprint = ConcurrentFeatureStoreCache.estimateFootprint( a );
+        ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache( 100, 2 * footprint, 0, SECONDS, 1 );
+        cache.add( a );
+        cache.add( createFeature( "B", "bbbbbbbbbb" ) );
+        cache.add( createFeature( "C", "cccccccccc" ) );
+
+        assertEquals( 2, cache.size() );
+        assertEquals( 2 * footprint, cache.getEstimatedMemory() );
+        assertNull( cache.get( "A" ) );
+
+        // larger than the whole cache: not cached, and removes a stale version
+        cache.add( createFeature( "B", new String( new char[100] ).replace( '\0', 'b' ) ) );
+        assertNull( cache.get( "B" ) );
+        assertEquals( 1, cache.size() );
+        assertEquals( footprint, cache.getEstimatedMemory() );
+    }
+
+    @Test
+    public void testTimeToLive()
+                            throws InterruptedException {
+        ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache( 100, Long.MAX_VALUE, 10, MILLISECONDS );
+        Feature a = createFeature( "A", "a" );
+        cache.add( a );
+        assertSame( a, cache.get( "A" ) );
+
+        Thread.sleep( 50 );
+
+        assertNull( cache.get( "A" ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 1, cache.getExpirationCount() );
+        assertEquals( 0, cache.getEstimatedMemory() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxEntries() {
+        new ConcurrentFeatureStoreCache( -1, Long.MAX_VALUE, 0, SECONDS );
+    }
+
+    @Test
+    public void testConcurrentAddAndGet()
+                            throws Exception {
+        final ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache( 100, Long.MAX_VALUE, 0, SECONDS );
+        final int numThreads = 8;
+        final int numOps = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for ( int t = 0; t < numThreads; t++ ) {
+                final long seed = t;
+                results.add( executor.submit( new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Random random = new Random( seed );
+                        for ( int i = 0; i < numOps; i++ ) {
+                            String id = "F" + random.nextInt( 500 );
+                            GMLObject cached = cache.get( id );
+                            if ( cached == null ) {
+                                cache.add( createFeature( id, id ) );
+                            } else {
+                                assertEquals( id, cached.getId() );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> result : results ) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals( numThreads * numOps, cache.getHitCount() + cache.getMissCount() );
+        // each of the 16 segments holds at most ceil(100 / 16) objects
+        assertTrue( cache.size() <= 112 );
+        long memory = 0;
+        for ( int i = 0; i < 500; i++ ) {
+            GMLObject cached = cache.get( "F" + i );
+            if ( cached != null ) {
+                memory += ConcurrentFeatureStoreCache.estimateFootprint( cached );
+            }
+        }
+        assertEquals( memory, cache.getEstimatedMemory() );
+    }
+
+    private static PropertyType createNamePt() {
+        return new SimplePropertyType( NAME, 0, 1, STRING, null, null );
+    }
+
+    private Feature createFeature( String id, String name ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new GenericProperty( ft.getPropertyDeclaration( NAME ), new PrimitiveValue( name ) ) );
+        return new GenericFeature( ft, id, props, null );
+    }
+}
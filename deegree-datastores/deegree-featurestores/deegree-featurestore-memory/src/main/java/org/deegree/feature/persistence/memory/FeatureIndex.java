@@ -0,0 +1,210 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.deegree.commons.index.PackedRTree;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+
+/**
+ * Spatial index for the features of one type that supports cheap incremental changes.
+ * <p>
+ * Consists of an immutable {@link PackedRTree} plus a delta of features added or removed since the tree has been
+ * built. Queries merge both. Instances are immutable and the delta is kept in {@link PersistentMap}s, so deriving a
+ * changed index shares the tree and costs O(log n) per changed feature. Once the delta grows beyond
+ * {@link #needsRebuild() a fraction of the tree}, the index should be replaced by a freshly
+ * {@link #build(Iterable, int) built} one.
+ * </p>
+ * 
+ * @see StoredFeatures
+ * 
+ * @since 3.4
+ */
+class FeatureIndex {
+
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    private final PackedRTree<Feature> tree;
+
+    private final PersistentMap<Feature, float[]> added;
+
+    private final PersistentMap<Feature, Boolean> removed;
+
+    private FeatureIndex( PackedRTree<Feature> tree, PersistentMap<Feature, float[]> added,
+                          PersistentMap<Feature, Boolean> removed ) {
+        this.tree = tree;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * Builds a new index for the given features.
+     * 
+     * @param features
+     *            features to be indexed, must not be <code>null</code>, features without envelope are skipped
+     * @param size
+     *            number of features
+     * @return new index, never <code>null</code>
+     */
+    static FeatureIndex build( Iterable<Feature> features, int size ) {
+        List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( size );
+        for ( Feature f : features ) {
+            float[] floats = StoredFeatures.toFloats( f.getEnvelope() );
+            if ( floats != null ) {
+                fBboxes.add( new Pair<float[], Feature>( floats, f ) );
+            }
+        }
+        PackedRTree<Feature> tree = null;
+        if ( !fBboxes.isEmpty() ) {
+            tree = new PackedRTree<Feature>( 16 );
+            tree.insertBulk( fBboxes );
+        }
+        return new FeatureIndex( tree, PersistentMap.<Feature, float[]> emptyIdentity(),
+                                 PersistentMap.<Feature, Boolean> emptyIdentity() );
+    }
+
+    /**
+     * Returns an index that additionally contains the given feature. This index is not modified.
+     * 
+     * @param feature
+     *            feature to be added, must not be <code>null</code>
+     * @param box
+     *            envelope of the feature (minx, miny, maxx, maxy), can be <code>null</code> (feature is not indexed)
+     * @return index with the feature, never <code>null</code>
+     */
+    FeatureIndex plus( Feature feature, float[] box ) {
+        if ( box == null ) {
+            return this;
+        }
+        return new FeatureIndex( tree, added.plus( feature, box ), removed );
+    }
+
+    /**
+     * Returns an index without the given feature. This index is not modified.
+     * 
+     * @param feature
+     *            feature to be removed, must not be <code>null</code>
+     * @return index without the feature, never <code>null</code>
+     */
+    FeatureIndex minus( Feature feature ) {
+        PersistentMap<Feature, Boolean> newRemoved = tree != null ? removed.plus( feature, Boolean.TRUE ) : removed;
+        return new FeatureIndex( tree, added.minus( feature ), newRemoved );
+    }
+
+    /**
+     * Returns whether the delta has grown large enough that queries would benefit from rebuilding the index.
+     * 
+     * @return <code>true</code> if the index should be rebuilt, <code>false</code> otherwise
+     */
+    boolean needsRebuild() {
+        int treeSize = tree == null ? 0 : tree.size();
+        return added.size() + removed.size() > Math.max( MIN_REBUILD_THRESHOLD, treeSize / 8 );
+    }
+
+    /**
+     * Returns all features whose envelope intersects the given box. The index is scanned lazily, i.e. only as far as
+     * the returned iterators are consumed.
+     * 
+     * @param box
+     *            query box (minx, miny, maxx, maxy), must not be <code>null</code>
+     * @return matching features, never <code>null</code>
+     */
+    Iterable<Feature> query( final float[] box ) {
+        return new Iterable<Feature>() {
+            @Override
+            public Iterator<Feature> iterator() {
+                return new IndexIterator( box );
+            }
+        };
+    }
+
+    private class IndexIterator implements Iterator<Feature> {
+
+        private final float[] box;
+
+        private final Iterator<Feature> treeIter;
+
+        private final Iterator<Entry<Feature, float[]>> addedIter;
+
+        private Feature next;
+
+        IndexIterator( float[] box ) {
+            this.box = box;
+            this.treeIter = tree != null ? tree.iterator( box ) : Collections.<Feature> emptyIterator();
+            this.addedIter = added.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( next == null && treeIter.hasNext() ) {
+                Feature f = treeIter.next();
+                if ( removed.isEmpty() || !removed.containsKey( f ) ) {
+                    next = f;
+                }
+            }
+            while ( next == null && addedIter.hasNext() ) {
+                Entry<Feature, float[]> e = addedIter.next();
+                float[] fBox = e.getValue();
+                if ( fBox[0] <= box[2] && fBox[1] <= box[3] && fBox[2] >= box[0] && fBox[3] >= box[1] ) {
+                    next = e.getKey();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            Feature f = next;
+            next = null;
+            return f;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+
+/**
+ * Immutable, insertion ordered list of the stored features of one type that shares its structure with the lists it
+ * has been derived from.
+ * <p>
+ * The features are kept in a trie of 32 element arrays indexed by insertion position, removed features leave a gap.
+ * Adding or removing a feature only copies the arrays on the path to its position (plus the nodes of the
+ * {@link PersistentMap} that maps features to positions), so a transaction costs O(log n) per changed feature. The
+ * gaps are squeezed out once they outnumber the features.
+ * </p>
+ * 
+ * @see StoredFeatures
+ * 
+ * @since 3.4
+ */
+final class FeatureList implements Iterable<Feature> {
+
+    private static final int BITS = 5;
+
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    private static final int MIN_COMPACT_THRESHOLD = 1024;
+
+    private static final FeatureList EMPTY = new FeatureList( new Object[WIDTH], 0, 0,
+                                                              PersistentMap.<Feature, Integer> emptyIdentity(), null );
+
+    private final Object[] root;
+
+    private final int shift;
+
+    // number of used positions, including gaps
+    private final int count;
+
+    private final PersistentMap<Feature, Integer> positions;
+
+    private final Envelope envelope;
+
+    private FeatureList( Object[] root, int shift, int count, PersistentMap<Feature, Integer> positions,
+                         Envelope envelope ) {
+        this.root = root;
+        this.shift = shift;
+        this.count = count;
+        this.positions = positions;
+        this.envelope = envelope;
+    }
+
+    /**
+     * @return an empty list, never <code>null</code>
+     */
+    static FeatureList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return number of features
+     */
+    int size() {
+        return positions.size();
+    }
+
+    /**
+     * @param feature
+     *            feature, must not be <code>null</code>
+     * @return <code>true</code>, if the list contains the given feature instance
+     */
+    boolean contains( Feature feature ) {
+        return positions.containsKey( feature );
+    }
+
+    /**
+     * @return the envelope of the features, can be <code>null</code>
+     */
+    Envelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * Returns a list with the given envelope. This list is not modified.
+     * 
+     * @param envelope
+     *            envelope of the features, can be <code>null</code>
+     * @return list with the given envelope, never <code>null</code>
+     */
+    FeatureList withEnvelope( Envelope envelope ) {
+        return new FeatureList( root, shift, count, positions, envelope );
+    }
+
+    /**
+     * Returns a list with the given feature appended. This list is not modified.
+     * 
+     * @param feature
+     *            feature to be added, must not be <code>null</code>
+     * @return list with the feature, this instance if it already contains the feature
+     */
+    FeatureList plus( Feature feature ) {
+        if ( positions.containsKey( feature ) ) {
+            return this;
+        }
+        Object[] newRoot = root;
+        int newShift = shift;
+        if ( count == 1 << ( shift + BITS ) ) {
+            // root is full, add a level
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newShift += BITS;
+        }
+        newRoot = set( newRoot, newShift, count, feature );
+        Envelope fEnv = feature.getEnvelope();
+        Envelope newEnv = fEnv == null ? envelope : ( envelope == null ? fEnv : envelope.merge( fEnv ) );
+        return new FeatureList( newRoot, newShift, count + 1, positions.plus( feature, count ), newEnv );
+    }
+
+    /**
+     * Returns a list without the given feature. This list is not modified. The envelope is kept, as it can only be
+     * recalculated from all features (see {@link #calcEnvelope()}).
+     * 
+     * @param feature
+     *            feature to be removed, must not be <code>null</code>
+     * @return list without the feature, this instance if it doesn't contain the feature
+     */
+    FeatureList minus( Feature feature ) {
+        Integer pos = positions.get( feature );
+        if ( pos == null ) {
+            return this;
+        }
+        PersistentMap<Feature, Integer> newPositions = positions.minus( feature );
+        int gaps = count - newPositions.size();
+        if ( gaps > Math.max( MIN_COMPACT_THRESHOLD, newPositions.size() ) ) {
+            FeatureList compacted = EMPTY;
+            for ( Feature f : this ) {
+                if ( f != feature ) {
+                    compacted = compacted.plus( f );
+                }
+            }
+            return compacted.withEnvelope( envelope );
+        }
+        return new FeatureList( set( root, shift, pos, null ), shift, count, newPositions, envelope );
+    }
+
+    /**
+     * Returns a list with the given feature replaced by another instance at the same position. This list is not
+     * modified. The envelope is kept, as it can only be recalculated from all features (see {@link #calcEnvelope()}).
+     * 
+     * @param feature
+     *            feature to be replaced, must not be <code>null</code>
+     * @param replacement
+     *            feature to replace it with, must not be <code>null</code>
+     * @return list with the replacement, this instance if it doesn't contain the feature
+     */
+    FeatureList replace( Feature feature, Feature replacement ) {
+        Integer pos = positions.get( feature );
+        if ( pos == null ) {
+            return this;
+        }
+        PersistentMap<Feature, Integer> newPositions = positions.minus( feature ).plus( replacement, pos );
+        return new FeatureList( set( root, shift, pos, replacement ), shift, count, newPositions, envelope );
+    }
+
+    /**
+     * Calculates the envelope of the features, this is O(n).
+     * 
+     * @return the envelope of the features, can be <code>null</code>
+     */
+    Envelope calcEnvelope() {
+        Envelope env = null;
+        for ( Feature f : this ) {
+            Envelope fEnv = f.getEnvelope();
+            if ( fEnv != null ) {
+                env = env == null ? fEnv : env.merge( fEnv );
+            }
+        }
+        return env;
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            private int pos;
+
+            private Object[] leaf;
+
+            private Feature next = advance();
+
+            private Feature advance() {
+                while ( pos < count ) {
+                    if ( leaf == null || ( pos & MASK ) == 0 ) {
+                        leaf = leaf( pos );
+                    }
+                    Object o = leaf[pos++ & MASK];
+                    if ( o != null ) {
+                        return (Feature) o;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Feature next() {
+                if ( next == null ) {
+                    throw new NoSuchElementException();
+                }
+                Feature f = next;
+                next = advance();
+                return f;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Object[] leaf( int pos ) {
+        Object[] node = root;
+        for ( int s = shift; s > 0; s -= BITS ) {
+            node = (Object[]) node[( pos >>> s ) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] set( Object[] node, int shift, int pos, Object value ) {
+        Object[] copy = node.clone();
+        if ( shift == 0 ) {
+            copy[pos & MASK] = value;
+        } else {
+            int i = ( pos >>> shift ) & MASK;
+            Object[] child = (Object[]) node[i];
+            copy[i] = set( child == null ? new Object[WIDTH] : child, shift - BITS, pos, value );
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,125 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.stream.FeatureInputStream;
+
+/**
+ * {@link FeatureInputStream} that pulls its features lazily from an {@link Iterable}, optionally limited to a maximum
+ * number of features.
+ * 
+ * @see StoredFeatures#query(org.deegree.feature.persistence.query.Query)
+ * 
+ * @since 3.4
+ */
+class LazyFeatureInputStream implements FeatureInputStream {
+
+    private final Iterable<Feature> features;
+
+    private final int maxFeatures;
+
+    /**
+     * Creates a new {@link LazyFeatureInputStream} instance.
+     * 
+     * @param features
+     *            source of the features, must not be <code>null</code>
+     * @param maxFeatures
+     *            maximum number of features to return, -1 for no limit
+     */
+    LazyFeatureInputStream( Iterable<Feature> features, int maxFeatures ) {
+        this.features = features;
+        this.maxFeatures = maxFeatures;
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        final Iterator<Feature> iter = features.iterator();
+        if ( maxFeatures < 0 ) {
+            return iter;
+        }
+        return new Iterator<Feature>() {
+
+            private int returned;
+
+            @Override
+            public boolean hasNext() {
+                return returned < maxFeatures && iter.hasNext();
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                returned++;
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        Iterator<Feature> iter = iterator();
+        while ( iter.hasNext() ) {
+            iter.next();
+            i++;
+        }
+        close();
+        return i;
+    }
+}
@@ -43,7 +43,6 @@ import javax.xml.namespace.QName;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -54,7 +53,6 @@ import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.types.AppSchema;
-import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.geometry.Envelope;
 import org.deegree.workspace.Resource;
@@ -83,7 +81,8 @@ public class MemoryFeatureStore implements FeatureStore {
 
     private DefaultLockManager lockManager;
 
-    private StoredFeatures storedFeatures;
+    // current version, replaced as a whole on commit so that readers never block
+    private volatile StoredFeatures storedFeatures;
 
     private MemoryFeatureStoreMetadata metadata;
 
@@ -102,7 +101,7 @@ public class MemoryFeatureStore implements FeatureStore {
         this.schema = schema;
         this.storageCRS = storageCRS;
         this.metadata = metadata;
-        this.storedFeatures = new StoredFeatures( schema, storageCRS, null );
+        this.storedFeatures = new StoredFeatures( schema, storageCRS );
         // TODO
         lockManager = new DefaultLockManager( this, lockConnection );
     }
@@ -165,7 +164,7 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public int queryHits( org.deegree.feature.persistence.query.Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return query( query ).toCollection().size();
+        return storedFeatures.queryHits( query );
     }
 
     @Override
@@ -207,7 +206,7 @@ public class MemoryFeatureStore implements FeatureStore {
             }
         }
 
-        StoredFeatures workingCopy = new StoredFeatures( schema, storageCRS, storedFeatures );
+        StoredFeatures workingCopy = storedFeatures.createWorkingCopy();
         this.activeTransaction = new MemoryFeatureStoreTransaction( this, workingCopy, lockManager );
         this.transactionHolder = Thread.currentThread();
         return this.activeTransaction;
@@ -223,9 +222,10 @@ public class MemoryFeatureStore implements FeatureStore {
      * @param ta
      *            the transaction to be released, must not be <code>null</code>
      * @param newFeatures
+     *            working copy to be published as new version, can be <code>null</code> (rollback)
      * @throws FeatureStoreException
      */
-    void releaseTransaction( MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures )
+    synchronized void releaseTransaction( MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures )
                             throws FeatureStoreException {
         if ( ta.getStore() != this ) {
             String msg = Messages.getMessage( "TA_NOT_OWNER" );
@@ -240,7 +240,7 @@ public class MemoryFeatureStore implements FeatureStore {
         }
         this.activeTransaction = null;
         this.transactionHolder = null;
-        // notifyAll();
+        notifyAll();
     }
 
     @Override
@@ -257,15 +257,7 @@ public class MemoryFeatureStore implements FeatureStore {
 
     @Override
     public Envelope calcEnvelope( QName ftName ) {
-        Envelope ftEnv = null;
-        FeatureType ft = schema.getFeatureType( ftName );
-        if ( ft != null ) {
-            FeatureCollection fc = storedFeatures.getFeatures( ft );
-            if ( fc != null ) {
-                ftEnv = fc.getEnvelope();
-            }
-        }
-        return ftEnv;
+        return storedFeatures.getEnvelope( ftName );
     }
 
     @Override
@@ -62,7 +62,6 @@ import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.lock.LockManager;
-import org.deegree.feature.persistence.transaction.FeatureUpdater;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.Filter;
@@ -127,11 +126,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
     @Override
     public void commit()
                             throws FeatureStoreException {
-        try {
-            sf.rebuildIndexes();
-        } catch ( UnknownCRSException e ) {
-            throw new FeatureStoreException( e.getMessage() );
-        }
+        sf.finishChanges();
         fs.releaseTransaction( this, sf );
     }
 
@@ -548,7 +543,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
                 for ( Feature feature : update ) {
                     updatedFids.add( feature.getId() );
-                    new FeatureUpdater().update( feature, replacementProps );
+                    sf.updateFeature( feature, replacementProps );
                     if ( lock != null ) {
                         lock.release( feature.getId() );
                     }
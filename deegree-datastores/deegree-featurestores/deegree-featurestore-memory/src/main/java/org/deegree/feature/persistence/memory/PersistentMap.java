@@ -0,0 +1,426 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash map that shares its structure with the maps it has been derived from.
+ * <p>
+ * Implemented as a hash array mapped trie: {@link #plus(Object, Object)} and {@link #minus(Object)} only copy the nodes
+ * on the path to the changed entry (at most seven nodes of up to 32 entries), so deriving a modified version costs
+ * O(log n) instead of copying the whole map. Keys and values must not be <code>null</code>.
+ * </p>
+ * 
+ * @see StoredFeatures
+ * 
+ * @since 3.4
+ */
+final class PersistentMap<K, V> implements Iterable<Entry<K, V>> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = ( 1 << BITS ) - 1;
+
+    private static final Node EMPTY_NODE = new BitmapNode( 0, new Object[0] );
+
+    private final Node root;
+
+    private final int size;
+
+    private final boolean identity;
+
+    private PersistentMap( Node root, int size, boolean identity ) {
+        this.root = root;
+        this.size = size;
+        this.identity = identity;
+    }
+
+    /**
+     * Returns an empty map that compares keys using {@link Object#equals(Object)}.
+     * 
+     * @return empty map, never <code>null</code>
+     */
+    static <K, V> PersistentMap<K, V> empty() {
+        return new PersistentMap<K, V>( EMPTY_NODE, 0, false );
+    }
+
+    /**
+     * Returns an empty map that compares keys by reference (like {@link java.util.IdentityHashMap}).
+     * 
+     * @return empty map, never <code>null</code>
+     */
+    static <K, V> PersistentMap<K, V> emptyIdentity() {
+        return new PersistentMap<K, V>( EMPTY_NODE, 0, true );
+    }
+
+    /**
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code>, if the map has no entries
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key
+     *            key to look up, must not be <code>null</code>
+     * @return value for the key, or <code>null</code> if the map has no entry for the key
+     */
+    @SuppressWarnings("unchecked")
+    V get( Object key ) {
+        return (V) root.get( this, key, hash( key ), 0 );
+    }
+
+    /**
+     * @param key
+     *            key to look up, must not be <code>null</code>
+     * @return <code>true</code>, if the map has an entry for the key
+     */
+    boolean containsKey( Object key ) {
+        return get( key ) != null;
+    }
+
+    /**
+     * Returns a map that additionally maps the given key to the given value. This map is not modified.
+     * 
+     * @param key
+     *            key, must not be <code>null</code>
+     * @param value
+     *            value, must not be <code>null</code>
+     * @return map with the entry, this instance if it already contains the entry
+     */
+    PersistentMap<K, V> plus( K key, V value ) {
+        if ( key == null || value == null ) {
+            throw new NullPointerException();
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put( this, key, hash( key ), 0, value, added );
+        if ( newRoot == root ) {
+            return this;
+        }
+        return new PersistentMap<K, V>( newRoot, added[0] ? size + 1 : size, identity );
+    }
+
+    /**
+     * Returns a map without the entry for the given key. This map is not modified.
+     * 
+     * @param key
+     *            key, must not be <code>null</code>
+     * @return map without the entry, this instance if it doesn't contain the key
+     */
+    PersistentMap<K, V> minus( Object key ) {
+        Node newRoot = root.remove( this, key, hash( key ), 0 );
+        if ( newRoot == root ) {
+            return this;
+        }
+        return new PersistentMap<K, V>( newRoot == null ? EMPTY_NODE : newRoot, size - 1, identity );
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator<K, V>( root );
+    }
+
+    private int hash( Object key ) {
+        int h = identity ? System.identityHashCode( key ) : key.hashCode();
+        // spread the bits, so the nodes near the root are filled evenly
+        return h ^ ( h >>> 16 );
+    }
+
+    private boolean same( Object k1, Object k2 ) {
+        return k1 == k2 || ( !identity && k1.equals( k2 ) );
+    }
+
+    private Node createNode( Object k1, Object v1, Object k2, Object v2, int shift ) {
+        int h1 = hash( k1 );
+        int h2 = hash( k2 );
+        if ( h1 == h2 ) {
+            return new CollisionNode( h1, new Object[] { k1, v1, k2, v2 } );
+        }
+        boolean[] added = new boolean[1];
+        return EMPTY_NODE.put( this, k1, h1, shift, v1, added ).put( this, k2, h2, shift, v2, added );
+    }
+
+    private static Object[] with( Object[] array, int i, Object value ) {
+        Object[] copy = array.clone();
+        copy[i] = value;
+        return copy;
+    }
+
+    private static Object[] without( Object[] array, int i ) {
+        Object[] copy = new Object[array.length - 2];
+        System.arraycopy( array, 0, copy, 0, i );
+        System.arraycopy( array, i + 2, copy, i, array.length - i - 2 );
+        return copy;
+    }
+
+    /**
+     * A node stores pairs in a single array: key and value of an entry, or <code>null</code> and a sub node.
+     */
+    private abstract static class Node {
+
+        final Object[] array;
+
+        Node( Object[] array ) {
+            this.array = array;
+        }
+
+        abstract Object get( PersistentMap<?, ?> map, Object key, int hash, int shift );
+
+        abstract Node put( PersistentMap<?, ?> map, Object key, int hash, int shift, Object value, boolean[] added );
+
+        /**
+         * @return this node if it doesn't contain the key, <code>null</code> if the resulting node would be empty
+         */
+        abstract Node remove( PersistentMap<?, ?> map, Object key, int hash, int shift );
+    }
+
+    /**
+     * Node with up to 32 pairs, the bitmap tells which of the 32 hash slots (of this level) are used.
+     */
+    private static class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        BitmapNode( int bitmap, Object[] array ) {
+            super( array );
+            this.bitmap = bitmap;
+        }
+
+        private static int index( int bitmap, int bit ) {
+            return 2 * Integer.bitCount( bitmap & ( bit - 1 ) );
+        }
+
+        @Override
+        Object get( PersistentMap<?, ?> map, Object key, int hash, int shift ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            if ( ( bitmap & bit ) == 0 ) {
+                return null;
+            }
+            int i = index( bitmap, bit );
+            Object k = array[i];
+            if ( k == null ) {
+                return ( (Node) array[i + 1] ).get( map, key, hash, shift + BITS );
+            }
+            return map.same( key, k ) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put( PersistentMap<?, ?> map, Object key, int hash, int shift, Object value, boolean[] added ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            int i = index( bitmap, bit );
+            if ( ( bitmap & bit ) == 0 ) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy( array, 0, copy, 0, i );
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy( array, i, copy, i + 2, array.length - i );
+                added[0] = true;
+                return new BitmapNode( bitmap | bit, copy );
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if ( k == null ) {
+                Node sub = ( (Node) v ).put( map, key, hash, shift + BITS, value, added );
+                return sub == v ? this : new BitmapNode( bitmap, with( array, i + 1, sub ) );
+            }
+            if ( map.same( key, k ) ) {
+                return v == value ? this : new BitmapNode( bitmap, with( array, i + 1, value ) );
+            }
+            added[0] = true;
+            Object[] copy = with( array, i, null );
+            copy[i + 1] = map.createNode( k, v, key, value, shift + BITS );
+            return new BitmapNode( bitmap, copy );
+        }
+
+        @Override
+        Node remove( PersistentMap<?, ?> map, Object key, int hash, int shift ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            if ( ( bitmap & bit ) == 0 ) {
+                return this;
+            }
+            int i = index( bitmap, bit );
+            Object k = array[i];
+            if ( k == null ) {
+                Node sub = (Node) array[i + 1];
+                Node newSub = sub.remove( map, key, hash, shift + BITS );
+                if ( newSub == sub ) {
+                    return this;
+                }
+                if ( newSub != null ) {
+                    return new BitmapNode( bitmap, with( array, i + 1, newSub ) );
+                }
+            } else if ( !map.same( key, k ) ) {
+                return this;
+            }
+            if ( bitmap == bit ) {
+                return null;
+            }
+            return new BitmapNode( bitmap ^ bit, without( array, i ) );
+        }
+    }
+
+    /**
+     * Node for keys with the same hash code.
+     */
+    private static class CollisionNode extends Node {
+
+        private final int hash;
+
+        CollisionNode( int hash, Object[] array ) {
+            super( array );
+            this.hash = hash;
+        }
+
+        private int find( PersistentMap<?, ?> map, Object key ) {
+            for ( int i = 0; i < array.length; i += 2 ) {
+                if ( map.same( key, array[i] ) ) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object get( PersistentMap<?, ?> map, Object key, int hash, int shift ) {
+            if ( hash != this.hash ) {
+                return null;
+            }
+            int i = find( map, key );
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put( PersistentMap<?, ?> map, Object key, int hash, int shift, Object value, boolean[] added ) {
+            if ( hash != this.hash ) {
+                // the hash codes differ in the bits of a deeper level
+                Node parent = new BitmapNode( 1 << ( ( this.hash >>> shift ) & MASK ), new Object[] { null, this } );
+                return parent.put( map, key, hash, shift, value, added );
+            }
+            int i = find( map, key );
+            if ( i >= 0 ) {
+                return array[i + 1] == value ? this : new CollisionNode( hash, with( array, i + 1, value ) );
+            }
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy( array, 0, copy, 0, array.length );
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode( hash, copy );
+        }
+
+        @Override
+        Node remove( PersistentMap<?, ?> map, Object key, int hash, int shift ) {
+            if ( hash != this.hash ) {
+                return this;
+            }
+            int i = find( map, key );
+            if ( i < 0 ) {
+                return this;
+            }
+            return array.length == 2 ? null : new CollisionNode( hash, without( array, i ) );
+        }
+    }
+
+    private static class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // a path has at most seven bitmap nodes plus a collision node
+        private final Object[][] arrays = new Object[8][];
+
+        private final int[] positions = new int[8];
+
+        private int depth;
+
+        private Entry<K, V> next;
+
+        EntryIterator( Node root ) {
+            arrays[0] = root.array;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while ( depth >= 0 ) {
+                Object[] array = arrays[depth];
+                int pos = positions[depth];
+                if ( pos >= array.length ) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = pos + 2;
+                if ( array[pos] == null ) {
+                    depth++;
+                    arrays[depth] = ( (Node) array[pos + 1] ).array;
+                    positions[depth] = 0;
+                } else {
+                    next = new SimpleImmutableEntry<K, V>( (K) array[pos], (V) array[pos + 1] );
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if ( next == null ) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry = next;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -35,32 +35,40 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESULT_LIMIT;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.index.RTree;
 import org.deegree.commons.tom.Reference;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
-import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.query.Query.QueryHint;
+import org.deegree.feature.persistence.transaction.FeatureUpdater;
+import org.deegree.feature.property.Property;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
-import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
 import org.deegree.filter.ResourceId;
@@ -70,11 +78,19 @@ import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
 import org.deegree.gml.utils.GMLObjectVisitor;
 import org.deegree.gml.utils.GMLObjectWalker;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Encapsulates stored feature instances plus index structures for id and spatial queries.
+ * <p>
+ * Instances are versions of the feature store contents: a published instance is never modified. Transactions work on a
+ * {@link #createWorkingCopy() working copy} that shares all data with the version it has been derived from. The
+ * features ({@link FeatureList}), the spatial indexes ({@link FeatureIndex}) and the id lookup table
+ * ({@link PersistentMap}) are immutable structures that are derived with path copying, so a transaction costs
+ * O(log n) per changed feature, independent of the number of stored features.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -89,45 +105,53 @@ class StoredFeatures {
 
     private final ICRS storageCRS;
 
-    private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+    private final Map<FeatureType, FeatureList> ftToFeatures;
+
+    private final Map<FeatureType, FeatureIndex> ftToIndex;
 
-    private final Map<FeatureType, FeatureCollection> ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+    private PersistentMap<String, GMLObject> idToObject;
 
-    private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
+    // feature types changed by this working copy
+    private final Set<FeatureType> changedFts = new HashSet<FeatureType>();
 
-    private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+    // feature types whose envelope may have shrunk
+    private final Set<FeatureType> shrunkFts = new HashSet<FeatureType>();
 
     /**
-     * Creates a new {@link StoredFeatures} instance.
+     * Creates a new empty {@link StoredFeatures} instance.
      * 
      * @param schema
      *            application schema, must not be <code>null</code>
      * @param storageCRS
      *            target CRS for stored geometries, can be <code>null</code> (no CRS normalization)
-     * @param former
-     *            stored features to copy from, can be <code>null</code> (new instance will be empty)
-     * @throws FeatureStoreException
      */
-    StoredFeatures( AppSchema schema, ICRS storageCRS, StoredFeatures former ) throws FeatureStoreException {
+    StoredFeatures( AppSchema schema, ICRS storageCRS ) {
         this.schema = schema;
         this.storageCRS = storageCRS;
-        initFtToFeaturesMap( schema, former );
-        try {
-            rebuildIndexes();
-        } catch ( UnknownCRSException e ) {
-            throw new FeatureStoreException( e.getMessage(), e );
+        this.ftToFeatures = new HashMap<FeatureType, FeatureList>();
+        this.ftToIndex = new HashMap<FeatureType, FeatureIndex>();
+        this.idToObject = PersistentMap.empty();
+        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+            ftToFeatures.put( ft, FeatureList.empty() );
         }
     }
 
-    private void initFtToFeaturesMap( AppSchema schema, StoredFeatures former ) {
-        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
-            FeatureCollection fc = new GenericFeatureCollection();
-            if ( former != null ) {
-                FeatureCollection oldFc = former.ftToFeatures.get( ft );
-                fc.addAll( oldFc );
-            }
-            ftToFeatures.put( ft, fc );
-        }
+    private StoredFeatures( StoredFeatures former ) {
+        this.schema = former.schema;
+        this.storageCRS = former.storageCRS;
+        // only the per type references are copied, the structures themselves are immutable
+        this.ftToFeatures = new HashMap<FeatureType, FeatureList>( former.ftToFeatures );
+        this.ftToIndex = new HashMap<FeatureType, FeatureIndex>( former.ftToIndex );
+        this.idToObject = former.idToObject;
+    }
+
+    /**
+     * Returns a working copy for a transaction. Modifying the copy does not affect this instance.
+     * 
+     * @return working copy, never <code>null</code>
+     */
+    StoredFeatures createWorkingCopy() {
+        return new StoredFeatures( this );
     }
 
     /**
@@ -135,14 +159,28 @@ class StoredFeatures {
      * 
      * @param ft
      *            feature type, must not be <code>null</code>
-     * @return stored features of the given type, never <code>null</code>
+     * @return a snapshot of the stored features of the given type, never <code>null</code>
      */
     FeatureCollection getFeatures( FeatureType ft ) {
-        return ftToFeatures.get( ft );
+        FeatureList features = getFeatureList( ft );
+        List<Feature> members = new ArrayList<Feature>( features.size() );
+        for ( Feature f : features ) {
+            members.add( f );
+        }
+        FeatureCollection fc = new GenericFeatureCollection( null, members );
+        fc.setEnvelope( features.getEnvelope() );
+        return fc;
     }
 
     /**
      * Performs the given {@link Query} on the stored features.
+     * <p>
+     * The result is evaluated lazily: the index (or feature collection) is scanned and the filter is applied only as
+     * far as the returned stream is consumed. Only the first match is determined right away, so errors in the filter
+     * are reported by this method (instead of surfacing during the iteration). If the query has to be sorted and
+     * limits the number of features (by {@link Query#getMaxFeatures()} or {@link QueryHint#HINT_RESULT_LIMIT}), only
+     * the first features are kept on a bounded heap.
+     * </p>
      * 
      * @param query
      *            query to be performed, must not be <code>null</code>
@@ -152,13 +190,52 @@ class StoredFeatures {
      */
     FeatureInputStream query( Query query )
                             throws FilterEvaluationException, FeatureStoreException {
+        FeatureInputStream rs = filter( query );
+
+        // sort features
+        int maxFeatures = getResultLimit( query );
+        SortProperty[] sortCrit = query.getSortProperties();
+        if ( sortCrit.length > 0 ) {
+            if ( maxFeatures > 0 ) {
+                return new MemoryFeatureInputStream( sortTopK( rs, sortCrit, maxFeatures ) );
+            }
+            return new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), sortCrit ) );
+        }
+        return maxFeatures > 0 ? new LazyFeatureInputStream( rs, maxFeatures ) : rs;
+    }
+
+    /**
+     * Determines the number of features that match the given {@link Query}. Neither the maximum number of features nor
+     * the result limit hint are applied, so this is the total number of matches.
+     * 
+     * @param query
+     *            query to be performed, must not be <code>null</code>
+     * @return number of matching features
+     * @throws FilterEvaluationException
+     * @throws FeatureStoreException
+     */
+    int queryHits( Query query )
+                            throws FilterEvaluationException, FeatureStoreException {
+        return filter( query ).count();
+    }
+
+    private static int getResultLimit( Query query ) {
+        int maxFeatures = query.getMaxFeatures();
+        Object limit = query.getHint( HINT_RESULT_LIMIT );
+        if ( limit instanceof Integer && (Integer) limit > 0 ) {
+            return maxFeatures > 0 ? Math.min( maxFeatures, (Integer) limit ) : (Integer) limit;
+        }
+        return maxFeatures;
+    }
 
+    private FeatureInputStream filter( Query query )
+                            throws FilterEvaluationException, FeatureStoreException {
         if ( query.getTypeNames() == null || query.getTypeNames().length > 1 ) {
             String msg = "Join queries between multiple feature types are currently not supported.";
             throw new UnsupportedOperationException( msg );
         }
 
-        FeatureCollection fc = null;
+        FeatureInputStream rs = null;
         if ( query.getTypeNames().length == 1 ) {
             QName ftName = query.getTypeNames()[0].getFeatureTypeName();
             FeatureType ft = schema.getFeatureType( ftName );
@@ -168,11 +245,13 @@ class StoredFeatures {
             }
 
             // determine / filter features
-            fc = ftToFeatures.get( ft );
+            FeatureList features = getFeatureList( ft );
+            Iterable<Feature> candidates = features;
 
             // perform index filtering
-            Envelope ftEnv = ftToFeatures.get( ft ).getEnvelope();
-            if ( query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null ) {
+            Envelope ftEnv = features.getEnvelope();
+            FeatureIndex index = ftToIndex.get( ft );
+            if ( query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null && index != null ) {
                 Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
                 if ( prefilterBox.getCoordinateSystem() != null
                      && !prefilterBox.getCoordinateSystem().equals( storageCRS ) ) {
@@ -185,12 +264,12 @@ class StoredFeatures {
                 }
 
                 float[] floats = toFloats( prefilterBox );
-                RTree<Feature> index = ftToIndex.get( ft );
-                fc = new GenericFeatureCollection( null, index.query( floats ) );
+                candidates = index.query( floats );
             }
 
+            rs = new LazyFeatureInputStream( candidates, -1 );
             if ( query.getFilter() != null ) {
-                fc = fc.getMembers( query.getFilter(), evaluator );
+                rs = evaluateFirst( new FilteredFeatureInputStream( rs, query.getFilter() ) );
             }
         } else {
             // must be an id filter based query
@@ -200,21 +279,69 @@ class StoredFeatures {
             }
             Set<Feature> features = new HashSet<Feature>();
             for ( ResourceId id : ( (IdFilter) query.getFilter() ).getSelectedIds() ) {
-                GMLObject object = idToObject.get( id.getRid() );
+                GMLObject object = getObjectById( id.getRid() );
                 if ( object != null && object instanceof Feature ) {
                     features.add( (Feature) object );
                 }
             }
-            fc = new GenericFeatureCollection( null, features );
+            rs = new MemoryFeatureInputStream( new GenericFeatureCollection( null, features ) );
         }
+        return rs;
+    }
 
-        // sort features
-        SortProperty[] sortCrit = query.getSortProperties();
-        if ( sortCrit.length > 0 ) {
-            fc = Features.sortFc( fc, sortCrit );
+    /**
+     * Evaluates the filter of the given stream up to the first match, so an evaluation error is thrown here. Errors
+     * for later candidates still surface as {@link RuntimeException}s during the iteration.
+     */
+    private static FeatureInputStream evaluateFirst( FeatureInputStream rs )
+                            throws FilterEvaluationException {
+        final Iterator<Feature> iter = rs.iterator();
+        try {
+            // the iterator keeps the match
+            iter.hasNext();
+        } catch ( RuntimeException e ) {
+            if ( e.getCause() instanceof FilterEvaluationException ) {
+                throw (FilterEvaluationException) e.getCause();
+            }
+            throw e;
         }
+        return new LazyFeatureInputStream( new Iterable<Feature>() {
+            @Override
+            public Iterator<Feature> iterator() {
+                return iter;
+            }
+        }, -1 );
+    }
 
-        return new MemoryFeatureInputStream( fc );
+    /**
+     * Returns the first <code>k</code> features of the given stream in the order defined by the sort criteria. Keeps a
+     * bounded heap of <code>k</code> entries, ties are broken by stream position (like a stable sort).
+     */
+    private FeatureCollection sortTopK( FeatureInputStream rs, SortProperty[] sortCrit, int k ) {
+        Comparator<Pair<Feature, Integer>> order = new RankComparator( Features.getComparator( sortCrit ) );
+        // head of the heap is the last of the first k features
+        PriorityQueue<Pair<Feature, Integer>> heap = new PriorityQueue<Pair<Feature, Integer>>(
+                                                                                                  Math.min( k, 1024 ),
+                                                                                                  Collections.reverseOrder( order ) );
+        try {
+            int i = 0;
+            for ( Feature f : rs ) {
+                Pair<Feature, Integer> p = new Pair<Feature, Integer>( f, i++ );
+                if ( heap.size() < k ) {
+                    heap.add( p );
+                } else if ( order.compare( p, heap.peek() ) < 0 ) {
+                    heap.poll();
+                    heap.add( p );
+                }
+            }
+        } finally {
+            rs.close();
+        }
+        Feature[] sorted = new Feature[heap.size()];
+        for ( int i = sorted.length - 1; i >= 0; i-- ) {
+            sorted[i] = heap.poll().first;
+        }
+        return new GenericFeatureCollection( null, Arrays.asList( sorted ) );
     }
 
     GMLObject getObjectById( String id ) {
@@ -229,137 +356,226 @@ class StoredFeatures {
      * @return envelope, can be <code>null</code>
      */
     Envelope getEnvelope( QName ftName ) {
-        return ftToFeatures.get( schema.getFeatureType( ftName ) ).getEnvelope();
+        FeatureType ft = schema.getFeatureType( ftName );
+        return ft == null ? null : getFeatureList( ft ).getEnvelope();
     }
 
     /**
-     * Adds the given {@link Feature} instance and updates the index structures.
+     * Adds the given {@link Feature} instance.
      * 
-     * @param features
+     * @param feature
      *            feature to be added, must not be <code>null</code> and must have an id (as well as every geometry)
      */
     void addFeature( Feature feature ) {
         FeatureType ft = feature.getType();
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc == null ) {
-            fc = new GenericFeatureCollection();
-            ftToFeatures.put( ft, fc );
-        }
-        fc.add( feature );
-        idToObject.put( feature.getId(), feature );
-        if ( feature.getEnvelope() != null ) {
-            RTree<Feature> rTree = ftToIndex.get( ft );
-            float[] insertBox = toFloats( feature.getEnvelope() );
-            if ( rTree == null ) {
-                rTree = new RTree<Feature>( insertBox, 16 );
-            }
-            rTree.insert( insertBox, feature );
-        }
+        ftToFeatures.put( ft, getFeatureList( ft ).plus( feature ) );
+        ftToIndex.put( ft, getIndex( ft ).plus( feature, toFloats( feature.getEnvelope() ) ) );
+        changedFts.add( ft );
+        registerIds( feature );
     }
 
     /**
-     * Removes the given {@link Feature} instance and updates the index structures.
+     * Removes the given {@link Feature} instance.
      * 
      * @param feature
      *            feature to be removed, must not be <code>null</code>
      */
     void removeFeature( Feature feature ) {
-        idToObject.remove( feature.getId() );
         FeatureType ft = feature.getType();
-        RTree<Feature> rTree = ftToIndex.get( ft );
-        if ( rTree != null ) {
-            rTree.remove( feature );
-        }
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc != null ) {
-            fc.remove( feature );
+        FeatureList features = getFeatureList( ft );
+        if ( features.contains( feature ) ) {
+            ftToFeatures.put( ft, features.minus( feature ) );
+            ftToIndex.put( ft, getIndex( ft ).minus( feature ) );
+            changedFts.add( ft );
+            unregisterIds( feature );
+            if ( touchesBoundary( feature.getEnvelope(), features.getEnvelope() ) ) {
+                shrunkFts.add( ft );
+            }
         }
     }
 
-    void rebuildIndexes()
-                            throws UnknownCRSException {
+    /**
+     * Applies the given property replacements to a copy of the given {@link Feature} instance and replaces the feature
+     * with the copy.
+     * <p>
+     * The feature instance itself is not modified, as it is shared with the published version (and other working
+     * copies). The copy has its own property list, the property instances are shared ({@link FeatureUpdater} only
+     * modifies the property list).
+     * </p>
+     * 
+     * @param feature
+     *            feature to be updated, must not be <code>null</code>
+     * @param replacementProps
+     *            properties to be replaced, must not be <code>null</code>
+     * @return updated copy of the feature, never <code>null</code>
+     * @throws FeatureStoreException
+     *             if the update would result in an invalid feature instance
+     */
+    Feature updateFeature( Feature feature, List<ParsedPropertyReplacement> replacementProps )
+                            throws FeatureStoreException {
+        FeatureType ft = feature.getType();
+        Feature copy = ft.newFeature( feature.getId(), new ArrayList<Property>( feature.getProperties() ),
+                                      feature.getExtraProperties() );
+        new FeatureUpdater().update( copy, replacementProps );
+        Envelope fEnv = copy.calcEnvelope();
+        copy.setEnvelope( fEnv );
+
+        FeatureList features = getFeatureList( ft );
+        Envelope ftEnv = features.getEnvelope();
+        if ( touchesBoundary( feature.getEnvelope(), ftEnv ) ) {
+            shrunkFts.add( ft );
+        }
+        unregisterIds( feature );
+        ftToIndex.put( ft, getIndex( ft ).minus( feature ).plus( copy, toFloats( fEnv ) ) );
+        registerIds( copy );
+        features = features.replace( feature, copy );
+        if ( fEnv != null ) {
+            features = features.withEnvelope( ftEnv == null ? fEnv : ftEnv.merge( fEnv ) );
+        }
+        ftToFeatures.put( ft, features );
+        changedFts.add( ft );
+        return copy;
+    }
 
+    /**
+     * Finishes the changes of this working copy, so it can be published as the new version of the stored features.
+     * <p>
+     * Only the modified feature types are touched. Envelopes are recalculated if a feature on the border of the
+     * envelope has been removed or updated, a spatial index is rebuilt once its delta has grown too large.
+     * </p>
+     */
+    void finishChanges() {
         long begin = System.currentTimeMillis();
-        rebuildFeatureCollectionEnvelopes();
+        for ( FeatureType ft : shrunkFts ) {
+            FeatureList features = getFeatureList( ft );
+            ftToFeatures.put( ft, features.withEnvelope( features.calcEnvelope() ) );
+        }
         long elapsed = System.currentTimeMillis() - begin;
         LOG.debug( "Recalculating bounding boxes took {} [ms]", elapsed );
 
         begin = System.currentTimeMillis();
-        rebuildRtrees();
+        for ( FeatureType ft : changedFts ) {
+            if ( getIndex( ft ).needsRebuild() ) {
+                FeatureList features = getFeatureList( ft );
+                ftToIndex.put( ft, FeatureIndex.build( features, features.size() ) );
+            }
+        }
         elapsed = System.currentTimeMillis() - begin;
-        LOG.debug( "Building spatial indexes took {} [ms]", elapsed );
+        LOG.debug( "Updating spatial indexes took {} [ms]", elapsed );
 
-        begin = System.currentTimeMillis();
-        rebuildIdToObjectMap();
-        elapsed = System.currentTimeMillis() - begin;
-        LOG.debug( "Building id lookup table took {} [ms]", elapsed );
+        changedFts.clear();
+        shrunkFts.clear();
+    }
+
+    private FeatureList getFeatureList( FeatureType ft ) {
+        FeatureList features = ftToFeatures.get( ft );
+        return features != null ? features : FeatureList.empty();
     }
 
-    private void rebuildFeatureCollectionEnvelopes() {
-        for ( FeatureCollection fc : ftToFeatures.values() ) {
-            fc.setEnvelope( fc.calcEnvelope() );
+    private FeatureIndex getIndex( FeatureType ft ) {
+        FeatureIndex index = ftToIndex.get( ft );
+        if ( index == null ) {
+            FeatureList features = getFeatureList( ft );
+            index = FeatureIndex.build( features, features.size() );
         }
+        return index;
     }
 
-    private void rebuildRtrees() {
-        ftToIndex.clear();
-        for ( FeatureType ft : ftToFeatures.keySet() ) {
-            FeatureCollection fc = ftToFeatures.get( ft );
-            Envelope env = fc.getEnvelope();
-            if ( env != null ) {
-                RTree<Feature> index = new RTree<Feature>( toFloats( env ), 16 );
-                List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( fc.size() );
-                for ( Feature f : fc ) {
-                    Envelope fEnv = f.getEnvelope();
-                    if ( fEnv != null ) {
-                        float[] floats = toFloats( fEnv );
-                        fBboxes.add( new Pair<float[], Feature>( floats, f ) );
-                    }
-                }
-                index.insertBulk( fBboxes );
-                ftToIndex.put( ft, index );
-            }
+    /**
+     * Returns whether the given feature envelope reaches the border of the given envelope, i.e. whether the envelope
+     * may shrink if the feature is removed.
+     */
+    private static boolean touchesBoundary( Envelope fEnv, Envelope env ) {
+        if ( fEnv == null || env == null ) {
+            return false;
         }
+        return fEnv.getMin().get0() <= env.getMin().get0() || fEnv.getMin().get1() <= env.getMin().get1()
+               || fEnv.getMax().get0() >= env.getMax().get0() || fEnv.getMax().get1() >= env.getMax().get1();
     }
 
-    private void rebuildIdToObjectMap() {
-        idToObject.clear();
-        GMLObjectVisitor visitor = new GMLObjectVisitor() {
+    private void registerIds( final Feature feature ) {
+        new GMLObjectWalker( new IdVisitor( feature ) {
             @Override
-            public boolean visitGeometry( Geometry geom ) {
-                idToObject.put( geom.getId(), geom );
-                return true;
+            void visitId( String id, GMLObject o ) {
+                idToObject = idToObject.plus( id, o );
             }
+        } ).traverse( feature );
+    }
 
+    private void unregisterIds( final Feature feature ) {
+        new GMLObjectWalker( new IdVisitor( feature ) {
             @Override
-            public boolean visitFeature( Feature feature ) {
-                if ( feature instanceof Reference<?> ) {
-                    return false;
-                }
-                idToObject.put( feature.getId(), feature );
-                return true;
+            void visitId( String id, GMLObject o ) {
+                idToObject = idToObject.minus( id );
             }
+        } ).traverse( feature );
+    }
 
-            @Override
-            public boolean visitObject( GMLObject o ) {
-                return true;
+    static float[] toFloats( Envelope env ) {
+        if ( env == null ) {
+            return null;
+        }
+        return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
+                            (float) env.getMax().get1() };
+    }
+
+    /**
+     * Orders features with their stream position by the given feature comparator, ties are broken by the position.
+     */
+    private static class RankComparator implements Comparator<Pair<Feature, Integer>> {
+
+        private final Comparator<Feature> comparator;
+
+        RankComparator( Comparator<Feature> comparator ) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare( Pair<Feature, Integer> p1, Pair<Feature, Integer> p2 ) {
+            int order = comparator.compare( p1.first, p2.first );
+            return order != 0 ? order : p1.second.compareTo( p2.second );
+        }
+    }
+
+    /**
+     * Visits the ids of a feature and its geometries. Nested features are skipped, as they are stored (and registered)
+     * on their own.
+     */
+    private abstract static class IdVisitor implements GMLObjectVisitor {
+
+        private final Feature root;
+
+        IdVisitor( Feature root ) {
+            this.root = root;
+        }
+
+        abstract void visitId( String id, GMLObject o );
+
+        @Override
+        public boolean visitGeometry( Geometry geom ) {
+            if ( geom.getId() != null ) {
+                visitId( geom.getId(), geom );
             }
+            return true;
+        }
 
-            @Override
-            public boolean visitReference( Reference<?> ref ) {
+        @Override
+        public boolean visitFeature( Feature feature ) {
+            if ( feature != root ) {
                 return false;
             }
-        };
+            visitId( feature.getId(), feature );
+            return true;
+        }
 
-        for ( FeatureCollection fc : ftToFeatures.values() ) {
-            for ( Feature f : fc ) {
-                new GMLObjectWalker( visitor ).traverse( f );
-            }
+        @Override
+        public boolean visitObject( GMLObject o ) {
+            return true;
         }
-    }
 
-    private float[] toFloats( Envelope env ) {
-        return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
-                            (float) env.getMax().get1() };
+        @Override
+        public boolean visitReference( Reference<?> ref ) {
+            return false;
+        }
     }
 }
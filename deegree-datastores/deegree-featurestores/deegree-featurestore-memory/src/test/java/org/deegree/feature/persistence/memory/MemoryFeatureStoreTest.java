@@ -37,6 +37,7 @@ package org.deegree.feature.persistence.memory;
 
 import static org.deegree.gml.GMLVersion.GML_31;
 import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REPLACE;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -44,6 +45,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.Collections;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -53,6 +55,7 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.TransformationException;
 import org.deegree.cs.exceptions.UnknownCRSException;
@@ -63,10 +66,15 @@ import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.primitive.Ring;
 import org.deegree.gml.GMLInputFactory;
@@ -76,6 +84,7 @@ import org.deegree.gml.GMLStreamWriter;
 import org.deegree.gml.GMLVersion;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
 import org.deegree.workspace.standard.DefaultWorkspace;
 import org.junit.After;
 import org.junit.Assert;
@@ -187,6 +196,95 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 2, fc.size() );
     }
 
+    @Test(expected = FilterEvaluationException.class)
+    public void testQueryThrowsFilterEvaluationException()
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName(
+                                                              QName.valueOf( "{http://www.deegree.org/app}Philosopher" ),
+                                                              null ) };
+        Operator failing = new Operator() {
+            @Override
+            public Type getType() {
+                return Type.COMPARISON;
+            }
+
+            @Override
+            public <T> boolean evaluate( T obj, XPathEvaluator<T> xpathEvaluator )
+                                    throws FilterEvaluationException {
+                throw new FilterEvaluationException( "Evaluation failed." );
+            }
+
+            @Override
+            public String toString( String indent ) {
+                return indent + "Failing";
+            }
+        };
+        store.query( new Query( typeNames, new OperatorFilter( failing ), null, null, null ) );
+    }
+
+    @Test
+    public void testDeleteVisibleAfterCommit()
+                            throws FilterEvaluationException, FeatureStoreException {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertEquals( 7, queryAllPhilosophers().size() );
+        ta.commit();
+        Assert.assertNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_2" ) );
+        Assert.assertEquals( 6, queryAllPhilosophers().size() );
+    }
+
+    @Test
+    public void testDeleteDiscardedOnRollback()
+                            throws FilterEvaluationException, FeatureStoreException {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        ta.rollback();
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertEquals( 7, queryAllPhilosophers().size() );
+
+        ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        ta.commit();
+        Assert.assertEquals( 6, queryAllPhilosophers().size() );
+    }
+
+    @Test
+    public void testUpdateDiscardedOnRollback()
+                            throws FilterEvaluationException, FeatureStoreException {
+        QName nameProp = QName.valueOf( "{http://www.deegree.org/app}name" );
+        Feature published = (Feature) store.getObjectById( "PHILOSOPHER_1" );
+        GenericProperty newName = new GenericProperty( published.getType().getPropertyDeclaration( nameProp ),
+                                                       new PrimitiveValue( "Friedrich Engels" ) );
+        ParsedPropertyReplacement replacement = new ParsedPropertyReplacement( newName, REPLACE,
+                                                                               new ValueReference( nameProp ), 0 );
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performUpdate( published.getName(), Collections.singletonList( replacement ),
+                                                  new IdFilter( "PHILOSOPHER_1" ), null ).size() );
+        // the published version is not affected by the pending update
+        Assert.assertEquals( "Karl Marx", published.getProperties( nameProp ).get( 0 ).getValue().toString() );
+        ta.rollback();
+        Assert.assertSame( published, store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertEquals( "Karl Marx", published.getProperties( nameProp ).get( 0 ).getValue().toString() );
+
+        ta = store.acquireTransaction();
+        ta.performUpdate( published.getName(), Collections.singletonList( replacement ),
+                          new IdFilter( "PHILOSOPHER_1" ), null );
+        ta.commit();
+        Feature updated = (Feature) store.getObjectById( "PHILOSOPHER_1" );
+        Assert.assertEquals( "Friedrich Engels", updated.getProperties( nameProp ).get( 0 ).getValue().toString() );
+        Assert.assertEquals( 7, queryAllPhilosophers().size() );
+    }
+
+    private FeatureCollection queryAllPhilosophers()
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName(
+                                                              QName.valueOf( "{http://www.deegree.org/app}Philosopher" ),
+                                                              null ) };
+        return store.query( new Query( typeNames, null, null, null, null ) ).toCollection();
+    }
+
     @Test
     public void testGetObjectByIdFeature() {
         Object o = store.getObjectById( "PHILOSOPHER_7" );
@@ -0,0 +1,164 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PersistentMap}.
+ * 
+ * @since 3.4
+ */
+public class PersistentMapTest {
+
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random( 42 );
+        Map<Integer, String> expected = new HashMap<Integer, String>();
+        PersistentMap<Integer, String> map = PersistentMap.empty();
+        for ( int i = 0; i < 20000; i++ ) {
+            Integer key = random.nextInt( 5000 );
+            if ( random.nextInt( 3 ) == 0 ) {
+                expected.remove( key );
+                map = map.minus( key );
+            } else {
+                expected.put( key, "v" + i );
+                map = map.plus( key, "v" + i );
+            }
+        }
+        assertContent( expected, map );
+    }
+
+    @Test
+    public void testVersionsAreNotModified() {
+        PersistentMap<String, String> v1 = PersistentMap.empty();
+        for ( int i = 0; i < 1000; i++ ) {
+            v1 = v1.plus( "id" + i, "a" );
+        }
+        PersistentMap<String, String> v2 = v1.plus( "id1", "b" ).minus( "id2" ).plus( "new", "c" );
+        assertEquals( 1000, v1.size() );
+        assertEquals( "a", v1.get( "id1" ) );
+        assertEquals( "a", v1.get( "id2" ) );
+        assertNull( v1.get( "new" ) );
+        assertEquals( 1000, v2.size() );
+        assertEquals( "b", v2.get( "id1" ) );
+        assertNull( v2.get( "id2" ) );
+        assertEquals( "c", v2.get( "new" ) );
+        assertSame( v1, v1.minus( "unknown" ) );
+        assertSame( v1, v1.plus( "id1", v1.get( "id1" ) ) );
+    }
+
+    @Test
+    public void testHashCollisions() {
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.empty();
+        for ( int i = 0; i < 100; i++ ) {
+            map = map.plus( new CollidingKey( i, i % 3 ), i );
+        }
+        assertEquals( 100, map.size() );
+        for ( int i = 0; i < 100; i++ ) {
+            assertEquals( Integer.valueOf( i ), map.get( new CollidingKey( i, i % 3 ) ) );
+        }
+        for ( int i = 0; i < 100; i += 2 ) {
+            map = map.minus( new CollidingKey( i, i % 3 ) );
+        }
+        assertEquals( 50, map.size() );
+        int count = 0;
+        for ( Entry<CollidingKey, Integer> e : map ) {
+            assertEquals( 1, e.getValue() % 2 );
+            count++;
+        }
+        assertEquals( 50, count );
+    }
+
+    @Test
+    public void testIdentityKeys() {
+        String k1 = new String( "key" );
+        String k2 = new String( "key" );
+        PersistentMap<String, Integer> map = PersistentMap.emptyIdentity();
+        map = map.plus( k1, 1 ).plus( k2, 2 );
+        assertEquals( 2, map.size() );
+        assertEquals( Integer.valueOf( 1 ), map.get( k1 ) );
+        assertEquals( Integer.valueOf( 2 ), map.get( k2 ) );
+        assertFalse( map.containsKey( "other" ) );
+        assertTrue( map.minus( k1 ).containsKey( k2 ) );
+    }
+
+    private static <K, V> void assertContent( Map<K, V> expected, PersistentMap<K, V> map ) {
+        assertEquals( expected.size(), map.size() );
+        for ( Entry<K, V> e : expected.entrySet() ) {
+            assertEquals( e.getValue(), map.get( e.getKey() ) );
+        }
+        int count = 0;
+        for ( Entry<K, V> e : map ) {
+            assertEquals( expected.get( e.getKey() ), e.getValue() );
+            count++;
+        }
+        assertEquals( expected.size(), count );
+    }
+
+    private static class CollidingKey {
+
+        private final int value;
+
+        private final int hash;
+
+        CollidingKey( int value, int hash ) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            return o instanceof CollidingKey && ( (CollidingKey) o ).value == value;
+        }
+    }
+}
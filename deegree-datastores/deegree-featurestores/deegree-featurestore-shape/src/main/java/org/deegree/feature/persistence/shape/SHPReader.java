@@ -52,11 +52,13 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.index.SpatialIndex;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -349,6 +351,27 @@ public class SHPReader {
         return GEOMETRY;
     }
 
+    /**
+     * @param bbox
+     * @return the sorted file offsets of the records whose envelope intersects the bbox
+     */
+    private long[] queryPointers( Envelope bbox ) {
+        float[] box = createEnvelope( bbox );
+        if ( rtree instanceof PackedRTree<?> ) {
+            PointerCollector collector = new PointerCollector();
+            ( (PackedRTree<?>) rtree ).query( box, collector );
+            return collector.getSortedPointers();
+        }
+        Collection<Long> list = rtree.query( box );
+        long[] pointers = new long[list.size()];
+        int i = 0;
+        for ( Long ptr : list ) {
+            pointers[i++] = ptr;
+        }
+        Arrays.sort( pointers );
+        return pointers;
+    }
+
     /**
      * @param bbox
      * @param ids
@@ -362,10 +385,9 @@ public class SHPReader {
 
         ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.size() );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
+        long[] pointers = queryPointers( bbox );
+        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.length );
+        for ( long ptr : pointers ) {
             buffer.position( (int) ( ptr - 8 ) );
             int num = getBEInt( buffer );
             if ( num == 0 && !recordNumStartsWith0 && rtree != null ) {
@@ -402,9 +424,8 @@ public class SHPReader {
 
         LinkedList<Pair<Integer, Geometry>> list = new LinkedList<Pair<Integer, Geometry>>();
 
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
+        long[] pointers = queryPointers( bbox );
+        for ( long ptr : pointers ) {
             buffer.position( (int) ( ptr - 8 ) );
 
             int num = getBEInt( buffer );
@@ -1199,4 +1220,30 @@ public class SHPReader {
         channel.close();
         file.close();
     }
+
+    /**
+     * Collects the record pointers of a packed rtree query without boxing them.
+     */
+    private static class PointerCollector implements PackedRTree.LongVisitor {
+
+        private long[] pointers = new long[64];
+
+        private int size;
+
+        @Override
+        public boolean visit( long value ) {
+            if ( size == pointers.length ) {
+                pointers = Arrays.copyOf( pointers, size * 2 );
+            }
+            pointers[size++] = value;
+            return true;
+        }
+
+        long[] getSortedPointers() {
+            long[] result = Arrays.copyOf( pointers, size );
+            Arrays.sort( result );
+            return result;
+        }
+    }
+
 }
@@ -39,7 +39,6 @@ import static org.deegree.commons.utils.CollectionUtils.unzipPair;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
-import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.BufferedReader;
@@ -62,7 +61,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.annotations.LoggingNotes;
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
@@ -135,6 +134,8 @@ public class ShapeFeatureStore implements FeatureStore {
 
     private String shpName;
 
+    private boolean obsoleteIndexReported;
+
     private ICRS crs;
 
     private Charset encoding;
@@ -247,13 +248,14 @@ public class ShapeFeatureStore implements FeatureStore {
 
         shp = null;
 
-        File rtfile = new File( shpName + ".rti" );
+        File rtfile = new File( shpName + ".pri" );
         RandomAccessFile raf = new RandomAccessFile( shpFile, "r" );
+        reportObsoleteIndex();
 
         if ( rtfile.exists() && !( rtfile.lastModified() < shpFile.lastModified() ) && !forceIndexRebuild ) {
             try {
-                LOG.debug( "Loading RTree from disk." );
-                RTree<Long> rtree = RTree.loadFromDisk( shpName + ".rti" );
+                LOG.debug( "Mapping packed rtree from disk." );
+                PackedRTree<Long> rtree = PackedRTree.loadFromDisk( rtfile.getPath() );
                 shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
             } catch ( IOException e ) {
                 LOG.debug( "Stack trace:", e );
@@ -268,26 +270,41 @@ public class ShapeFeatureStore implements FeatureStore {
 
         LOG.debug( "Building rtree index in memory for '{}'", new File( shpName ).getName() );
 
-        Pair<RTree<Long>, Boolean> p = createIndex( shp );
+        PackedRTree<Long> rtree = createIndex( shp );
         LOG.debug( "done building index." );
-        shp = new SHPReader( raf, crs, p.first, p.second );
-        p.first.writeTreeToDisk( shpName + ".rti" );
+        try {
+            // continue with the mapped index so the heap copy can be collected
+            rtree.writeTreeToDisk( rtfile.getPath() );
+            rtree = PackedRTree.loadFromDisk( rtfile.getPath() );
+        } catch ( IOException e ) {
+            LOG.debug( "Stack trace:", e );
+            LOG.warn( "The rtree index could not be written to '{}', keeping it in memory.", rtfile );
+        }
+        shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
         return shp;
     }
 
+    // the serialized RTree index of earlier versions has been replaced by the packed .pri index
+    private void reportObsoleteIndex() {
+        File obsolete = new File( shpName + ".rti" );
+        if ( !obsoleteIndexReported && obsolete.exists() ) {
+            LOG.info( "Ignoring rtree index '{}' of an earlier version, the file is not used anymore.", obsolete );
+            obsoleteIndexReported = true;
+        }
+    }
+
     /**
      * @param shapeReader
      */
-    private static Pair<RTree<Long>, Boolean> createIndex( SHPReader shapeReader ) {
-        Envelope env = shapeReader.getEnvelope();
-        // use 128 values per rect.
-        RTree<Long> result = new RTree<Long>( createEnvelope( env ), -1 );
+    private static PackedRTree<Long> createIndex( SHPReader shapeReader ) {
+        PackedRTree<Long> result = new PackedRTree<Long>( 16 );
         // to work around Java's non-existent variant type
         LOG.debug( "Read envelopes from shape file..." );
         Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
         LOG.debug( "done reading envelopes." );
         result.insertBulk( p.first );
-        return new Pair<RTree<Long>, Boolean>( result, p.second );
+        result.setExtraFlag( p.second );
+        return result;
     }
 
     private void checkForUpdate() {
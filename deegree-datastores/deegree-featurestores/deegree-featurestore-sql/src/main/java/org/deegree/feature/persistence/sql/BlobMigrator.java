@@ -0,0 +1,197 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.sql.blob.BlobCodec;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
+import org.deegree.feature.persistence.sql.blob.BlobMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-encodes the objects stored in the BLOB table of an {@link SQLFeatureStore} with the {@link BlobCodec} configured
+ * for the store, e.g. after switching the <code>Compression</code> of the <code>BLOBMapping</code> to
+ * {@link Compression#BINARY}.
+ * <p>
+ * Rows that already use the configured encoding are left untouched, so an interrupted migration can simply be
+ * restarted. As the codec detects the encoding of every row on reading, the store remains usable with partially
+ * migrated tables.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class BlobMigrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger( BlobMigrator.class );
+
+    private final SQLFeatureStore fs;
+
+    private final int batchSize;
+
+    /**
+     * Creates a new {@link BlobMigrator} instance.
+     * 
+     * @param fs
+     *            feature store in BLOB mode, must not be <code>null</code>
+     * @param batchSize
+     *            number of updated rows per JDBC batch, must be positive
+     */
+    public BlobMigrator( SQLFeatureStore fs, int batchSize ) {
+        this.fs = fs;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Re-encodes all objects of the BLOB table that are not stored with the configured encoding yet. All updates are
+     * performed in a single database transaction.
+     * 
+     * @return number of re-encoded rows
+     * @throws FeatureStoreException
+     *             if the store does not use a BLOB mapping or the migration fails (the transaction is rolled back in
+     *             this case)
+     */
+    public int migrate()
+                            throws FeatureStoreException {
+        BlobMapping blobMapping = fs.getSchema().getBlobMapping();
+        if ( blobMapping == null ) {
+            throw new FeatureStoreException( "Feature store '" + fs.getConnId() + "' does not use a BLOB mapping." );
+        }
+        BlobCodec codec = blobMapping.getCodec();
+        Compression target = codec.getCompression();
+
+        String select = "SELECT " + blobMapping.getGMLIdColumn() + "," + blobMapping.getDataColumn() + " FROM "
+                        + blobMapping.getTable();
+        String update = "UPDATE " + blobMapping.getTable() + " SET " + blobMapping.getDataColumn() + "=? WHERE "
+                        + blobMapping.getGMLIdColumn() + "=?";
+
+        Connection conn = null;
+        PreparedStatement selectStmt = null;
+        PreparedStatement updateStmt = null;
+        ResultSet rs = null;
+        boolean autoCommit = true;
+        int scanned = 0;
+        int migrated = 0;
+        try {
+            conn = fs.getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit( false );
+            selectStmt = conn.prepareStatement( select );
+            selectStmt.setFetchSize( batchSize );
+            updateStmt = conn.prepareStatement( update );
+            LOG.info( "Re-encoding objects of BLOB table '{}' (target encoding: {}).", blobMapping.getTable(), target );
+            rs = selectStmt.executeQuery();
+            int pending = 0;
+            while ( rs.next() ) {
+                scanned++;
+                String gmlId = rs.getString( 1 );
+                byte[] bytes = rs.getBytes( 2 );
+                byte[] reencoded = reencode( codec, blobMapping, gmlId, bytes );
+                if ( reencoded == null ) {
+                    continue;
+                }
+                updateStmt.setBytes( 1, reencoded );
+                updateStmt.setString( 2, gmlId );
+                updateStmt.addBatch();
+                migrated++;
+                if ( ++pending == batchSize ) {
+                    updateStmt.executeBatch();
+                    pending = 0;
+                    LOG.info( "Re-encoded {} of {} scanned objects.", migrated, scanned );
+                }
+            }
+            if ( pending > 0 ) {
+                updateStmt.executeBatch();
+            }
+            conn.commit();
+            LOG.info( "Re-encoded {} of {} objects.", migrated, scanned );
+        } catch ( Exception e ) {
+            if ( conn != null ) {
+                try {
+                    conn.rollback();
+                } catch ( SQLException e1 ) {
+                    LOG.warn( "Rollback failed: " + e1.getMessage() );
+                }
+            }
+            String msg = "Error re-encoding BLOB table (row " + scanned + "): " + e.getMessage();
+            LOG.debug( msg, e );
+            throw new FeatureStoreException( msg, e );
+        } finally {
+            JDBCUtils.close( updateStmt );
+            if ( conn != null ) {
+                try {
+                    conn.setAutoCommit( autoCommit );
+                } catch ( SQLException e ) {
+                    LOG.debug( "Unable to restore auto commit mode: " + e.getMessage() );
+                }
+            }
+            JDBCUtils.close( rs, selectStmt, conn, LOG );
+        }
+        return migrated;
+    }
+
+    /**
+     * Returns the re-encoded object, or <code>null</code> if the stored bytes already are up to date.
+     */
+    private byte[] reencode( BlobCodec codec, BlobMapping blobMapping, String gmlId, byte[] bytes )
+                            throws Exception {
+        BufferedInputStream is = new BufferedInputStream( new ByteArrayInputStream( bytes ) );
+        if ( BlobCodec.detectCompression( is ) == codec.getCompression() ) {
+            return null;
+        }
+        GMLObject object = codec.decode( is, fs.getNamespaceContext(), fs.getSchema(), blobMapping.getCRS(),
+                                         fs.getResolver() );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( bytes.length );
+        codec.encode( object, fs.getNamespaceContext(), bos, blobMapping.getCRS() );
+        byte[] reencoded = bos.toByteArray();
+        if ( Arrays.equals( bytes, reencoded ) ) {
+            return null;
+        }
+        LOG.debug( "Re-encoded object '{}': {} -> {} bytes", gmlId, bytes.length, reencoded.length );
+        return reencoded;
+    }
+}
@@ -71,6 +71,8 @@ public class FeatureTypeMapping {
 
     private final List<Mapping> particles = new ArrayList<Mapping>();
 
+    private final GeometrySimplification simplification;
+
     /**
      * Creates a new {@link FeatureTypeMapping} instance.
      * 
@@ -84,7 +86,28 @@ public class FeatureTypeMapping {
      *            particle mappings for the feature type, must not be <code>null</code>
      */
     public FeatureTypeMapping( QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings ) {
+        this( ftName, table, fidMapping, particleMappings, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureTypeMapping} instance.
+     * 
+     * @param ftName
+     *            name of the mapped feature type, must not be <code>null</code>
+     * @param table
+     *            name of the database table that the feature type is mapped to, must not be <code>null</code>
+     * @param fidMapping
+     *            mapping for the feature id, must not be <code>null</code>
+     * @param particleMappings
+     *            particle mappings for the feature type, must not be <code>null</code>
+     * @param simplification
+     *            parameters for simplifying geometries according to the query resolution, can be <code>null</code>
+     *            (no simplification)
+     */
+    public FeatureTypeMapping( QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings,
+                               GeometrySimplification simplification ) {
         this.ftName = ftName;
+        this.simplification = simplification;
         this.table = table;
         this.fidMapping = fidMapping;
         this.propToMapping = new HashMap<QName, Mapping>();
@@ -128,6 +151,15 @@ public class FeatureTypeMapping {
         return fidMapping;
     }
 
+    /**
+     * Returns the parameters for simplifying geometries according to the query resolution.
+     * 
+     * @return simplification parameters, can be <code>null</code> (no simplification)
+     */
+    public GeometrySimplification getGeometrySimplification() {
+        return simplification;
+    }
+
     /**
      * Returns the mapping parameters for the specified property.
      * 
@@ -0,0 +1,88 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import org.deegree.feature.persistence.query.Query.QueryHint;
+
+/**
+ * Encapsulates the parameters for database-side simplification of the geometries of a feature type according to the
+ * {@link QueryHint#HINT_RESOLUTION} of queries.
+ * 
+ * @since 3.4
+ */
+public class GeometrySimplification {
+
+    private final double pixelTolerance;
+
+    private final boolean skipSubPixelFeatures;
+
+    /**
+     * Creates a new {@link GeometrySimplification} instance.
+     * 
+     * @param pixelTolerance
+     *            simplification tolerance (in pixels), must be positive
+     * @param skipSubPixelFeatures
+     *            true, if non-point features with a bounding box smaller than a pixel should not be returned
+     * @throws IllegalArgumentException
+     *             if the tolerance is not positive
+     */
+    public GeometrySimplification( double pixelTolerance, boolean skipSubPixelFeatures ) {
+        if ( !( pixelTolerance > 0 ) ) {
+            throw new IllegalArgumentException( "Geometry simplification tolerance must be positive, but is "
+                                                + pixelTolerance + "." );
+        }
+        this.pixelTolerance = pixelTolerance;
+        this.skipSubPixelFeatures = skipSubPixelFeatures;
+    }
+
+    /**
+     * Returns the simplification tolerance.
+     * 
+     * @return simplification tolerance (in pixels)
+     */
+    public double getPixelTolerance() {
+        return pixelTolerance;
+    }
+
+    /**
+     * Returns whether features with a bounding box smaller than a pixel should be skipped.
+     * 
+     * @return true, if non-point features with a bounding box smaller than a pixel should not be returned
+     */
+    public boolean isSkipSubPixelFeatures() {
+        return skipSubPixelFeatures;
+    }
+}
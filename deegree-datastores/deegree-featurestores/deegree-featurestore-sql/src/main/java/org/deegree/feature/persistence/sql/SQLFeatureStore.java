@@ -35,12 +35,15 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
+import java.math.BigInteger;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -49,11 +52,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -65,6 +70,7 @@ import org.deegree.commons.tom.CombinedReferenceResolver;
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.GMLReferenceResolver;
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
@@ -86,7 +92,7 @@ import org.deegree.feature.persistence.FeatureStoreManager;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.BBoxCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
-import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCache;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
@@ -101,6 +107,7 @@ import org.deegree.feature.persistence.sql.id.IdAnalysis;
 import org.deegree.feature.persistence.sql.jaxb.CustomConverterJAXB;
 import org.deegree.feature.persistence.sql.jaxb.CustomInspector;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.FeatureCache;
 import org.deegree.feature.persistence.sql.rules.CompoundMapping;
 import org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational;
 import org.deegree.feature.persistence.sql.rules.FeatureMapping;
@@ -114,18 +121,23 @@ import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
 import org.deegree.filter.Filter;
+import org.deegree.filter.Filters;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.protocol.wfs.getfeature.TypeName;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
@@ -162,6 +174,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
+    private static final int DEFAULT_CACHE_MEMORY_MB = 64;
+
     private final SQLFeatureStoreJAXB config;
 
     private final URL configURL;
@@ -192,6 +206,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final Boolean readAutoCommit;
 
+    private final int insertBatchSize;
+
     private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
 
     private boolean nullEscalation;
@@ -227,14 +243,38 @@ public class SQLFeatureStore implements FeatureStore {
         readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
                                                                           : !dialect.requiresTransactionForCursorMode();
         LOG.debug( "Read auto commit: " + readAutoCommit );
+        insertBatchSize = config.getJDBCConnId().getInsertBatchSize().intValue();
+        LOG.debug( "Insert batch size: " + insertBatchSize );
 
         if ( config.getFeatureCache() != null ) {
-            cache = new SimpleFeatureStoreCache( DEFAULT_CACHE_SIZE );
+            cache = createCache( config.getFeatureCache() );
         } else {
             cache = null;
         }
     }
 
+    private FeatureStoreCache createCache( FeatureCache cacheConfig ) {
+        int maxEntries = (int) getCacheBound( "MaxEntries", cacheConfig.getMaxEntries(), DEFAULT_CACHE_SIZE,
+                                              Integer.MAX_VALUE );
+        long maxMemoryMb = getCacheBound( "MaxMemory", cacheConfig.getMaxMemory(), DEFAULT_CACHE_MEMORY_MB,
+                                          Long.MAX_VALUE / ( 1024L * 1024L ) );
+        long ttl = getCacheBound( "TimeToLive", cacheConfig.getTimeToLive(), 0, Long.MAX_VALUE );
+        LOG.debug( "Feature cache: max entries: {}, max memory: {} MB, time to live: {} s", maxEntries, maxMemoryMb,
+                   ttl );
+        return new ConcurrentFeatureStoreCache( maxEntries, maxMemoryMb * 1024L * 1024L, ttl, SECONDS );
+    }
+
+    private static long getCacheBound( String name, BigInteger value, long defaultValue, long maxValue ) {
+        if ( value == null ) {
+            return defaultValue;
+        }
+        if ( value.compareTo( BigInteger.valueOf( maxValue ) ) > 0 ) {
+            String msg = "Invalid feature cache configuration: " + name + " must not exceed " + maxValue + ".";
+            throw new IllegalArgumentException( msg );
+        }
+        return value.longValue();
+    }
+
     private void initConverters() {
         for ( FeatureType ft : schema.getFeatureTypes() ) {
             FeatureTypeMapping ftMapping = schema.getFtMapping( ft.getName() );
@@ -330,6 +370,15 @@ public class SQLFeatureStore implements FeatureStore {
         return jdbcConnId;
     }
 
+    /**
+     * Returns the maximum number of rows per JDBC batch for inserts into relationally mapped tables.
+     *
+     * @return maximum number of rows per batch, 0 if batching is disabled
+     */
+    int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
     /**
      * Returns the relational mapping for the given feature type name.
      *
@@ -615,7 +664,9 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( cache != null ) {
+            LOG.debug( "Feature cache statistics: {}", cache );
+        }
     }
 
     @Override
@@ -1160,7 +1211,8 @@ public class SQLFeatureStore implements FeatureStore {
 
             FeatureTypeMapping ftMapping = getMapping( ftName );
             BlobMapping blobMapping = getSchema().getBlobMapping();
-            FeatureBuilder builder = new FeatureBuilderBlob( this, blobMapping );
+            FeatureBuilder builder = new FeatureBuilderBlob( this, blobMapping, null,
+                                                             getRequestedProperties( query, ftName, filter ) );
             List<String> columns = builder.getInitialSelectList();
             if ( query.getPrefilterBBox() != null ) {
                 OperatorFilter bboxFilter = new OperatorFilter( query.getPrefilterBBox() );
@@ -1285,6 +1337,52 @@ public class SQLFeatureStore implements FeatureStore {
         return result;
     }
 
+    /**
+     * Returns the names of the properties that are needed for answering the given BLOB query (projection, in-memory
+     * filtering and sorting).
+     * 
+     * @return names of the needed properties, or <code>null</code> if all properties have to be decoded
+     */
+    private Set<QName> getRequestedProperties( Query query, QName ftName, OperatorFilter filter ) {
+        if ( query.getProjections() == null || query.getProjections().isEmpty() ) {
+            return null;
+        }
+        Set<QName> propNames = new HashSet<QName>();
+        for ( ProjectionClause projection : query.getProjections() ) {
+            if ( !( projection instanceof PropertyName )
+                 || !addPropertyName( ( (PropertyName) projection ).getPropertyName(), propNames ) ) {
+                return null;
+            }
+        }
+        if ( filter != null ) {
+            for ( ValueReference propName : Filters.getPropertyNames( filter ) ) {
+                if ( !addPropertyName( propName, propNames ) ) {
+                    return null;
+                }
+            }
+            // spatial operators without a property name target the default geometry
+            for ( PropertyType pt : getSchema().getFeatureType( ftName ).getPropertyDeclarations() ) {
+                if ( pt instanceof GeometryPropertyType ) {
+                    propNames.add( pt.getName() );
+                }
+            }
+        }
+        for ( SortProperty sortProp : query.getSortProperties() ) {
+            if ( !addPropertyName( sortProp.getSortProperty(), propNames ) ) {
+                return null;
+            }
+        }
+        return propNames;
+    }
+
+    private boolean addPropertyName( ValueReference propName, Set<QName> propNames ) {
+        if ( propName == null || propName.getAsQName() == null ) {
+            return false;
+        }
+        propNames.add( propName.getAsQName() );
+        return true;
+    }
+
     private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter )
                             throws FeatureStoreException {
 
@@ -1315,8 +1413,11 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
+            GeometrySimplification simplification = ftMapping.getGeometrySimplification();
+            double resolution = getStorageResolution( query, ftMapping );
+            double tolerance = resolution > 0 ? resolution * simplification.getPixelTolerance() : -1;
             FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   nullEscalation );
+                                                                   nullEscalation, tolerance );
             List<String> columns = builder.getInitialSelectList();
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
@@ -1353,6 +1454,13 @@ public class SQLFeatureStore implements FeatureStore {
                 }
                 sql.append( wb.getWhere().getSQL() );
             }
+            if ( resolution > 0 && simplification.isSkipSubPixelFeatures() ) {
+                String extentCondition = getMinimumExtentCondition( ftMapping, ftTableAlias, resolution );
+                if ( extentCondition != null ) {
+                    sql.append( wb.getWhere() != null ? " AND " : " WHERE " );
+                    sql.append( extentCondition );
+                }
+            }
             if ( wb.getOrderBy() != null ) {
                 sql.append( " ORDER BY " );
                 sql.append( wb.getOrderBy().getSQL() );
@@ -1404,6 +1512,58 @@ public class SQLFeatureStore implements FeatureStore {
         return result;
     }
 
+    /**
+     * Determines the resolution hint of the given query in units of the storage crs of the default geometry.
+     * 
+     * @return resolution in units of the storage crs, or <code>-1</code> if geometries of the feature type are not
+     *         simplified or the query has no (usable) resolution hint
+     */
+    private double getStorageResolution( Query query, FeatureTypeMapping ftMapping ) {
+        Object hint = query.getHint( HINT_RESOLUTION );
+        if ( ftMapping.getGeometrySimplification() == null || !( hint instanceof Number ) ) {
+            return -1;
+        }
+        GeometryParticleConverter converter = getDefaultGeometryConverter( ftMapping );
+        // the resolution refers to the crs of the query bbox
+        Envelope bbox = query.getPrefilterBBoxEnvelope();
+        if ( converter == null || bbox == null ) {
+            return -1;
+        }
+        double resolution = ( (Number) hint ).doubleValue();
+        ICRS storageCrs = converter.getCrs();
+        ICRS queryCrs = bbox.getCoordinateSystem();
+        if ( storageCrs != null && queryCrs != null && !storageCrs.equals( queryCrs ) && bbox.getSpan0() > 0 ) {
+            try {
+                Envelope storageBBox = new GeometryTransformer( storageCrs ).transform( bbox );
+                resolution *= storageBBox.getSpan0() / bbox.getSpan0();
+            } catch ( Exception e ) {
+                LOG.debug( "Not simplifying geometries, query bbox cannot be transformed: " + e.getMessage() );
+                return -1;
+            }
+        }
+        return resolution;
+    }
+
+    private String getMinimumExtentCondition( FeatureTypeMapping ftMapping, String tableAlias, double minExtent ) {
+        Pair<TableName, GeometryMapping> gm = ftMapping.getDefaultGeometryMapping();
+        if ( gm.second.getJoinedTable() != null && !gm.second.getJoinedTable().isEmpty() ) {
+            return null;
+        }
+        return getDefaultGeometryConverter( ftMapping ).getMinimumExtentCondition( tableAlias, minExtent );
+    }
+
+    private GeometryParticleConverter getDefaultGeometryConverter( FeatureTypeMapping ftMapping ) {
+        Pair<TableName, GeometryMapping> gm = ftMapping.getDefaultGeometryMapping();
+        if ( gm == null ) {
+            return null;
+        }
+        ParticleConverter<?> converter = getConverter( gm.second );
+        if ( converter instanceof GeometryParticleConverter ) {
+            return (GeometryParticleConverter) converter;
+        }
+        return null;
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
         FeatureInputStream result = null;
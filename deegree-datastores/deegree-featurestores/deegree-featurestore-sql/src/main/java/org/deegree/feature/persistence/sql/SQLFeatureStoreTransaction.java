@@ -81,6 +81,7 @@ import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
@@ -143,6 +144,11 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
     // TODO
     private ParticleConverter<Geometry> blobGeomConverter;
 
+    // ids of features that have been updated or deleted, removed from the feature cache on commit/rollback
+    private final Set<String> invalidatedIds = new HashSet<String>();
+
+    private boolean resolveStoredReferences;
+
     /**
      * Creates a new {@link SQLFeatureStoreTransaction} instance.
      *
@@ -173,6 +179,20 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         this.bboxTracker = new BBoxTracker();
     }
 
+    /**
+     * Sets whether references to features that are not part of the inserted features should be resolved to features
+     * that have been stored already (e.g. by an earlier transaction of a chunked bulk load).
+     * <p>
+     * Only effective for relational inserts with {@link IDGenMode#USE_EXISTING}. Disabled by default.
+     * </p>
+     * 
+     * @param resolveStoredReferences
+     *            true, if references to features outside of the inserted features should be resolved as stored
+     */
+    public void setResolveStoredReferences( boolean resolveStoredReferences ) {
+        this.resolveStoredReferences = resolveStoredReferences;
+    }
+
     @Override
     public void commit()
                             throws FeatureStoreException {
@@ -185,10 +205,25 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             LOG.debug( t.getMessage(), t );
             throw new FeatureStoreException( "Unable to commit SQL transaction: " + t.getMessage() );
         } finally {
+            invalidateCache();
             fs.closeAndDetachTransactionConnection();
         }
     }
 
+    /**
+     * Removes the features modified by this transaction from the feature cache. Concurrent readers may have cached the
+     * old state while the transaction was running, and BLOB updates modify cached instances in place.
+     */
+    private void invalidateCache() {
+        FeatureStoreCache cache = fs.getCache();
+        if ( cache != null ) {
+            for ( String id : invalidatedIds ) {
+                cache.remove( id );
+            }
+        }
+        invalidatedIds.clear();
+    }
+
     private void updateBBoxCache()
                             throws FeatureStoreException {
 
@@ -237,6 +272,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             LOG.debug( e.getMessage(), e );
             throw new FeatureStoreException( "Unable to rollback SQL transaction: " + e.getMessage() );
         } finally {
+            invalidateCache();
             fs.closeAndDetachTransactionConnection();
         }
     }
@@ -266,6 +302,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
     @Override
     public int performDelete( IdFilter filter, Lock lock )
                             throws FeatureStoreException {
+        for ( ResourceId id : filter.getSelectedIds() ) {
+            invalidatedIds.add( id.getRid() );
+        }
         int deleted = 0;
         if ( blobMapping != null ) {
             deleted = performDeleteBlob( filter, lock );
@@ -645,7 +684,8 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             } else {
                 // pure relational mode
                 List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode );
+                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode, fs.getInsertBatchSize() );
+                insertManager.setResolveStoredReferences( resolveStoredReferences );
                 for ( Feature feature : features ) {
                     FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
                     if ( ftMapping == null ) {
@@ -660,6 +700,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                         bboxTracker.insert( feature, storageSrs );
                     }
                 }
+                insertManager.flush();
                 if ( insertManager.getDelayedRows() != 0 ) {
                     String msg = "After insertion, " + insertManager.getDelayedRows()
                                  + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
@@ -670,6 +711,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 for ( FeatureRow assignment : idAssignments ) {
                     fids.add( assignment.getNewId() );
                 }
+                logInsertStatistics( insertManager );
             }
         } catch ( Throwable t ) {
             String msg = "Error inserting feature: " + t.getMessage();
@@ -683,6 +725,19 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         return new ArrayList<String>( fids );
     }
 
+    private void logInsertStatistics( InsertRowManager insertManager ) {
+        long rows = insertManager.getInsertedRows();
+        long millis = insertManager.getInsertTime();
+        long rowsPerSecond = millis > 0 ? rows * 1000 / millis : rows;
+        String msg = "Inserted " + rows + " rows using " + insertManager.getExecutedStatements() + " statements/batches: "
+                     + millis + " [ms] (" + rowsPerSecond + " rows/s)";
+        if ( fs.getInsertBatchSize() > 0 ) {
+            LOG.info( msg );
+        } else {
+            LOG.debug( msg );
+        }
+    }
+
     private String generateNewId() {
         return UUID.randomUUID().toString();
     }
@@ -764,6 +819,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             blobUpdateStmt = conn.prepareStatement( sql.toString() );
             features = fs.query( query );
             for ( final Feature feature : features ) {
+                invalidatedIds.add( feature.getId() );
                 new FeatureUpdater().update( feature, replacementProps );
                 updateFeatureBlob( blobUpdateStmt, feature );
                 updatedFids.add( feature.getId() );
@@ -841,8 +897,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         } else {
             try {
                 updated = performUpdateRelational( ftName, replacementProps, idFilter );
-                if ( fs.getCache() != null ) {
-                    for ( ResourceId id : idFilter.getSelectedIds() ) {
+                for ( ResourceId id : idFilter.getSelectedIds() ) {
+                    invalidatedIds.add( id.getRid() );
+                    if ( fs.getCache() != null ) {
                         fs.getCache().remove( id.getRid() );
                     }
                 }
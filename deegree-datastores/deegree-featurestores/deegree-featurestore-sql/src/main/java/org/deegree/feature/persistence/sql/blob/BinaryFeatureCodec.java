@@ -0,0 +1,751 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLReferenceResolver;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.ows.CodeType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Curve.CurveType;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Ring.RingType;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.Surface.SurfaceType;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.gml.reference.FeatureReference;
+
+/**
+ * Compact binary encoding of {@link Feature} instances for the BLOB column of the {@link BlobCodec}.
+ * <p>
+ * Property declarations and primitive types are identified by their names (not by their position in the application
+ * schema), so stored features stay readable if the schema is reordered or extended. Each property record is prefixed
+ * with its length, so unrequested properties can be skipped without decoding them. Geometries are stored as packed coordinate arrays in the storage CRS. Only the
+ * common feature content is covered (simple, code, envelope and geometry properties with linear geometries, and feature
+ * references); {@link #encode(Feature, OutputStream, ICRS)} refuses everything else, so the caller can fall back to GML.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class BinaryFeatureCodec {
+
+    /** First bytes of every binary encoded feature; does not collide with XML, GZIP or Fast Infoset headers. */
+    static final byte[] MAGIC = { (byte) 0xDB, (byte) 0xF1, 'D', 'G' };
+
+    private static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final GeometryFactory geomFac = new GeometryFactory();
+
+    private static final int VALUE_NULL = 0;
+
+    private static final int VALUE_PRIMITIVE = 1;
+
+    private static final int VALUE_GEOMETRY = 2;
+
+    private static final int VALUE_ENVELOPE = 3;
+
+    private static final int VALUE_FEATURE_REFERENCE = 4;
+
+    private static final int VALUE_CODE = 5;
+
+    private static final int GEOM_POINT = 1;
+
+    private static final int GEOM_LINE_STRING = 2;
+
+    private static final int GEOM_POLYGON = 3;
+
+    private static final int GEOM_MULTI_POINT = 4;
+
+    private static final int GEOM_MULTI_LINE_STRING = 5;
+
+    private static final int GEOM_MULTI_POLYGON = 6;
+
+    private static final int GEOM_MULTI_CURVE = 7;
+
+    private static final int GEOM_MULTI_SURFACE = 8;
+
+    /**
+     * Returns whether the given header bytes start a binary encoded feature.
+     * 
+     * @param header
+     *            first bytes of the encoded object, must not be <code>null</code>
+     * @param length
+     *            number of valid bytes in <code>header</code>
+     * @return <code>true</code>, if the bytes start with the binary magic, <code>false</code> otherwise
+     */
+    static boolean isBinary( byte[] header, int length ) {
+        if ( length < MAGIC.length ) {
+            return false;
+        }
+        for ( int i = 0; i < MAGIC.length; i++ ) {
+            if ( header[i] != MAGIC[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the given feature to the specified output stream.
+     * 
+     * @param feature
+     *            feature to be encoded, must not be <code>null</code>
+     * @param os
+     *            output stream to write to, must not be <code>null</code>
+     * @param crs
+     *            storage crs, geometries in other crs are transformed, can be <code>null</code>
+     * @return <code>true</code>, if the feature has been written, <code>false</code> if it contains content that the
+     *         binary encoding does not support (nothing is written in this case)
+     * @throws IOException
+     */
+    boolean encode( Feature feature, OutputStream os, ICRS crs )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bos );
+        try {
+            new Encoder( crs ).writeFeature( feature, out );
+        } catch ( UnsupportedContentException e ) {
+            return false;
+        }
+        out.flush();
+        bos.writeTo( os );
+        return true;
+    }
+
+    /**
+     * Decodes a feature from the given input stream.
+     * 
+     * @param is
+     *            input stream to read from, must not be <code>null</code>
+     * @param schema
+     *            application schema, must not be <code>null</code>
+     * @param crs
+     *            storage crs, assigned to all geometries, can be <code>null</code>
+     * @param resolver
+     *            resolver for feature references, can be <code>null</code>
+     * @param requestedProps
+     *            names of the properties to decode, <code>null</code> for all
+     * @return decoded feature, never <code>null</code>
+     * @throws IOException
+     *             if the stream does not contain a valid binary encoded feature of the schema
+     */
+    Feature decode( InputStream is, AppSchema schema, ICRS crs, GMLReferenceResolver resolver,
+                    Set<QName> requestedProps )
+                            throws IOException {
+        DataInputStream in = new DataInputStream( is );
+        byte[] header = new byte[MAGIC.length];
+        in.readFully( header );
+        if ( !isBinary( header, header.length ) ) {
+            throw new IOException( "Not a binary encoded feature." );
+        }
+        int version = in.readUnsignedByte();
+        if ( version != VERSION ) {
+            throw new IOException( "Unsupported binary feature encoding version: " + version );
+        }
+        QName ftName = readQName( in );
+        FeatureType ft = schema.getFeatureType( ftName );
+        if ( ft == null ) {
+            throw new IOException( "Feature type '" + ftName + "' is not defined in the application schema." );
+        }
+        List<PropertyType> decls = ft.getPropertyDeclarations();
+        String fid = readString( in );
+        int numProps = readVarInt( in );
+        List<Property> props = new ArrayList<Property>( numProps );
+        for ( int i = 0; i < numProps; i++ ) {
+            PropertyType pt = findDeclaration( decls, readQName( in ) );
+            if ( pt == null ) {
+                throw new IOException( "Binary encoded feature '" + fid
+                                       + "' contains a property that is not declared for feature type '" + ftName
+                                       + "'." );
+            }
+            QName name = in.readBoolean() ? readQName( in ) : pt.getName();
+            int length = readVarInt( in );
+            if ( requestedProps != null && !isRequested( requestedProps, pt.getName(), name ) ) {
+                skipFully( in, length );
+                continue;
+            }
+            props.add( readProperty( in, pt, name, crs, resolver ) );
+        }
+        return ft.newFeature( fid, props, null );
+    }
+
+    private static PropertyType findDeclaration( List<PropertyType> decls, QName ptName ) {
+        for ( PropertyType decl : decls ) {
+            for ( PropertyType substitution : decl.getSubstitutions() ) {
+                if ( substitution.getName().equals( ptName ) ) {
+                    return substitution;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRequested( Set<QName> requestedProps, QName declName, QName name ) {
+        for ( QName requested : requestedProps ) {
+            if ( requested.getNamespaceURI() == null || requested.getNamespaceURI().isEmpty() ) {
+                if ( requested.getLocalPart().equals( declName.getLocalPart() )
+                     || requested.getLocalPart().equals( name.getLocalPart() ) ) {
+                    return true;
+                }
+            } else if ( requested.equals( declName ) || requested.equals( name ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Property readProperty( DataInputStream in, PropertyType pt, QName name, ICRS crs,
+                                   GMLReferenceResolver resolver )
+                            throws IOException {
+        Map<QName, PrimitiveValue> attrs = Collections.emptyMap();
+        int numAttrs = readVarInt( in );
+        if ( numAttrs > 0 ) {
+            attrs = new LinkedHashMap<QName, PrimitiveValue>( numAttrs * 2 );
+            for ( int i = 0; i < numAttrs; i++ ) {
+                QName attrName = readQName( in );
+                attrs.put( attrName, readPrimitive( in, null ) );
+            }
+        }
+        TypedObjectNode value = null;
+        int valueType = in.readUnsignedByte();
+        switch ( valueType ) {
+        case VALUE_NULL:
+            if ( pt instanceof FeaturePropertyType ) {
+                return new GenericProperty( pt, name, null, attrs, Collections.<TypedObjectNode> emptyList() );
+            }
+            break;
+        case VALUE_PRIMITIVE:
+            PrimitiveType declared = null;
+            if ( pt instanceof SimplePropertyType ) {
+                declared = ( (SimplePropertyType) pt ).getPrimitiveType();
+            }
+            value = readPrimitive( in, declared );
+            break;
+        case VALUE_GEOMETRY:
+            value = readGeometry( in, crs );
+            break;
+        case VALUE_ENVELOPE:
+            double[] min = readCoordinates( in );
+            double[] max = readCoordinates( in );
+            value = geomFac.createEnvelope( min, max, crs );
+            break;
+        case VALUE_FEATURE_REFERENCE:
+            value = new FeatureReference( resolver, readString( in ), null );
+            break;
+        case VALUE_CODE:
+            value = new CodeType( readString( in ), readString( in ) );
+            break;
+        default:
+            throw new IOException( "Invalid value type in binary encoded feature: " + valueType );
+        }
+        return new GenericProperty( pt, name, value, attrs );
+    }
+
+    private PrimitiveValue readPrimitive( DataInputStream in, PrimitiveType declared )
+                            throws IOException {
+        String typeName = readString( in );
+        BaseType baseType = null;
+        for ( BaseType candidate : BaseType.values() ) {
+            if ( candidate.getXSTypeName().equals( typeName ) ) {
+                baseType = candidate;
+                break;
+            }
+        }
+        if ( baseType == null ) {
+            throw new IOException( "Invalid primitive type in binary encoded feature: " + typeName );
+        }
+        String text = readString( in );
+        PrimitiveType type = declared;
+        if ( type == null || type.getBaseType() != baseType ) {
+            type = new PrimitiveType( baseType );
+        }
+        return new PrimitiveValue( text, type );
+    }
+
+    private Geometry readGeometry( DataInputStream in, ICRS crs )
+                            throws IOException {
+        int geomType = in.readUnsignedByte();
+        String id = readString( in );
+        switch ( geomType ) {
+        case GEOM_POINT:
+            return geomFac.createPoint( id, readCoordinates( in ), crs );
+        case GEOM_LINE_STRING:
+            return geomFac.createLineString( id, crs, readPoints( in, crs ) );
+        case GEOM_POLYGON:
+            return readPolygon( in, id, crs );
+        case GEOM_MULTI_POINT: {
+            int n = readVarInt( in );
+            List<Point> members = new ArrayList<Point>( n );
+            for ( int i = 0; i < n; i++ ) {
+                members.add( geomFac.createPoint( readString( in ), readCoordinates( in ), crs ) );
+            }
+            return geomFac.createMultiPoint( id, crs, members );
+        }
+        case GEOM_MULTI_LINE_STRING:
+            return geomFac.createMultiLineString( id, crs, readLineStrings( in, crs ) );
+        case GEOM_MULTI_CURVE:
+            return geomFac.createMultiCurve( id, crs, new ArrayList<Curve>( readLineStrings( in, crs ) ) );
+        case GEOM_MULTI_POLYGON:
+            return geomFac.createMultiPolygon( id, crs, readPolygons( in, crs ) );
+        case GEOM_MULTI_SURFACE:
+            return geomFac.createMultiSurface( id, crs, new ArrayList<Surface>( readPolygons( in, crs ) ) );
+        default:
+            throw new IOException( "Invalid geometry type in binary encoded feature: " + geomType );
+        }
+    }
+
+    private List<LineString> readLineStrings( DataInputStream in, ICRS crs )
+                            throws IOException {
+        int n = readVarInt( in );
+        List<LineString> members = new ArrayList<LineString>( n );
+        for ( int i = 0; i < n; i++ ) {
+            String memberId = readString( in );
+            members.add( geomFac.createLineString( memberId, crs, readPoints( in, crs ) ) );
+        }
+        return members;
+    }
+
+    private List<Polygon> readPolygons( DataInputStream in, ICRS crs )
+                            throws IOException {
+        int n = readVarInt( in );
+        List<Polygon> members = new ArrayList<Polygon>( n );
+        for ( int i = 0; i < n; i++ ) {
+            members.add( readPolygon( in, readString( in ), crs ) );
+        }
+        return members;
+    }
+
+    private Polygon readPolygon( DataInputStream in, String id, ICRS crs )
+                            throws IOException {
+        Ring exterior = geomFac.createLinearRing( readString( in ), crs, readPoints( in, crs ) );
+        int numInteriors = readVarInt( in );
+        List<Ring> interiors = new ArrayList<Ring>( numInteriors );
+        for ( int i = 0; i < numInteriors; i++ ) {
+            interiors.add( geomFac.createLinearRing( readString( in ), crs, readPoints( in, crs ) ) );
+        }
+        return geomFac.createPolygon( id, crs, exterior, interiors );
+    }
+
+    private Points readPoints( DataInputStream in, ICRS crs )
+                            throws IOException {
+        int dim = in.readUnsignedByte();
+        int n = readVarInt( in );
+        double[] coords = new double[n * dim];
+        for ( int i = 0; i < coords.length; i++ ) {
+            coords[i] = in.readDouble();
+        }
+        return new PackedPoints( crs, coords, dim );
+    }
+
+    private double[] readCoordinates( DataInputStream in )
+                            throws IOException {
+        double[] coords = new double[in.readUnsignedByte()];
+        for ( int i = 0; i < coords.length; i++ ) {
+            coords[i] = in.readDouble();
+        }
+        return coords;
+    }
+
+    private static QName readQName( DataInputStream in )
+                            throws IOException {
+        String ns = readString( in );
+        String localPart = readString( in );
+        String prefix = readString( in );
+        return new QName( ns, localPart, prefix == null ? "" : prefix );
+    }
+
+    private static String readString( DataInputStream in )
+                            throws IOException {
+        int length = readVarInt( in ) - 1;
+        if ( length < 0 ) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, UTF8 );
+    }
+
+    private static int readVarInt( DataInputStream in )
+                            throws IOException {
+        int value = 0;
+        for ( int shift = 0; shift < 32; shift += 7 ) {
+            int b = in.readUnsignedByte();
+            value |= ( b & 0x7f ) << shift;
+            if ( ( b & 0x80 ) == 0 ) {
+                return value;
+            }
+        }
+        throw new IOException( "Malformed variable length integer in binary encoded feature." );
+    }
+
+    private static void skipFully( DataInputStream in, int length )
+                            throws IOException {
+        int remaining = length;
+        while ( remaining > 0 ) {
+            int skipped = in.skipBytes( remaining );
+            if ( skipped <= 0 ) {
+                in.readUnsignedByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void writeQName( QName name, DataOutputStream out )
+                            throws IOException {
+        writeString( name.getNamespaceURI(), out );
+        writeString( name.getLocalPart(), out );
+        writeString( name.getPrefix(), out );
+    }
+
+    private static void writeString( String s, DataOutputStream out )
+                            throws IOException {
+        if ( s == null ) {
+            writeVarInt( 0, out );
+            return;
+        }
+        byte[] bytes = s.getBytes( UTF8 );
+        writeVarInt( bytes.length + 1, out );
+        out.write( bytes );
+    }
+
+    private static void writeVarInt( int value, DataOutputStream out )
+                            throws IOException {
+        int v = value;
+        while ( ( v & ~0x7f ) != 0 ) {
+            out.writeByte( ( v & 0x7f ) | 0x80 );
+            v >>>= 7;
+        }
+        out.writeByte( v );
+    }
+
+    /**
+     * Writes a single feature, keeps the per-call transformation state.
+     */
+    private static class Encoder {
+
+        private final ICRS crs;
+
+        private GeometryTransformer transformer;
+
+        private Encoder( ICRS crs ) {
+            this.crs = crs;
+        }
+
+        private void writeFeature( Feature feature, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            if ( feature.getExtraProperties() != null ) {
+                throw new UnsupportedContentException();
+            }
+            out.write( MAGIC );
+            out.writeByte( VERSION );
+            writeQName( feature.getName(), out );
+            writeString( feature.getId(), out );
+            List<PropertyType> decls = feature.getType().getPropertyDeclarations();
+            List<Property> props = feature.getProperties();
+            writeVarInt( props.size(), out );
+            ByteArrayOutputStream propBytes = new ByteArrayOutputStream();
+            DataOutputStream propOut = new DataOutputStream( propBytes );
+            for ( Property prop : props ) {
+                writeDeclaration( prop, decls, out );
+                propBytes.reset();
+                writeProperty( prop, propOut );
+                propOut.flush();
+                writeVarInt( propBytes.size(), out );
+                propBytes.writeTo( out );
+            }
+        }
+
+        private void writeDeclaration( Property prop, List<PropertyType> decls, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            PropertyType pt = prop.getType();
+            for ( PropertyType decl : decls ) {
+                for ( PropertyType substitution : decl.getSubstitutions() ) {
+                    if ( substitution == pt ) {
+                        writeQName( pt.getName(), out );
+                        boolean renamed = !pt.getName().equals( prop.getName() );
+                        out.writeBoolean( renamed );
+                        if ( renamed ) {
+                            writeQName( prop.getName(), out );
+                        }
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedContentException();
+        }
+
+        private void writeProperty( Property prop, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            TypedObjectNode value = prop.getValue();
+            List<TypedObjectNode> children = prop.getChildren();
+            if ( children != null && children.size() > 1 ) {
+                throw new UnsupportedContentException();
+            }
+            Map<QName, PrimitiveValue> attrs = prop.getAttributes();
+            if ( attrs == null ) {
+                writeVarInt( 0, out );
+            } else {
+                writeVarInt( attrs.size(), out );
+                for ( Entry<QName, PrimitiveValue> attr : attrs.entrySet() ) {
+                    writeQName( attr.getKey(), out );
+                    writePrimitive( attr.getValue(), out );
+                }
+            }
+            if ( value == null ) {
+                out.writeByte( VALUE_NULL );
+            } else if ( value instanceof PrimitiveValue ) {
+                out.writeByte( VALUE_PRIMITIVE );
+                writePrimitive( (PrimitiveValue) value, out );
+            } else if ( value instanceof FeatureReference ) {
+                out.writeByte( VALUE_FEATURE_REFERENCE );
+                writeString( ( (FeatureReference) value ).getURI(), out );
+            } else if ( value instanceof CodeType ) {
+                out.writeByte( VALUE_CODE );
+                writeString( ( (CodeType) value ).getCode(), out );
+                writeString( ( (CodeType) value ).getCodeSpace(), out );
+            } else if ( value instanceof Envelope ) {
+                Envelope env = toStorageCrs( (Envelope) value );
+                out.writeByte( VALUE_ENVELOPE );
+                writeCoordinates( env.getMin().getAsArray(), out );
+                writeCoordinates( env.getMax().getAsArray(), out );
+            } else if ( value instanceof Geometry ) {
+                out.writeByte( VALUE_GEOMETRY );
+                writeGeometry( toStorageCrs( (Geometry) value ), out );
+            } else {
+                // inline features, custom (generic XML) content, time objects, ...
+                throw new UnsupportedContentException();
+            }
+        }
+
+        private void writePrimitive( PrimitiveValue value, DataOutputStream out )
+                                throws IOException {
+            writeString( value.getType().getBaseType().getXSTypeName(), out );
+            writeString( value.getAsText(), out );
+        }
+
+        private void writeGeometry( Geometry geom, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            checkPlain( geom );
+            switch ( geom.getGeometryType() ) {
+            case PRIMITIVE_GEOMETRY:
+                if ( geom instanceof Point ) {
+                    out.writeByte( GEOM_POINT );
+                    writeString( geom.getId(), out );
+                    writeCoordinates( ( (Point) geom ).getAsArray(), out );
+                } else if ( isLineString( geom ) ) {
+                    out.writeByte( GEOM_LINE_STRING );
+                    writeString( geom.getId(), out );
+                    writePoints( ( (LineString) geom ).getControlPoints(), out );
+                } else if ( isPolygon( geom ) ) {
+                    out.writeByte( GEOM_POLYGON );
+                    writeString( geom.getId(), out );
+                    writePolygonRings( (Polygon) geom, out );
+                } else {
+                    throw new UnsupportedContentException();
+                }
+                return;
+            case MULTI_GEOMETRY:
+                writeMultiGeometry( (MultiGeometry<?>) geom, out );
+                return;
+            default:
+                throw new UnsupportedContentException();
+            }
+        }
+
+        private void writeMultiGeometry( MultiGeometry<?> multi, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            switch ( multi.getMultiGeometryType() ) {
+            case MULTI_POINT:
+                out.writeByte( GEOM_MULTI_POINT );
+                break;
+            case MULTI_LINE_STRING:
+                out.writeByte( GEOM_MULTI_LINE_STRING );
+                break;
+            case MULTI_CURVE:
+                out.writeByte( GEOM_MULTI_CURVE );
+                break;
+            case MULTI_POLYGON:
+                out.writeByte( GEOM_MULTI_POLYGON );
+                break;
+            case MULTI_SURFACE:
+                out.writeByte( GEOM_MULTI_SURFACE );
+                break;
+            default:
+                throw new UnsupportedContentException();
+            }
+            writeString( multi.getId(), out );
+            writeVarInt( multi.size(), out );
+            for ( Geometry member : multi ) {
+                checkPlain( member );
+                writeString( member.getId(), out );
+                if ( member instanceof Point ) {
+                    writeCoordinates( ( (Point) member ).getAsArray(), out );
+                } else if ( isLineString( member ) ) {
+                    writePoints( ( (LineString) member ).getControlPoints(), out );
+                } else if ( isPolygon( member ) ) {
+                    writePolygonRings( (Polygon) member, out );
+                } else {
+                    throw new UnsupportedContentException();
+                }
+            }
+        }
+
+        private void writePolygonRings( Polygon polygon, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            writeLinearRing( polygon.getExteriorRing(), out );
+            List<Ring> interiors = polygon.getInteriorRings();
+            if ( interiors == null ) {
+                writeVarInt( 0, out );
+                return;
+            }
+            writeVarInt( interiors.size(), out );
+            for ( Ring interior : interiors ) {
+                writeLinearRing( interior, out );
+            }
+        }
+
+        private void writeLinearRing( Ring ring, DataOutputStream out )
+                                throws IOException, UnsupportedContentException {
+            if ( ring == null || ring.getRingType() != RingType.LinearRing ) {
+                throw new UnsupportedContentException();
+            }
+            checkPlain( ring );
+            writeString( ring.getId(), out );
+            writePoints( ( (LinearRing) ring ).getControlPoints(), out );
+        }
+
+        private void writePoints( Points points, DataOutputStream out )
+                                throws IOException {
+            int dim = points.getDimension();
+            out.writeByte( dim );
+            writeVarInt( points.size(), out );
+            for ( Point p : points ) {
+                for ( int i = 0; i < dim; i++ ) {
+                    out.writeDouble( p.get( i ) );
+                }
+            }
+        }
+
+        private void writeCoordinates( double[] coords, DataOutputStream out )
+                                throws IOException {
+            out.writeByte( coords.length );
+            for ( double c : coords ) {
+                out.writeDouble( c );
+            }
+        }
+
+        private boolean isLineString( Geometry geom ) {
+            return geom instanceof LineString && ( (Curve) geom ).getCurveType() == CurveType.LineString;
+        }
+
+        private boolean isPolygon( Geometry geom ) {
+            return geom instanceof Polygon && ( (Surface) geom ).getSurfaceType() == SurfaceType.Polygon;
+        }
+
+        private void checkPlain( Geometry geom )
+                                throws UnsupportedContentException {
+            if ( geom instanceof GeometryReference || ( geom.getProperties() != null && !geom.getProperties().isEmpty() ) ) {
+                throw new UnsupportedContentException();
+            }
+        }
+
+        private <T extends Geometry> T toStorageCrs( T geom )
+                                throws UnsupportedContentException {
+            ICRS geomCrs = geom.getCoordinateSystem();
+            if ( crs == null || geomCrs == null || geomCrs.equals( crs ) ) {
+                return geom;
+            }
+            try {
+                if ( transformer == null ) {
+                    transformer = new GeometryTransformer( crs );
+                }
+                return transformer.transform( geom );
+            } catch ( Exception e ) {
+                throw new UnsupportedContentException();
+            }
+        }
+    }
+
+    /**
+     * Signals content that is not covered by the binary encoding.
+     */
+    private static class UnsupportedContentException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
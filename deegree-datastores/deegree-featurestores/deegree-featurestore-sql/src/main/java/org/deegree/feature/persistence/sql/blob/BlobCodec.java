@@ -37,6 +37,10 @@
 package org.deegree.feature.persistence.sql.blob;
 
 import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.BINARY;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.FAST_INFOSET;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.GZIP;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.NONE;
 
 import java.io.BufferedInputStream;
 import java.io.File;
@@ -46,10 +50,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
@@ -104,8 +110,10 @@ public class BlobCodec {
 
     private final Compression compression;
 
+    private final BinaryFeatureCodec binaryCodec = new BinaryFeatureCodec();
+
     public enum Compression {
-        NONE, GZIP, FAST_INFOSET
+        NONE, GZIP, FAST_INFOSET, BINARY
     }
 
     /**
@@ -142,6 +150,14 @@ public class BlobCodec {
                             UnknownCRSException, TransformationException, IOException {
 
         long begin = System.currentTimeMillis();
+        if ( compression == BINARY ) {
+            if ( object instanceof Feature && binaryCodec.encode( (Feature) object, os, crs ) ) {
+                LOG.debug( "Encoding feature (compression: {}) took {} [ms]", compression, System.currentTimeMillis()
+                                                                                           - begin );
+                return;
+            }
+            LOG.debug( "Object '{}' is not supported by the binary encoding, falling back to GML.", object.getId() );
+        }
         XMLStreamWriter xmlWriter = getXMLWriter( os );
         GMLStreamWriter gmlWriter = GMLOutputFactory.createGMLStreamWriter( gmlVersion, xmlWriter );
         Map<String, String> bindings = new HashMap<String, String>( nsContext );
@@ -180,7 +196,8 @@ public class BlobCodec {
             writer = new XMLStreamWriterWrapper( writer, gos );
             break;
         }
-        case NONE: {
+        case NONE:
+        case BINARY: {
             writer = xmlOutputFactory.createXMLStreamWriter( os, "UTF-8" );
             break;
         }
@@ -190,6 +207,10 @@ public class BlobCodec {
 
     /**
      * Decodes the given {@link GMLObject} from the specified input stream.
+     * <p>
+     * The actual encoding of the stream is detected from its first bytes, so objects that have been stored with a
+     * different {@link Compression} (e.g. before a migration) can still be read.
+     * </p>
      * 
      * @param is
      *            input stream to read from, must not be <code>null</code>
@@ -209,20 +230,99 @@ public class BlobCodec {
                              GMLReferenceResolver idResolver )
                             throws XMLParsingException, XMLStreamException, UnknownCRSException,
                             FactoryConfigurationError, IOException {
+        return decode( is, nsContext, schema, crs, idResolver, null );
+    }
+
+    /**
+     * Decodes the given {@link GMLObject} from the specified input stream, restricted to the given properties.
+     * <p>
+     * Only {@link Compression#BINARY} encoded features can skip properties, all other encodings are always decoded
+     * completely. Callers must not put partially decoded features into a cache.
+     * </p>
+     * 
+     * @param is
+     *            input stream to read from, must not be <code>null</code>
+     * @param nsContext
+     * @param schema
+     *            application schema, must not be <code>null</code>
+     * @param crs
+     * @param idResolver
+     * @param requestedProps
+     *            names of the properties to decode, <code>null</code> for all properties
+     * @return
+     * @throws XMLParsingException
+     * @throws XMLStreamException
+     * @throws UnknownCRSException
+     * @throws FactoryConfigurationError
+     * @throws IOException
+     */
+    public GMLObject decode( InputStream is, Map<String, String> nsContext, AppSchema schema, ICRS crs,
+                             GMLReferenceResolver idResolver, Set<QName> requestedProps )
+                            throws XMLParsingException, XMLStreamException, UnknownCRSException,
+                            FactoryConfigurationError, IOException {
 
         long begin = System.currentTimeMillis();
         BufferedInputStream bis = new BufferedInputStream( is );
-        XMLStreamReader xmlStream = getXMLReader( bis, nsContext );
+        Compression detected = detectCompression( bis );
+        if ( detected == BINARY ) {
+            Feature feature = binaryCodec.decode( bis, schema, crs, idResolver, requestedProps );
+            LOG.debug( "Decoding feature (compression: {}) took {} [ms]", detected, System.currentTimeMillis() - begin );
+            return feature;
+        }
+        XMLStreamReader xmlStream = getXMLReader( bis, detected );
         GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, xmlStream );
         gmlReader.setResolver( idResolver );
         gmlReader.setApplicationSchema( schema );
         gmlReader.setDefaultCRS( crs );
         Feature feature = gmlReader.readFeature();
-        LOG.debug( "Decoding feature (compression: {}) took {} [ms]", compression, System.currentTimeMillis() - begin );
+        LOG.debug( "Decoding feature (compression: {}) took {} [ms]", detected, System.currentTimeMillis() - begin );
         return feature;
     }
 
-    private XMLStreamReader getXMLReader( InputStream is, Map<String, String> nsContext )
+    /**
+     * Determines the {@link Compression} of an encoded object from its first bytes.
+     * 
+     * @param is
+     *            input stream positioned at the start of the encoded object, must support marks and not be
+     *            <code>null</code>; the position is unchanged after the call
+     * @return detected compression, never <code>null</code> ({@link Compression#NONE} if nothing else matches)
+     * @throws IOException
+     */
+    public static Compression detectCompression( InputStream is )
+                            throws IOException {
+        byte[] header = new byte[4];
+        is.mark( header.length );
+        int read = 0;
+        try {
+            int n = 0;
+            while ( read < header.length && ( n = is.read( header, read, header.length - read ) ) != -1 ) {
+                read += n;
+            }
+        } finally {
+            is.reset();
+        }
+        if ( BinaryFeatureCodec.isBinary( header, read ) ) {
+            return BINARY;
+        }
+        if ( read >= 2 && header[0] == (byte) 0x1f && header[1] == (byte) 0x8b ) {
+            return GZIP;
+        }
+        if ( read >= 4 && header[0] == (byte) 0xe0 && header[1] == 0 && header[2] == 0 && header[3] == 1 ) {
+            return FAST_INFOSET;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the compression that is used for encoding.
+     * 
+     * @return compression, never <code>null</code>
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    private XMLStreamReader getXMLReader( InputStream is, Compression compression )
                             throws XMLStreamException, IOException {
         XMLStreamReader reader = null;
         switch ( compression ) {
@@ -235,7 +335,8 @@ public class BlobCodec {
             reader = xmlInputFactory.createXMLStreamReader( gis, "UTF-8" );
             break;
         }
-        case NONE: {
+        case NONE:
+        case BINARY: {
             reader = xmlInputFactory.createXMLStreamReader( is, "UTF-8" );
             break;
         }
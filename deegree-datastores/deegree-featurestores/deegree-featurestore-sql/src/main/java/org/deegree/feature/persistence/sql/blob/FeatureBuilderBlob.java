@@ -39,6 +39,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
@@ -70,6 +73,8 @@ public class FeatureBuilderBlob implements FeatureBuilder {
 
     private TypeName[] typeNames;
 
+    private final Set<QName> requestedProps;
+
     /**
      * Creates a new {@link FeatureBuilderBlob} instance.
      * 
@@ -94,11 +99,31 @@ public class FeatureBuilderBlob implements FeatureBuilder {
      *            this list an exception is thrown
      */
     public FeatureBuilderBlob( SQLFeatureStore fs, BlobMapping blobMapping, TypeName[] typeNames ) {
+        this( fs, blobMapping, typeNames, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderBlob} instance that only decodes the given properties (if the encoding of the
+     * stored features allows it).
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param blobMapping
+     *            blob mapping parameters, must not be <code>null</code>
+     * @param typeNames
+     *            list of requested type names, can be <code>null</code>
+     * @param requestedProps
+     *            names of the properties to decode, <code>null</code> for all properties; features restricted to a
+     *            subset of their properties are not added to the cache
+     */
+    public FeatureBuilderBlob( SQLFeatureStore fs, BlobMapping blobMapping, TypeName[] typeNames,
+                               Set<QName> requestedProps ) {
         this.fs = fs;
         this.blobMapping = blobMapping;
         this.codec = blobMapping.getCodec();
         this.crs = blobMapping.getCRS();
         this.typeNames = typeNames;
+        this.requestedProps = requestedProps;
     }
     
     @Override
@@ -121,8 +146,8 @@ public class FeatureBuilderBlob implements FeatureBuilder {
             if ( feature == null ) {
                 LOG.debug( "Recreating object '" + gmlId + "' from db (BLOB/hybrid mode)." );
                 feature = (Feature) codec.decode( rs.getBinaryStream( 2 ), fs.getNamespaceContext(), fs.getSchema(),
-                                                  crs, fs.getResolver() );
-                if ( fs.getCache() != null ) {
+                                                  crs, fs.getResolver(), requestedProps );
+                if ( fs.getCache() != null && requestedProps == null ) {
                     fs.getCache().add( feature );
                 }
             } else {
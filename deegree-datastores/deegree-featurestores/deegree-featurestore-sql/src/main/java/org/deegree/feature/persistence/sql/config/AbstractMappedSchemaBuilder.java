@@ -63,6 +63,7 @@ import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.mapping.antlr.FMLLexer;
 import org.deegree.feature.persistence.mapping.antlr.FMLParser;
+import org.deegree.feature.persistence.sql.GeometrySimplification;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.expressions.Function;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
@@ -144,6 +145,14 @@ public abstract class AbstractMappedSchemaBuilder {
                                     + jaxbElement.getValue().getClass() );
     }
 
+    protected GeometrySimplification buildGeometrySimplification( FeatureTypeMappingJAXB ftDecl ) {
+        FeatureTypeMappingJAXB.GeometrySimplification config = ftDecl.getGeometrySimplification();
+        if ( config == null ) {
+            return null;
+        }
+        return new GeometrySimplification( config.getPixelTolerance(), config.isSkipSubPixelFeatures() );
+    }
+
     protected BaseType getPrimitiveType( org.deegree.feature.persistence.sql.jaxb.PrimitiveType type ) {
         switch ( type ) {
         case BOOLEAN:
@@ -76,6 +76,7 @@ import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.GeometryStorageParams;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
@@ -311,7 +312,12 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
                                                                       : blobMappingConf.getFeatureTypeTable();
         BBoxTableMapping bboxMapping = new BBoxTableMapping( ftTable, geometryParams.getCrs() );
         String blobTable = blobMappingConf.getBlobTable() == null ? GML_OBJECTS_TABLE : blobMappingConf.getBlobTable();
-        BlobMapping blobMapping = new BlobMapping( blobTable, geometryParams.getCrs(), new BlobCodec( gmlVersion, NONE ) );
+        Compression compression = NONE;
+        if ( blobMappingConf.getCompression() != null ) {
+            compression = Compression.valueOf( blobMappingConf.getCompression() );
+        }
+        BlobCodec codec = new BlobCodec( gmlVersion, compression );
+        BlobMapping blobMapping = new BlobMapping( blobTable, geometryParams.getCrs(), codec );
         return new Pair<BlobMapping, BBoxTableMapping>( blobMapping, bboxMapping );
     }
 
@@ -327,7 +333,8 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
             particleMappings.add( buildMapping( ftTable, new Pair<XSElementDeclaration, Boolean>( elDecl, TRUE ),
                                                 particle.getValue() ) );
         }
-        return new FeatureTypeMapping( ftName, ftTable, fidMapping, particleMappings );
+        return new FeatureTypeMapping( ftName, ftTable, fidMapping, particleMappings,
+                                       buildGeometrySimplification( ftMappingConf ) );
     }
 
     private FIDMapping buildFIDMapping( TableName table, QName ftName, FIDMappingJAXB config )
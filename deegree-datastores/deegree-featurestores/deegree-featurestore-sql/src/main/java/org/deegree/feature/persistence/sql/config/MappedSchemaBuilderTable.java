@@ -72,6 +72,7 @@ import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.GeometrySimplification;
 import org.deegree.feature.persistence.sql.GeometryStorageParams;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
@@ -198,16 +199,18 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
         LOG.debug( "Feature type name: '" + ftName + "'." );
 
         FIDMapping fidMapping = buildFIDMapping( table, ftName, ftDecl.getFIDMapping() );
+        GeometrySimplification simplification = buildGeometrySimplification( ftDecl );
 
         List<JAXBElement<? extends AbstractParticleJAXB>> propDecls = ftDecl.getAbstractParticle();
         if ( propDecls != null && !propDecls.isEmpty() ) {
-            buildFeatureTypeAndMapping( table, ftName, fidMapping, propDecls );
+            buildFeatureTypeAndMapping( table, ftName, fidMapping, simplification, propDecls );
         } else {
-            buildFeatureTypeAndMapping( table, ftName, fidMapping );
+            buildFeatureTypeAndMapping( table, ftName, fidMapping, simplification );
         }
     }
 
-    private void buildFeatureTypeAndMapping( TableName table, QName ftName, FIDMapping fidMapping )
+    private void buildFeatureTypeAndMapping( TableName table, QName ftName, FIDMapping fidMapping,
+                                             GeometrySimplification simplification )
                             throws SQLException {
 
         LOG.debug( "Deriving properties and mapping for feature type '" + ftName + "' from table '" + table + "'" );
@@ -257,11 +260,12 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
         FeatureType ft = new GenericFeatureType( ftName, pts, false );
         ftNameToFt.put( ftName, ft );
 
-        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings );
+        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings, simplification );
         ftNameToMapping.put( ftName, ftMapping );
     }
 
     private void buildFeatureTypeAndMapping( TableName table, QName ftName, FIDMapping fidMapping,
+                                             GeometrySimplification simplification,
                                              List<JAXBElement<? extends AbstractParticleJAXB>> propDecls )
                             throws FeatureStoreException, SQLException {
 
@@ -279,7 +283,7 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
         FeatureType ft = new GenericFeatureType( ftName, pts, false );
         ftNameToFt.put( ftName, ft );
 
-        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings );
+        FeatureTypeMapping ftMapping = new FeatureTypeMapping( ftName, table, fidMapping, mappings, simplification );
         ftNameToMapping.put( ftName, ftMapping );
     }
 
@@ -54,6 +54,7 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.StringUtils;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
@@ -192,6 +193,12 @@ public class SQLFeatureStoreConfigWriter {
     private void writeBlobMapping( XMLStreamWriter writer, BlobMapping blobMapping )
                             throws XMLStreamException {
         writer.writeStartElement( CONFIG_NS, "BLOBMapping" );
+        Compression compression = blobMapping.getCodec().getCompression();
+        if ( compression != Compression.NONE ) {
+            writer.writeStartElement( CONFIG_NS, "Compression" );
+            writer.writeCharacters( compression.name() );
+            writer.writeEndElement();
+        }
         writer.writeEndElement();
     }
 
@@ -35,8 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql.insert;
 
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -109,10 +107,8 @@ public class FeatureRow extends InsertRow {
     }
 
     @Override
-    void performInsert( Connection conn, boolean propagateAutoGenColumns )
-                            throws SQLException, FeatureStoreException {
-
-        super.performInsert( conn, propagateAutoGenColumns );
+    void afterInsert()
+                            throws FeatureStoreException {
 
         newId = buildNewFid();
         if ( newId == null ) {
@@ -164,6 +160,37 @@ public class FeatureRow extends InsertRow {
         newId = buildNewFid();
     }
 
+    /**
+     * Assigns the key values of a feature that has been stored already (e.g. by an earlier transaction) and is only
+     * referenced by the currently inserted features.
+     * <p>
+     * Only possible if the id generation mode is {@link IDGenMode#USE_EXISTING}, as the key values are derived from
+     * the original feature id. The row is considered to be inserted afterwards.
+     * </p>
+     * 
+     * @throws FeatureStoreException
+     *             if the original feature id does not match the id pattern of a mapped feature type
+     */
+    void assignStored()
+                            throws FeatureStoreException {
+        FeatureTypeMapping ftMapping = null;
+        try {
+            IdAnalysis analysis = mgr.getSchema().analyzeId( origFid );
+            ftMapping = mgr.getSchema().getFtMapping( analysis.getFeatureType().getName() );
+        } catch ( IllegalArgumentException e ) {
+            // handled below
+        }
+        if ( ftMapping == null ) {
+            String msg = "Unable to resolve reference to feature with id '" + origFid
+                         + "'. Id does not match configured feature id pattern.";
+            throw new FeatureStoreException( msg );
+        }
+        this.table = ftMapping.getFtTable();
+        this.fidMapping = ftMapping.getFidMapping();
+        preInsertUseExisting( ftMapping );
+        afterInsert();
+    }
+
     boolean isAssigned() {
         return fidMapping != null;
     }
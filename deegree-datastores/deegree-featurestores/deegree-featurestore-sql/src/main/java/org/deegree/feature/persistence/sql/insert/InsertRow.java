@@ -212,22 +212,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -251,6 +236,86 @@ public abstract class InsertRow extends TransactionRow {
             }
         }
         stmt.close();
+        afterInsert();
+    }
+
+    /**
+     * Returns whether the insertion of this row requires the DB to return generated key values, i.e. if at least one
+     * of the auto generated columns has no value yet. Rows that don't require this can be inserted using JDBC batches.
+     * 
+     * @param propagateNonFidAutoGenColumns
+     *            <code>true</code>, if auto generated key columns need to be processed (and propagated),
+     *            <code>false</code> otherwise
+     * @return <code>true</code>, if generated keys must be retrieved on insert, <code>false</code> otherwise
+     */
+    boolean requiresGeneratedKeys( boolean propagateNonFidAutoGenColumns ) {
+        for ( SQLIdentifier autoGenColumn : getAutogenColumns( propagateNonFidAutoGenColumns ) ) {
+            if ( get( autoGenColumn ) == null ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether this row may be inserted as part of a JDBC batch. Rows that override
+     * {@link #performInsert(Connection, boolean)} (e.g. rows that represent an existing table row) must return
+     * <code>false</code>, as the batch path doesn't invoke it.
+     * 
+     * @return <code>true</code>, if the row may be batched, <code>false</code> otherwise
+     */
+    boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * Binds the values of this row to the given statement (which must have been prepared for {@link #getSql()}) and
+     * adds it to the statement's batch.
+     * <p>
+     * The caller is responsible for executing the batch and invoking {@link #afterInsert()} afterwards.
+     * </p>
+     * 
+     * @param stmt
+     *            statement to add the row to, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void addBatch( PreparedStatement stmt )
+                            throws SQLException {
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Adding row to batch: " + this );
+        }
+        setArguments( stmt );
+        stmt.addBatch();
+    }
+
+    /**
+     * Invoked after the row has been inserted (either individually or as part of a batch).
+     * 
+     * @throws FeatureStoreException
+     */
+    void afterInsert()
+                            throws FeatureStoreException {
+        // nothing to do by default
+    }
+
+    private void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
     }
 
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
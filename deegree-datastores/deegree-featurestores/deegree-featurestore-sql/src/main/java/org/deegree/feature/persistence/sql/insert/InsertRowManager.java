@@ -36,13 +36,16 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -93,6 +96,7 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>Optional JDBC batching of rows that don't require generated keys from the DB (bulk inserts)</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -126,8 +130,19 @@ public class InsertRowManager {
     // values: rows that have not been inserted yet, but can be inserted (no parents)
     private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+    // maximum number of rows per JDBC batch, 0 (or less): no batching
+    private final int batchSize;
+
+    private boolean resolveStoredReferences;
+
+    private long insertedRows;
+
+    private long executedStatements;
+
+    private long insertTime;
+
     /**
-     * Creates a new {@link InsertRowManager} instance.
+     * Creates a new {@link InsertRowManager} instance that inserts every row using a separate statement.
      * 
      * @param fs
      *            feature store, must not be <code>null</code>
@@ -137,11 +152,50 @@ public class InsertRowManager {
      *            feature id generation mode, must not be <code>null</code>
      */
     public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        this( fs, conn, idGenMode, 0 );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance.
+     * <p>
+     * If batching is enabled, rows that don't require generated keys from the DB are grouped per table (and column
+     * list) into JDBC batches. Table dependencies are still respected: a batch only contains rows whose parent rows
+     * have already been inserted. Row insertion is deferred until enough rows are pending, so {@link #flush()} must be
+     * invoked after the last feature has been inserted.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows per JDBC batch, 0 (or less) disables batching
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize ) {
         this.fs = fs;
         this.dialect = fs.getDialect();
         this.conn = conn;
         this.idGenMode = idGenMode;
         this.tableDeps = fs.getSchema().getKeyDependencies();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets whether references to features that are not part of the inserted features target features that have been
+     * stored already (e.g. by an earlier chunk of a bulk load).
+     * <p>
+     * Only effective if the id generation mode is {@link IDGenMode#USE_EXISTING}, as the key values of the referenced
+     * features are derived from their feature ids. Disabled by default, so unresolvable references are left as delayed
+     * rows.
+     * </p>
+     * 
+     * @param resolveStoredReferences
+     *            true, if references to features outside of the inserted features should be resolved as stored
+     */
+    public void setResolveStoredReferences( boolean resolveStoredReferences ) {
+        this.resolveStoredReferences = resolveStoredReferences;
     }
 
     /**
@@ -181,9 +235,13 @@ public class InsertRowManager {
                 }
             }
 
-            LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
-            processHeap();
-            LOG.debug( "After heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
+            if ( batchSize <= 0 || rootRows.size() >= batchSize ) {
+                LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: "
+                           + rootRows.size() );
+                processHeap();
+                LOG.debug( "After heap run: uninserted rows: " + delayedRows.size() + ", root rows: "
+                           + rootRows.size() );
+            }
 
         } catch ( Throwable t ) {
             LOG.debug( t.getMessage(), t );
@@ -205,6 +263,12 @@ public class InsertRowManager {
                     // don't
                 }
 
+                @Override
+                boolean isBatchable() {
+                    // existing row, must not be inserted by a batch either
+                    return false;
+                }
+
                 @Override
                 public Object get( SQLIdentifier id ) {
                     int idx = 0;
@@ -516,14 +580,33 @@ public class InsertRowManager {
     public void processHeap()
                             throws SQLException, FeatureStoreException {
 
+        long begin = System.nanoTime();
         while ( !rootRows.isEmpty() ) {
-            List<InsertRow> rootRemoves = new ArrayList<InsertRow>();
             List<InsertRow> rootAdds = new ArrayList<InsertRow>();
+            Map<String, List<InsertRow>> sqlToBatchRows = new LinkedHashMap<String, List<InsertRow>>();
+            for ( InsertRow row : rootRows ) {
+                boolean propagateAutoGenColumns = rowToChildRows.get( row ) != null;
+                if ( batchSize > 0 && row.isBatchable() && !row.requiresGeneratedKeys( propagateAutoGenColumns ) ) {
+                    String sql = row.getSql();
+                    List<InsertRow> batchRows = sqlToBatchRows.get( sql );
+                    if ( batchRows == null ) {
+                        batchRows = new ArrayList<InsertRow>();
+                        sqlToBatchRows.put( sql, batchRows );
+                    }
+                    batchRows.add( row );
+                } else {
+                    LOG.debug( "Inserting row " + row );
+                    row.performInsert( conn, propagateAutoGenColumns );
+                    insertedRows++;
+                    executedStatements++;
+                }
+            }
+            for ( Entry<String, List<InsertRow>> sqlAndRows : sqlToBatchRows.entrySet() ) {
+                performBatchInsert( sqlAndRows.getKey(), sqlAndRows.getValue() );
+            }
+
             for ( InsertRow row : rootRows ) {
-                LOG.debug( "Inserting row " + row );
-                row.performInsert( conn, rowToChildRows.get( row ) != null );
                 delayedRows.remove( row );
-                rootRemoves.add( row );
 
                 // update child rows
                 List<InsertRow> childRows = rowToChildRows.get( row );
@@ -538,9 +621,106 @@ public class InsertRowManager {
                     rowToChildRows.remove( row );
                 }
             }
-            rootRows.removeAll( rootRemoves );
+            rootRows.clear();
             rootRows.addAll( rootAdds );
         }
+        insertTime += System.nanoTime() - begin;
+    }
+
+    private void performBatchInsert( String sql, List<InsertRow> rows )
+                            throws SQLException, FeatureStoreException {
+
+        LOG.debug( "Inserting " + rows.size() + " rows using batch: " + sql );
+        PreparedStatement stmt = conn.prepareStatement( sql );
+        try {
+            int pending = 0;
+            for ( InsertRow row : rows ) {
+                row.addBatch( stmt );
+                if ( ++pending == batchSize ) {
+                    stmt.executeBatch();
+                    executedStatements++;
+                    pending = 0;
+                }
+            }
+            if ( pending > 0 ) {
+                stmt.executeBatch();
+                executedStatements++;
+            }
+        } finally {
+            stmt.close();
+        }
+        for ( InsertRow row : rows ) {
+            row.afterInsert();
+        }
+        insertedRows += rows.size();
+    }
+
+    /**
+     * Inserts all rows that have been deferred for batching and can be inserted now.
+     * <p>
+     * If enabled via {@link #setResolveStoredReferences(boolean)} (and the id generation mode is
+     * {@link IDGenMode#USE_EXISTING}), references to features that are not part of the inserted features are assumed to
+     * target features that have been stored already. Their key values are derived from the feature id and propagated
+     * to the referencing rows.
+     * </p>
+     * <p>
+     * Must be invoked after the last feature has been passed to {@link #insertFeature(Feature, FeatureTypeMapping)}
+     * (before evaluating {@link #getDelayedRows()} or the new feature ids).
+     * </p>
+     * 
+     * @throws SQLException
+     * @throws FeatureStoreException
+     */
+    public void flush()
+                            throws SQLException, FeatureStoreException {
+        LOG.debug( "Flushing: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
+        processHeap();
+        if ( resolveStoredReferences && idGenMode == IDGenMode.USE_EXISTING ) {
+            for ( FeatureRow featureRow : origFidToFeatureRow.values() ) {
+                if ( !featureRow.isAssigned() && delayedRows.contains( featureRow ) ) {
+                    LOG.debug( "Assuming referenced feature '" + featureRow.getOriginalId() + "' is stored already." );
+                    featureRow.assignStored();
+                    delayedRows.remove( featureRow );
+                    List<InsertRow> childRows = rowToChildRows.remove( featureRow );
+                    if ( childRows != null ) {
+                        for ( InsertRow childRow : childRows ) {
+                            childRow.removeParent( featureRow );
+                            if ( !childRow.hasParents() ) {
+                                rootRows.add( childRow );
+                            }
+                        }
+                    }
+                }
+            }
+            processHeap();
+        }
+    }
+
+    /**
+     * Returns the number of rows that have been inserted so far.
+     * 
+     * @return number of inserted rows
+     */
+    public long getInsertedRows() {
+        return insertedRows;
+    }
+
+    /**
+     * Returns the number of executed INSERT statements (a JDBC batch counts as a single statement).
+     * 
+     * @return number of executed statements
+     */
+    public long getExecutedStatements() {
+        return executedStatements;
+    }
+
+    /**
+     * Returns the time spent on inserting rows so far.
+     * 
+     * @return time in milliseconds
+     */
+    public long getInsertTime() {
+        return insertTime / 1000000;
     }
 
     /**
@@ -81,6 +81,7 @@ import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
 import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
 import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.SQLFeatureStore;
@@ -96,6 +97,7 @@ import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLOutputFactory;
 import org.deegree.gml.GMLStreamReader;
@@ -147,6 +149,8 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private final boolean nullEscalation;
 
+    private final double geometryTolerance;
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -163,7 +167,29 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, boolean nullEscalation ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, nullEscalation, -1 );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that selects simplified geometries.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param escalationPolicy
+     *            the void escalation policy, must not be <code>null</code>
+     * @param geometryTolerance
+     *            tolerance for simplifying geometries (in units of the storage crs), no simplification if not positive
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, boolean nullEscalation, double geometryTolerance ) {
         this.fs = fs;
+        this.geometryTolerance = geometryTolerance;
         this.ft = ft;
         this.ftMapping = ftMapping;
         this.conn = conn;
@@ -230,7 +256,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -253,6 +279,13 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
+    private String getGeometrySelectSnippet( ParticleConverter<?> converter ) {
+        if ( geometryTolerance > 0 && converter instanceof GeometryParticleConverter ) {
+            return ( (GeometryParticleConverter) converter ).getSelectSnippet( tableAlias, geometryTolerance );
+        }
+        return converter.getSelectSnippet( tableAlias );
+    }
+
     @Override
     public Feature buildFeature( ResultSet rs )
                             throws SQLException {
@@ -266,8 +299,10 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 gmlId += ftMapping.getFidMapping().getDelimiter()
                          + rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
             }
-            if ( fs.getCache() != null ) {
-                feature = (Feature) fs.getCache().get( gmlId );
+            // features with simplified geometries must not end up in (or be taken from) the shared cache
+            FeatureStoreCache cache = geometryTolerance > 0 ? null : fs.getCache();
+            if ( cache != null ) {
+                feature = (Feature) cache.get( gmlId );
             }
             if ( feature == null ) {
                 LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
@@ -286,8 +321,8 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                     }
                 }
                 feature = ft.newFeatureInstance( gmlId, props, null );
-                if ( fs.getCache() != null ) {
-                    fs.getCache().add( feature );
+                if ( cache != null ) {
+                    cache.add( feature );
                 }
             } else {
                 LOG.debug( "Cache hit." );
@@ -447,7 +482,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( converter );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
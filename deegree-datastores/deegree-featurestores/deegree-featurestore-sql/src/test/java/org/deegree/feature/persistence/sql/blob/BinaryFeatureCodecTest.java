@@ -0,0 +1,260 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import static java.util.Collections.singleton;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.BINARY;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.GZIP;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.NONE;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.gml.GMLVersion;
+import org.deegree.gml.reference.FeatureReference;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryFeatureCodec} and the binary mode of the {@link BlobCodec}.
+ */
+public class BinaryFeatureCodecTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final QName NAME = new QName( NS, "name", "app" );
+
+    private static final QName COUNT = new QName( NS, "count", "app" );
+
+    private static final QName GEOM = new QName( NS, "geom", "app" );
+
+    private static final QName REF = new QName( NS, "ref", "app" );
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private FeatureType ft;
+
+    private AppSchema schema;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        pts.add( new SimplePropertyType( COUNT, 0, 1, INTEGER, null, null ) );
+        pts.add( new GeometryPropertyType( GEOM, 0, -1, null, null, GEOMETRY, DIM_2, BOTH ) );
+        pts.add( new FeaturePropertyType( REF, 0, 1, null, null, null, BOTH ) );
+        ft = new GenericFeatureType( new QName( NS, "Parcel", "app" ), pts, false );
+        schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+    }
+
+    @Test
+    public void testRoundTrip()
+                            throws Exception {
+        Feature decoded = decode( encode( createFeature() ), null );
+
+        assertEquals( ft, decoded.getType() );
+        assertEquals( "PARCEL_1", decoded.getId() );
+        assertEquals( 6, decoded.getProperties().size() );
+        assertEquals( "Lot 42", decoded.getProperties( NAME ).get( 0 ).getValue().toString() );
+        PrimitiveValue count = (PrimitiveValue) decoded.getProperties( COUNT ).get( 0 ).getValue();
+        assertEquals( INTEGER, count.getType().getBaseType() );
+        assertEquals( "17", count.getAsText() );
+
+        List<Property> geoms = decoded.getProperties( GEOM );
+        assertEquals( 3, geoms.size() );
+        Point point = (Point) geoms.get( 0 ).getValue();
+        assertEquals( "PT_1", point.getId() );
+        assertArrayEquals( new double[] { 7.1, 50.7 }, point.getAsArray(), 0.0 );
+
+        Polygon polygon = (Polygon) geoms.get( 1 ).getValue();
+        assertEquals( "POLY_1", polygon.getId() );
+        assertArrayEquals( ring( 0, 0, 10, 0, 10, 10, 0, 0 ).getAsArray(),
+                           polygon.getExteriorRing().getControlPoints().getAsArray(), 0.0 );
+        assertEquals( 1, polygon.getInteriorRings().size() );
+        assertArrayEquals( ring( 1, 1, 2, 1, 2, 2, 1, 1 ).getAsArray(),
+                           polygon.getInteriorRings().get( 0 ).getControlPoints().getAsArray(), 0.0 );
+
+        MultiPoint multiPoint = (MultiPoint) geoms.get( 2 ).getValue();
+        assertEquals( 2, multiPoint.size() );
+        assertArrayEquals( new double[] { 3, 4 }, multiPoint.get( 1 ).getAsArray(), 0.0 );
+
+        FeatureReference ref = (FeatureReference) decoded.getProperties( REF ).get( 0 ).getValue();
+        assertEquals( "#PARCEL_2", ref.getURI() );
+    }
+
+    @Test
+    public void testSkipUnrequestedProperties()
+                            throws Exception {
+        Feature decoded = decode( encode( createFeature() ), singleton( COUNT ) );
+
+        assertEquals( "PARCEL_1", decoded.getId() );
+        assertEquals( 1, decoded.getProperties().size() );
+        assertEquals( "17", decoded.getProperties( COUNT ).get( 0 ).getValue().toString() );
+        assertTrue( decoded.getProperties( GEOM ).isEmpty() );
+    }
+
+    @Test
+    public void testUnsupportedContentFallsBackToGml()
+                            throws Exception {
+        Feature feature = createFeature();
+        Feature inline = new GenericFeature( ft, "PARCEL_3", Collections.<Property> emptyList(), null );
+        feature.getProperties().add( new GenericProperty( ft.getPropertyDeclaration( REF ), inline ) );
+
+        assertFalse( new BinaryFeatureCodec().encode( feature, new ByteArrayOutputStream(), null ) );
+    }
+
+    @Test
+    public void testDetectCompression()
+                            throws Exception {
+        assertEquals( BINARY, BlobCodec.detectCompression( new ByteArrayInputStream( encode( createFeature() ) ) ) );
+        assertEquals( GZIP, BlobCodec.detectCompression( new ByteArrayInputStream( new byte[] { 0x1f, (byte) 0x8b,
+                                                                                               8, 0 } ) ) );
+        assertEquals( NONE, BlobCodec.detectCompression( new ByteArrayInputStream( "<app:Parcel/>".getBytes() ) ) );
+        assertEquals( NONE, BlobCodec.detectCompression( new ByteArrayInputStream( new byte[0] ) ) );
+    }
+
+    @Test
+    public void testNilledProperty()
+                            throws Exception {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new GenericProperty( ft.getPropertyDeclaration( NAME ), NAME, null, true ) );
+        Feature feature = new GenericFeature( ft, "PARCEL_4", props, null );
+
+        Property decoded = decode( encode( feature ), null ).getProperties( NAME ).get( 0 );
+
+        assertNull( decoded.getValue() );
+        assertTrue( decoded.getAttributes().containsKey( new QName( "http://www.w3.org/2001/XMLSchema-instance",
+                                                                    "nil" ) ) );
+    }
+
+    @Test
+    public void testDecodeWithReorderedSchema()
+                            throws Exception {
+        byte[] encoded = encode( createFeature() );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new FeaturePropertyType( REF, 0, 1, null, null, null, BOTH ) );
+        pts.add( new SimplePropertyType( new QName( NS, "added", "app" ), 0, 1, STRING, null, null ) );
+        pts.add( new GeometryPropertyType( GEOM, 0, -1, null, null, GEOMETRY, DIM_2, BOTH ) );
+        pts.add( new SimplePropertyType( COUNT, 0, 1, INTEGER, null, null ) );
+        pts.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        ft = new GenericFeatureType( new QName( NS, "Parcel", "app" ), pts, false );
+        schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+
+        Feature decoded = decode( encoded, null );
+
+        assertEquals( ft, decoded.getType() );
+        assertEquals( 6, decoded.getProperties().size() );
+        assertEquals( "Lot 42", decoded.getProperties( NAME ).get( 0 ).getValue().toString() );
+        PrimitiveValue count = (PrimitiveValue) decoded.getProperties( COUNT ).get( 0 ).getValue();
+        assertEquals( INTEGER, count.getType().getBaseType() );
+        assertEquals( 3, decoded.getProperties( GEOM ).size() );
+        assertEquals( ft.getPropertyDeclaration( REF ), decoded.getProperties( REF ).get( 0 ).getType() );
+    }
+
+    private byte[] encode( Feature feature )
+                            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BlobCodec( GMLVersion.GML_32, BINARY ).encode( feature, Collections.<String, String> emptyMap(), bos, null );
+        return bos.toByteArray();
+    }
+
+    private Feature decode( byte[] bytes, Set<QName> requestedProps )
+                            throws Exception {
+        InputStream is = new ByteArrayInputStream( bytes );
+        return (Feature) new BlobCodec( GMLVersion.GML_32, BINARY ).decode( is, null, schema, null, null,
+                                                                            requestedProps );
+    }
+
+    private Feature createFeature() {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new GenericProperty( ft.getPropertyDeclaration( NAME ), new PrimitiveValue( "Lot 42" ) ) );
+        SimplePropertyType countPt = (SimplePropertyType) ft.getPropertyDeclaration( COUNT );
+        props.add( new GenericProperty( countPt, new PrimitiveValue( "17", countPt.getPrimitiveType() ) ) );
+        PropertyType geomPt = ft.getPropertyDeclaration( GEOM );
+        props.add( new GenericProperty( geomPt, geomFac.createPoint( "PT_1", 7.1, 50.7, null ) ) );
+        Ring exterior = geomFac.createLinearRing( null, null, ring( 0, 0, 10, 0, 10, 10, 0, 0 ) );
+        Ring interior = geomFac.createLinearRing( null, null, ring( 1, 1, 2, 1, 2, 2, 1, 1 ) );
+        props.add( new GenericProperty( geomPt, geomFac.createPolygon( "POLY_1", null, exterior,
+                                                                       Collections.singletonList( interior ) ) ) );
+        List<Point> points = new ArrayList<Point>();
+        points.add( geomFac.createPoint( null, 1, 2, null ) );
+        points.add( geomFac.createPoint( null, 3, 4, null ) );
+        props.add( new GenericProperty( geomPt, geomFac.createMultiPoint( null, null, points ) ) );
+        props.add( new GenericProperty( ft.getPropertyDeclaration( REF ), new FeatureReference( null, "#PARCEL_2",
+                                                                                                null ) ) );
+        return new GenericFeature( ft, "PARCEL_1", props, null );
+    }
+
+    private PackedPoints ring( double... coords ) {
+        return new PackedPoints( null, coords, 2 );
+    }
+}
@@ -0,0 +1,118 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+
+import javax.xml.bind.JAXBException;
+
+import org.deegree.commons.xml.jaxb.JAXBUtils;
+import org.deegree.feature.persistence.sql.GeometrySimplification;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the <code>GeometrySimplification</code> element of feature type mappings.
+ * 
+ * @since 3.4
+ */
+public class GeometrySimplificationConfigTest {
+
+    private static final String CONFIG_JAXB_PACKAGE = "org.deegree.feature.persistence.sql.jaxb";
+
+    private static final URL CONFIG_SCHEMA = AbstractMappedSchemaBuilder.class.getResource( "/META-INF/schemas/datasource/feature/sql/3.4.0/sql.xsd" );
+
+    private final AbstractMappedSchemaBuilder builder = new AbstractMappedSchemaBuilder() {
+        @Override
+        protected MappedAppSchema getMappedSchema() {
+            return null;
+        }
+    };
+
+    @Test
+    public void testNoSimplification()
+                            throws Exception {
+        assertNull( buildSimplification( "" ) );
+    }
+
+    @Test
+    public void testDefaults()
+                            throws Exception {
+        GeometrySimplification simplification = buildSimplification( "<GeometrySimplification />" );
+        assertEquals( 1.0, simplification.getPixelTolerance(), 0.0 );
+        assertFalse( simplification.isSkipSubPixelFeatures() );
+    }
+
+    @Test
+    public void testAttributes()
+                            throws Exception {
+        String xml = "<GeometrySimplification pixelTolerance='2.5' skipSubPixelFeatures='true' />";
+        GeometrySimplification simplification = buildSimplification( xml );
+        assertEquals( 2.5, simplification.getPixelTolerance(), 0.0 );
+        assertTrue( simplification.isSkipSubPixelFeatures() );
+    }
+
+    @Test(expected = JAXBException.class)
+    public void testRejectZeroTolerance()
+                            throws Exception {
+        buildSimplification( "<GeometrySimplification pixelTolerance='0' />" );
+    }
+
+    @Test(expected = JAXBException.class)
+    public void testRejectNegativeTolerance()
+                            throws Exception {
+        buildSimplification( "<GeometrySimplification pixelTolerance='-1.5' />" );
+    }
+
+    private GeometrySimplification buildSimplification( String simplificationXml )
+                            throws Exception {
+        String xml = "<SQLFeatureStore configVersion='3.4.0' xmlns='http://www.deegree.org/datasource/feature/sql'>"
+                     + "<JDBCConnId>conn</JDBCConnId><FeatureTypeMapping table='country'>" + simplificationXml
+                     + "</FeatureTypeMapping></SQLFeatureStore>";
+        InputStream is = new ByteArrayInputStream( xml.getBytes( "UTF-8" ) );
+        SQLFeatureStoreJAXB config = (SQLFeatureStoreJAXB) JAXBUtils.unmarshall( CONFIG_JAXB_PACKAGE, CONFIG_SCHEMA, is,
+                                                                                 null );
+        return builder.buildGeometrySimplification( config.getFeatureTypeMapping().get( 0 ) );
+    }
+}
@@ -0,0 +1,83 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.rules.Mapping;
+import org.deegree.filter.expression.ValueReference;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InsertRowManager}.
+ */
+public class InsertRowManagerTest {
+
+    @Test
+    public void testUpdateWithBatchingDoesNotInsertFeatureRow()
+                            throws Exception {
+        SQLFeatureStore fs = mock( SQLFeatureStore.class );
+        when( fs.getSchema() ).thenReturn( mock( MappedAppSchema.class ) );
+        Connection conn = mock( Connection.class );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, USE_EXISTING, 10 );
+
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( "FEATURE_1" );
+        Mapping mapping = mock( Mapping.class );
+        when( mapping.getPath() ).thenReturn( new ValueReference( new QName( "http://www.deegree.org/app", "prop" ) ) );
+        when( mapping.getJoinedTable() ).thenReturn( null );
+
+        FeatureRow row = mgr.updateFeature( feature, mock( FeatureTypeMapping.class ), new String[] { "1" }, mapping,
+                                            null );
+
+        // the feature row represents the existing row, neither an INSERT nor a batch must be executed for it
+        assertEquals( "FEATURE_1", row.getOriginalId() );
+        verifyZeroInteractions( conn );
+    }
+
+}
@@ -47,17 +47,16 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import javax.imageio.ImageIO;
 
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.Element;
-
-import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
+import org.deegree.tile.TransferableTile;
 import org.slf4j.Logger;
 
 /**
@@ -69,19 +68,19 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class CachedTile implements Tile {
+public class CachedTile implements TransferableTile {
 
     private static final Logger LOG = getLogger( CachedTile.class );
 
     private final Tile tile;
 
-    private final Cache cache;
+    private final TileCache cache;
 
     private final String key;
 
     private byte[] data;
 
-    public CachedTile( Tile tile, Cache cache, String key ) {
+    CachedTile( Tile tile, TileCache cache, String key ) {
         this.tile = tile;
         this.cache = cache;
         this.key = key;
@@ -104,6 +103,21 @@ public class CachedTile implements Tile {
         return new ByteArrayInputStream( getData() );
     }
 
+    @Override
+    public long getEncodedLength() {
+        return getData().length;
+    }
+
+    @Override
+    public long transferTo( WritableByteChannel target )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap( getData() );
+        while ( buf.hasRemaining() ) {
+            target.write( buf );
+        }
+        return buf.position();
+    }
+
     @Override
     public Envelope getEnvelope() {
         return tile.getEnvelope();
@@ -117,23 +131,7 @@ public class CachedTile implements Tile {
 
     private synchronized byte[] getData() {
         if ( data == null ) {
-            Element elem = cache.get( key );
-            if ( elem == null ) {
-                try {
-                    InputStream is = tile.getAsStream();
-                    if ( is == null ) {
-                        data = new byte[] {};
-                    } else {
-                        data = IOUtils.toByteArray( is );
-                    }
-                    cache.put( new Element( key, data ) );
-                } catch ( IOException e ) {
-                    LOG.trace( e.getMessage(), e );
-                    throw new TileIOException( e.getMessage(), e );
-                }
-            } else {
-                data = (byte[]) elem.getValue();
-            }
+            data = cache.get( key, tile );
         }
         return data;
     }
@@ -43,8 +43,6 @@ package org.deegree.tile.persistence.cache;
 
 import java.util.List;
 
-import net.sf.ehcache.Cache;
-
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
@@ -62,11 +60,11 @@ public class CachingTileMatrix implements TileDataLevel {
 
     private final TileDataLevel tileMatrix;
 
-    private final Cache cache;
+    private final TileCache cache;
 
     private final String identifier;
 
-    public CachingTileMatrix( TileDataLevel tileMatrix, Cache cache ) {
+    CachingTileMatrix( TileDataLevel tileMatrix, TileCache cache ) {
         this.tileMatrix = tileMatrix;
         this.cache = cache;
         this.identifier = tileMatrix.getMetadata().getIdentifier();
@@ -40,6 +40,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.cache;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -47,7 +49,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 
 import org.deegree.geometry.Envelope;
@@ -60,6 +61,7 @@ import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreTransaction;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
 
 /**
  * {@link TileStore} that acts as a caching proxy to another {@link TileStore}.
@@ -71,22 +73,36 @@ import org.deegree.workspace.ResourceMetadata;
  */
 public class CachingTileStore implements TileStore {
 
+    private static final Logger LOG = getLogger( CachingTileStore.class );
+
     private final TileStore tileStore;
 
     private final CacheManager cacheManager;
 
-    private final Cache cache;
+    private final TileCache cache;
 
     private Map<String, TileDataSet> tileMatrixSets;
 
     private ResourceMetadata<TileStore> metadata;
 
-    public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
+    /**
+     * @param tileStore
+     *            the tile store to cache, must not be <code>null</code>
+     * @param cacheManager
+     *            the cache manager, must not be <code>null</code>
+     * @param cacheName
+     *            name of the cache to use, must be configured in the cache manager
+     * @param maxBytes
+     *            maximum size of all cached tiles in bytes, 0 or less to rely on the eviction of the cache only
+     * @param metadata
+     *            the resource metadata
+     */
+    public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName, long maxBytes,
                              ResourceMetadata<TileStore> metadata ) {
         this.tileStore = tileStore;
         this.cacheManager = cacheManager;
         this.metadata = metadata;
-        this.cache = cacheManager.getCache( cacheName );
+        this.cache = new TileCache( cacheManager.getCache( cacheName ), maxBytes );
     }
 
     @Override
@@ -112,9 +128,17 @@ public class CachingTileStore implements TileStore {
 
     @Override
     public void destroy() {
+        LOG.debug( "Tile cache statistics: {}", cache.getStatistics() );
         cacheManager.shutdown();
     }
 
+    /**
+     * @return the hit/miss/load counters of this cache, never <code>null</code>
+     */
+    public TileCacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
     @Override
     public TileDataSet getTileDataSet( String id ) {
         return tileMatrixSets.get( id );
@@ -144,9 +168,7 @@ public class CachingTileStore implements TileStore {
      */
     public long invalidateCache( String tileMatrixSet, Envelope envelope ) {
         if ( envelope == null ) {
-            int size = cache.getSize();
-            cache.removeAll();
-            return size;
+            return cache.removeAll();
         }
         long cnt = 0;
         for ( TileDataLevel tm : tileMatrixSets.get( tileMatrixSet ).getTileDataLevels() ) {
@@ -31,6 +31,7 @@ import java.io.File;
 
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.MemoryUnit;
 
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreProvider;
@@ -71,7 +72,11 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
             }
             CacheManager cmgr = new CacheManager( f.toURI().toURL() );
             TileStore tileStore = workspace.getResource( TileStoreProvider.class, cfg.getTileStoreId() );
-            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            long maxBytes = 0;
+            if ( cfg.getMaxBytes() != null ) {
+                maxBytes = MemoryUnit.parseSizeInBytes( cfg.getMaxBytes().trim() );
+            }
+            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), maxBytes, metadata );
         } catch ( CacheException e ) {
             // case needed, as NPE's inside exception can occur otherwise
             throw new ResourceInitException( "Unable to create tile store: " + e.getMessage() );
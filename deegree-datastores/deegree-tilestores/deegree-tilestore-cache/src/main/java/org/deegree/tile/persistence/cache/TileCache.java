@@ -0,0 +1,345 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TransferableTile;
+import org.slf4j.Logger;
+
+/**
+ * Wraps the ehcache {@link Cache} of a {@link CachingTileStore}.
+ * <p>
+ * Concurrent misses for the same key are coalesced, only the first request loads the tile from the backing tile store,
+ * the others wait for its result. If a byte budget is set, the least recently used tiles are removed once the encoded
+ * size of all cached tiles exceeds it (in addition to the eviction configured for the ehcache).
+ * </p>
+ * 
+ * @since 3.4
+ */
+class TileCache {
+
+    private static final Logger LOG = getLogger( TileCache.class );
+
+    private final Cache cache;
+
+    private final long maxBytes;
+
+    private final ConcurrentMap<String, FutureTask<byte[]>> inFlight;
+
+    // encoded cached tiles in access order, only maintained if a byte budget is set
+    private final LinkedHashMap<String, byte[]> sizes = new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+
+    private long bytes;
+
+    private final TileCacheStatistics statistics = new TileCacheStatistics();
+
+    /**
+     * @param cache
+     *            the ehcache to store the encoded tiles in, must not be <code>null</code>
+     * @param maxBytes
+     *            maximum number of bytes of all cached tiles, 0 or less for no limit
+     */
+    TileCache( Cache cache, long maxBytes ) {
+        this.cache = cache;
+        this.maxBytes = maxBytes;
+        this.inFlight = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+        if ( maxBytes > 0 ) {
+            cache.getCacheEventNotificationService().registerListener( new SizeListener() );
+        }
+    }
+
+    /**
+     * Returns the encoded tile from the cache, loading it from the given tile on a miss.
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            the tile to load from, must not be <code>null</code>
+     * @return the encoded tile, never <code>null</code>
+     * @throws TileIOException
+     *             if loading the tile failed
+     */
+    byte[] get( String key, Tile tile )
+                            throws TileIOException {
+        Element elem = cache.get( key );
+        if ( elem != null ) {
+            statistics.hits.incrementAndGet();
+            byte[] data = (byte[]) elem.getValue();
+            account( key, data );
+            return data;
+        }
+        statistics.misses.incrementAndGet();
+
+        FutureTask<byte[]> task = new FutureTask<byte[]>( new Loader( key, tile ) );
+        FutureTask<byte[]> running = inFlight.putIfAbsent( key, task );
+        if ( running == null ) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove( key, task );
+            }
+            running = task;
+        } else {
+            statistics.coalesced.incrementAndGet();
+        }
+
+        try {
+            return running.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while waiting for tile " + key + ".", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof TileIOException ) {
+                throw (TileIOException) cause;
+            }
+            throw new TileIOException( cause.getMessage(), cause );
+        }
+    }
+
+    /**
+     * @param key
+     *            cache key of the tile
+     * @return true, if the tile was cached
+     */
+    boolean remove( String key ) {
+        return cache.remove( key );
+    }
+
+    /**
+     * Removes all tiles from the cache.
+     * 
+     * @return the number of removed tiles
+     */
+    int removeAll() {
+        int size = cache.getSize();
+        cache.removeAll();
+        return size;
+    }
+
+    TileCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the encoded size of the cached tiles, only tracked if a byte budget is set
+     */
+    long getBytes() {
+        synchronized ( sizes ) {
+            return bytes;
+        }
+    }
+
+    private byte[] load( String key, Tile tile )
+                            throws IOException {
+        // another load may have finished between the cache check and registering this one
+        Element elem = cache.get( key );
+        if ( elem != null ) {
+            return (byte[]) elem.getValue();
+        }
+        long begin = System.nanoTime();
+        byte[] data = readData( tile );
+        statistics.loads.incrementAndGet();
+        statistics.loadNanos.addAndGet( System.nanoTime() - begin );
+        cache.put( new Element( key, data ) );
+        account( key, data );
+        return data;
+    }
+
+    private static byte[] readData( Tile tile )
+                            throws IOException {
+        if ( tile instanceof TransferableTile ) {
+            // read into an array of the exact size instead of growing a buffer
+            long length = ( (TransferableTile) tile ).getEncodedLength();
+            if ( length >= 0 && length <= Integer.MAX_VALUE ) {
+                InputStream is = tile.getAsStream();
+                try {
+                    byte[] bs = new byte[(int) length];
+                    IOUtils.readFully( is, bs );
+                    return bs;
+                } finally {
+                    IOUtils.closeQuietly( is );
+                }
+            }
+        }
+        InputStream is = tile.getAsStream();
+        if ( is == null ) {
+            return new byte[] {};
+        }
+        try {
+            return IOUtils.toByteArray( is );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+    private void account( String key, byte[] data ) {
+        if ( maxBytes <= 0 ) {
+            return;
+        }
+        List<Map.Entry<String, byte[]>> victims = null;
+        synchronized ( sizes ) {
+            byte[] old = sizes.put( key, data );
+            bytes += data.length - ( old == null ? 0 : old.length );
+            long excess = bytes - maxBytes;
+            Iterator<Map.Entry<String, byte[]>> it = sizes.entrySet().iterator();
+            while ( excess > 0 && it.hasNext() ) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                if ( eldest.getKey().equals( key ) ) {
+                    // never evict the tile just accessed
+                    break;
+                }
+                excess -= eldest.getValue().length;
+                if ( victims == null ) {
+                    victims = new ArrayList<Map.Entry<String, byte[]>>();
+                }
+                victims.add( new SimpleImmutableEntry<String, byte[]>( eldest ) );
+            }
+        }
+        // ehcache is not called while holding the lock, its listener callbacks acquire the lock as well
+        if ( victims != null ) {
+            for ( Map.Entry<String, byte[]> victim : victims ) {
+                evict( victim.getKey(), victim.getValue() );
+            }
+        }
+    }
+
+    private void evict( String key, byte[] data ) {
+        // only removes the tile if it has not been replaced concurrently, the listener subtracts the removed size
+        if ( cache.removeElement( new Element( key, data ) ) ) {
+            statistics.evictions.incrementAndGet();
+        } else {
+            // not cached with this value (any more), a replacement is accounted by its own load
+            forget( key, data );
+        }
+    }
+
+    private void forget( Object key, Object removed ) {
+        synchronized ( sizes ) {
+            byte[] current = sizes.get( key );
+            // a concurrent load may have accounted a new value for the key already
+            if ( current != null && ( current == removed || isEqual( current, removed ) ) ) {
+                sizes.remove( key );
+                bytes -= current.length;
+            }
+        }
+    }
+
+    // ehcache may be configured to store copies of the values
+    private static boolean isEqual( byte[] data, Object value ) {
+        return value instanceof byte[] && Arrays.equals( data, (byte[]) value );
+    }
+
+    private class Loader implements Callable<byte[]> {
+
+        private final String key;
+
+        private final Tile tile;
+
+        Loader( String key, Tile tile ) {
+            this.key = key;
+            this.tile = tile;
+        }
+
+        @Override
+        public byte[] call()
+                                throws IOException {
+            return load( key, tile );
+        }
+    }
+
+    /**
+     * Keeps the byte accounting in sync with removals done by ehcache itself.
+     */
+    private class SizeListener extends CacheEventListenerAdapter {
+
+        @Override
+        public void notifyElementRemoved( Ehcache cache, Element element )
+                                throws CacheException {
+            forget( element.getObjectKey(), element.getObjectValue() );
+        }
+
+        @Override
+        public void notifyElementExpired( Ehcache cache, Element element ) {
+            forget( element.getObjectKey(), element.getObjectValue() );
+        }
+
+        @Override
+        public void notifyElementEvicted( Ehcache cache, Element element ) {
+            forget( element.getObjectKey(), element.getObjectValue() );
+        }
+
+        @Override
+        public void notifyRemoveAll( Ehcache cache ) {
+            synchronized ( sizes ) {
+                sizes.clear();
+                bytes = 0;
+            }
+            LOG.debug( "Cleared byte accounting of tile cache {}.", cache.getName() );
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@link CachingTileStore}.
+ * 
+ * @since 3.4
+ */
+public class TileCacheStatistics {
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    final AtomicLong coalesced = new AtomicLong();
+
+    final AtomicLong loads = new AtomicLong();
+
+    final AtomicLong loadNanos = new AtomicLong();
+
+    final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @return the number of requests answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests not found in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of misses that waited for a load of the same tile by another request
+     */
+    public long getCoalescedMisses() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of tiles loaded from the backing tile store
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return the total time spent loading tiles from the backing tile store, in milliseconds
+     */
+    public long getLoadTimeMillis() {
+        return loadNanos.get() / 1000000;
+    }
+
+    /**
+     * @return the number of tiles removed to stay within the byte budget
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", coalesced=" + getCoalescedMisses() + ", loads="
+               + getLoads() + ", loadTime=" + getLoadTimeMillis() + "ms, evictions=" + getEvictions();
+    }
+
+}
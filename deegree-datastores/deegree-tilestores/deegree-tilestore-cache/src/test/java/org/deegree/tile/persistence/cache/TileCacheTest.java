@@ -0,0 +1,215 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.Configuration;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests request coalescing and the byte budget of the {@link TileCache}.
+ * 
+ * @since 3.4
+ */
+public class TileCacheTest {
+
+    private CacheManager manager;
+
+    private Cache cache;
+
+    @Before
+    public void setup() {
+        manager = new CacheManager( new Configuration().name( "TileCacheTest" ) );
+        cache = new Cache( "tiles", 1000, false, true, 0, 0 );
+        manager.addCache( cache );
+    }
+
+    @After
+    public void shutdown() {
+        manager.shutdown();
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced()
+                            throws Exception {
+        final TileCache tileCache = new TileCache( cache, 0 );
+        final CountingTile tile = new CountingTile( 10, 200 );
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+            for ( int i = 0; i < threads; ++i ) {
+                results.add( executor.submit( new Callable<byte[]>() {
+                    @Override
+                    public byte[] call()
+                                            throws Exception {
+                        start.await();
+                        return tileCache.get( "key", tile );
+                    }
+                } ) );
+            }
+            start.countDown();
+            for ( Future<byte[]> f : results ) {
+                assertArrayEquals( tile.data, f.get( 10, TimeUnit.SECONDS ) );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals( 1, tile.loads.get() );
+        TileCacheStatistics stats = tileCache.getStatistics();
+        assertEquals( 1, stats.getLoads() );
+        assertEquals( threads, stats.getHits() + stats.getMisses() );
+
+        tileCache.get( "key", tile );
+        assertEquals( 1, tile.loads.get() );
+    }
+
+    @Test
+    public void testByteBudget() {
+        TileCache tileCache = new TileCache( cache, 250 );
+        for ( int i = 0; i < 3; ++i ) {
+            tileCache.get( "key" + i, new CountingTile( 100, 0 ) );
+        }
+        // the first tile exceeded the budget
+        assertFalse( cache.isKeyInCache( "key0" ) );
+        assertTrue( cache.isKeyInCache( "key1" ) );
+        assertTrue( cache.isKeyInCache( "key2" ) );
+        assertEquals( 200, tileCache.getBytes() );
+        assertEquals( 1, tileCache.getStatistics().getEvictions() );
+
+        // touching key1 makes key2 the least recently used one
+        tileCache.get( "key1", new CountingTile( 100, 0 ) );
+        tileCache.get( "key3", new CountingTile( 100, 0 ) );
+        assertTrue( cache.isKeyInCache( "key1" ) );
+        assertFalse( cache.isKeyInCache( "key2" ) );
+
+        tileCache.remove( "key1" );
+        assertEquals( 100, tileCache.getBytes() );
+        tileCache.removeAll();
+        assertEquals( 0, tileCache.getBytes() );
+    }
+
+    @Test
+    public void testEvictionKeepsReplacedTile() {
+        TileCache tileCache = new TileCache( cache, 250 );
+        tileCache.get( "key0", new CountingTile( 100, 0 ) );
+        tileCache.get( "key1", new CountingTile( 100, 0 ) );
+        // replaced after it has been chosen for eviction (simulated by bypassing the accounting)
+        byte[] replacement = new byte[50];
+        Arrays.fill( replacement, (byte) 1 );
+        cache.put( new Element( "key0", replacement ) );
+        tileCache.get( "key2", new CountingTile( 100, 0 ) );
+
+        assertTrue( cache.isKeyInCache( "key0" ) );
+        assertArrayEquals( replacement, (byte[]) cache.get( "key0" ).getObjectValue() );
+        assertEquals( 200, tileCache.getBytes() );
+        assertEquals( 0, tileCache.getStatistics().getEvictions() );
+    }
+
+    private static class CountingTile implements Tile {
+
+        final AtomicInteger loads = new AtomicInteger();
+
+        final byte[] data;
+
+        private final long delay;
+
+        CountingTile( int size, long delay ) {
+            this.data = new byte[size];
+            this.delay = delay;
+        }
+
+        @Override
+        public BufferedImage getAsImage() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getAsStream() {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep( delay );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream( data );
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return null;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit ) {
+            return null;
+        }
+    }
+
+}
@@ -43,6 +43,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.imageio.ImageIO;
 
@@ -50,16 +52,18 @@ import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
+import org.deegree.tile.TransferableTile;
 
 /**
- * A {@link Tile} that is backed by a {@link FileSystemTileStore}.
+ * A {@link Tile} that is backed by a {@link FileSystemTileStore}. Being a {@link TransferableTile}, the file can be
+ * sent by the servlet container or transferred to the response channel without reading it into a byte array.
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * @author last edited by: $Author$
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile implements TransferableTile {
 
     private final Envelope bbox;
 
@@ -102,6 +106,45 @@ class FileSystemTile implements Tile {
         }
     }
 
+    @Override
+    public long getEncodedLength()
+                            throws TileIOException {
+        if ( !file.isFile() ) {
+            throw new TileIOException( "Tile file '" + file + "' does not exist." );
+        }
+        return file.length();
+    }
+
+    @Override
+    public long transferTo( WritableByteChannel target )
+                            throws TileIOException, IOException {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream( file );
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            long position = 0;
+            while ( position < size ) {
+                long transferred = channel.transferTo( position, size - position, target );
+                if ( transferred <= 0 ) {
+                    // file was truncated meanwhile
+                    break;
+                }
+                position += transferred;
+            }
+            return position;
+        } catch ( FileNotFoundException e ) {
+            throw new TileIOException( "Tile file '" + file + "' does not exist." );
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return bbox;
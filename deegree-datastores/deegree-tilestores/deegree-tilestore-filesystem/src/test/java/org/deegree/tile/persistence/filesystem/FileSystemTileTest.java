@@ -0,0 +1,91 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.deegree.tile.TileIOException;
+import org.junit.Test;
+
+/**
+ * Tests transferring {@link FileSystemTile}s to a channel.
+ * 
+ * @since 3.4
+ */
+public class FileSystemTileTest {
+
+    @Test
+    public void testTransferTo()
+                            throws IOException {
+        byte[] content = new byte[100000];
+        for ( int i = 0; i < content.length; ++i ) {
+            content[i] = (byte) i;
+        }
+        File file = File.createTempFile( "tile", ".png" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( content );
+        } finally {
+            out.close();
+        }
+
+        FileSystemTile tile = new FileSystemTile( null, file );
+        assertEquals( file, tile.getFile() );
+        assertEquals( content.length, tile.getEncodedLength() );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertEquals( content.length, tile.transferTo( Channels.newChannel( bos ) ) );
+        assertArrayEquals( content, bos.toByteArray() );
+    }
+
+    @Test(expected = TileIOException.class)
+    public void testMissingFile() {
+        new FileSystemTile( null, new File( "does/not/exist.png" ) ).getEncodedLength();
+    }
+
+}
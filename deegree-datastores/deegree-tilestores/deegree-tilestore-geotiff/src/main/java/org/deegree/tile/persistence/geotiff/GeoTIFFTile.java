@@ -59,7 +59,8 @@ import org.deegree.tile.TileIOException;
 
 /**
  * A {@link Tile} that is read from a GeoTIFF/BigTIFF file, through ImageIO/imageio-ext. Uses an object pool to cache
- * readers (they take a long time to startup). </p>
+ * readers (they take a long time to startup). If a {@link RawTileReader} is available, the compressed tile is streamed
+ * without decoding it. </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -78,9 +79,25 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
-    public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
-                        int sizeY ) {
+    private final RawTileReader rawReader;
+
+    /**
+     * @param readerPool
+     *            pool of image readers for the file, must not be <code>null</code>
+     * @param rawReader
+     *            used to pass through the compressed tile, can be <code>null</code> (tile is decoded and encoded as
+     *            PNG)
+     * @param imageIndex
+     * @param x
+     * @param y
+     * @param envelope
+     * @param sizeX
+     * @param sizeY
+     */
+    public GeoTIFFTile( GenericObjectPool readerPool, RawTileReader rawReader, int imageIndex, int x, int y,
+                        Envelope envelope, int sizeX, int sizeY ) {
         this.readerPool = readerPool;
+        this.rawReader = rawReader;
         this.imageIndex = imageIndex;
         this.x = x;
         this.y = y;
@@ -129,6 +146,17 @@ public class GeoTIFFTile implements Tile {
                             throws TileIOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
+            if ( rawReader != null ) {
+                byte[] bs = rawReader.readTile( x, y );
+                if ( bs != null ) {
+                    return new ByteArrayInputStream( bs );
+                }
+                // tile is not stored in the file, encode the (empty) image in the same format
+                if ( ImageIO.write( toEncodable( getAsImage() ), rawReader.getFormatName(), bos ) ) {
+                    return new ByteArrayInputStream( bos.toByteArray() );
+                }
+                bos.reset();
+            }
             ImageIO.write( getAsImage(), "png", bos );
         } catch ( IOException e ) {
             throw new TileIOException( "Error retrieving image: " + e.getMessage(), e );
@@ -136,6 +164,18 @@ public class GeoTIFFTile implements Tile {
         return new ByteArrayInputStream( bos.toByteArray() );
     }
 
+    private BufferedImage toEncodable( BufferedImage img ) {
+        // JPEG cannot store an alpha channel, ImageIO refuses to write such images
+        if ( !rawReader.getFormatName().equals( "jpeg" ) || !img.getColorModel().hasAlpha() ) {
+            return img;
+        }
+        BufferedImage rgb = new BufferedImage( img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage( img, 0, 0, null );
+        g.dispose();
+        return rgb;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return envelope;
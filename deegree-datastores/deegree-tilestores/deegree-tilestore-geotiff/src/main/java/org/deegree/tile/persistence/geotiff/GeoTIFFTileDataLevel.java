@@ -71,8 +71,12 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private final int xoff, yoff, numx, numy;
 
-    public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
+    private final RawTileReader rawReader;
+
+    public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy,
+                                 RawTileReader rawReader ) {
         this.metadata = metadata;
+        this.rawReader = rawReader;
         this.imageIndex = imageIndex;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
@@ -108,8 +112,8 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
-        return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+        return new GeoTIFFTile( readerPool, rawReader, imageIndex, (int) x, (int) y, envelope,
+                                (int) metadata.getTilePixelsX(), (int) metadata.getTilePixelsY() );
     }
 
     @Override
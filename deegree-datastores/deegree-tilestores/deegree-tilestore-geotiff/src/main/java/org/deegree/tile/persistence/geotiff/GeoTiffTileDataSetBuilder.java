@@ -41,8 +41,14 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.deegree.geometry.Envelope;
@@ -56,6 +62,7 @@ import org.deegree.tile.persistence.geotiff.jaxb.GeoTIFFTileStoreJAXB;
 import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
 import org.deegree.workspace.ResourceLocation;
 import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
 
 /**
  * Builds tile data sets from jaxb config beans.
@@ -67,8 +74,12 @@ import org.deegree.workspace.Workspace;
  */
 class GeoTiffTileDataSetBuilder {
 
+    private static final Logger LOG = getLogger( GeoTiffTileDataSetBuilder.class );
+
     private Workspace workspace;
 
+    private final List<TiffFileChannel> channels = new ArrayList<TiffFileChannel>();
+
     GeoTiffTileDataSetBuilder( Workspace workspace ) {
         this.workspace = workspace;
     }
@@ -87,16 +98,60 @@ class GeoTiffTileDataSetBuilder {
         double x = envelope.getMin().get0() - tms.getSpatialMetadata().getEnvelope().getMin().get0();
         double y = envelope.getMax().get1() - tms.getSpatialMetadata().getEnvelope().getMax().get1();
 
+        List<TiffDirectory> dirs = readDirectories( file );
+        TiffFileChannel channel = dirs.isEmpty() ? null : openChannel( file );
+
         int idx = 0;
         for ( TileMatrix tm : tms.getTileMatrices() ) {
             int xoff = (int) Math.round( x / tm.getTileWidth() );
             int yoff = (int) Math.round( y / tm.getTileHeight() );
             int numx = (int) Math.ceil( envelope.getSpan0() / tm.getTileWidth() );
             int numy = (int) Math.ceil( envelope.getSpan1() / tm.getTileHeight() );
-            levels.add( new GeoTIFFTileDataLevel( tm, file, idx++, xoff, yoff, numx, numy ) );
+            RawTileReader rawReader = null;
+            if ( channel != null && idx < dirs.size() ) {
+                rawReader = RawTileReader.create( channel, dirs.get( idx ), format, tm.getTilePixelsX(),
+                                                  tm.getTilePixelsY() );
+            }
+            LOG.debug( "Tiles of level {} of {} are {}.", idx, filename,
+                       rawReader == null ? "re-encoded" : "passed through" );
+            levels.add( new GeoTIFFTileDataLevel( tm, file, idx++, xoff, yoff, numx, numy, rawReader ) );
         }
 
         return new DefaultTileDataSet( levels, tms, format );
     }
 
+    /**
+     * @return the channels shared by the raw tile readers of all data sets built so far, never <code>null</code>
+     */
+    List<TiffFileChannel> getChannels() {
+        return channels;
+    }
+
+    private TiffFileChannel openChannel( File file ) {
+        try {
+            TiffFileChannel channel = new TiffFileChannel( file );
+            channels.add( channel );
+            return channel;
+        } catch ( IOException e ) {
+            LOG.warn( "Could not open {}, tiles will be re-encoded: {}", file, e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            return null;
+        }
+    }
+
+    private static List<TiffDirectory> readDirectories( File file ) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile( file, "r" );
+            return TiffDirectory.readDirectories( raf.getChannel() );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not read the TIFF directories of {}, tiles will be re-encoded: {}", file,
+                      e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            return Collections.emptyList();
+        } finally {
+            closeQuietly( raf );
+        }
+    }
+
 }
@@ -51,6 +51,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.imageio.ImageReader;
@@ -133,4 +134,11 @@ class GeoTiffTileDataSetMapBuilder {
         return map;
     }
 
+    /**
+     * @return the files opened for passing tiles through, must be closed when the tile store is destroyed
+     */
+    List<TiffFileChannel> getChannels() {
+        return builder.getChannels();
+    }
+
 }
@@ -0,0 +1,89 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.GenericTileStore;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
+
+/**
+ * {@link GenericTileStore} that closes the TIFF files used for passing tiles through when it is destroyed.
+ * 
+ * @since 3.4
+ */
+class GeoTiffTileStore extends GenericTileStore {
+
+    private static final Logger LOG = getLogger( GeoTiffTileStore.class );
+
+    private final List<TiffFileChannel> channels;
+
+    GeoTiffTileStore( Map<String, TileDataSet> tileDataSets, ResourceMetadata<TileStore> metadata,
+                      List<TiffFileChannel> channels ) {
+        super( tileDataSets, metadata );
+        this.channels = channels;
+    }
+
+    @Override
+    public void destroy() {
+        close( channels );
+    }
+
+    static void close( List<TiffFileChannel> channels ) {
+        for ( TiffFileChannel channel : channels ) {
+            try {
+                channel.close();
+            } catch ( IOException e ) {
+                LOG.warn( "Could not close {}: {}", channel.getFile(), e.getLocalizedMessage() );
+            }
+        }
+        channels.clear();
+    }
+
+}
@@ -30,7 +30,6 @@ package org.deegree.tile.persistence.geotiff;
 import java.util.Map;
 
 import org.deegree.tile.TileDataSet;
-import org.deegree.tile.persistence.GenericTileStore;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.geotiff.jaxb.GeoTIFFTileStoreJAXB;
 import org.deegree.workspace.ResourceBuilder;
@@ -61,13 +60,13 @@ public class GeoTiffTileStoreBuilder implements ResourceBuilder<TileStore> {
 
     @Override
     public TileStore build() {
+        GeoTiffTileDataSetMapBuilder builder = new GeoTiffTileDataSetMapBuilder( workspace, metadata.getLocation(),
+                                                                                 cfg );
         try {
-            GeoTiffTileDataSetMapBuilder builder = new GeoTiffTileDataSetMapBuilder( workspace, metadata.getLocation(),
-                                                                                     cfg );
-
             Map<String, TileDataSet> map = builder.buildTileDataSetMap();
-            return new GenericTileStore( map, metadata );
+            return new GeoTiffTileStore( map, metadata, builder.getChannels() );
         } catch ( Exception e ) {
+            GeoTiffTileStore.close( builder.getChannels() );
             throw new ResourceInitException( "Unable to build GeoTiff tile store: " + e.getLocalizedMessage(), e );
         }
     }
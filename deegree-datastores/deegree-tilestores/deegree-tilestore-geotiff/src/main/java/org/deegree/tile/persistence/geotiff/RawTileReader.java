@@ -0,0 +1,261 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.deegree.tile.persistence.geotiff.TiffDirectory.Field;
+import org.slf4j.Logger;
+
+/**
+ * Reads the compressed bytes of single tiles of a tiled TIFF and hands them out in the configured image format
+ * without decoding them. JPEG tiles are served as JPEG (merged with the shared JPEGTables), tiles of any supported
+ * compression can be served as single tile TIFF.
+ * 
+ * @since 3.4
+ */
+class RawTileReader {
+
+    private static final Logger LOG = getLogger( RawTileReader.class );
+
+    private static final int NONE = 1, LZW = 5, JPEG = 7, DEFLATE = 8, ADOBE_DEFLATE = 32946;
+
+    private static final int MIN_IS_WHITE = 0, MIN_IS_BLACK = 1, YCBCR = 6;
+
+    private final TiffFileChannel channel;
+
+    private final TiffDirectory dir;
+
+    private final boolean jpeg;
+
+    private RawTileReader( TiffFileChannel channel, TiffDirectory dir, boolean jpeg ) {
+        this.channel = channel;
+        this.dir = dir;
+        this.jpeg = jpeg;
+    }
+
+    /**
+     * Checks whether the tiles of the directory can be passed through in the requested format.
+     * 
+     * @param channel
+     *            the shared channel of the TIFF file, must not be <code>null</code>
+     * @param dir
+     *            the directory of the level, must not be <code>null</code>
+     * @param format
+     *            the image format of the tile data set, can be <code>null</code>
+     * @param tilePixelsX
+     *            tile width of the tile matrix
+     * @param tilePixelsY
+     *            tile height of the tile matrix
+     * @return a reader, or <code>null</code> if the tiles need to be decoded and encoded
+     */
+    static RawTileReader create( TiffFileChannel channel, TiffDirectory dir, String format, long tilePixelsX,
+                                 long tilePixelsY ) {
+        if ( format == null || !dir.isTiled() || dir.tileWidth != tilePixelsX || dir.tileHeight != tilePixelsY ) {
+            return null;
+        }
+        String mimeType = format.toLowerCase();
+        int semicolon = mimeType.indexOf( ';' );
+        if ( semicolon != -1 ) {
+            mimeType = mimeType.substring( 0, semicolon );
+        }
+        mimeType = mimeType.trim();
+        if ( mimeType.equals( "image/jpeg" ) && isStandaloneJpeg( dir ) ) {
+            return new RawTileReader( channel, dir, true );
+        }
+        if ( mimeType.equals( "image/tiff" ) && isCopyable( dir ) ) {
+            return new RawTileReader( channel, dir, false );
+        }
+        return null;
+    }
+
+    private static boolean isStandaloneJpeg( TiffDirectory dir ) {
+        if ( dir.compression != JPEG || dir.bitsPerSample != 8 ) {
+            return false;
+        }
+        // JPEG decoders assume YCbCr for three components, so RGB encoded tiles cannot be used as they are
+        return ( dir.photometric == YCBCR && dir.samplesPerPixel == 3 )
+               || ( ( dir.photometric == MIN_IS_BLACK || dir.photometric == MIN_IS_WHITE ) && dir.samplesPerPixel == 1 );
+    }
+
+    private static boolean isCopyable( TiffDirectory dir ) {
+        switch ( dir.compression ) {
+        case NONE:
+        case LZW:
+        case JPEG:
+        case DEFLATE:
+        case ADOBE_DEFLATE:
+            break;
+        default:
+            return false;
+        }
+        for ( Field f : dir.pixelFields.values() ) {
+            // 64 bit types cannot be written to a classic TIFF
+            if ( f.type >= TiffDirectory.LONG8 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the ImageIO format name of the tiles
+     */
+    String getFormatName() {
+        return jpeg ? "jpeg" : "tiff";
+    }
+
+    /**
+     * Reads a tile.
+     * 
+     * @param x
+     *            tile column within the TIFF
+     * @param y
+     *            tile row within the TIFF
+     * @return the encoded tile, or <code>null</code> if the tile is not stored in the file (sparse TIFF)
+     * @throws IOException
+     */
+    byte[] readTile( int x, int y )
+                            throws IOException {
+        if ( x < 0 || y < 0 || x >= dir.getTilesAcross() || y >= dir.getTilesDown() ) {
+            return null;
+        }
+        int idx = y * dir.getTilesAcross() + x;
+        long offset = dir.tileOffsets[idx];
+        long length = dir.tileByteCounts[idx];
+        if ( offset == 0 || length == 0 || length > Integer.MAX_VALUE ) {
+            return null;
+        }
+        if ( jpeg ) {
+            return readJpeg( offset, (int) length );
+        }
+        return readTiff( offset, (int) length );
+    }
+
+    private byte[] readJpeg( long offset, int length )
+                            throws IOException {
+        byte[] tables = dir.jpegTables;
+        // tables are SOI, tables, EOI, the tile is SOI, scan, EOI: drop the EOI of the tables and the SOI of the tile
+        if ( tables == null || tables.length < 4 ) {
+            return read( new byte[length], 0, offset );
+        }
+        if ( length < 2 ) {
+            return null;
+        }
+        byte[] result = new byte[tables.length - 2 + length - 2];
+        System.arraycopy( tables, 0, result, 0, tables.length - 2 );
+        return read( result, tables.length - 2, offset + 2 );
+    }
+
+    private byte[] readTiff( long offset, int length )
+                            throws IOException {
+        Map<Integer, Field> fields = new TreeMap<Integer, Field>( dir.pixelFields );
+        fields.put( TiffDirectory.IMAGE_WIDTH, longField( dir.tileWidth ) );
+        fields.put( TiffDirectory.IMAGE_LENGTH, longField( dir.tileHeight ) );
+        fields.put( TiffDirectory.TILE_WIDTH, longField( dir.tileWidth ) );
+        fields.put( TiffDirectory.TILE_LENGTH, longField( dir.tileHeight ) );
+        // offset is patched below
+        fields.put( TiffDirectory.TILE_OFFSETS, longField( 0 ) );
+        fields.put( TiffDirectory.TILE_BYTE_COUNTS, longField( length ) );
+
+        int ifdSize = 2 + 12 * fields.size() + 4;
+        int valuesSize = 0;
+        for ( Field f : fields.values() ) {
+            if ( f.value.length > 4 ) {
+                valuesSize += ( f.value.length + 1 ) & ~1;
+            }
+        }
+        int dataOffset = 8 + ifdSize + valuesSize;
+        byte[] result = new byte[dataOffset + length];
+        ByteBuffer buf = ByteBuffer.wrap( result ).order( dir.order );
+        buf.put( (byte) ( dir.order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M' ) );
+        buf.put( buf.get( 0 ) );
+        buf.putShort( (short) 42 );
+        buf.putInt( 8 );
+        buf.putShort( (short) fields.size() );
+        int valuePos = 8 + ifdSize;
+        for ( Map.Entry<Integer, Field> e : fields.entrySet() ) {
+            Field f = e.getValue();
+            buf.putShort( e.getKey().shortValue() );
+            buf.putShort( (short) f.type );
+            buf.putInt( f.count );
+            if ( e.getKey() == TiffDirectory.TILE_OFFSETS ) {
+                buf.putInt( dataOffset );
+            } else if ( f.value.length <= 4 ) {
+                // inline values are left aligned
+                int pos = buf.position();
+                buf.put( f.value );
+                buf.position( pos + 4 );
+            } else {
+                buf.putInt( valuePos );
+                System.arraycopy( f.value, 0, result, valuePos, f.value.length );
+                valuePos += ( f.value.length + 1 ) & ~1;
+            }
+        }
+        buf.putInt( 0 );
+
+        return read( result, dataOffset, offset );
+    }
+
+    private byte[] read( byte[] result, int start, long offset )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap( result, start, result.length - start );
+        if ( !channel.readFully( buf, offset ) ) {
+            LOG.debug( "Unexpected end of file when reading tile from {}.", channel.getFile() );
+            return null;
+        }
+        return result;
+    }
+
+    private Field longField( long value ) {
+        byte[] bs = new byte[4];
+        ByteBuffer.wrap( bs ).order( dir.order ).putInt( (int) value );
+        return new Field( TiffDirectory.LONG, 1, bs );
+    }
+
+}
@@ -0,0 +1,336 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Minimal reader for the image file directories of a TIFF/BigTIFF file. Only the fields needed to locate the
+ * compressed tiles and to describe them in a stand alone file are kept.
+ * 
+ * @since 3.4
+ */
+class TiffDirectory {
+
+    static final int IMAGE_WIDTH = 256, IMAGE_LENGTH = 257, BITS_PER_SAMPLE = 258, COMPRESSION = 259,
+                            PHOTOMETRIC = 262, SAMPLES_PER_PIXEL = 277, PLANAR_CONFIGURATION = 284, PREDICTOR = 317,
+                            COLOR_MAP = 320, TILE_WIDTH = 322, TILE_LENGTH = 323, TILE_OFFSETS = 324,
+                            TILE_BYTE_COUNTS = 325, EXTRA_SAMPLES = 338, SAMPLE_FORMAT = 339, JPEG_TABLES = 347,
+                            YCBCR_COEFFICIENTS = 529, YCBCR_SUBSAMPLING = 530, YCBCR_POSITIONING = 531,
+                            REFERENCE_BLACK_WHITE = 532;
+
+    static final int SHORT = 3, LONG = 4, LONG8 = 16;
+
+    // fields that describe the pixel data and can be copied to a single tile file
+    private static final Set<Integer> PIXEL_FIELDS = new HashSet<Integer>();
+
+    static {
+        int[] tags = { BITS_PER_SAMPLE, COMPRESSION, PHOTOMETRIC, SAMPLES_PER_PIXEL, PLANAR_CONFIGURATION, PREDICTOR,
+                      COLOR_MAP, EXTRA_SAMPLES, SAMPLE_FORMAT, JPEG_TABLES, YCBCR_COEFFICIENTS, YCBCR_SUBSAMPLING,
+                      YCBCR_POSITIONING, REFERENCE_BLACK_WHITE };
+        for ( int tag : tags ) {
+            PIXEL_FIELDS.add( tag );
+        }
+    }
+
+    // the maximum number of directories read, guards against cyclic directory chains
+    private static final int MAX_DIRECTORIES = 1024;
+
+    /**
+     * A field as found in the file, the value bytes are in the byte order of the file.
+     */
+    static class Field {
+
+        final int type;
+
+        final int count;
+
+        final byte[] value;
+
+        Field( int type, int count, byte[] value ) {
+            this.type = type;
+            this.count = count;
+            this.value = value;
+        }
+    }
+
+    final ByteOrder order;
+
+    final Map<Integer, Field> pixelFields = new TreeMap<Integer, Field>();
+
+    int width, height, tileWidth, tileHeight, compression = 1, photometric = -1, samplesPerPixel = 1,
+                            planarConfiguration = 1, bitsPerSample = 1;
+
+    long[] tileOffsets, tileByteCounts;
+
+    byte[] jpegTables;
+
+    private TiffDirectory( ByteOrder order ) {
+        this.order = order;
+    }
+
+    /**
+     * @return true, if the image is organized in tiles with one entry per tile (chunky pixels)
+     */
+    boolean isTiled() {
+        return tileWidth > 0 && tileHeight > 0 && tileOffsets != null && tileByteCounts != null
+               && tileOffsets.length == tileByteCounts.length && planarConfiguration == 1
+               && tileOffsets.length >= getTilesAcross() * getTilesDown();
+    }
+
+    int getTilesAcross() {
+        return ( width + tileWidth - 1 ) / tileWidth;
+    }
+
+    int getTilesDown() {
+        return ( height + tileHeight - 1 ) / tileHeight;
+    }
+
+    /**
+     * Reads all directories of the main directory chain, in the order of the image indexes used by ImageIO.
+     * 
+     * @param channel
+     *            to read from, must not be <code>null</code>
+     * @return the directories, never <code>null</code>
+     * @throws IOException
+     *             if the file is not a TIFF/BigTIFF file or could not be read
+     */
+    static List<TiffDirectory> readDirectories( FileChannel channel )
+                            throws IOException {
+        ByteBuffer header = read( channel, 0, 16, ByteOrder.BIG_ENDIAN );
+        ByteOrder order;
+        int b0 = header.get( 0 ), b1 = header.get( 1 );
+        if ( b0 == 'I' && b1 == 'I' ) {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if ( b0 == 'M' && b1 == 'M' ) {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException( "Not a TIFF file." );
+        }
+        header.order( order );
+        int magic = header.getShort( 2 );
+        boolean big;
+        long offset;
+        if ( magic == 42 ) {
+            big = false;
+            offset = header.getInt( 4 ) & 0xffffffffl;
+        } else if ( magic == 43 ) {
+            big = true;
+            offset = header.getLong( 8 );
+        } else {
+            throw new IOException( "Not a TIFF file." );
+        }
+
+        List<TiffDirectory> dirs = new ArrayList<TiffDirectory>();
+        while ( offset != 0 && dirs.size() < MAX_DIRECTORIES ) {
+            TiffDirectory dir = new TiffDirectory( order );
+            offset = dir.read( channel, offset, big );
+            dirs.add( dir );
+        }
+        return dirs;
+    }
+
+    private long read( FileChannel channel, long offset, boolean big )
+                            throws IOException {
+        int countSize = big ? 8 : 2;
+        int entrySize = big ? 20 : 12;
+        int valueSize = big ? 8 : 4;
+        ByteBuffer buf = read( channel, offset, countSize, order );
+        long num = big ? buf.getLong( 0 ) : buf.getShort( 0 ) & 0xffff;
+        buf = read( channel, offset + countSize, (int) ( num * entrySize + valueSize ), order );
+        for ( int i = 0; i < num; ++i ) {
+            int pos = i * entrySize;
+            int tag = buf.getShort( pos ) & 0xffff;
+            int type = buf.getShort( pos + 2 ) & 0xffff;
+            long count = big ? buf.getLong( pos + 4 ) : buf.getInt( pos + 4 ) & 0xffffffffl;
+            int typeSize = getTypeSize( type );
+            if ( typeSize == 0 || count * typeSize > Integer.MAX_VALUE ) {
+                continue;
+            }
+            int length = (int) ( count * typeSize );
+            int valuePos = pos + ( big ? 12 : 8 );
+            ByteBuffer value;
+            if ( length <= valueSize ) {
+                byte[] bs = new byte[length];
+                for ( int j = 0; j < length; ++j ) {
+                    bs[j] = buf.get( valuePos + j );
+                }
+                value = ByteBuffer.wrap( bs ).order( order );
+            } else {
+                long valueOffset = big ? buf.getLong( valuePos ) : buf.getInt( valuePos ) & 0xffffffffl;
+                value = read( channel, valueOffset, length, order );
+            }
+            setField( tag, type, (int) count, value );
+        }
+        int next = (int) ( num * entrySize );
+        return big ? buf.getLong( next ) : buf.getInt( next ) & 0xffffffffl;
+    }
+
+    private void setField( int tag, int type, int count, ByteBuffer value ) {
+        switch ( tag ) {
+        case IMAGE_WIDTH:
+            width = (int) getNumber( type, value, 0 );
+            break;
+        case IMAGE_LENGTH:
+            height = (int) getNumber( type, value, 0 );
+            break;
+        case TILE_WIDTH:
+            tileWidth = (int) getNumber( type, value, 0 );
+            break;
+        case TILE_LENGTH:
+            tileHeight = (int) getNumber( type, value, 0 );
+            break;
+        case TILE_OFFSETS:
+            tileOffsets = getNumbers( type, count, value );
+            break;
+        case TILE_BYTE_COUNTS:
+            tileByteCounts = getNumbers( type, count, value );
+            break;
+        case COMPRESSION:
+            compression = (int) getNumber( type, value, 0 );
+            break;
+        case PHOTOMETRIC:
+            photometric = (int) getNumber( type, value, 0 );
+            break;
+        case SAMPLES_PER_PIXEL:
+            samplesPerPixel = (int) getNumber( type, value, 0 );
+            break;
+        case PLANAR_CONFIGURATION:
+            planarConfiguration = (int) getNumber( type, value, 0 );
+            break;
+        case BITS_PER_SAMPLE:
+            bitsPerSample = (int) getNumber( type, value, 0 );
+            break;
+        case JPEG_TABLES:
+            jpegTables = value.array();
+            break;
+        }
+        if ( PIXEL_FIELDS.contains( tag ) ) {
+            pixelFields.put( tag, new Field( type, count, value.array() ) );
+        }
+    }
+
+    private static long[] getNumbers( int type, int count, ByteBuffer value ) {
+        long[] result = new long[count];
+        for ( int i = 0; i < count; ++i ) {
+            result[i] = getNumber( type, value, i );
+        }
+        return result;
+    }
+
+    private static long getNumber( int type, ByteBuffer value, int index ) {
+        switch ( type ) {
+        case 1:
+        case 7:
+            return value.get( index ) & 0xff;
+        case SHORT:
+            return value.getShort( 2 * index ) & 0xffff;
+        case LONG:
+        case 13:
+            return value.getInt( 4 * index ) & 0xffffffffl;
+        case LONG8:
+        case 17:
+        case 18:
+            return value.getLong( 8 * index );
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * @param type
+     *            TIFF field type
+     * @return the size of one value of the type in bytes, 0 for unknown types
+     */
+    static int getTypeSize( int type ) {
+        switch ( type ) {
+        case 1:
+        case 2:
+        case 6:
+        case 7:
+            return 1;
+        case SHORT:
+        case 8:
+            return 2;
+        case LONG:
+        case 9:
+        case 11:
+        case 13:
+            return 4;
+        case 5:
+        case 10:
+        case 12:
+        case LONG8:
+        case 17:
+        case 18:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Reads a range of the file into a heap buffer, using positional reads (the channel may be shared).
+     */
+    static ByteBuffer read( FileChannel channel, long position, int length, ByteOrder order )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( length ).order( order );
+        while ( buf.hasRemaining() ) {
+            if ( channel.read( buf, position + buf.position() ) < 0 ) {
+                throw new EOFException( "Unexpected end of TIFF file." );
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+}
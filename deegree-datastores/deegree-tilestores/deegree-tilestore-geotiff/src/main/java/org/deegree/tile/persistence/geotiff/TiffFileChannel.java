@@ -0,0 +1,149 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only {@link FileChannel} of a TIFF file that is shared by all threads reading tiles from the file.
+ * <p>
+ * Only positional reads are used, so concurrent reads don't interfere. A {@link FileChannel} is closed if a thread is
+ * interrupted during a read (e.g. a cancelled request), which would break the channel for all other threads.
+ * Therefore, the channel is reopened transparently in that case.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class TiffFileChannel implements Closeable {
+
+    private final File file;
+
+    private volatile FileChannel channel;
+
+    private volatile boolean closed;
+
+    /**
+     * @param file
+     *            the TIFF file, must not be <code>null</code>
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    TiffFileChannel( File file ) throws IOException {
+        this.file = file;
+        this.channel = open();
+    }
+
+    /**
+     * @return the TIFF file, never <code>null</code>
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Fills the remaining bytes of the buffer, starting at the given file position.
+     * 
+     * @param buf
+     *            buffer to fill, must not be <code>null</code>
+     * @param position
+     *            file position of the first byte
+     * @return <code>false</code>, if the end of the file has been reached before the buffer was filled
+     * @throws IOException
+     */
+    boolean readFully( ByteBuffer buf, long position )
+                            throws IOException {
+        long pos = position - buf.position();
+        while ( buf.hasRemaining() ) {
+            if ( read( buf, pos + buf.position() ) < 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read( ByteBuffer buf, long position )
+                            throws IOException {
+        FileChannel ch = channel;
+        try {
+            return ch.read( buf, position );
+        } catch ( ClosedByInterruptException e ) {
+            // this thread has been interrupted, keep the channel usable for the others
+            reopen( ch );
+            throw e;
+        } catch ( ClosedChannelException e ) {
+            // closed by an interrupt of another thread
+            if ( closed ) {
+                throw e;
+            }
+            reopen( ch );
+            return channel.read( buf, position );
+        }
+    }
+
+    private synchronized void reopen( FileChannel old )
+                            throws IOException {
+        if ( !closed && channel == old ) {
+            channel = open();
+        }
+    }
+
+    private FileChannel open()
+                            throws IOException {
+        return FileChannel.open( file.toPath(), READ );
+    }
+
+    @Override
+    public synchronized void close()
+                            throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+}
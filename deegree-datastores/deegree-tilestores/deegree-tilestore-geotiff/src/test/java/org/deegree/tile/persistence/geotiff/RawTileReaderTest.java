@@ -0,0 +1,240 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests reading TIFF directories and passing through raw tiles, using a hand made tiled TIFF with fake tile payloads.
+ * 
+ * @since 3.4
+ */
+public class RawTileReaderTest {
+
+    private static final byte[] TABLES = { (byte) 0xff, (byte) 0xd8, 1, 2, 3, (byte) 0xff, (byte) 0xd9 };
+
+    private static final byte[][] TILES = { { (byte) 0xff, (byte) 0xd8, 10, (byte) 0xff, (byte) 0xd9 },
+                                           { (byte) 0xff, (byte) 0xd8, 11, 12, (byte) 0xff, (byte) 0xd9 },
+                                           { (byte) 0xff, (byte) 0xd8, 13, (byte) 0xff, (byte) 0xd9 },
+                                           {} };
+
+    private final List<TiffFileChannel> channels = new ArrayList<TiffFileChannel>();
+
+    @After
+    public void closeChannels() {
+        GeoTiffTileStore.close( channels );
+    }
+
+    private TiffFileChannel channel( File file )
+                            throws IOException {
+        TiffFileChannel channel = new TiffFileChannel( file );
+        channels.add( channel );
+        return channel;
+    }
+
+    /**
+     * Writes an 8x8 image with 4x4 tiles and JPEGTables, the last tile is sparse.
+     */
+    private static File createTiff( int compression, int photometric, int samples )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( 1024 ).order( ByteOrder.LITTLE_ENDIAN );
+        buf.put( (byte) 'I' ).put( (byte) 'I' ).putShort( (short) 42 ).putInt( 8 );
+        int numEntries = 11;
+        int offsetsPos = 8 + 2 + 12 * numEntries + 4;
+        int countsPos = offsetsPos + 16;
+        int tablesPos = countsPos + 16;
+        int dataPos = tablesPos + TABLES.length + 1;
+        buf.putShort( (short) numEntries );
+        entry( buf, TiffDirectory.IMAGE_WIDTH, TiffDirectory.SHORT, 1, 8 );
+        entry( buf, TiffDirectory.IMAGE_LENGTH, TiffDirectory.SHORT, 1, 8 );
+        entry( buf, TiffDirectory.BITS_PER_SAMPLE, TiffDirectory.SHORT, 1, 8 );
+        entry( buf, TiffDirectory.COMPRESSION, TiffDirectory.SHORT, 1, compression );
+        entry( buf, TiffDirectory.PHOTOMETRIC, TiffDirectory.SHORT, 1, photometric );
+        entry( buf, TiffDirectory.SAMPLES_PER_PIXEL, TiffDirectory.SHORT, 1, samples );
+        entry( buf, TiffDirectory.TILE_WIDTH, TiffDirectory.SHORT, 1, 4 );
+        entry( buf, TiffDirectory.TILE_LENGTH, TiffDirectory.SHORT, 1, 4 );
+        entry( buf, TiffDirectory.TILE_OFFSETS, TiffDirectory.LONG, 4, offsetsPos );
+        entry( buf, TiffDirectory.TILE_BYTE_COUNTS, TiffDirectory.LONG, 4, countsPos );
+        entry( buf, TiffDirectory.JPEG_TABLES, 7, TABLES.length, tablesPos );
+        buf.putInt( 0 );
+        int pos = dataPos;
+        for ( byte[] tile : TILES ) {
+            buf.putInt( tile.length == 0 ? 0 : pos );
+            pos += tile.length;
+        }
+        for ( byte[] tile : TILES ) {
+            buf.putInt( tile.length );
+        }
+        buf.put( TABLES ).put( (byte) 0 );
+        for ( byte[] tile : TILES ) {
+            buf.put( tile );
+        }
+        File file = File.createTempFile( "rawtile", ".tif" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( buf.array(), 0, buf.position() );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void entry( ByteBuffer buf, int tag, int type, int count, int value ) {
+        buf.putShort( (short) tag ).putShort( (short) type ).putInt( count );
+        if ( type == TiffDirectory.SHORT && count == 1 ) {
+            buf.putShort( (short) value ).putShort( (short) 0 );
+        } else {
+            buf.putInt( value );
+        }
+    }
+
+    private static TiffDirectory readDirectory( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            List<TiffDirectory> dirs = TiffDirectory.readDirectories( raf.getChannel() );
+            assertEquals( 1, dirs.size() );
+            return dirs.get( 0 );
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testReadDirectory()
+                            throws IOException {
+        TiffDirectory dir = readDirectory( createTiff( 7, 6, 3 ) );
+        assertEquals( 8, dir.width );
+        assertEquals( 4, dir.tileWidth );
+        assertEquals( 7, dir.compression );
+        assertEquals( 2, dir.getTilesAcross() );
+        assertEquals( 4, dir.tileOffsets.length );
+        assertArrayEquals( TABLES, dir.jpegTables );
+    }
+
+    @Test
+    public void testJpegPassthrough()
+                            throws IOException {
+        File file = createTiff( 7, 6, 3 );
+        RawTileReader reader = RawTileReader.create( channel( file ), readDirectory( file ), "image/jpeg", 4, 4 );
+        assertNotNull( reader );
+        byte[] expected = { (byte) 0xff, (byte) 0xd8, 1, 2, 3, 11, 12, (byte) 0xff, (byte) 0xd9 };
+        assertArrayEquals( expected, reader.readTile( 1, 0 ) );
+        assertNull( reader.readTile( 1, 1 ) );
+        assertNull( reader.readTile( 2, 0 ) );
+    }
+
+    @Test
+    public void testReadAfterInterrupt()
+                            throws IOException {
+        File file = createTiff( 7, 6, 3 );
+        RawTileReader reader = RawTileReader.create( channel( file ), readDirectory( file ), "image/jpeg", 4, 4 );
+        Thread.currentThread().interrupt();
+        try {
+            reader.readTile( 0, 0 );
+            fail( "Interrupted read should have failed." );
+        } catch ( ClosedByInterruptException e ) {
+            // expected, the channel must still be usable by others
+        } finally {
+            Thread.interrupted();
+        }
+        byte[] expected = { (byte) 0xff, (byte) 0xd8, 1, 2, 3, 10, (byte) 0xff, (byte) 0xd9 };
+        assertArrayEquals( expected, reader.readTile( 0, 0 ) );
+    }
+
+    @Test
+    public void testNoJpegPassthroughForRgbOrOtherFormats()
+                            throws IOException {
+        File file = createTiff( 7, 2, 3 );
+        assertNull( RawTileReader.create( channel( file ), readDirectory( file ), "image/jpeg", 4, 4 ) );
+        file = createTiff( 7, 6, 3 );
+        assertNull( RawTileReader.create( channel( file ), readDirectory( file ), "image/png", 4, 4 ) );
+        assertNull( RawTileReader.create( channel( file ), readDirectory( file ), "image/jpeg", 256, 256 ) );
+    }
+
+    @Test
+    public void testTiffPassthrough()
+                            throws IOException {
+        File file = createTiff( 8, 2, 3 );
+        RawTileReader reader = RawTileReader.create( channel( file ), readDirectory( file ), "image/tiff", 4, 4 );
+        assertNotNull( reader );
+        byte[] tile = reader.readTile( 0, 1 );
+
+        File single = File.createTempFile( "rawtile", ".tif" );
+        single.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( single );
+        try {
+            out.write( tile );
+        } finally {
+            out.close();
+        }
+        TiffDirectory dir = readDirectory( single );
+        assertEquals( 4, dir.width );
+        assertEquals( 4, dir.height );
+        assertEquals( 8, dir.compression );
+        assertEquals( 3, dir.samplesPerPixel );
+        assertEquals( 1, dir.tileOffsets.length );
+        int offset = (int) dir.tileOffsets[0];
+        int length = (int) dir.tileByteCounts[0];
+        assertArrayEquals( TILES[2], Arrays.copyOfRange( tile, offset, offset + length ) );
+    }
+
+}
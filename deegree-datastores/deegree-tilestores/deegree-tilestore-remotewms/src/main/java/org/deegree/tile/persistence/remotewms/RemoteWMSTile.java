@@ -135,7 +135,13 @@ class RemoteWMSTile implements Tile {
             }
 
             if ( outputFormat != null ) {
-                BufferedImage img = ImageIO.read( map );
+                BufferedImage img;
+                try {
+                    img = ImageIO.read( map );
+                } finally {
+                    // releases the connection
+                    IOUtils.closeQuietly( map );
+                }
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
                 ImageIO.write( img, outputFormat, out );
                 out.close();
@@ -50,6 +50,10 @@ class RemoteWMSLayer extends AbstractLayer {
 
     private boolean transparent = true;
 
+    private int tileSize;
+
+    private int timeout = RemoteWMSLayerData.DEFAULT_TIMEOUT;
+
     private HashMap<String, String> defaultParametersGetMap = new HashMap<String, String>();
 
     private HashMap<String, String> defaultParametersGetFeatureInfo = new HashMap<String, String>();
@@ -76,6 +80,12 @@ class RemoteWMSLayer extends AbstractLayer {
                 this.transparent = opts.getImageFormat().isTransparent();
             }
             extractParameters( opts.getParameter() );
+            if ( opts.getTileSize() != null ) {
+                this.tileSize = opts.getTileSize().intValue();
+            }
+            if ( opts.getTimeout() != null ) {
+                this.timeout = opts.getTimeout().intValue();
+            }
         }
         // set default values if not configured
         if ( this.crs == null ) {
@@ -146,7 +156,7 @@ class RemoteWMSLayer extends AbstractLayer {
 
         GetMap gm = new GetMap( singletonList( originalName ), query.getWidth(), query.getHeight(),
                                 query.getEnvelope(), crs, format, transparent );
-        return new RemoteWMSLayerData( client, gm, extraParams );
+        return new RemoteWMSLayerData( client, gm, extraParams, tileSize, timeout );
     }
 
     @Override
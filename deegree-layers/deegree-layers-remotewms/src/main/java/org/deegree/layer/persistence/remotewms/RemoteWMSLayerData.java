@@ -40,7 +40,6 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.awt.image.BufferedImage;
 import java.util.Map;
 
-import org.deegree.commons.utils.Pair;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.layer.LayerData;
@@ -61,7 +60,9 @@ public class RemoteWMSLayerData implements LayerData {
 
     private static final Logger LOG = getLogger( RemoteWMSLayerData.class );
 
-    private GetMap gm;
+    static final int DEFAULT_TIMEOUT = 30;
+
+    private RemoteWMSMapFetch mapFetch;
 
     private final WMSClient client;
 
@@ -70,9 +71,30 @@ public class RemoteWMSLayerData implements LayerData {
     private GetFeatureInfo gfi;
 
     public RemoteWMSLayerData( WMSClient client, GetMap gm, Map<String, String> extraParams ) {
+        this( client, gm, extraParams, 0, DEFAULT_TIMEOUT );
+    }
+
+    /**
+     * Creates a new {@link RemoteWMSLayerData} for a map and starts fetching the map in the background.
+     * 
+     * @param client
+     *            client for the remote WMS, must not be <code>null</code>
+     * @param gm
+     *            request for the map, must not be <code>null</code>
+     * @param extraParams
+     *            parameters to override in the requests, may be <code>null</code>
+     * @param tileSize
+     *            maximum width and height (in pixels) of the maps requested from the remote WMS, larger maps are
+     *            requested in tiles concurrently, zero or negative to always request the map in one piece
+     * @param timeout
+     *            maximum number of seconds to wait for the map, tiles that have not been received by then are left
+     *            empty
+     */
+    public RemoteWMSLayerData( WMSClient client, GetMap gm, Map<String, String> extraParams, int tileSize,
+                               int timeout ) {
         this.client = client;
-        this.gm = gm;
         this.extraParams = extraParams;
+        this.mapFetch = new RemoteWMSMapFetch( client, gm, extraParams, tileSize, timeout );
     }
 
     public RemoteWMSLayerData( WMSClient client, GetFeatureInfo gfi, Map<String, String> extraParams ) {
@@ -84,12 +106,14 @@ public class RemoteWMSLayerData implements LayerData {
     @Override
     public void render( RenderContext context ) {
         try {
-            Pair<BufferedImage, String> map = client.getMap( gm, extraParams, 30 );
-            if ( map.first != null ) {
-                context.paintImage( map.first );
+            BufferedImage map = mapFetch.getImage();
+            if ( map != null ) {
+                context.paintImage( map );
             }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
         } catch ( Throwable e ) {
-            e.printStackTrace();
+            mapFetch.cancel();
             LOG.warn( "Error when retrieving remote map: {}", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
         }
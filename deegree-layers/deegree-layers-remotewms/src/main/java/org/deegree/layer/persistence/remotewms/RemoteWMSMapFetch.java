@@ -0,0 +1,308 @@
+//$HeadURL: svn+ssh://aschmitz@wald.intevation.org/deegree/base/trunk/resources/eclipse/files_template.xml $
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.remotewms;
+
+import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.coverage.raster.geom.RasterGeoReference.OriginLocation.OUTER;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.Pair;
+import org.deegree.coverage.raster.geom.RasterGeoReference;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.protocol.wms.client.WMSClient;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.slf4j.Logger;
+
+/**
+ * Fetches a map from a remote WMS in the background.
+ * <p>
+ * Large maps are split into tiles that are requested (and reprojected, if the remote WMS does not support the requested
+ * crs) concurrently. The fetching starts as soon as the instance is created, so the maps of several remote layers of
+ * one request are retrieved at the same time. {@link #getImage()} waits until a deadline at most: tiles that have not
+ * been received by then are left empty. The HTTP requests of the tiles are aborted at the deadline, so no thread is
+ * kept blocked by a remote WMS that does not respond.
+ * </p>
+ * <p>
+ * Each remote WMS has its own bounded thread pool and queue, so a slow service does not delay the maps of other
+ * services. Tiles that do not fit into the queue are left empty as well.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class RemoteWMSMapFetch {
+
+    private static final Logger LOG = getLogger( RemoteWMSMapFetch.class );
+
+    // concurrent requests per remote WMS (the connection pool allows 20 connections per host by default)
+    private static final int THREADS_PER_SERVICE = 8;
+
+    private static final int MAX_QUEUED_TILES_PER_SERVICE = 256;
+
+    private static final Map<WMSClient, ExecutorService> EXECUTORS = new WeakHashMap<WMSClient, ExecutorService>();
+
+    private static final GeometryFactory GEOM_FAC = new GeometryFactory();
+
+    private final int width;
+
+    private final int height;
+
+    private final long deadline;
+
+    private final List<Tile> tiles;
+
+    /**
+     * Starts fetching the map.
+     * 
+     * @param client
+     *            client for the remote WMS, must not be <code>null</code>
+     * @param gm
+     *            request for the complete map, must not be <code>null</code>
+     * @param extraParams
+     *            parameters to override in the requests, may be <code>null</code>
+     * @param tileSize
+     *            maximum width and height of the requested tiles (in pixels), zero or negative to request the map in
+     *            one piece
+     * @param timeout
+     *            maximum number of seconds to wait for the map
+     */
+    RemoteWMSMapFetch( WMSClient client, GetMap gm, Map<String, String> extraParams, int tileSize, int timeout ) {
+        this.width = gm.getWidth();
+        this.height = gm.getHeight();
+        this.deadline = System.currentTimeMillis() + SECONDS.toMillis( timeout );
+        this.tiles = split( gm, tileSize );
+        if ( tiles.size() > 1 ) {
+            LOG.debug( "Requesting remote map of {}x{} pixels in {} tiles.",
+                       new Object[] { width, height, tiles.size() } );
+        }
+        ExecutorService executor = getExecutor( client );
+        for ( Tile tile : tiles ) {
+            submit( executor, client, tile, extraParams, deadline );
+        }
+    }
+
+    /**
+     * Splits the requested map into tiles.
+     * 
+     * @param gm
+     *            request for the complete map, must not be <code>null</code>
+     * @param tileSize
+     *            maximum width and height of the tiles (in pixels), zero or negative for a single tile
+     * @return tiles (row by row, the tiles of the last row and column may be smaller), never <code>null</code>
+     */
+    static List<Tile> split( GetMap gm, int tileSize ) {
+        int width = gm.getWidth();
+        int height = gm.getHeight();
+        List<Tile> tiles = new ArrayList<Tile>();
+        if ( tileSize <= 0 || ( width <= tileSize && height <= tileSize ) ) {
+            tiles.add( new Tile( 0, 0, gm ) );
+            return tiles;
+        }
+        RasterGeoReference rasterEnv = RasterGeoReference.create( OUTER, gm.getBoundingBox(), width, height );
+        for ( int y = 0; y < height; y += tileSize ) {
+            int tileHeight = Math.min( tileSize, height - y );
+            for ( int x = 0; x < width; x += tileSize ) {
+                int tileWidth = Math.min( tileSize, width - x );
+                double[] min = rasterEnv.getWorldCoordinate( x, y + tileHeight );
+                double[] max = rasterEnv.getWorldCoordinate( x + tileWidth, y );
+                Envelope tileEnv = GEOM_FAC.createEnvelope( min, max, gm.getBoundingBox().getCoordinateSystem() );
+                GetMap tileGm = new GetMap( gm.getLayers(), gm.getStyles(), tileWidth, tileHeight, tileEnv,
+                                            gm.getCoordinateSystem(), gm.getFormat(), gm.getTransparent(),
+                                            gm.getBgColor(), Collections.<String, String> emptyMap(),
+                                            Collections.<String, List<?>> emptyMap() );
+                tiles.add( new Tile( x, y, tileGm ) );
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Waits for the tiles of the map until they have been received or the deadline has passed.
+     * 
+     * @return the map (tiles that have not been received are transparent), <code>null</code> if no tile has been
+     *         received at all
+     * @throws InterruptedException
+     */
+    BufferedImage getImage()
+                            throws InterruptedException {
+        BufferedImage img = null;
+        Graphics2D g = null;
+        int missing = 0;
+        try {
+            for ( Tile tile : tiles ) {
+                BufferedImage tileImg = waitFor( tile );
+                if ( tileImg == null ) {
+                    ++missing;
+                    continue;
+                }
+                if ( tiles.size() == 1 ) {
+                    return tileImg;
+                }
+                if ( img == null ) {
+                    img = new BufferedImage( width, height, TYPE_4BYTE_ABGR );
+                    g = img.createGraphics();
+                }
+                g.drawImage( tileImg, tile.x, tile.y, null );
+            }
+        } catch ( InterruptedException e ) {
+            cancel();
+            throw e;
+        } finally {
+            if ( g != null ) {
+                g.dispose();
+            }
+        }
+        if ( missing > 0 && img != null ) {
+            LOG.warn( "Remote map is incomplete, {} of {} tiles could not be retrieved.", missing, tiles.size() );
+        }
+        return img;
+    }
+
+    /**
+     * Cancels the requests that are still pending.
+     */
+    void cancel() {
+        for ( Tile tile : tiles ) {
+            if ( tile.future != null ) {
+                tile.future.cancel( true );
+            }
+        }
+    }
+
+    private BufferedImage waitFor( Tile tile )
+                            throws InterruptedException {
+        if ( tile.future == null ) {
+            return null;
+        }
+        try {
+            long remaining = deadline - System.currentTimeMillis();
+            Pair<BufferedImage, String> result = tile.future.get( Math.max( remaining, 0 ), MILLISECONDS );
+            if ( result.second != null ) {
+                LOG.warn( "Error when retrieving remote map: {}", result.second );
+            }
+            return result.first;
+        } catch ( TimeoutException e ) {
+            tile.future.cancel( true );
+            LOG.warn( "Remote map tile at {},{} was not received in time.", tile.x, tile.y );
+        } catch ( ExecutionException e ) {
+            LOG.warn( "Error when retrieving remote map: {}", e.getCause().getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e.getCause() );
+        }
+        return null;
+    }
+
+    private static void submit( ExecutorService executor, final WMSClient client, final Tile tile,
+                                final Map<String, String> extraParams, final long deadline ) {
+        try {
+            tile.future = executor.submit( new Callable<Pair<BufferedImage, String>>() {
+                @Override
+                public Pair<BufferedImage, String> call()
+                                        throws Exception {
+                    // aborts the HTTP request (connecting and reading) when the deadline has passed
+                    return client.getMapUntil( tile.gm, extraParams, deadline );
+                }
+            } );
+        } catch ( RejectedExecutionException e ) {
+            LOG.warn( "Too many pending requests to remote WMS, skipping map tile at {},{}.", tile.x, tile.y );
+        }
+    }
+
+    private static ExecutorService getExecutor( WMSClient client ) {
+        synchronized ( EXECUTORS ) {
+            ExecutorService executor = EXECUTORS.get( client );
+            if ( executor == null ) {
+                BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>( MAX_QUEUED_TILES_PER_SERVICE );
+                ThreadPoolExecutor pool = new ThreadPoolExecutor( THREADS_PER_SERVICE, THREADS_PER_SERVICE, 60,
+                                                                  SECONDS, queue, new DaemonThreadFactory() );
+                pool.allowCoreThreadTimeOut( true );
+                executor = pool;
+                EXECUTORS.put( client, executor );
+            }
+            return executor;
+        }
+    }
+
+    static class Tile {
+
+        final int x;
+
+        final int y;
+
+        final GetMap gm;
+
+        // null if the tile has not been accepted for fetching
+        volatile Future<Pair<BufferedImage, String>> future;
+
+        Tile( int x, int y, GetMap gm ) {
+            this.x = x;
+            this.y = y;
+            this.gm = gm;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "remotewms-fetch-" + threadNumber.getAndIncrement() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.remotewms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.persistence.remotewms.RemoteWMSMapFetch.Tile;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RemoteWMSMapFetch}.
+ */
+public class RemoteWMSMapFetchTest {
+
+    private static final double DELTA = 1E-9;
+
+    @Test
+    public void testSplitSmallMapIntoSingleTile() {
+        GetMap gm = createGetMap( 256, 200 );
+        List<Tile> tiles = RemoteWMSMapFetch.split( gm, 256 );
+        assertEquals( 1, tiles.size() );
+        assertSame( gm, tiles.get( 0 ).gm );
+    }
+
+    @Test
+    public void testSplitDisabled() {
+        GetMap gm = createGetMap( 1000, 700 );
+        List<Tile> tiles = RemoteWMSMapFetch.split( gm, 0 );
+        assertEquals( 1, tiles.size() );
+        assertSame( gm, tiles.get( 0 ).gm );
+    }
+
+    @Test
+    public void testSplitLastRowAndColumn() {
+        // 1000 x 700 pixels: 4 columns (256, 256, 256, 232) and 3 rows (256, 256, 188)
+        List<Tile> tiles = RemoteWMSMapFetch.split( createGetMap( 1000, 700 ), 256 );
+        assertEquals( 12, tiles.size() );
+        int pixels = 0;
+        for ( Tile tile : tiles ) {
+            int expectedWidth = tile.x == 768 ? 232 : 256;
+            int expectedHeight = tile.y == 512 ? 188 : 256;
+            assertEquals( expectedWidth, tile.gm.getWidth() );
+            assertEquals( expectedHeight, tile.gm.getHeight() );
+            pixels += tile.gm.getWidth() * tile.gm.getHeight();
+        }
+        assertEquals( 1000 * 700, pixels );
+        Tile last = tiles.get( 11 );
+        assertEquals( 768, last.x );
+        assertEquals( 512, last.y );
+    }
+
+    @Test
+    public void testSplitTileEnvelopes() {
+        // 1 pixel = 0.1 units
+        List<Tile> tiles = RemoteWMSMapFetch.split( createGetMap( 1000, 700 ), 256 );
+
+        // upper left tile
+        Envelope first = tiles.get( 0 ).gm.getBoundingBox();
+        assertEquals( 0.0, first.getMin().get0(), DELTA );
+        assertEquals( 70.0 - 25.6, first.getMin().get1(), DELTA );
+        assertEquals( 25.6, first.getMax().get0(), DELTA );
+        assertEquals( 70.0, first.getMax().get1(), DELTA );
+
+        // lower right tile
+        Envelope last = tiles.get( 11 ).gm.getBoundingBox();
+        assertEquals( 76.8, last.getMin().get0(), DELTA );
+        assertEquals( 0.0, last.getMin().get1(), DELTA );
+        assertEquals( 100.0, last.getMax().get0(), DELTA );
+        assertEquals( 70.0 - 51.2, last.getMax().get1(), DELTA );
+
+        // adjacent tiles share their edges
+        for ( Tile tile : tiles ) {
+            Envelope env = tile.gm.getBoundingBox();
+            assertEquals( tile.x * 0.1, env.getMin().get0(), DELTA );
+            assertEquals( 70.0 - tile.y * 0.1, env.getMax().get1(), DELTA );
+            assertEquals( tile.gm.getWidth() * 0.1, env.getSpan0(), DELTA );
+            assertEquals( tile.gm.getHeight() * 0.1, env.getSpan1(), DELTA );
+        }
+    }
+
+    private static GetMap createGetMap( int width, int height ) {
+        Envelope bbox = new GeometryFactory().createEnvelope( 0, 0, width * 0.1, height * 0.1, null );
+        return new GetMap( Collections.singletonList( "layer" ), width, height, bbox, null, "image/png", true );
+    }
+
+}
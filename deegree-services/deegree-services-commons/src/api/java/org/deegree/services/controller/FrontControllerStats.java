@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.controller;
 
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static org.deegree.commons.utils.ArrayUtils.splitAsDoubles;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -43,8 +44,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
 import java.util.TreeSet;
@@ -59,11 +58,13 @@ import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.services.controller.metrics.RequestMetrics;
 import org.h2.util.IOUtils;
 import org.slf4j.Logger;
 
 /**
- * Keeps track of request and runtime statistics for the {@link OGCFrontController}.
+ * Keeps track of the KVP requests of the {@link OGCFrontController}. Runtime statistics are provided by
+ * {@link RequestMetrics}.
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -74,85 +75,40 @@ public class FrontControllerStats {
 
     private static final Logger LOG = getLogger( FrontControllerStats.class );
 
-    private static long numDispatched;
-
-    private static long numFinished;
-
-    private static double averageResponseTime;
-
-    private static double maxResponseTime;
-
-    private static Envelope bbox;
-
-    private static GeometryTransformer trans;
+    private static final String LINE_SEPARATOR = System.getProperty( "line.separator" );
 
     private static final GeometryFactory fac = new GeometryFactory();
 
     /**
-     * Called by the {@link OGCFrontController} to indicate that a new request has just been dispatched to an
-     * {@link AbstractOWS}.
-     * 
-     * @return current time
-     */
-    synchronized static long requestDispatched() {
-        numDispatched++;
-        return System.currentTimeMillis();
-    }
-
-    /**
-     * Called by the {@link OGCFrontController} to indicate that a dispatched request has been finished.
+     * Appends the given KVP request to the requests file.
+     * <p>
+     * Every request is written with a single (appending) write, so concurrent requests don't need to synchronize.
+     * </p>
      * 
-     * @param dispatchTime
-     *            time when the request has been dispatched
-     */
-    synchronized static void requestFinished( long dispatchTime ) {
-        long duration = System.currentTimeMillis() - dispatchTime;
-        if ( duration > maxResponseTime ) {
-            maxResponseTime = duration;
-        }
-        averageResponseTime = ( averageResponseTime * numFinished + duration ) / ( numFinished + 1 );
-        numFinished++;
-    }
-
-    /**
      * @param request
      *            the query string
      * @param timestamp
      */
-    public synchronized static void incomingKVP( String request, long timestamp ) {
+    public static void incomingKVP( String request, long timestamp ) {
+        OutputStream os = null;
         try {
-            OutputStream os = ConfigManager.getOutputResource( "requests.txt", true );
-            PrintWriter out = new PrintWriter( new OutputStreamWriter( os, "UTF-8" ) );
-            out.println( timestamp + " " + request );
-            out.close();
-            if ( request.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
-                try {
-                    Map<String, String> map = KVPUtils.getNormalizedKVPMap( request, "UTF-8" );
-                    if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
-                        return;
-                    }
-                    double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
-                    Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
-                                                          CRSManager.getCRSRef( map.get( "SRS" ) ) );
-                    if ( bbox != null ) {
-                        bbox.merge( trans.transform( newBox ) );
-                    }
-                } catch ( UnsupportedEncodingException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( IllegalArgumentException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( TransformationException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( UnknownCRSException e ) {
-                    LOG.trace( "Stack trace:", e );
-                }
-            }
+            os = ConfigManager.getOutputResource( "requests.txt", true );
+            os.write( ( timestamp + " " + request + LINE_SEPARATOR ).getBytes( "UTF-8" ) );
         } catch ( FileNotFoundException e ) {
             LOG.debug( "Could not find the file to store requests." );
             LOG.debug( " Probably the DEEGREE_HOME directory does not exist and could not be created." );
             LOG.trace( "Stack trace:", e );
-        } catch ( UnsupportedEncodingException e ) {
+        } catch ( IOException e ) {
+            LOG.debug( "The request could not be stored: '{}'", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
+        } finally {
+            if ( os != null ) {
+                try {
+                    os.close();
+                } catch ( IOException e ) {
+                    LOG.trace( "Stack trace:", e );
+                }
+            }
         }
     }
 
@@ -160,9 +116,11 @@ public class FrontControllerStats {
      * Returns the number of requests that the {@link OGCFrontController} dispatched to service controllers.
      * 
      * @return number of dispatched requests
+     * @deprecated use {@link RequestMetrics#getDispatchedRequests()} instead
      */
+    @Deprecated
     public static long getDispatchedRequests() {
-        return numDispatched;
+        return RequestMetrics.getDispatchedRequests();
     }
 
     /**
@@ -170,27 +128,33 @@ public class FrontControllerStats {
      * service controllers, but that didn't return yet.
      * 
      * @return number of active requests
+     * @deprecated use {@link RequestMetrics#getActiveRequests()} instead
      */
+    @Deprecated
     public static long getActiveRequests() {
-        return numDispatched - numFinished;
+        return RequestMetrics.getActiveRequests();
     }
 
     /**
      * Returns the average response time for all finished requests.
      * 
-     * @return the average response time
+     * @return the average response time (in milliseconds)
+     * @deprecated use {@link RequestMetrics#getLatency()} instead
      */
+    @Deprecated
     public static long getAverageResponseTime() {
-        return (long) averageResponseTime;
+        return MICROSECONDS.toMillis( (long) RequestMetrics.getLatency().getMean() );
     }
 
     /**
      * Returns the maximum response time of all finished requests.
      * 
-     * @return the maximum response time
+     * @return the maximum response time (in milliseconds)
+     * @deprecated use {@link RequestMetrics#getLatency()} instead
      */
+    @Deprecated
     public static long getMaximumResponseTime() {
-        return (long) maxResponseTime;
+        return MICROSECONDS.toMillis( RequestMetrics.getLatency().getMax() );
     }
 
     /**
@@ -262,40 +226,40 @@ public class FrontControllerStats {
     }
 
     /**
-     * @return an envelope of all the logged GetMap requests
+     * @return an envelope of all the logged GetMap requests, can be <code>null</code>
      */
-    public static synchronized Envelope getCombinedGetMapEnvelope() {
-        if ( bbox == null ) {
-            for ( Pair<Long, String> req : getKVPRequests() ) {
-                if ( !req.second.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
+    public static Envelope getCombinedGetMapEnvelope() {
+        Envelope bbox = null;
+        GeometryTransformer trans = null;
+        for ( Pair<Long, String> req : getKVPRequests() ) {
+            if ( !req.second.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
+                continue;
+            }
+            try {
+                Map<String, String> map = KVPUtils.getNormalizedKVPMap( req.second, "UTF-8" );
+                if ( "statistics".equals( map.get( "LAYERS" ) ) ) {
                     continue;
                 }
-                try {
-                    Map<String, String> map = KVPUtils.getNormalizedKVPMap( req.second, "UTF-8" );
-                    if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
-                        continue;
-                    }
-                    if ( map.get( "VERSION" ) == null || !map.get( "VERSION" ).equals( "1.1.1" ) ) {
-                        continue;
-                    }
-                    double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
-                    Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
-                                                          CRSManager.getCRSRef( map.get( "SRS" ) ) );
-                    if ( bbox == null ) {
-                        bbox = newBox;
-                        trans = new GeometryTransformer( bbox.getCoordinateSystem() );
-                    } else {
-                        bbox.merge( trans.transform( newBox ) );
-                    }
-                } catch ( UnsupportedEncodingException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( IllegalArgumentException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( UnknownCRSException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( TransformationException e ) {
-                    LOG.trace( "Stack trace:", e );
+                if ( map.get( "VERSION" ) == null || !map.get( "VERSION" ).equals( "1.1.1" ) ) {
+                    continue;
+                }
+                double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
+                Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
+                                                      CRSManager.getCRSRef( map.get( "SRS" ) ) );
+                if ( bbox == null ) {
+                    bbox = newBox;
+                    trans = new GeometryTransformer( bbox.getCoordinateSystem() );
+                } else {
+                    bbox = bbox.merge( trans.transform( newBox ) );
                 }
+            } catch ( UnsupportedEncodingException e ) {
+                LOG.trace( "Stack trace:", e );
+            } catch ( IllegalArgumentException e ) {
+                LOG.trace( "Stack trace:", e );
+            } catch ( UnknownCRSException e ) {
+                LOG.trace( "Stack trace:", e );
+            } catch ( TransformationException e ) {
+                LOG.trace( "Stack trace:", e );
             }
         }
         return bbox;
@@ -53,7 +53,11 @@ import org.slf4j.LoggerFactory;
  * @author last edited by: $Author: markus $
  * 
  * @version $Revision: $, $Date: $
+ * 
+ * @deprecated use {@link org.deegree.services.controller.compression.CompressingHttpServletResponse} (see
+ *             {@link org.deegree.services.controller.compression.ResponseCompression}) instead
  */
+@Deprecated
 public class GZipHttpServletResponse implements HttpServletResponse {
 
     private static Logger LOG = LoggerFactory.getLogger( GZipHttpServletResponse.class );
@@ -47,7 +47,11 @@ import javax.servlet.ServletOutputStream;
  * @author last edited by: $Author: markus $
  * 
  * @version $Revision: $, $Date: $
+ * 
+ * @deprecated use {@link org.deegree.services.controller.compression.CompressingHttpServletResponse} (see
+ *             {@link org.deegree.services.controller.compression.ResponseCompression}) instead
  */
+@Deprecated
 public class GZipServletOutputStream extends ServletOutputStream {
 
     private final GZipHttpServletResponse response;
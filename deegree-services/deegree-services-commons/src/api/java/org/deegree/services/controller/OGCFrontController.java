@@ -113,7 +113,11 @@ import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
 import org.deegree.services.authentication.SecurityException;
+import org.deegree.services.controller.compression.CompressingHttpServletResponse;
+import org.deegree.services.controller.compression.ResponseCompression;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.metrics.MeteredHttpServletResponse;
+import org.deegree.services.controller.metrics.RequestMetrics;
 import org.deegree.services.controller.security.SecurityConfiguration;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.controller.utils.LoggingHttpResponseWrapper;
@@ -186,6 +190,8 @@ public class OGCFrontController extends HttpServlet {
 
     private transient RequestWatchdog requestWatchdog;
 
+    private transient ResponseCompression responseCompression;
+
     private transient SecurityConfiguration securityConfiguration;
 
     private transient OwsManager serviceConfiguration;
@@ -325,7 +331,6 @@ public class OGCFrontController extends HttpServlet {
 
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
 
             String queryString = request.getQueryString();
             try {
@@ -392,7 +397,12 @@ public class OGCFrontController extends HttpServlet {
                        + ( System.currentTimeMillis() - entryTime ) + " ms." );
         } finally {
             getInstance().CONTEXT.remove();
-            responseBuffer.flushBuffer();
+            try {
+                responseBuffer.flushBuffer();
+                finishCompression( responseBuffer );
+            } finally {
+                finishMetrics( responseBuffer );
+            }
             if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
                 validateResponse( responseBuffer );
             }
@@ -436,7 +446,6 @@ public class OGCFrontController extends HttpServlet {
         try {
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
 
             LOG.debug( "doPost(), contentType: '" + request.getContentType() + "'" );
 
@@ -520,7 +529,12 @@ public class OGCFrontController extends HttpServlet {
                        + ( System.currentTimeMillis() - entryTime ) + " ms." );
         } finally {
             instance.CONTEXT.remove();
-            responseBuffer.flushBuffer();
+            try {
+                responseBuffer.flushBuffer();
+                finishCompression( responseBuffer );
+            } finally {
+                finishMetrics( responseBuffer );
+            }
             if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
                 validateResponse( responseBuffer );
             }
@@ -530,12 +544,32 @@ public class OGCFrontController extends HttpServlet {
     private HttpResponseBuffer createHttpResponseBuffer( HttpServletRequest request, HttpServletResponse response )
                             throws FileNotFoundException, IOException {
         OwsGlobalConfigLoader loader = workspace.getNewWorkspace().getInitializable( OwsGlobalConfigLoader.class );
+        response = new MeteredHttpServletResponse( response );
+        if ( responseCompression != null ) {
+            response = responseCompression.wrap( request, response );
+        }
         if ( loader.getRequestLogger() != null ) {
             response = createLoggingResponseWrapper( request, response );
         }
         return new HttpResponseBuffer( response );
     }
 
+    private static void finishCompression( HttpResponseBuffer response )
+                            throws IOException {
+        CompressingHttpServletResponse compressingResponse = CompressingHttpServletResponse.lookup( response );
+        if ( compressingResponse != null ) {
+            compressingResponse.finish();
+        }
+    }
+
+    private static void finishMetrics( HttpResponseBuffer response ) {
+        MeteredHttpServletResponse meteredResponse = MeteredHttpServletResponse.lookup( response );
+        if ( meteredResponse != null ) {
+            boolean error = response.isExceptionSent() || meteredResponse.getStatus() >= 400;
+            RequestMetrics.requestFinished( meteredResponse.getBytesWritten(), error );
+        }
+    }
+
     private HttpServletResponse createLoggingResponseWrapper( HttpServletRequest request, HttpServletResponse response )
                             throws IOException, FileNotFoundException {
         OwsGlobalConfigLoader loader = workspace.getNewWorkspace().getInitializable( OwsGlobalConfigLoader.class );
@@ -614,17 +648,6 @@ public class OGCFrontController extends HttpServlet {
         return ows;
     }
 
-    private static HttpResponseBuffer handleCompression( HttpResponseBuffer response ) {
-        // TODO check if we should enable this in any case (XML, images, ...)
-        // String encoding = request.getHeader( "Accept-Encoding" );
-        // boolean supportsGzip = encoding != null && encoding.toLowerCase().contains( "gzip" );
-        // if ( supportsGzip ) {
-        // LOG.debug( "Using GZIP-compression" );
-        // response = new GZipHttpServletResponse( response );
-        // }
-        return response;
-    }
-
     private static String readPostBodyAsString( InputStream is )
                             throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -802,12 +825,12 @@ public class OGCFrontController extends HttpServlet {
             }
 
             LOG.debug( "Dispatching request to OWS class: " + ows.getClass().getName() );
-            long dispatchTime = FrontControllerStats.requestDispatched();
+            dispatched( ows, request, normalizedKVPParams );
             try {
                 watchTimeout( ows, request );
+                selectCompression( ows, response );
                 ows.doKVP( normalizedKVPParams, requestWrapper, response, multiParts );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
                 unwatchTimeout();
             }
         } catch ( SecurityException e ) {
@@ -889,12 +912,12 @@ public class OGCFrontController extends HttpServlet {
             }
             if ( ows != null ) {
                 LOG.debug( "Dispatching request to OWS: " + ows.getClass().getName() );
-                long dispatchTime = FrontControllerStats.requestDispatched();
+                dispatched( ows, xmlStream.getLocalName(), null );
                 try {
                     watchTimeout( ows, xmlStream.getLocalName() );
+                    selectCompression( ows, response );
                     ows.doXML( xmlStream, requestWrapper, response, multiParts );
                 } finally {
-                    FrontControllerStats.requestFinished( dispatchTime );
                     unwatchTimeout();
                 }
             }
@@ -1009,12 +1032,13 @@ public class OGCFrontController extends HttpServlet {
             }
 
             LOG.debug( "Dispatching request to OWS class: " + ows.getClass().getName() );
-            long dispatchTime = FrontControllerStats.requestDispatched();
+            dispatched( ows, env.getSOAPBodyFirstElementLocalName(), null );
             try {
                 watchTimeout( ows, env.getSOAPBodyFirstElementLocalName() );
+                selectCompression( ows, response );
                 ows.doSOAP( env, requestWrapper, response, multiParts, factory );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
+                unwatchTimeout();
             }
         } catch ( SecurityException e ) {
             if ( credentialsProvider != null ) {
@@ -1044,6 +1068,7 @@ public class OGCFrontController extends HttpServlet {
         try {
             super.init( config );
             ctxPath = config.getServletContext().getContextPath();
+            RequestMetrics.registerMBean( ctxPath );
             LOG.info( "--------------------------------------------------------------------------------" );
             DeegreeAALogoUtils.logInfo( LOG );
             LOG.info( "--------------------------------------------------------------------------------" );
@@ -1144,6 +1169,13 @@ public class OGCFrontController extends HttpServlet {
         } else {
             LOG.info( "Not initializing request watchdog. No request time-outs configured." );
         }
+        if ( mainConfig != null && mainConfig.getResponseCompression() != null ) {
+            responseCompression = new ResponseCompression( mainConfig.getResponseCompression(),
+                                                           workspace.getModuleClassLoader() );
+        } else {
+            responseCompression = null;
+            LOG.info( "Not compressing responses. No response compression configured." );
+        }
         LOG.info( "" );
     }
 
@@ -1381,6 +1413,7 @@ public class OGCFrontController extends HttpServlet {
     public void destroy() {
         super.destroy();
         destroyWorkspace();
+        RequestMetrics.unregisterMBean();
         if ( mainConfig.isPreventClassloaderLeaks() == null || mainConfig.isPreventClassloaderLeaks() ) {
             plugClassLoaderLeaks();
         }
@@ -1565,6 +1598,19 @@ public class OGCFrontController extends HttpServlet {
         }
     }
 
+    private void selectCompression( final OWS ows, final HttpResponseBuffer response ) {
+        CompressingHttpServletResponse compressingResponse = CompressingHttpServletResponse.lookup( response );
+        if ( compressingResponse != null ) {
+            compressingResponse.setServiceId( ows.getMetadata().getIdentifier().getId() );
+        }
+    }
+
+    private static void dispatched( final OWS ows, final String requestName, final Map<String, String> kvp ) {
+        ImplementationMetadata<?> md = ( (OWSProvider) ows.getMetadata().getProvider() ).getImplementationMetadata();
+        RequestMetrics.requestDispatched( ows.getMetadata().getIdentifier().getId(), requestName,
+                                          md.getHandledRequests(), kvp );
+    }
+
     private void unwatchTimeout() {
         if ( requestWatchdog != null ) {
             requestWatchdog.unwatchCurrentThread();
@@ -0,0 +1,381 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.slf4j.Logger;
+
+/**
+ * {@link HttpServletResponse} that compresses the written data on the fly, if the response qualifies for compression.
+ * <p>
+ * The decision is deferred until the first {@link ResponseCompression#getMinimumSize()} bytes have been written (or
+ * the response is {@link #finish() finished}), so the content type is known at that point and small responses are
+ * sent uncompressed (with <code>Content-Length</code>). Responses that already have a <code>Content-Encoding</code>
+ * are passed through unchanged. As nothing is passed to the wrapped response before the decision, this works with
+ * buffered and unbuffered (streaming) responses alike.
+ * </p>
+ * <p>
+ * NOTE: {@link #finish()} must be called after the response has been written completely.
+ * </p>
+ * 
+ * @see ResponseCompression
+ * 
+ * @since 3.4
+ */
+public class CompressingHttpServletResponse extends HttpServletResponseWrapper {
+
+    private static final Logger LOG = getLogger( CompressingHttpServletResponse.class );
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+    private final ResponseCompressionCodec codec;
+
+    private final ResponseCompression settings;
+
+    private String serviceId;
+
+    private int contentLength = -1;
+
+    private boolean encoded;
+
+    // null: not decided yet
+    private Boolean compress;
+
+    private CompressingServletOutputStream os;
+
+    private PrintWriter writer;
+
+    CompressingHttpServletResponse( HttpServletResponse response, ResponseCompressionCodec codec,
+                                    ResponseCompression settings ) {
+        super( response );
+        this.codec = codec;
+        this.settings = settings;
+    }
+
+    /**
+     * Returns the {@link CompressingHttpServletResponse} in the given chain of response wrappers.
+     * 
+     * @param response
+     *            response (wrapper), can be <code>null</code>
+     * @return compressing response, <code>null</code> if the chain doesn't contain one
+     */
+    public static CompressingHttpServletResponse lookup( ServletResponse response ) {
+        while ( response != null ) {
+            if ( response instanceof CompressingHttpServletResponse ) {
+                return (CompressingHttpServletResponse) response;
+            }
+            if ( !( response instanceof ServletResponseWrapper ) ) {
+                break;
+            }
+            response = ( (ServletResponseWrapper) response ).getResponse();
+        }
+        return null;
+    }
+
+    /**
+     * Sets the identifier of the service that produces the response, so the service specific settings are used.
+     * 
+     * @param serviceId
+     *            service identifier, can be <code>null</code>
+     */
+    public void setServiceId( String serviceId ) {
+        this.serviceId = serviceId;
+    }
+
+    /**
+     * Completes the response, i.e. writes all pending data and finishes the compressed stream.
+     * 
+     * @throws IOException
+     */
+    public void finish()
+                            throws IOException {
+        if ( writer != null ) {
+            writer.flush();
+        }
+        if ( os != null ) {
+            os.finish();
+        }
+    }
+
+    /**
+     * Sends the response uncompressed, e.g. because the body is not written through this response, but sent by the
+     * container itself. Must be called before any data has been written.
+     */
+    public void disableCompression() {
+        if ( compress == null ) {
+            compress = false;
+            if ( contentLength >= 0 ) {
+                super.setContentLength( contentLength );
+            }
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream()
+                            throws IOException {
+        if ( writer != null ) {
+            throw new IllegalStateException( "getWriter() has already been called for this response" );
+        }
+        if ( os == null ) {
+            os = new CompressingServletOutputStream();
+        }
+        return os;
+    }
+
+    @Override
+    public PrintWriter getWriter()
+                            throws IOException {
+        if ( writer == null ) {
+            if ( os != null ) {
+                throw new IllegalStateException( "getOutputStream() has already been called for this response" );
+            }
+            os = new CompressingServletOutputStream();
+            writer = new PrintWriter( new OutputStreamWriter( os, getCharacterEncoding() ) );
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength( int len ) {
+        if ( compress == null ) {
+            // defer, the length is only valid if the response is not compressed
+            contentLength = len;
+        } else if ( !compress ) {
+            super.setContentLength( len );
+        }
+    }
+
+    @Override
+    public void setHeader( String name, String value ) {
+        if ( CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+            setContentLength( Integer.parseInt( value ) );
+            return;
+        }
+        if ( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+            encoded = true;
+        }
+        super.setHeader( name, value );
+    }
+
+    @Override
+    public void addHeader( String name, String value ) {
+        if ( CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+            setContentLength( Integer.parseInt( value ) );
+            return;
+        }
+        if ( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+            encoded = true;
+        }
+        super.addHeader( name, value );
+    }
+
+    @Override
+    public void setIntHeader( String name, int value ) {
+        if ( CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+            setContentLength( value );
+            return;
+        }
+        super.setIntHeader( name, value );
+    }
+
+    @Override
+    public void addIntHeader( String name, int value ) {
+        if ( CONTENT_LENGTH.equalsIgnoreCase( name ) ) {
+            setContentLength( value );
+            return;
+        }
+        super.addIntHeader( name, value );
+    }
+
+    @Override
+    public void flushBuffer()
+                            throws IOException {
+        if ( writer != null ) {
+            writer.flush();
+        }
+        if ( os != null ) {
+            os.flush();
+        }
+        // committing the response before the decision would make it impossible to set the Content-Encoding
+        if ( os == null || compress != null ) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        os = null;
+        writer = null;
+        compress = null;
+        contentLength = -1;
+        encoded = false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        // headers are kept, so an existing decision still applies
+        os = null;
+        writer = null;
+    }
+
+    private OutputStream decide( int size, boolean complete )
+                            throws IOException {
+        if ( compress == null ) {
+            compress = !encoded && size >= settings.getMinimumSize()
+                       && settings.isCompressible( serviceId, getContentType() );
+            if ( compress ) {
+                LOG.debug( "Compressing response ({}).", codec.getEncoding() );
+                super.setHeader( CONTENT_ENCODING, codec.getEncoding() );
+                super.addHeader( "Vary", "Accept-Encoding" );
+            } else if ( contentLength >= 0 ) {
+                super.setContentLength( contentLength );
+            } else if ( complete ) {
+                super.setContentLength( size );
+            }
+        }
+        ServletOutputStream sos = getResponse().getOutputStream();
+        if ( compress ) {
+            // finishing the compressed stream must not close the container's stream
+            return codec.compress( new CloseShieldOutputStream( sos ) );
+        }
+        return sos;
+    }
+
+    /**
+     * Holds back the data until the compression decision has been made, then writes to the compressing (or the
+     * original) stream.
+     */
+    private class CompressingServletOutputStream extends ServletOutputStream {
+
+        private ByteArrayOutputStream pending;
+
+        private OutputStream out;
+
+        private boolean finished;
+
+        CompressingServletOutputStream() throws IOException {
+            if ( compress == null ) {
+                pending = new ByteArrayOutputStream( settings.getMinimumSize() );
+            } else {
+                out = decide( 0, false );
+            }
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            if ( finished ) {
+                throw new IOException( "Response has been completed already." );
+            }
+            if ( out != null ) {
+                out.write( b, off, len );
+                return;
+            }
+            pending.write( b, off, len );
+            if ( pending.size() >= settings.getMinimumSize() ) {
+                writePending( false );
+            }
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            // pending data is held back until the decision can be made
+            if ( out != null ) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close()
+                                throws IOException {
+            finish();
+        }
+
+        void finish()
+                                throws IOException {
+            if ( finished ) {
+                return;
+            }
+            if ( out == null ) {
+                if ( pending.size() == 0 ) {
+                    // no body, e.g. 304 Not Modified
+                    finished = true;
+                    return;
+                }
+                writePending( true );
+            }
+            if ( compress ) {
+                out.close();
+            } else {
+                out.flush();
+            }
+            finished = true;
+        }
+
+        private void writePending( boolean complete )
+                                throws IOException {
+            out = decide( pending.size(), complete );
+            pending.writeTo( out );
+            pending = null;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link ResponseCompressionCodec} for the <code>deflate</code> content coding (zlib format, see RFC 2616).
+ * 
+ * @since 3.4
+ */
+public class DeflateCodec implements ResponseCompressionCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public String getEncoding() {
+        return "deflate";
+    }
+
+    @Override
+    public OutputStream compress( OutputStream os )
+                            throws IOException {
+        final Deflater deflater = new Deflater();
+        return new DeflaterOutputStream( os, deflater, BUFFER_SIZE, true ) {
+            @Override
+            public void close()
+                                    throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // a deflater that has been passed to the constructor is not released by the stream
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,291 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.ResponseCompression.Service;
+import org.slf4j.Logger;
+
+/**
+ * Negotiates and configures the compression of service responses.
+ * <p>
+ * A response is compressed if the client accepts one of the available {@link ResponseCompressionCodec}s, its content
+ * type is enabled for compression (globally or for the service that produces the response) and it has at least the
+ * configured minimum size. Images and archives are never compressed, as they are compressed already.
+ * </p>
+ * 
+ * @see CompressingHttpServletResponse
+ * 
+ * @since 3.4
+ */
+public class ResponseCompression {
+
+    private static final Logger LOG = getLogger( ResponseCompression.class );
+
+    private static final int DEFAULT_MINIMUM_SIZE = 1024;
+
+    private static final List<String> DEFAULT_MIME_TYPES = Arrays.asList( "text/*", "application/xml",
+                                                                          "application/*+xml", "application/json",
+                                                                          "application/*+json",
+                                                                          "application/javascript" );
+
+    private static final List<String> COMPRESSED_MIME_TYPES = Arrays.asList( "application/zip",
+                                                                             "application/gzip",
+                                                                             "application/x-gzip",
+                                                                             "application/x-compress" );
+
+    private final Map<String, ResponseCompressionCodec> codecs;
+
+    private final int minimumSize;
+
+    private final List<String> mimeTypes;
+
+    // value null: compression disabled for the service
+    private final Map<String, List<String>> serviceMimeTypes = new HashMap<String, List<String>>();
+
+    /**
+     * Creates a new {@link ResponseCompression} instance for the given configuration, using the
+     * {@link ResponseCompressionCodec}s that are available on the classpath.
+     * 
+     * @param config
+     *            compression configuration, must not be <code>null</code>
+     * @param classLoader
+     *            class loader used for looking up the codecs, must not be <code>null</code>
+     */
+    public ResponseCompression( DeegreeServiceControllerType.ResponseCompression config, ClassLoader classLoader ) {
+        this( config, loadCodecs( classLoader ) );
+    }
+
+    /**
+     * Creates a new {@link ResponseCompression} instance for the given configuration and codecs.
+     * 
+     * @param config
+     *            compression configuration, must not be <code>null</code>
+     * @param codecs
+     *            available codecs, in order of preference, must not be <code>null</code>
+     */
+    public ResponseCompression( DeegreeServiceControllerType.ResponseCompression config,
+                                List<ResponseCompressionCodec> codecs ) {
+        this.codecs = new LinkedHashMap<String, ResponseCompressionCodec>();
+        for ( ResponseCompressionCodec codec : codecs ) {
+            String encoding = codec.getEncoding().toLowerCase( Locale.ROOT );
+            if ( !this.codecs.containsKey( encoding ) ) {
+                this.codecs.put( encoding, codec );
+            }
+        }
+        minimumSize = config.getMinimumSize() != null ? config.getMinimumSize().intValue() : DEFAULT_MINIMUM_SIZE;
+        mimeTypes = config.getMimeType().isEmpty() ? DEFAULT_MIME_TYPES : normalize( config.getMimeType() );
+        for ( Service service : config.getService() ) {
+            List<String> types = null;
+            if ( service.isEnabled() ) {
+                types = service.getMimeType().isEmpty() ? mimeTypes : normalize( service.getMimeType() );
+            }
+            serviceMimeTypes.put( service.getServiceId(), types );
+        }
+        LOG.info( "Compressing responses using {} (minimum size: {} bytes).", this.codecs.keySet(), minimumSize );
+    }
+
+    private static List<ResponseCompressionCodec> loadCodecs( ClassLoader classLoader ) {
+        List<ResponseCompressionCodec> codecs = new ArrayList<ResponseCompressionCodec>();
+        for ( ResponseCompressionCodec codec : ServiceLoader.load( ResponseCompressionCodec.class, classLoader ) ) {
+            LOG.debug( "Found response compression codec '{}' ({}).", codec.getEncoding(), codec.getClass().getName() );
+            codecs.add( codec );
+        }
+        return codecs;
+    }
+
+    private static List<String> normalize( List<String> mimeTypes ) {
+        List<String> normalized = new ArrayList<String>( mimeTypes.size() );
+        for ( String mimeType : mimeTypes ) {
+            normalized.add( mimeType.trim().toLowerCase( Locale.ROOT ) );
+        }
+        return Collections.unmodifiableList( normalized );
+    }
+
+    /**
+     * Wraps the given response into a {@link CompressingHttpServletResponse}, if the client accepts one of the
+     * available codecs.
+     * 
+     * @param request
+     *            request, must not be <code>null</code>
+     * @param response
+     *            response to be wrapped, must not be <code>null</code>
+     * @return wrapped response or the given response (if the client doesn't accept compressed responses), never
+     *         <code>null</code>
+     */
+    public HttpServletResponse wrap( HttpServletRequest request, HttpServletResponse response ) {
+        ResponseCompressionCodec codec = negotiate( request.getHeader( "Accept-Encoding" ) );
+        if ( codec == null ) {
+            return response;
+        }
+        LOG.debug( "Negotiated response compression: {}", codec.getEncoding() );
+        return new CompressingHttpServletResponse( response, codec, this );
+    }
+
+    /**
+     * Selects the codec for the given <code>Accept-Encoding</code> header (highest quality value, ties are resolved by
+     * the codec order).
+     * 
+     * @param acceptEncoding
+     *            value of the header, can be <code>null</code>
+     * @return codec, <code>null</code> if the client doesn't accept any of the available codecs
+     */
+    ResponseCompressionCodec negotiate( String acceptEncoding ) {
+        if ( acceptEncoding == null ) {
+            return null;
+        }
+        Map<String, Float> qualities = new HashMap<String, Float>();
+        for ( String coding : acceptEncoding.split( "," ) ) {
+            String[] parts = coding.split( ";" );
+            String name = parts[0].trim().toLowerCase( Locale.ROOT );
+            if ( name.equals( "x-gzip" ) ) {
+                name = "gzip";
+            }
+            float q = 1;
+            for ( int i = 1; i < parts.length; i++ ) {
+                String param = parts[i].trim();
+                if ( param.startsWith( "q=" ) ) {
+                    try {
+                        q = Float.parseFloat( param.substring( 2 ) );
+                    } catch ( NumberFormatException e ) {
+                        q = 0;
+                    }
+                }
+            }
+            qualities.put( name, q );
+        }
+        ResponseCompressionCodec selected = null;
+        float selectedQ = 0;
+        for ( Map.Entry<String, ResponseCompressionCodec> codec : codecs.entrySet() ) {
+            Float q = qualities.get( codec.getKey() );
+            if ( q == null ) {
+                q = qualities.get( "*" );
+            }
+            if ( q != null && q > selectedQ ) {
+                selected = codec.getValue();
+                selectedQ = q;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the minimum number of bytes a response must have to be compressed.
+     * 
+     * @return minimum size in bytes
+     */
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Determines whether responses with the given content type should be compressed.
+     * 
+     * @param serviceId
+     *            identifier of the service that produces the response, can be <code>null</code> (not known)
+     * @param contentType
+     *            content type of the response (may include parameters), can be <code>null</code> (not known)
+     * @return <code>true</code>, if the response should be compressed, <code>false</code> otherwise
+     */
+    public boolean isCompressible( String serviceId, String contentType ) {
+        if ( contentType == null ) {
+            return false;
+        }
+        List<String> types = mimeTypes;
+        if ( serviceId != null && serviceMimeTypes.containsKey( serviceId ) ) {
+            types = serviceMimeTypes.get( serviceId );
+            if ( types == null ) {
+                return false;
+            }
+        }
+        String mimeType = contentType;
+        int pos = mimeType.indexOf( ';' );
+        if ( pos != -1 ) {
+            mimeType = mimeType.substring( 0, pos );
+        }
+        mimeType = mimeType.trim().toLowerCase( Locale.ROOT );
+        if ( isCompressedAlready( mimeType ) ) {
+            return false;
+        }
+        for ( String type : types ) {
+            if ( matches( type, mimeType ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCompressedAlready( String mimeType ) {
+        if ( mimeType.startsWith( "image/" ) ) {
+            // SVG is the only image format that is not compressed already
+            return !mimeType.startsWith( "image/svg" );
+        }
+        return COMPRESSED_MIME_TYPES.contains( mimeType );
+    }
+
+    /**
+     * @param pattern
+     *            mime type, may contain a single '*' wildcard (e.g. 'text/*' or 'application/*+xml')
+     * @param mimeType
+     *            mime type to test
+     */
+    private static boolean matches( String pattern, String mimeType ) {
+        int pos = pattern.indexOf( '*' );
+        if ( pos == -1 ) {
+            return pattern.equals( mimeType );
+        }
+        String prefix = pattern.substring( 0, pos );
+        String suffix = pattern.substring( pos + 1 );
+        return mimeType.length() >= prefix.length() + suffix.length() && mimeType.startsWith( prefix )
+               && mimeType.endsWith( suffix );
+    }
+
+}
@@ -0,0 +1,78 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implementations provide an HTTP content coding for compressing service responses.
+ * <p>
+ * Implementations are looked up using the {@link java.util.ServiceLoader} mechanism (file
+ * <code>META-INF/services/org.deegree.services.controller.compression.ResponseCompressionCodec</code>), so additional
+ * codings can be plugged in by adding a module to the classpath.
+ * </p>
+ * 
+ * @see ResponseCompression
+ * 
+ * @since 3.4
+ */
+public interface ResponseCompressionCodec {
+
+    /**
+     * Returns the name of the content coding, as used in the <code>Accept-Encoding</code> and
+     * <code>Content-Encoding</code> headers.
+     * 
+     * @return name of the coding (e.g. "gzip"), never <code>null</code>
+     */
+    String getEncoding();
+
+    /**
+     * Returns a stream that writes the compressed data to the given stream.
+     * <p>
+     * Calling {@link OutputStream#flush()} on the returned stream must write all data that has been passed so far
+     * (sync flush), calling {@link OutputStream#close()} must complete the compressed data and close the given stream.
+     * </p>
+     * 
+     * @param os
+     *            stream to write the compressed data to, never <code>null</code>
+     * @return compressing stream, never <code>null</code>
+     * @throws IOException
+     */
+    OutputStream compress( OutputStream os )
+                            throws IOException;
+
+}
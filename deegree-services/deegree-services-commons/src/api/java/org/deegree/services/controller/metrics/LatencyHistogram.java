@@ -0,0 +1,159 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies (in microseconds) with bounded relative error.
+ * <p>
+ * Like an HDR histogram, values are counted in buckets that grow exponentially, but are subdivided linearly: values
+ * below 128 are counted exactly, larger values with a resolution of 1/64 of their power of two (i.e. a relative error
+ * below 1.6%). Values of more than 2^37 microseconds (about 38 hours) are counted in the last bucket. Recording a value
+ * costs a few atomic increments and never blocks, so it can be done on every request.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 37;
+
+    private static final long MAX_VALUE = ( 1L << MAX_EXPONENT ) - 1;
+
+    private static final int NUM_BUCKETS = index( MAX_VALUE ) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( NUM_BUCKETS );
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator( Math::max, 0 );
+
+    /**
+     * Records a single latency value.
+     * 
+     * @param micros
+     *            latency in microseconds, negative values are counted as 0
+     */
+    public void record( long micros ) {
+        long value = Math.max( 0, micros );
+        buckets.incrementAndGet( index( Math.min( value, MAX_VALUE ) ) );
+        count.increment();
+        sum.add( value );
+        max.accumulate( value );
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded values in microseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return maximum recorded value in microseconds, 0 if no values have been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the recorded values in microseconds, 0 if no values have been recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values fall.
+     * 
+     * @param quantile
+     *            quantile, between 0 and 1 (e.g. 0.99 for the 99th percentile)
+     * @return upper bound of the quantile in microseconds (never above the maximum recorded value), 0 if no values
+     *         have been recorded
+     */
+    public long getQuantile( double quantile ) {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for ( int i = 0; i < NUM_BUCKETS; i++ ) {
+            counts[i] = buckets.get( i );
+            total += counts[i];
+        }
+        if ( total == 0 ) {
+            return 0;
+        }
+        long rank = Math.max( 1, (long) Math.ceil( quantile * total ) );
+        long cumulative = 0;
+        for ( int i = 0; i < NUM_BUCKETS; i++ ) {
+            cumulative += counts[i];
+            if ( cumulative >= rank ) {
+                return Math.min( highestEquivalentValue( i ), getMax() );
+            }
+        }
+        return getMax();
+    }
+
+    static int index( long value ) {
+        if ( value < SUB_BUCKETS ) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+        return ( shift << SUB_BUCKET_BITS ) + (int) ( value >>> shift );
+    }
+
+    static long highestEquivalentValue( int index ) {
+        int shift = Math.max( 0, ( index >> SUB_BUCKET_BITS ) - 1 );
+        long mantissa = index - ( shift << SUB_BUCKET_BITS );
+        return ( ( mantissa + 1 ) << shift ) - 1;
+    }
+
+}
@@ -0,0 +1,233 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * {@link HttpServletResponse} that keeps track of the status code and the number of bytes written to the client.
+ * <p>
+ * Should be the innermost wrapper, so the counted bytes are the ones actually sent (e.g. after compression).
+ * </p>
+ * 
+ * @see RequestMetrics
+ * 
+ * @since 3.4
+ */
+public class MeteredHttpServletResponse extends HttpServletResponseWrapper {
+
+    private int status = SC_OK;
+
+    private long bytesWritten;
+
+    private MeteredServletOutputStream os;
+
+    private PrintWriter writer;
+
+    /**
+     * Creates a new {@link MeteredHttpServletResponse} instance.
+     * 
+     * @param response
+     *            response to wrap, must not be <code>null</code>
+     */
+    public MeteredHttpServletResponse( HttpServletResponse response ) {
+        super( response );
+    }
+
+    /**
+     * Returns the {@link MeteredHttpServletResponse} in the given chain of response wrappers.
+     * 
+     * @param response
+     *            response (wrapper), can be <code>null</code>
+     * @return metered response, <code>null</code> if the chain doesn't contain one
+     */
+    public static MeteredHttpServletResponse lookup( ServletResponse response ) {
+        while ( response != null ) {
+            if ( response instanceof MeteredHttpServletResponse ) {
+                return (MeteredHttpServletResponse) response;
+            }
+            if ( !( response instanceof ServletResponseWrapper ) ) {
+                break;
+            }
+            response = ( (ServletResponseWrapper) response ).getResponse();
+        }
+        return null;
+    }
+
+    /**
+     * @return the last status code that has been set, {@link HttpServletResponse#SC_OK} if none has been set
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return number of bytes that have been written to the wrapped response
+     */
+    public long getBytesWritten() {
+        if ( writer != null ) {
+            writer.flush();
+        }
+        return bytesWritten;
+    }
+
+    @Override
+    public void setStatus( int sc ) {
+        status = sc;
+        super.setStatus( sc );
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setStatus( int sc, String sm ) {
+        status = sc;
+        super.setStatus( sc, sm );
+    }
+
+    @Override
+    public void sendError( int sc )
+                            throws IOException {
+        status = sc;
+        super.sendError( sc );
+    }
+
+    @Override
+    public void sendError( int sc, String msg )
+                            throws IOException {
+        status = sc;
+        super.sendError( sc, msg );
+    }
+
+    @Override
+    public void sendRedirect( String location )
+                            throws IOException {
+        status = SC_MOVED_TEMPORARILY;
+        super.sendRedirect( location );
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream()
+                            throws IOException {
+        if ( writer != null ) {
+            throw new IllegalStateException( "getWriter() has already been called for this response" );
+        }
+        if ( os == null ) {
+            os = new MeteredServletOutputStream( super.getOutputStream() );
+        }
+        return os;
+    }
+
+    @Override
+    public PrintWriter getWriter()
+                            throws IOException {
+        if ( writer == null ) {
+            if ( os != null ) {
+                throw new IllegalStateException( "getOutputStream() has already been called for this response" );
+            }
+            os = new MeteredServletOutputStream( super.getOutputStream() );
+            writer = new PrintWriter( new OutputStreamWriter( os, getCharacterEncoding() ) );
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer()
+                            throws IOException {
+        if ( writer != null ) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        status = SC_OK;
+        os = null;
+        writer = null;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        os = null;
+        writer = null;
+    }
+
+    private class MeteredServletOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        MeteredServletOutputStream( ServletOutputStream out ) {
+            this.out = out;
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            out.write( b );
+            bytesWritten++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            out.write( b, off, len );
+            bytesWritten += len;
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close()
+                                throws IOException {
+            out.close();
+        }
+    }
+
+}
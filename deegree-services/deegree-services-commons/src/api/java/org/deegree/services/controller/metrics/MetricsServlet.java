@@ -0,0 +1,172 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Locale;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes the {@link RequestMetrics} in the Prometheus text exposition format (version 0.0.4), so they can be scraped
+ * by Prometheus or compatible monitoring systems.
+ * <p>
+ * Latencies are reported as histograms (in seconds) with the buckets of {@link OperationMetrics#LATENCY_BUCKETS}, so
+ * percentiles can be computed for any time window (and across instances) by the monitoring system, e.g. with
+ * <code>histogram_quantile()</code>. Metrics per layer (or feature type) are prefixed with <code>deegree_layer_</code>.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -4317562190283756741L;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response )
+                            throws ServletException, IOException {
+        response.setContentType( CONTENT_TYPE );
+        response.setHeader( "Cache-Control", "no-cache" );
+        PrintWriter out = response.getWriter();
+        writeMetrics( out );
+        out.flush();
+    }
+
+    static void writeMetrics( PrintWriter out ) {
+        writeHeader( out, "deegree_requests_dispatched_total", "counter", "Requests dispatched to services." );
+        out.println( "deegree_requests_dispatched_total " + RequestMetrics.getDispatchedRequests() );
+        writeHeader( out, "deegree_requests_active", "gauge", "Requests currently processed." );
+        out.println( "deegree_requests_active " + RequestMetrics.getActiveRequests() );
+        writeSeries( out, "deegree_", RequestMetrics.getOperationMetrics() );
+        writeSeries( out, "deegree_layer_", RequestMetrics.getLayerMetrics() );
+    }
+
+    private static void writeSeries( PrintWriter out, String prefix, Collection<OperationMetrics> series ) {
+        if ( series.isEmpty() ) {
+            return;
+        }
+        writeHeader( out, prefix + "requests_total", "counter", "Finished requests." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, prefix + "requests_total", labels( m, null ), m.getRequests() );
+        }
+        writeHeader( out, prefix + "request_errors_total", "counter", "Failed requests." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, prefix + "request_errors_total", labels( m, null ), m.getErrors() );
+        }
+        writeHeader( out, prefix + "requests_in_flight", "gauge", "Requests currently processed." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, prefix + "requests_in_flight", labels( m, null ), m.getInFlight() );
+        }
+        writeHeader( out, prefix + "response_bytes_total", "counter", "Bytes sent to clients." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, prefix + "response_bytes_total", labels( m, null ), m.getBytesWritten() );
+        }
+        writeHeader( out, prefix + "response_features_total", "counter", "Features written." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, prefix + "response_features_total", labels( m, null ), m.getFeaturesWritten() );
+        }
+        String name = prefix + "request_duration_seconds";
+        writeHeader( out, name, "histogram", "Request latency (including sending the response)." );
+        for ( OperationMetrics m : series ) {
+            // buckets, count and sum from the same snapshot
+            OperationMetrics.LatencyBuckets buckets = m.getLatencyBuckets();
+            long[] counts = buckets.getCounts();
+            for ( int i = 0; i < OperationMetrics.LATENCY_BUCKETS.length; i++ ) {
+                String le = Double.toString( OperationMetrics.LATENCY_BUCKETS[i] / 1000000.0 );
+                writeSample( out, name + "_bucket", labels( m, le ), counts[i] );
+            }
+            writeSample( out, name + "_bucket", labels( m, "+Inf" ), buckets.getCount() );
+            writeSample( out, name + "_sum", labels( m, null ), seconds( buckets.getSum() ) );
+            writeSample( out, name + "_count", labels( m, null ), buckets.getCount() );
+        }
+        writeHeader( out, name + "_max", "gauge", "Maximum request latency." );
+        for ( OperationMetrics m : series ) {
+            writeSample( out, name + "_max", labels( m, null ), seconds( m.getLatency().getMax() ) );
+        }
+    }
+
+    private static void writeHeader( PrintWriter out, String name, String type, String help ) {
+        out.println( "# HELP " + name + " " + help );
+        out.println( "# TYPE " + name + " " + type );
+    }
+
+    private static void writeSample( PrintWriter out, String name, String labels, Object value ) {
+        out.println( name + labels + " " + value );
+    }
+
+    private static String seconds( long micros ) {
+        return String.format( Locale.ROOT, "%.6f", micros / 1000000.0 );
+    }
+
+    private static String labels( OperationMetrics m, String le ) {
+        StringBuilder sb = new StringBuilder( "{service=\"" );
+        sb.append( escape( m.getService() ) );
+        sb.append( "\",operation=\"" ).append( escape( m.getOperation() ) );
+        if ( m.getLayer() != null ) {
+            sb.append( "\",layer=\"" ).append( escape( m.getLayer() ) );
+        }
+        sb.append( "\",format=\"" ).append( escape( m.getFormat() ) );
+        if ( le != null ) {
+            sb.append( "\",le=\"" ).append( le );
+        }
+        return sb.append( "\"}" ).toString();
+    }
+
+    static String escape( String value ) {
+        StringBuilder sb = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c == '\\' ) {
+                sb.append( "\\\\" );
+            } else if ( c == '"' ) {
+                sb.append( "\\\"" );
+            } else if ( c == '\n' ) {
+                sb.append( "\\n" );
+            } else {
+                sb.append( c );
+            }
+        }
+        return sb.toString();
+    }
+
+}
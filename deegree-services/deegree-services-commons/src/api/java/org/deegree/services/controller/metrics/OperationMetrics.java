@@ -0,0 +1,260 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters and latency histogram for the requests of a single series (service, operation, layer and output
+ * format). Only the exported latency buckets and their sum are updated together (under a lock of the series), so that
+ * a scrape always sees consistent values.
+ * 
+ * @see RequestMetrics
+ * 
+ * @since 3.4
+ */
+public class OperationMetrics {
+
+    /**
+     * Upper bounds (in microseconds) of the latency buckets that are exported to monitoring systems (from 5 ms to 60
+     * s). Unlike percentiles, the counts of these fixed buckets can be aggregated over time and across instances.
+     */
+    public static final long[] LATENCY_BUCKETS = { 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000,
+                                                  2500000, 5000000, 10000000, 30000000, 60000000 };
+
+    private final String service;
+
+    private final String operation;
+
+    private final String layer;
+
+    private final String format;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder featuresWritten = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // one more than the bounds (for larger latencies), guarded by latencyBuckets
+    private final long[] latencyBuckets = new long[LATENCY_BUCKETS.length + 1];
+
+    // sum of the latencies counted in latencyBuckets, guarded by latencyBuckets
+    private long latencySum;
+
+    OperationMetrics( String service, String operation, String layer, String format ) {
+        this.service = service;
+        this.operation = operation;
+        this.layer = layer;
+        this.format = format;
+    }
+
+    void started() {
+        requests.increment();
+        inFlight.increment();
+    }
+
+    void finished( long micros, long bytes, long features, boolean error ) {
+        inFlight.decrement();
+        latency.record( micros );
+        int bucket = 0;
+        while ( bucket < LATENCY_BUCKETS.length && micros > LATENCY_BUCKETS[bucket] ) {
+            bucket++;
+        }
+        synchronized ( latencyBuckets ) {
+            latencyBuckets[bucket]++;
+            latencySum += Math.max( 0, micros );
+        }
+        bytesWritten.add( bytes );
+        featuresWritten.add( features );
+        if ( error ) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return service identifier, never <code>null</code>
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return operation (request) name, never <code>null</code>
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return layer (or feature type) name, <code>null</code> for the metrics of the whole operation
+     */
+    public String getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return requested output format, empty if not known
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return number of started requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return number of requests that failed (exception report or HTTP error status)
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of requests that are currently processed
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @return number of bytes written to the clients (after compression)
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * @return number of features written to the clients
+     */
+    public long getFeaturesWritten() {
+        return featuresWritten.sum();
+    }
+
+    /**
+     * @return latencies of the finished requests, never <code>null</code>
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the cumulative number of finished requests per latency bucket.
+     * 
+     * @return number of requests with a latency of at most the corresponding bound of {@link #LATENCY_BUCKETS}, plus
+     *         the number of all requests as last element, never <code>null</code>
+     */
+    public long[] getLatencyBucketCounts() {
+        return getLatencyBuckets().getCounts();
+    }
+
+    /**
+     * Returns a consistent snapshot of the latency buckets and the sum of the latencies counted in them.
+     * 
+     * @return snapshot of the latency buckets, never <code>null</code>
+     */
+    public LatencyBuckets getLatencyBuckets() {
+        long[] counts = new long[latencyBuckets.length];
+        long sum;
+        synchronized ( latencyBuckets ) {
+            long cumulative = 0;
+            for ( int i = 0; i < latencyBuckets.length; i++ ) {
+                cumulative += latencyBuckets[i];
+                counts[i] = cumulative;
+            }
+            sum = latencySum;
+        }
+        return new LatencyBuckets( counts, sum );
+    }
+
+    /**
+     * @return snapshot of the current values, never <code>null</code>
+     */
+    public OperationStatistics getStatistics() {
+        return new OperationStatistics( service, operation, layer, format, getRequests(), getErrors(), getInFlight(),
+                                        getBytesWritten(), getFeaturesWritten(), latency.getMean() / 1000,
+                                        latency.getQuantile( 0.5 ) / 1000.0, latency.getQuantile( 0.9 ) / 1000.0,
+                                        latency.getQuantile( 0.99 ) / 1000.0, latency.getMax() / 1000.0 );
+    }
+
+    /**
+     * Snapshot of the exported latency buckets of a series.
+     */
+    public static class LatencyBuckets {
+
+        private final long[] counts;
+
+        private final long sum;
+
+        LatencyBuckets( long[] counts, long sum ) {
+            this.counts = counts;
+            this.sum = sum;
+        }
+
+        /**
+         * @return cumulative number of requests per bucket (see {@link OperationMetrics#getLatencyBucketCounts()}),
+         *         never <code>null</code>
+         */
+        public long[] getCounts() {
+            return counts;
+        }
+
+        /**
+         * @return number of requests counted in the buckets
+         */
+        public long getCount() {
+            return counts[counts.length - 1];
+        }
+
+        /**
+         * @return sum of the latencies of the requests counted in the buckets, in microseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the {@link OperationMetrics} of a single series, as exposed via JMX.
+ * 
+ * @see RequestMetricsMXBean
+ * 
+ * @since 3.4
+ */
+public class OperationStatistics {
+
+    private final String service;
+
+    private final String operation;
+
+    private final String layer;
+
+    private final String format;
+
+    private final long requests;
+
+    private final long errors;
+
+    private final long inFlight;
+
+    private final long bytesWritten;
+
+    private final long featuresWritten;
+
+    private final double meanMillis;
+
+    private final double p50Millis;
+
+    private final double p90Millis;
+
+    private final double p99Millis;
+
+    private final double maxMillis;
+
+    @ConstructorProperties({ "service", "operation", "layer", "format", "requests", "errors", "inFlight",
+                            "bytesWritten", "featuresWritten", "meanMillis", "p50Millis", "p90Millis", "p99Millis",
+                            "maxMillis" })
+    public OperationStatistics( String service, String operation, String layer, String format, long requests,
+                                long errors, long inFlight, long bytesWritten, long featuresWritten,
+                                double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                                double maxMillis ) {
+        this.service = service;
+        this.operation = operation;
+        this.layer = layer;
+        this.format = format;
+        this.requests = requests;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.bytesWritten = bytesWritten;
+        this.featuresWritten = featuresWritten;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getLayer() {
+        return layer;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getFeaturesWritten() {
+        return featuresWritten;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+}
@@ -0,0 +1,408 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+
+/**
+ * Process-wide request metrics of the {@link org.deegree.services.controller.OGCFrontController}.
+ * <p>
+ * For every dispatched request, latency, errors, bytes and features written are recorded per service, operation and
+ * output format and additionally per layer (or feature type), if the request names any. Operation names are mapped to
+ * the spelling of the operations offered by the service. Series for a layer are only created by requests that have
+ * been processed successfully, so requests for layers that don't exist don't create series. All counters are lock-free
+ * ({@link LongAdder}s and {@link LatencyHistogram}s), so request threads never wait for each other. The metrics are
+ * exposed via JMX (see {@link RequestMetricsMXBean}) and {@link MetricsServlet}.
+ * </p>
+ * <p>
+ * As layer names and formats are taken from the requests, the number of series is limited by system property
+ * <code>deegree.metrics.maxSeries</code> (default: 2000). Once the limit is reached, unknown layers and formats are
+ * counted as <code>_other</code>.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public final class RequestMetrics {
+
+    private static final Logger LOG = getLogger( RequestMetrics.class );
+
+    /** System property for the maximum number of series (per operation and per layer each). */
+    public static final String MAX_SERIES_PROPERTY = "deegree.metrics.maxSeries";
+
+    static final String OTHER = "_other";
+
+    private static final String MBEAN_DOMAIN = "org.deegree:type=RequestMetrics,context=";
+
+    private static final int MAX_LAYERS_PER_REQUEST = 32;
+
+    private static final int MAX_SERIES = Integer.getInteger( MAX_SERIES_PROPERTY, 2000 );
+
+    private static final ConcurrentMap<String, OperationMetrics> operations = newSeriesMap();
+
+    private static final ConcurrentMap<String, OperationMetrics> layers = newSeriesMap();
+
+    private static final LongAdder dispatched = new LongAdder();
+
+    private static final LongAdder active = new LongAdder();
+
+    private static final LatencyHistogram latency = new LatencyHistogram();
+
+    private static final ThreadLocal<MeteredRequest> CURRENT = new ThreadLocal<MeteredRequest>();
+
+    private static ObjectName mbeanName;
+
+    private RequestMetrics() {
+        // only static methods
+    }
+
+    /**
+     * Called by the {@link org.deegree.services.controller.OGCFrontController} when a request is dispatched to a
+     * service. The request is bound to the calling thread until {@link #requestFinished(long, boolean)} is called.
+     * 
+     * @param service
+     *            identifier of the service, must not be <code>null</code>
+     * @param operation
+     *            name of the requested operation, can be <code>null</code>
+     * @param offeredOperations
+     *            names of the operations offered by the service (used for normalizing the operation name), can be
+     *            <code>null</code> (operation name is used as is)
+     * @param kvp
+     *            normalized KVP parameters (used for determining layers and output format), can be <code>null</code>
+     */
+    public static void requestDispatched( String service, String operation, Collection<String> offeredOperations,
+                                          Map<String, String> kvp ) {
+        if ( CURRENT.get() != null ) {
+            // previous request on this thread has not been finished properly
+            requestFinished( 0, true );
+        }
+        String op = normalizeOperation( operation, offeredOperations );
+        String format = kvp == null ? "" : getFormat( kvp );
+        MeteredRequest request = new MeteredRequest( service, op, format );
+        request.series.add( lookup( operations, service, op, null, format ) );
+        if ( kvp != null ) {
+            for ( String layer : getLayers( kvp ) ) {
+                OperationMetrics metrics = layers.get( key( service, op, layer, format ) );
+                if ( metrics != null ) {
+                    request.series.add( metrics );
+                } else {
+                    // series is created once the request has succeeded
+                    request.newLayers.add( layer );
+                }
+            }
+        }
+        for ( OperationMetrics metrics : request.series ) {
+            metrics.started();
+        }
+        dispatched.increment();
+        active.increment();
+        CURRENT.set( request );
+    }
+
+    /**
+     * Adds the given number to the features written for the request bound to the calling thread (if any).
+     * 
+     * @param features
+     *            number of features written
+     */
+    public static void featuresWritten( long features ) {
+        MeteredRequest request = CURRENT.get();
+        if ( request != null ) {
+            request.features += features;
+        }
+    }
+
+    /**
+     * Called by the {@link org.deegree.services.controller.OGCFrontController} when the response for the request bound
+     * to the calling thread has been sent completely. Does nothing, if no request has been dispatched.
+     * 
+     * @param bytesWritten
+     *            number of bytes written to the client
+     * @param error
+     *            <code>true</code>, if the request failed
+     */
+    public static void requestFinished( long bytesWritten, boolean error ) {
+        MeteredRequest request = CURRENT.get();
+        if ( request == null ) {
+            return;
+        }
+        CURRENT.remove();
+        long micros = NANOSECONDS.toMicros( System.nanoTime() - request.startTime );
+        for ( OperationMetrics metrics : request.series ) {
+            metrics.finished( micros, bytesWritten, request.features, error );
+        }
+        for ( String layer : request.newLayers ) {
+            OperationMetrics metrics;
+            if ( error ) {
+                // may have been created by another request in the meantime
+                metrics = layers.get( key( request.service, request.operation, layer, request.format ) );
+            } else {
+                metrics = lookup( layers, request.service, request.operation, layer, request.format );
+            }
+            if ( metrics != null ) {
+                metrics.started();
+                metrics.finished( micros, bytesWritten, request.features, error );
+            }
+        }
+        latency.record( micros );
+        active.decrement();
+    }
+
+    /**
+     * @return number of requests that have been dispatched to services
+     */
+    public static long getDispatchedRequests() {
+        return dispatched.sum();
+    }
+
+    /**
+     * @return number of requests that are currently processed
+     */
+    public static long getActiveRequests() {
+        return active.sum();
+    }
+
+    /**
+     * @return latencies of all finished requests, never <code>null</code>
+     */
+    public static LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return metrics per service, operation and output format, never <code>null</code>
+     */
+    public static Collection<OperationMetrics> getOperationMetrics() {
+        return Collections.unmodifiableCollection( operations.values() );
+    }
+
+    /**
+     * @return metrics per service, operation, layer and output format, never <code>null</code>
+     */
+    public static Collection<OperationMetrics> getLayerMetrics() {
+        return Collections.unmodifiableCollection( layers.values() );
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     * 
+     * @param context
+     *            name of the web application context, used for distinguishing multiple deegree instances in one JVM,
+     *            must not be <code>null</code>
+     */
+    public static synchronized void registerMBean( String context ) {
+        unregisterMBean();
+        try {
+            ObjectName name = new ObjectName( MBEAN_DOMAIN + ObjectName.quote( context ) );
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( !server.isRegistered( name ) ) {
+                server.registerMBean( new MXBean(), name );
+                mbeanName = name;
+            }
+        } catch ( Exception e ) {
+            LOG.warn( "Could not register request metrics MBean: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server (if they have been registered).
+     */
+    public static synchronized void unregisterMBean() {
+        if ( mbeanName != null ) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean( mbeanName );
+            } catch ( Exception e ) {
+                LOG.debug( "Could not unregister request metrics MBean: {}", e.getLocalizedMessage() );
+            }
+            mbeanName = null;
+        }
+    }
+
+    private static OperationMetrics lookup( ConcurrentMap<String, OperationMetrics> map, String service,
+                                            String operation, String layer, String format ) {
+        String key = key( service, operation, layer, format );
+        OperationMetrics metrics = map.get( key );
+        if ( metrics != null ) {
+            return metrics;
+        }
+        if ( map.size() >= MAX_SERIES ) {
+            layer = layer == null ? null : OTHER;
+            format = OTHER;
+            key = key( service, operation, layer, format );
+        }
+        metrics = new OperationMetrics( service, operation, layer, format );
+        OperationMetrics existing = map.putIfAbsent( key, metrics );
+        return existing != null ? existing : metrics;
+    }
+
+    private static String key( String service, String operation, String layer, String format ) {
+        return service + '\u0000' + operation + '\u0000' + layer + '\u0000' + format;
+    }
+
+    static String normalizeOperation( String operation, Collection<String> offeredOperations ) {
+        if ( operation == null ) {
+            return "";
+        }
+        if ( offeredOperations == null ) {
+            return operation;
+        }
+        for ( String offered : offeredOperations ) {
+            if ( offered.equalsIgnoreCase( operation ) ) {
+                return offered;
+            }
+        }
+        // unknown operations are rejected by the services
+        return OTHER;
+    }
+
+    private static ConcurrentMap<String, OperationMetrics> newSeriesMap() {
+        return new ConcurrentHashMap<String, OperationMetrics>();
+    }
+
+    static String getFormat( Map<String, String> kvp ) {
+        String format = kvp.get( "INFO_FORMAT" );
+        if ( format == null ) {
+            format = kvp.get( "OUTPUTFORMAT" );
+        }
+        if ( format == null ) {
+            format = kvp.get( "FORMAT" );
+        }
+        return format == null ? "" : format.trim();
+    }
+
+    static Set<String> getLayers( Map<String, String> kvp ) {
+        String names = kvp.get( "QUERY_LAYERS" );
+        if ( names == null ) {
+            names = kvp.get( "LAYERS" );
+        }
+        if ( names == null ) {
+            names = kvp.get( "LAYER" );
+        }
+        if ( names == null ) {
+            names = kvp.get( "TYPENAMES" );
+        }
+        if ( names == null ) {
+            names = kvp.get( "TYPENAME" );
+        }
+        if ( names == null ) {
+            return Collections.emptySet();
+        }
+        Set<String> layers = new LinkedHashSet<String>();
+        // WFS 2.0 allows lists of type names in parentheses
+        for ( String name : names.replace( '(', ',' ).replace( ')', ',' ).split( "," ) ) {
+            name = name.trim();
+            if ( !name.isEmpty() && layers.size() < MAX_LAYERS_PER_REQUEST ) {
+                layers.add( name );
+            }
+        }
+        return layers;
+    }
+
+    private static class MeteredRequest {
+
+        final long startTime = System.nanoTime();
+
+        final String service;
+
+        final String operation;
+
+        final String format;
+
+        // series that have been started
+        final List<OperationMetrics> series = new ArrayList<OperationMetrics>();
+
+        // requested layers without series
+        final List<String> newLayers = new ArrayList<String>();
+
+        long features;
+
+        MeteredRequest( String service, String operation, String format ) {
+            this.service = service;
+            this.operation = operation;
+            this.format = format;
+        }
+    }
+
+    private static class MXBean implements RequestMetricsMXBean {
+
+        @Override
+        public long getDispatchedRequests() {
+            return RequestMetrics.getDispatchedRequests();
+        }
+
+        @Override
+        public long getActiveRequests() {
+            return RequestMetrics.getActiveRequests();
+        }
+
+        @Override
+        public List<OperationStatistics> getOperations() {
+            return getStatistics( operations.values() );
+        }
+
+        @Override
+        public List<OperationStatistics> getLayers() {
+            return getStatistics( layers.values() );
+        }
+
+        private static List<OperationStatistics> getStatistics( Collection<OperationMetrics> series ) {
+            List<OperationStatistics> statistics = new ArrayList<OperationStatistics>( series.size() );
+            for ( OperationMetrics metrics : series ) {
+                statistics.add( metrics.getStatistics() );
+            }
+            return statistics;
+        }
+    }
+
+}
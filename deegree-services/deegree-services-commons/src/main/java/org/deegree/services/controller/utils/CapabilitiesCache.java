@@ -0,0 +1,401 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.RequestContext;
+import org.deegree.services.controller.compression.CompressingHttpServletResponse;
+import org.slf4j.Logger;
+
+/**
+ * Keeps serialized capabilities documents of a service, so they don't have to be generated for every GetCapabilities
+ * request.
+ * <p>
+ * Entries are identified by a key that must cover everything the document depends on (e.g. version, update sequence,
+ * request URLs, language and format), see {@link #createKey(Object...)}. Cached documents are sent with a strong
+ * <code>ETag</code>, so clients that revalidate with <code>If-None-Match</code> get a <code>304 Not Modified</code>
+ * response. If enabled, a gzipped copy of each document is kept as well and sent to clients that accept it. Otherwise,
+ * the documents are always sent uncompressed, as the ETag identifies the uncompressed document.
+ * </p>
+ * <p>
+ * The cache holds a limited number of documents (least recently used ones are dropped). It must be cleared by the
+ * owning service when its configuration changes (e.g. when the service is destroyed on a workspace reload). Documents
+ * may also depend on the stored data (e.g. feature type or layer envelopes), so {@link #dataChanged()} must be invoked
+ * after data has been modified (e.g. by a WFS transaction). It is configured by the following system properties:
+ * <ul>
+ * <li><code>deegree.capabilities.cache.maxEntries</code>: maximum number of cached documents per service, 0 disables
+ * caching (default: 16)</li>
+ * <li><code>deegree.capabilities.cache.gzip</code>: keep gzipped copies of the cached documents (default: true)</li>
+ * </ul>
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class CapabilitiesCache {
+
+    private static final Logger LOG = getLogger( CapabilitiesCache.class );
+
+    /** System property for the maximum number of cached documents per service. */
+    public static final String MAX_ENTRIES_PROPERTY = "deegree.capabilities.cache.maxEntries";
+
+    /** System property for enabling/disabling gzipped copies of the cached documents. */
+    public static final String GZIP_PROPERTY = "deegree.capabilities.cache.gzip";
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+
+    // incremented whenever stored data has been changed, part of every key
+    private static final AtomicLong dataVersion = new AtomicLong();
+
+    private final Map<String, CachedDocument> entries;
+
+    private final boolean gzip;
+
+    /**
+     * @param maxEntries
+     *            maximum number of cached documents, must be positive
+     * @param gzip
+     *            <code>true</code>, if gzipped copies of the documents should be kept
+     */
+    public CapabilitiesCache( final int maxEntries, boolean gzip ) {
+        this.gzip = gzip;
+        this.entries = new LinkedHashMap<String, CachedDocument>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = -5390578926227826514L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedDocument> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache that is configured by the system properties.
+     * 
+     * @return cache, <code>null</code> if capabilities caching has been disabled
+     */
+    public static CapabilitiesCache create() {
+        int maxEntries = Integer.getInteger( MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES );
+        if ( maxEntries <= 0 ) {
+            LOG.debug( "Capabilities caching is disabled." );
+            return null;
+        }
+        return new CapabilitiesCache( maxEntries, !"false".equalsIgnoreCase( System.getProperty( GZIP_PROPERTY ) ) );
+    }
+
+    /**
+     * Notifies all caches that stored data has been modified, so documents that have been generated before are not sent
+     * anymore.
+     * <p>
+     * Affects all services, as data stores may be shared (e.g. the layers of a WMS may be backed by the feature store
+     * of a transactional WFS).
+     * </p>
+     */
+    public static void dataChanged() {
+        dataVersion.incrementAndGet();
+    }
+
+    /**
+     * Creates a cache key from the given parts.
+     * <p>
+     * The key also covers the state of the stored data (see {@link #dataChanged()}), so it must be created before the
+     * document is generated. The parts should only contain what actually affects the document, as every distinct key
+     * occupies an entry (e.g. not the complete request parameters, which may contain arbitrary values).
+     * </p>
+     * 
+     * @param parts
+     *            everything the capabilities document depends on, <code>null</code> parts are allowed
+     * @return key, never <code>null</code>
+     */
+    public static String createKey( Object... parts ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( dataVersion.get() ).append( '\u0000' );
+        for ( Object part : parts ) {
+            sb.append( part ).append( '\u0000' );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends the cached document for the given key, taking the headers of the current request (see
+     * {@link OGCFrontController#getContext()}) into account.
+     * 
+     * @param key
+     *            cache key, must not be <code>null</code>
+     * @param response
+     *            response to write to, must not be <code>null</code>
+     * @return <code>true</code>, if the document has been sent (or the client's copy is up to date),
+     *         <code>false</code> if the document is not cached
+     * @throws IOException
+     */
+    public boolean send( String key, HttpResponseBuffer response )
+                            throws IOException {
+        RequestContext context = OGCFrontController.getContext();
+        if ( context == null ) {
+            return send( key, response, null, null );
+        }
+        return send( key, response, context.getIfNoneMatch(), context.getAcceptEncoding() );
+    }
+
+    /**
+     * Sends the cached document for the given key.
+     * 
+     * @param key
+     *            cache key, must not be <code>null</code>
+     * @param response
+     *            response to write to, must not be <code>null</code>
+     * @param ifNoneMatch
+     *            value of the request's 'If-None-Match' header, can be <code>null</code>
+     * @param acceptEncoding
+     *            value of the request's 'Accept-Encoding' header, can be <code>null</code>
+     * @return <code>true</code>, if the document has been sent (or the client's copy is up to date),
+     *         <code>false</code> if the document is not cached
+     * @throws IOException
+     */
+    public boolean send( String key, HttpResponseBuffer response, String ifNoneMatch, String acceptEncoding )
+                            throws IOException {
+        CachedDocument entry;
+        synchronized ( entries ) {
+            entry = entries.get( key );
+        }
+        if ( entry == null ) {
+            return false;
+        }
+        if ( entry.matches( ifNoneMatch ) ) {
+            LOG.debug( "Client's capabilities document is up to date." );
+            setCachingHeaders( entry, response, entry.gzipData != null && acceptsGzip( acceptEncoding ) );
+            response.setStatus( SC_NOT_MODIFIED );
+            return true;
+        }
+        int length = write( entry, response, acceptEncoding );
+        LOG.debug( "Sent cached capabilities document ({} bytes).", length );
+        return true;
+    }
+
+    /**
+     * Stores the document that has been written to the given response and replaces the response with the cached
+     * document (including the caching headers), taking the headers of the current request (see
+     * {@link OGCFrontController#getContext()}) into account.
+     * 
+     * @param key
+     *            cache key, must not be <code>null</code>
+     * @param response
+     *            response that contains the complete capabilities document (and nothing else), must not be
+     *            <code>null</code>
+     * @throws IOException
+     */
+    public void put( String key, HttpResponseBuffer response )
+                            throws IOException {
+        RequestContext context = OGCFrontController.getContext();
+        put( key, response, context == null ? null : context.getAcceptEncoding() );
+    }
+
+    /**
+     * Stores the document that has been written to the given response and replaces the response with the cached
+     * document (including the caching headers).
+     * 
+     * @param key
+     *            cache key, must not be <code>null</code>
+     * @param response
+     *            response that contains the complete capabilities document (and nothing else), must not be
+     *            <code>null</code>
+     * @param acceptEncoding
+     *            value of the request's 'Accept-Encoding' header, can be <code>null</code>
+     * @throws IOException
+     */
+    public void put( String key, HttpResponseBuffer response, String acceptEncoding )
+                            throws IOException {
+        byte[] data = response.getBufferedData();
+        if ( data == null || data.length == 0 || response.isCommitted() ) {
+            return;
+        }
+        CachedDocument entry = new CachedDocument( response.getContentType(), response.getCharacterEncoding(),
+                                                   data, gzip ? gzip( data ) : null );
+        synchronized ( entries ) {
+            entries.put( key, entry );
+        }
+        // the headers must precede the body
+        response.reset();
+        write( entry, response, acceptEncoding );
+        LOG.debug( "Cached capabilities document ({} bytes).", data.length );
+    }
+
+    /**
+     * Removes all cached documents.
+     */
+    public void clear() {
+        synchronized ( entries ) {
+            entries.clear();
+        }
+    }
+
+    private static int write( CachedDocument entry, HttpResponseBuffer response, String acceptEncoding )
+                            throws IOException {
+        boolean useGzip = entry.gzipData != null && acceptsGzip( acceptEncoding );
+        setCachingHeaders( entry, response, useGzip );
+        if ( entry.characterEncoding != null ) {
+            response.setCharacterEncoding( entry.characterEncoding );
+        }
+        response.setContentType( entry.contentType );
+        byte[] data = entry.data;
+        if ( useGzip ) {
+            response.setHeader( "Content-Encoding", "gzip" );
+            data = entry.gzipData;
+        } else {
+            // compressing the document on the fly would send a different representation with the same ETag
+            CompressingHttpServletResponse compressingResponse = CompressingHttpServletResponse.lookup( response );
+            if ( compressingResponse != null ) {
+                compressingResponse.disableCompression();
+            }
+        }
+        response.setContentLength( data.length );
+        response.getOutputStream().write( data );
+        return data.length;
+    }
+
+    private static void setCachingHeaders( CachedDocument entry, HttpResponseBuffer response, boolean useGzip ) {
+        response.setHeader( "Cache-Control", "no-cache" );
+        response.setHeader( "ETag", useGzip ? entry.gzipEtag : entry.etag );
+        if ( entry.gzipData != null ) {
+            response.setHeader( "Vary", "Accept-Encoding" );
+        }
+    }
+
+    static boolean acceptsGzip( String acceptEncoding ) {
+        if ( acceptEncoding == null ) {
+            return false;
+        }
+        for ( String coding : acceptEncoding.split( "," ) ) {
+            String[] parts = coding.split( ";" );
+            String name = parts[0].trim();
+            if ( !"gzip".equalsIgnoreCase( name ) && !"x-gzip".equalsIgnoreCase( name ) ) {
+                continue;
+            }
+            for ( int i = 1; i < parts.length; i++ ) {
+                String param = parts[i].trim();
+                if ( param.startsWith( "q=" ) ) {
+                    try {
+                        return Float.parseFloat( param.substring( 2 ) ) > 0;
+                    } catch ( NumberFormatException e ) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip( byte[] data )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( data.length / 4 );
+        GZIPOutputStream gzos = new GZIPOutputStream( bos );
+        try {
+            gzos.write( data );
+        } finally {
+            gzos.close();
+        }
+        return bos.toByteArray();
+    }
+
+    private static String etag( byte[] data ) {
+        try {
+            byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( data );
+            StringBuilder sb = new StringBuilder( "\"" );
+            for ( byte b : digest ) {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+            }
+            return sb.append( '"' ).toString();
+        } catch ( NoSuchAlgorithmException e ) {
+            // SHA-1 is required on every Java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static class CachedDocument {
+
+        final String contentType;
+
+        final String characterEncoding;
+
+        final byte[] data;
+
+        final byte[] gzipData;
+
+        final String etag;
+
+        final String gzipEtag;
+
+        CachedDocument( String contentType, String characterEncoding, byte[] data, byte[] gzipData ) {
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.data = data;
+            this.gzipData = gzipData;
+            this.etag = etag( data );
+            // strong ETags must differ for different content encodings
+            this.gzipEtag = gzipData == null ? null : etag.substring( 0, etag.length() - 1 ) + "-gzip\"";
+        }
+
+        boolean matches( String ifNoneMatch ) {
+            if ( ifNoneMatch == null ) {
+                return false;
+            }
+            for ( String tag : ifNoneMatch.split( "," ) ) {
+                tag = tag.trim();
+                if ( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if ( tag.equals( "*" ) || tag.equals( etag ) || tag.equals( gzipEtag ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -38,6 +38,7 @@ package org.deegree.services.controller.utils;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -97,6 +98,8 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
 
     private boolean addEncoding = true;
 
+    private boolean exceptionSent;
+
     // if buffer == null, buffering is disabled
     private StreamBufferStore buffer;
 
@@ -342,12 +345,48 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         return buffer;
     }
 
+    /**
+     * Returns a copy of the data that has been written to this response so far (the buffer is not modified).
+     * 
+     * @return buffered data, <code>null</code> if buffering has been disabled
+     * @throws IOException
+     */
+    public byte[] getBufferedData()
+                            throws IOException {
+        if ( buffer == null ) {
+            return null;
+        }
+        if ( xmlWriter != null ) {
+            try {
+                xmlWriter.flush();
+            } catch ( XMLStreamException e ) {
+                LOG.debug( e.getLocalizedMessage(), e );
+                throw new IOException( e );
+            }
+        }
+        if ( printWriter != null ) {
+            printWriter.flush();
+        }
+        buffer.flush();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( buffer.size() );
+        buffer.writeTo( bos );
+        return bos.toByteArray();
+    }
+
     public void setExceptionSent() {
+        exceptionSent = true;
         if ( wrappee instanceof LoggingHttpResponseWrapper ) {
             ( (LoggingHttpResponseWrapper) wrappee ).setExceptionSent();
         }
     }
 
+    /**
+     * @return <code>true</code>, if an exception report has been sent as response
+     */
+    public boolean isExceptionSent() {
+        return exceptionSent;
+    }
+
     public void setCredentials( Credentials creds ) {
         if ( wrappee instanceof LoggingHttpResponseWrapper ) {
             ( (LoggingHttpResponseWrapper) wrappee ).setCredentials( creds );
@@ -0,0 +1,234 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import static org.deegree.services.controller.compression.ResponseCompressionTest.createCompression;
+import static org.deegree.services.controller.compression.ResponseCompressionTest.newConfig;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressingHttpServletResponse}.
+ * 
+ * @since 3.4
+ */
+public class CompressingHttpServletResponseTest {
+
+    private final ResponseCompression compression = createCompression( newConfig() );
+
+    private HttpServletResponse wrappee;
+
+    private ByteArrayOutputStream sent;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        wrappee = mock( HttpServletResponse.class );
+        sent = new ByteArrayOutputStream();
+        final OutputStream os = sent;
+        when( wrappee.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b )
+                                    throws IOException {
+                os.write( b );
+            }
+        } );
+    }
+
+    @Test
+    public void testLargeXmlIsCompressed()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        byte[] data = createData( 100000 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.setContentLength( data.length );
+        response.getOutputStream().write( data );
+        response.finish();
+
+        verify( wrappee ).setHeader( "Content-Encoding", "gzip" );
+        verify( wrappee ).addHeader( "Vary", "Accept-Encoding" );
+        verify( wrappee, never() ).setContentLength( anyInt() );
+        assertArrayEquals( data, gunzip( sent.toByteArray() ) );
+    }
+
+    @Test
+    public void testDeflate()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "application/gml+xml; version=3.2" );
+        byte[] data = createData( 5000 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new DeflateCodec(),
+                                                                                      compression );
+        OutputStream os = response.getOutputStream();
+        for ( byte b : data ) {
+            os.write( b );
+        }
+        response.finish();
+
+        verify( wrappee ).setHeader( "Content-Encoding", "deflate" );
+        InflaterInputStream is = new InflaterInputStream( new ByteArrayInputStream( sent.toByteArray() ) );
+        assertArrayEquals( data, IOUtils.toByteArray( is ) );
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        byte[] data = createData( 100 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.getOutputStream().write( data );
+        response.flushBuffer();
+        verify( wrappee, never() ).flushBuffer();
+        response.finish();
+
+        verify( wrappee, never() ).setHeader( eq( "Content-Encoding" ), eq( "gzip" ) );
+        verify( wrappee ).setContentLength( 100 );
+        assertArrayEquals( data, sent.toByteArray() );
+    }
+
+    @Test
+    public void testDisableCompression()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.setContentLength( 100000 );
+        verify( wrappee, never() ).setContentLength( anyInt() );
+        response.disableCompression();
+        verify( wrappee ).setContentLength( 100000 );
+        response.setContentLength( 200000 );
+        verify( wrappee ).setContentLength( 200000 );
+        response.finish();
+
+        verify( wrappee, never() ).setHeader( eq( "Content-Encoding" ), eq( "gzip" ) );
+    }
+
+    @Test
+    public void testImageIsNotCompressed()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "image/png" );
+        byte[] data = createData( 100000 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.getOutputStream().write( data );
+        response.finish();
+
+        verify( wrappee, never() ).setHeader( eq( "Content-Encoding" ), eq( "gzip" ) );
+        assertArrayEquals( data, sent.toByteArray() );
+    }
+
+    @Test
+    public void testEncodedResponseIsPassedThrough()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        byte[] data = createData( 100000 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.setHeader( "Content-Encoding", "gzip" );
+        response.setContentLength( data.length );
+        response.getOutputStream().write( data );
+        response.finish();
+
+        verify( wrappee ).setContentLength( data.length );
+        assertArrayEquals( data, sent.toByteArray() );
+    }
+
+    @Test
+    public void testBufferedResponse()
+                            throws IOException {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        byte[] data = createData( 100000 );
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response );
+        buffer.getOutputStream().write( data );
+        buffer.flushBuffer();
+        assertSame( response, CompressingHttpServletResponse.lookup( buffer ) );
+        CompressingHttpServletResponse.lookup( buffer ).finish();
+
+        verify( wrappee ).setHeader( "Content-Encoding", "gzip" );
+        assertArrayEquals( data, gunzip( sent.toByteArray() ) );
+    }
+
+    @Test
+    public void testEmptyResponse()
+                            throws IOException {
+        CompressingHttpServletResponse response = new CompressingHttpServletResponse( wrappee, new GzipCodec(),
+                                                                                      compression );
+        response.getOutputStream();
+        response.finish();
+        assertEquals( 0, sent.size() );
+        verify( wrappee, never() ).setHeader( eq( "Content-Encoding" ), eq( "gzip" ) );
+    }
+
+    private static byte[] gunzip( byte[] compressed )
+                            throws IOException {
+        return IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) );
+    }
+
+    private static byte[] createData( int size ) {
+        byte[] data = new byte[size];
+        String xml = "<gml:pos>7.1 50.7</gml:pos>";
+        for ( int i = 0; i < size; i++ ) {
+            data[i] = (byte) xml.charAt( i % xml.length() );
+        }
+        return data;
+    }
+
+}
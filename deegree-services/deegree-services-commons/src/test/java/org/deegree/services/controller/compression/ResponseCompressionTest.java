@@ -0,0 +1,123 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.compression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.ResponseCompression.Service;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ResponseCompression}.
+ * 
+ * @since 3.4
+ */
+public class ResponseCompressionTest {
+
+    @Test
+    public void testNegotiate() {
+        ResponseCompression compression = createCompression( newConfig() );
+        assertNull( compression.negotiate( null ) );
+        assertNull( compression.negotiate( "identity" ) );
+        assertNull( compression.negotiate( "gzip;q=0, deflate;q=0" ) );
+        assertNull( compression.negotiate( "*;q=0" ) );
+        assertEquals( "gzip", compression.negotiate( "gzip, deflate" ).getEncoding() );
+        assertEquals( "gzip", compression.negotiate( "x-gzip" ).getEncoding() );
+        assertEquals( "gzip", compression.negotiate( "*" ).getEncoding() );
+        assertEquals( "deflate", compression.negotiate( "gzip;q=0.5, deflate" ).getEncoding() );
+        assertEquals( "deflate", compression.negotiate( "deflate" ).getEncoding() );
+    }
+
+    @Test
+    public void testDefaultMimeTypes() {
+        ResponseCompression compression = createCompression( newConfig() );
+        assertEquals( 1024, compression.getMinimumSize() );
+        assertTrue( compression.isCompressible( null, "text/xml; subtype=gml/3.2.1" ) );
+        assertTrue( compression.isCompressible( null, "application/gml+xml" ) );
+        assertTrue( compression.isCompressible( null, "application/json" ) );
+        assertTrue( compression.isCompressible( "wms", "image/svg+xml" ) );
+        assertFalse( compression.isCompressible( null, "image/png" ) );
+        assertFalse( compression.isCompressible( null, "image/jpeg" ) );
+        assertFalse( compression.isCompressible( null, "application/zip" ) );
+        assertFalse( compression.isCompressible( null, "application/octet-stream" ) );
+        assertFalse( compression.isCompressible( null, null ) );
+    }
+
+    @Test
+    public void testConfiguredMimeTypes() {
+        DeegreeServiceControllerType.ResponseCompression config = newConfig();
+        config.getMimeType().add( "text/xml" );
+        config.getMimeType().add( "image/*" );
+        ResponseCompression compression = createCompression( config );
+        assertTrue( compression.isCompressible( null, "TEXT/XML" ) );
+        assertFalse( compression.isCompressible( null, "application/json" ) );
+        assertFalse( compression.isCompressible( null, "image/png" ) );
+    }
+
+    @Test
+    public void testServiceSettings() {
+        DeegreeServiceControllerType.ResponseCompression config = newConfig();
+        Service disabled = new Service();
+        disabled.setServiceId( "wms" );
+        disabled.setEnabled( false );
+        config.getService().add( disabled );
+        Service json = new Service();
+        json.setServiceId( "wfs" );
+        json.getMimeType().add( "application/json" );
+        config.getService().add( json );
+        ResponseCompression compression = createCompression( config );
+        assertFalse( compression.isCompressible( "wms", "text/xml" ) );
+        assertFalse( compression.isCompressible( "wfs", "text/xml" ) );
+        assertTrue( compression.isCompressible( "wfs", "application/json" ) );
+        assertTrue( compression.isCompressible( "csw", "text/xml" ) );
+    }
+
+    static DeegreeServiceControllerType.ResponseCompression newConfig() {
+        return new DeegreeServiceControllerType.ResponseCompression();
+    }
+
+    static ResponseCompression createCompression( DeegreeServiceControllerType.ResponseCompression config ) {
+        return new ResponseCompression( config, Arrays.<ResponseCompressionCodec> asList( new GzipCodec(),
+                                                                                         new DeflateCodec() ) );
+    }
+
+}
@@ -0,0 +1,106 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ * 
+ * @since 3.4
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getMax() );
+        assertEquals( 0.0, histogram.getMean(), 0.0 );
+        assertEquals( 0, histogram.getQuantile( 0.99 ) );
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        for ( long value = 0; value < 128; value++ ) {
+            assertEquals( value, LatencyHistogram.highestEquivalentValue( LatencyHistogram.index( value ) ) );
+        }
+    }
+
+    @Test
+    public void testRelativeError() {
+        for ( long value = 1; value < ( 1L << 37 ); value = value * 3 / 2 + 1 ) {
+            int index = LatencyHistogram.index( value );
+            long upper = LatencyHistogram.highestEquivalentValue( index );
+            assertTrue( upper >= value );
+            assertTrue( upper - value <= value / 64 );
+            assertEquals( index, LatencyHistogram.index( upper ) );
+        }
+    }
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 1000; i++ ) {
+            histogram.record( i * 1000L );
+        }
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 1000000, histogram.getMax() );
+        assertEquals( 500500.0, histogram.getMean(), 0.001 );
+        assertWithinResolution( 500000, histogram.getQuantile( 0.5 ) );
+        assertWithinResolution( 990000, histogram.getQuantile( 0.99 ) );
+        assertEquals( 1000000, histogram.getQuantile( 1.0 ) );
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record( -5 );
+        histogram.record( Long.MAX_VALUE / 2 );
+        assertEquals( 2, histogram.getCount() );
+        assertEquals( 0, histogram.getQuantile( 0.5 ) );
+        assertEquals( Long.MAX_VALUE / 2, histogram.getMax() );
+    }
+
+    private static void assertWithinResolution( long expected, long actual ) {
+        assertTrue( "Expected about " + expected + ", but was " + actual,
+                    actual >= expected && actual <= expected + expected / 64 );
+    }
+
+}
@@ -0,0 +1,194 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RequestMetrics} and {@link MetricsServlet}.
+ * 
+ * @since 3.4
+ */
+public class RequestMetricsTest {
+
+    private static final List<String> WFS_OPERATIONS = Arrays.asList( "GetCapabilities", "GetFeature" );
+
+    @Test
+    public void testLayersAndFormat() {
+        Map<String, String> kvp = new HashMap<String, String>();
+        kvp.put( "LAYERS", "roads, rivers,roads" );
+        kvp.put( "QUERY_LAYERS", "rivers" );
+        kvp.put( "INFO_FORMAT", "text/html" );
+        kvp.put( "FORMAT", "image/png" );
+        assertEquals( "[rivers]", RequestMetrics.getLayers( kvp ).toString() );
+        assertEquals( "text/html", RequestMetrics.getFormat( kvp ) );
+
+        kvp.clear();
+        kvp.put( "TYPENAMES", "(app:Road)(app:River)" );
+        assertEquals( "[app:Road, app:River]", RequestMetrics.getLayers( kvp ).toString() );
+        assertEquals( "", RequestMetrics.getFormat( kvp ) );
+    }
+
+    @Test
+    public void testRequestLifecycle() {
+        Map<String, String> kvp = new HashMap<String, String>();
+        kvp.put( "TYPENAME", "app:Road" );
+        kvp.put( "OUTPUTFORMAT", "application/gml+xml" );
+        long dispatched = RequestMetrics.getDispatchedRequests();
+        long active = RequestMetrics.getActiveRequests();
+
+        RequestMetrics.requestDispatched( "lifecycle", "GetFeature", WFS_OPERATIONS, kvp );
+        assertEquals( dispatched + 1, RequestMetrics.getDispatchedRequests() );
+        assertEquals( active + 1, RequestMetrics.getActiveRequests() );
+        RequestMetrics.featuresWritten( 42 );
+        RequestMetrics.requestFinished( 1000, false );
+        RequestMetrics.requestDispatched( "lifecycle", "getfeature", WFS_OPERATIONS, kvp );
+        RequestMetrics.requestFinished( 500, true );
+        // no request bound to thread
+        RequestMetrics.requestFinished( 500, true );
+        assertEquals( active, RequestMetrics.getActiveRequests() );
+
+        OperationMetrics operation = find( RequestMetrics.getOperationMetrics(), "lifecycle", null );
+        assertEquals( "GetFeature", operation.getOperation() );
+        assertEquals( "application/gml+xml", operation.getFormat() );
+        assertEquals( 2, operation.getRequests() );
+        assertEquals( 1, operation.getErrors() );
+        assertEquals( 0, operation.getInFlight() );
+        assertEquals( 1500, operation.getBytesWritten() );
+        assertEquals( 42, operation.getFeaturesWritten() );
+        assertEquals( 2, operation.getLatency().getCount() );
+
+        OperationMetrics layer = find( RequestMetrics.getLayerMetrics(), "lifecycle", "app:Road" );
+        assertEquals( 2, layer.getRequests() );
+        assertEquals( 42, layer.getFeaturesWritten() );
+    }
+
+    @Test
+    public void testScrapeFormat() {
+        Map<String, String> kvp = new HashMap<String, String>();
+        kvp.put( "LAYERS", "a\"b" );
+        RequestMetrics.requestDispatched( "scrape", "GetMap", null, kvp );
+        RequestMetrics.requestFinished( 10, false );
+
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter( sw );
+        MetricsServlet.writeMetrics( out );
+        out.flush();
+        String text = sw.toString();
+        assertTrue( text.contains( "# TYPE deegree_request_duration_seconds histogram" ) );
+        assertTrue( text.contains( "deegree_request_duration_seconds_bucket{service=\"scrape\",operation=\"GetMap\","
+                                   + "format=\"\",le=\"0.005\"} 1" ) );
+        assertTrue( text.contains( "deegree_request_duration_seconds_bucket{service=\"scrape\",operation=\"GetMap\","
+                                   + "format=\"\",le=\"+Inf\"} 1" ) );
+        assertFalse( text.contains( "quantile=" ) );
+        assertTrue( text.contains( "deegree_requests_total{service=\"scrape\",operation=\"GetMap\",format=\"\"} 1" ) );
+        assertTrue( text.contains( "deegree_layer_requests_total{service=\"scrape\",operation=\"GetMap\","
+                                   + "layer=\"a\\\"b\",format=\"\"} 1" ) );
+        assertTrue( text.contains( "deegree_request_duration_seconds_count{service=\"scrape\"" ) );
+        assertEquals( "a\\\\b\\n", MetricsServlet.escape( "a\\b\n" ) );
+    }
+
+    @Test
+    public void testOperationNormalized() {
+        assertEquals( "GetFeature", RequestMetrics.normalizeOperation( "GETFEATURE", WFS_OPERATIONS ) );
+        assertEquals( RequestMetrics.OTHER, RequestMetrics.normalizeOperation( "DescribeNothing", WFS_OPERATIONS ) );
+        assertEquals( "GetMap", RequestMetrics.normalizeOperation( "GetMap", null ) );
+        assertEquals( "", RequestMetrics.normalizeOperation( null, WFS_OPERATIONS ) );
+    }
+
+    @Test
+    public void testLayerSeriesOnlyCreatedBySuccessfulRequests() {
+        Map<String, String> kvp = new HashMap<String, String>();
+        kvp.put( "TYPENAME", "app:Missing" );
+        RequestMetrics.requestDispatched( "layers", "GetFeature", WFS_OPERATIONS, kvp );
+        RequestMetrics.requestFinished( 100, true );
+        for ( OperationMetrics metrics : RequestMetrics.getLayerMetrics() ) {
+            assertFalse( "layers".equals( metrics.getService() ) );
+        }
+
+        kvp.put( "TYPENAME", "app:Road" );
+        RequestMetrics.requestDispatched( "layers", "GetFeature", WFS_OPERATIONS, kvp );
+        RequestMetrics.requestFinished( 100, false );
+        // existing series also counts failed requests
+        RequestMetrics.requestDispatched( "layers", "GetFeature", WFS_OPERATIONS, kvp );
+        assertEquals( 1, find( RequestMetrics.getLayerMetrics(), "layers", "app:Road" ).getInFlight() );
+        RequestMetrics.requestFinished( 100, true );
+        OperationMetrics layer = find( RequestMetrics.getLayerMetrics(), "layers", "app:Road" );
+        assertEquals( 2, layer.getRequests() );
+        assertEquals( 1, layer.getErrors() );
+        assertEquals( 0, layer.getInFlight() );
+    }
+
+    @Test
+    public void testLatencyBuckets() {
+        OperationMetrics metrics = new OperationMetrics( "buckets", "GetMap", null, "" );
+        long[] latencies = { 0, 5000, 5001, 60000000, 60000001 };
+        for ( long micros : latencies ) {
+            metrics.started();
+            metrics.finished( micros, 0, 0, false );
+        }
+        long[] counts = metrics.getLatencyBucketCounts();
+        assertEquals( OperationMetrics.LATENCY_BUCKETS.length + 1, counts.length );
+        assertArrayEquals( new long[] { 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 4, 5 }, counts );
+        OperationMetrics.LatencyBuckets buckets = metrics.getLatencyBuckets();
+        assertArrayEquals( counts, buckets.getCounts() );
+        assertEquals( 5, buckets.getCount() );
+        assertEquals( 120010002, buckets.getSum() );
+    }
+
+    private static OperationMetrics find( Iterable<OperationMetrics> series, String service, String layer ) {
+        for ( OperationMetrics metrics : series ) {
+            if ( service.equals( metrics.getService() )
+                 && ( layer == null ? metrics.getLayer() == null : layer.equals( metrics.getLayer() ) ) ) {
+                return metrics;
+            }
+        }
+        throw new AssertionError( "No metrics for service '" + service + "' and layer '" + layer + "'." );
+    }
+
+}
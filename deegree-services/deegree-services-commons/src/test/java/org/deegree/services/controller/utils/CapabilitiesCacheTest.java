@@ -0,0 +1,219 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.services.controller.compression.CompressingHttpServletResponse;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link CapabilitiesCache}.
+ * 
+ * @since 3.4
+ */
+public class CapabilitiesCacheTest {
+
+    private static final byte[] CAPABILITIES = "<WMS_Capabilities version=\"1.3.0\"/>".getBytes();
+
+    @Test
+    public void testSendUncached()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        HttpResponseBuffer response = new HttpResponseBuffer( mock( HttpServletResponse.class ) );
+        assertFalse( cache.send( "key", response, null, null ) );
+        assertEquals( 0, response.getBufferSize() );
+    }
+
+    @Test
+    public void testPutAndSend()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        String etag = put( cache, "key" );
+
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        assertTrue( cache.send( "key", response, null, "gzip" ) );
+        assertArrayEquals( CAPABILITIES, response.getBufferedData() );
+        verify( wrappee ).setHeader( "ETag", etag );
+        verify( wrappee ).setContentType( "text/xml" );
+        verify( wrappee, never() ).setHeader( eq( "Content-Encoding" ), eq( "gzip" ) );
+    }
+
+    @Test
+    public void testSendNotModified()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        String etag = put( cache, "key" );
+
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        assertTrue( cache.send( "key", response, "\"other\", " + etag, null ) );
+        verify( wrappee ).setStatus( SC_NOT_MODIFIED );
+        assertEquals( 0, response.getBufferSize() );
+    }
+
+    @Test
+    public void testSendModified()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        put( cache, "key" );
+
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        assertTrue( cache.send( "key", response, "\"other\"", null ) );
+        verify( wrappee, never() ).setStatus( anyInt() );
+        assertArrayEquals( CAPABILITIES, response.getBufferedData() );
+    }
+
+    @Test
+    public void testSendGzipped()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, true );
+        String etag = put( cache, "key" );
+
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        assertTrue( cache.send( "key", response, null, "deflate, gzip;q=0.8" ) );
+        verify( wrappee ).setHeader( "Content-Encoding", "gzip" );
+        ArgumentCaptor<String> gzipEtag = ArgumentCaptor.forClass( String.class );
+        verify( wrappee ).setHeader( eq( "ETag" ), gzipEtag.capture() );
+        assertFalse( etag.equals( gzipEtag.getValue() ) );
+        byte[] gzipped = response.getBufferedData();
+        byte[] data = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( gzipped ) ) );
+        assertArrayEquals( CAPABILITIES, data );
+    }
+
+    @Test
+    public void testPutReplacesResponse()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, true );
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        response.getOutputStream().write( CAPABILITIES );
+        cache.put( "key", response, "gzip" );
+
+        verify( wrappee ).reset();
+        verify( wrappee ).setHeader( "Content-Encoding", "gzip" );
+        byte[] gzipped = response.getBufferedData();
+        byte[] data = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( gzipped ) ) );
+        assertArrayEquals( CAPABILITIES, data );
+    }
+
+    @Test
+    public void testSendUncompressedDisablesCompression()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        put( cache, "key" );
+
+        CompressingHttpServletResponse wrappee = mock( CompressingHttpServletResponse.class );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        assertTrue( cache.send( "key", response, null, "gzip" ) );
+        verify( wrappee ).disableCompression();
+        assertArrayEquals( CAPABILITIES, response.getBufferedData() );
+    }
+
+    @Test
+    public void testDataChangedChangesKey() {
+        String key = CapabilitiesCache.createKey( "1.3.0", null );
+        assertEquals( key, CapabilitiesCache.createKey( "1.3.0", null ) );
+        CapabilitiesCache.dataChanged();
+        assertFalse( key.equals( CapabilitiesCache.createKey( "1.3.0", null ) ) );
+    }
+
+    @Test
+    public void testEviction()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        put( cache, "a" );
+        put( cache, "b" );
+        put( cache, "c" );
+        HttpResponseBuffer response = new HttpResponseBuffer( mock( HttpServletResponse.class ) );
+        assertFalse( cache.send( "a", response, null, null ) );
+        assertTrue( cache.send( "c", response, null, null ) );
+    }
+
+    @Test
+    public void testClear()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( 2, false );
+        put( cache, "key" );
+        cache.clear();
+        HttpResponseBuffer response = new HttpResponseBuffer( mock( HttpServletResponse.class ) );
+        assertFalse( cache.send( "key", response, null, null ) );
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertFalse( CapabilitiesCache.acceptsGzip( null ) );
+        assertFalse( CapabilitiesCache.acceptsGzip( "deflate" ) );
+        assertFalse( CapabilitiesCache.acceptsGzip( "gzip;q=0" ) );
+        assertTrue( CapabilitiesCache.acceptsGzip( "gzip" ) );
+        assertTrue( CapabilitiesCache.acceptsGzip( "deflate, GZIP;q=0.5" ) );
+    }
+
+    private String put( CapabilitiesCache cache, String key )
+                            throws IOException {
+        HttpServletResponse wrappee = mock( HttpServletResponse.class );
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        HttpResponseBuffer response = new HttpResponseBuffer( wrappee );
+        response.getOutputStream().write( CAPABILITIES );
+        cache.put( key, response );
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass( String.class );
+        verify( wrappee ).setHeader( eq( "ETag" ), etag.capture() );
+        return etag.getValue();
+    }
+
+}
@@ -137,6 +137,7 @@ import org.deegree.protocol.wfs.transaction.action.PropertyReplacement;
 import org.deegree.protocol.wfs.transaction.action.Replace;
 import org.deegree.protocol.wfs.transaction.action.Update;
 import org.deegree.protocol.wfs.transaction.action.UpdateAction;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.i18n.Messages;
 import org.jaxen.expr.Expr;
@@ -267,9 +268,16 @@ class TransactionHandler {
                 // TODO renew expiry timeout according to WFS spec
             }
 
-            for ( FeatureStoreTransaction ta : acquiredTransactions.values() ) {
-                LOG.debug( "Committing feature store transaction:" + ta );
-                ta.commit();
+            try {
+                for ( FeatureStoreTransaction ta : acquiredTransactions.values() ) {
+                    LOG.debug( "Committing feature store transaction:" + ta );
+                    ta.commit();
+                }
+            } finally {
+                // cached capabilities documents may contain envelopes of the modified feature types
+                if ( !acquiredTransactions.isEmpty() ) {
+                    CapabilitiesCache.dataChanged();
+                }
             }
         } catch ( MissingParameterException e ) {
             // needed for CITE compliance (wfs:wfs-1.1.0-Transaction-tc12.1)
@@ -113,6 +113,7 @@ import org.deegree.services.controller.AbstractOWS;
 import org.deegree.services.controller.ImplementationMetadata;
 import org.deegree.services.controller.OGCFrontController;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.encoding.LimitedSupportedEncodings;
 import org.deegree.services.encoding.SupportedEncodings;
@@ -250,6 +251,9 @@ public class WebFeatureService extends AbstractOWS {
 
     private final Map<GMLVersion, Format> gmlVersionToFormat = new HashMap<GMLVersion, Format>();
 
+    // null, if capabilities caching is disabled
+    private final CapabilitiesCache capabilitiesCache = CapabilitiesCache.create();
+
     private SupportedEncodings supportedEncodings;
 
     private int queryMaxFeatures;
@@ -695,6 +699,9 @@ public class WebFeatureService extends AbstractOWS {
     @Override
     public void destroy() {
         LOG.debug( "destroy" );
+        if ( capabilitiesCache != null ) {
+            capabilitiesCache.clear();
+        }
     }
 
     /**
@@ -775,7 +782,7 @@ public class WebFeatureService extends AbstractOWS {
                 break;
             case GetCapabilities:
                 GetCapabilities getCapabilities = GetCapabilitiesKVPParser.parse( kvpParamsUC );
-                doGetCapabilities( getCapabilities, response );
+                doGetCapabilities( getCapabilities, response, true );
                 break;
             case GetFeature:
                 GetFeature getFeature = GetFeatureKVPAdapter.parse( kvpParamsUC, nsMap );
@@ -928,7 +935,7 @@ public class WebFeatureService extends AbstractOWS {
                 GetCapabilitiesXMLAdapter getCapabilitiesAdapter = new GetCapabilitiesXMLAdapter();
                 getCapabilitiesAdapter.setRootElement( new XMLAdapter( xmlStream ).getRootElement() );
                 GetCapabilities wfsRequest = getCapabilitiesAdapter.parse( requestVersion );
-                doGetCapabilities( wfsRequest, response );
+                doGetCapabilities( wfsRequest, response, true );
                 break;
             case GetFeature:
                 GetFeatureXMLAdapter getFeatureAdapter = new GetFeatureXMLAdapter();
@@ -1096,7 +1103,7 @@ public class WebFeatureService extends AbstractOWS {
                 GetCapabilitiesXMLAdapter getCapabilitiesAdapter = new GetCapabilitiesXMLAdapter();
                 getCapabilitiesAdapter.setRootElement( body );
                 GetCapabilities wfsRequest = getCapabilitiesAdapter.parse( requestVersion );
-                doGetCapabilities( wfsRequest, response );
+                doGetCapabilities( wfsRequest, response, false );
                 break;
             case GetFeature:
                 GetFeatureXMLAdapter getFeatureAdapter = new GetFeatureXMLAdapter();
@@ -1215,7 +1222,12 @@ public class WebFeatureService extends AbstractOWS {
         return requestType;
     }
 
-    private void doGetCapabilities( GetCapabilities request, HttpResponseBuffer response )
+    /**
+     * @param useCache
+     *            <code>false</code>, if the response must not be served from/stored in the capabilities cache (e.g.
+     *            because it is wrapped in a SOAP envelope)
+     */
+    private void doGetCapabilities( GetCapabilities request, HttpResponseBuffer response, boolean useCache )
                             throws XMLStreamException, IOException, OWSException {
 
         LOG.debug( "doGetCapabilities: " + request );
@@ -1235,6 +1247,18 @@ public class WebFeatureService extends AbstractOWS {
         if ( sectionsUC != null && sectionsUC.size() == 0 ) {
             sectionsUC = null;
         }
+
+        String cacheKey = null;
+        if ( useCache && capabilitiesCache != null ) {
+            cacheKey = CapabilitiesCache.createKey( negotiatedVersion, OGCFrontController.getHttpGetURL(),
+                                                    OGCFrontController.getHttpPostURL(),
+                                                    sectionsUC == null ? null : new TreeSet<String>( sectionsUC ),
+                                                    request.getAcceptLanguages() );
+            if ( capabilitiesCache.send( cacheKey, response ) ) {
+                return;
+            }
+        }
+
         final Collection<FeatureType> sortedFts = getFeatureTypesToExport();
 
         XMLStreamWriter xmlWriter = getXMLResponseWriter( response, "text/xml", null );
@@ -1243,6 +1267,10 @@ public class WebFeatureService extends AbstractOWS {
                                                                      queryCRS, supportedEncodings, mdProvider );
         adapter.export();
         xmlWriter.flush();
+
+        if ( cacheKey != null ) {
+            capabilitiesCache.put( cacheKey, response );
+        }
     }
 
     private Collection<FeatureType> getFeatureTypesToExport() {
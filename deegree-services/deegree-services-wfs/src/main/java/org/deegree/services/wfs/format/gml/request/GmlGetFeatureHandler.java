@@ -43,6 +43,7 @@ import static org.deegree.commons.tom.datetime.ISO8601Converter.formatDateTime;
 import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
 import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.writeNamespaceIfNotBound;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESULT_LIMIT;
 import static org.deegree.gml.GMLOutputFactory.createGMLStreamWriter;
 import static org.deegree.gml.GMLVersion.GML_2;
 import static org.deegree.gml.GMLVersion.GML_32;
@@ -104,6 +105,7 @@ import org.deegree.protocol.wfs.getfeaturewithlock.GetFeatureWithLock;
 import org.deegree.protocol.wfs.query.StandardPresentationParams;
 import org.deegree.protocol.wfs.query.StoredQuery;
 import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.metrics.RequestMetrics;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.i18n.Messages;
 import org.deegree.services.wfs.WebFeatureService;
@@ -488,6 +490,21 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Lets the store know how many features will be used at most, so it can stop early (e.g. only keep the first
+     * features when sorting). Only done for a single query, as skipped features may belong to any of multiple queries.
+     * The limit is passed as a hint on a copy of the query, so the queries of the analyzer (which are used for
+     * determining the number of hits) are not affected.
+     */
+    private Query[] limitQueries( QueryAnalyzer analyzer, Query[] queries, int maxFeatures, int startIndex,
+                                  Lock lock ) {
+        if ( lock != null || maxFeatures < 1 || analyzer.getQueries().size() != 1 || queries.length != 1 ) {
+            return queries;
+        }
+        long limit = (long) startIndex + maxFeatures;
+        return new Query[] { queries[0].withHint( HINT_RESULT_LIMIT, (int) Math.min( limit, Integer.MAX_VALUE ) ) };
+    }
+
     private void writeFeatureMembersStream( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
                                             GMLVersion outputFormat, int maxFeatures, int startIndex,
                                             QName featureMemberEl, Lock lock )
@@ -518,7 +535,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
-            FeatureInputStream rs = fs.query( queries );
+            FeatureInputStream rs = fs.query( limitQueries( analyzer, queries, maxFeatures, startIndex, lock ) );
             try {
                 for ( Feature member : rs ) {
                     if ( lock != null && !lock.isLocked( member.getId() ) ) {
@@ -540,6 +557,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
                 rs.close();
             }
         }
+        RequestMetrics.featuresWritten( featuresAdded );
     }
 
     private void writeFeatureMembersCached( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
@@ -557,7 +575,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
-            FeatureInputStream rs = fs.query( queries );
+            FeatureInputStream rs = fs.query( limitQueries( analyzer, queries, maxFeatures, startIndex, lock ) );
             try {
                 for ( Feature feature : rs ) {
                     if ( lock != null && !lock.isLocked( feature.getId() ) ) {
@@ -598,6 +616,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         for ( Feature member : allFeatures ) {
             writeMemberFeature( member, gmlStream, xmlStream, resolveState, featureMemberEl );
         }
+        RequestMetrics.featuresWritten( allFeatures.size() );
     }
 
     private void writeResponsePagingUris( XMLStreamWriter xmlStream, ResponsePagingUris responsePagingUris )
@@ -765,6 +784,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
             gmlStream.getFeatureWriter().export( member, resolveState );
             break;
         }
+        RequestMetrics.featuresWritten( 1 );
     }
 
     private String createUrlWithStartindex( Map<String, String> kvpGetFeature, int startIndex ) {
@@ -54,6 +54,9 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.ows.exception.OWSException;
@@ -71,9 +74,12 @@ import org.deegree.layer.LayerRef;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.context.Java2DRenderContext;
+import org.deegree.rendering.r2d.context.LazyImageRenderContext;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptionsMaps;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
@@ -113,6 +119,12 @@ public class MapService {
 
     private final GetLegendHandler getLegendHandler;
 
+    // null if parallel rendering is disabled
+    private final ExecutorService renderExecutor;
+
+    // null if parallel rendering is disabled
+    private final ParallelLayerRenderer parallelRenderer;
+
     /**
      * @param conf
      * @param adapter
@@ -127,6 +139,15 @@ public class MapService {
 
         defaultLayerOptions = builder.buildMapOptions();
 
+        int renderThreads = builder.buildParallelRenderingThreads();
+        if ( renderThreads > 0 ) {
+            renderExecutor = Executors.newFixedThreadPool( renderThreads );
+            parallelRenderer = new ParallelLayerRenderer( renderExecutor, renderThreads );
+        } else {
+            renderExecutor = null;
+            parallelRenderer = null;
+        }
+
         if ( conf != null && conf.getThemeId() != null && !conf.getThemeId().isEmpty() ) {
             themes = new ArrayList<Theme>();
             newLayers = new HashMap<String, org.deegree.layer.Layer>();
@@ -210,14 +231,18 @@ public class MapService {
         ScaleFunction.getCurrentScaleValue().set( scale );
 
         List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
-        Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            try {
-                d.render( ctx );
-            } catch ( InterruptedException e ) {
-                String msg = "Request time-out.";
-                throw new OWSException( msg, NO_APPLICABLE_CODE );
+        if ( isParallelRenderingApplicable( layerDataList, ctx ) ) {
+            renderParallel( gm, layerDataList, mapOptions, ctx );
+        } else {
+            Iterator<MapOptions> optIter = mapOptions.iterator();
+            for ( LayerData d : layerDataList ) {
+                ctx.applyOptions( optIter.next() );
+                try {
+                    d.render( ctx );
+                } catch ( InterruptedException e ) {
+                    String msg = "Request time-out.";
+                    throw new OWSException( msg, NO_APPLICABLE_CODE );
+                }
             }
         }
         ctx.optimizeAndDrawLabels();
@@ -225,6 +250,47 @@ public class MapService {
         ScaleFunction.getCurrentScaleValue().remove();
     }
 
+    private boolean isParallelRenderingApplicable( List<LayerData> layerDataList, RenderContext ctx ) {
+        // vector formats like SVG would lose their vector content when composited from images
+        return parallelRenderer != null && layerDataList.size() > 1
+               && ( ctx instanceof Java2DRenderContext || ctx instanceof LazyImageRenderContext );
+    }
+
+    private void renderParallel( org.deegree.protocol.wms.ops.GetMap gm, List<LayerData> layerDataList,
+                                 List<MapOptions> mapOptions, RenderContext ctx )
+                            throws OWSException {
+        RenderingInfo info = new RenderingInfo( "image/png", gm.getWidth(), gm.getHeight(), true, null,
+                                                gm.getBoundingBox(), gm.getPixelSize(), gm.getParameterMap() );
+        try {
+            parallelRenderer.render( layerDataList, mapOptions, info, ctx );
+        } catch ( InterruptedException e ) {
+            String msg = "Request time-out.";
+            throw new OWSException( msg, NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof InterruptedException ) {
+                String msg = "Request time-out.";
+                throw new OWSException( msg, NO_APPLICABLE_CODE );
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new OWSException( cause.getLocalizedMessage(), NO_APPLICABLE_CODE );
+        }
+    }
+
+    /**
+     * Shuts down the threads used for parallel rendering.
+     */
+    public void destroy() {
+        if ( renderExecutor != null ) {
+            renderExecutor.shutdownNow();
+        }
+    }
+
     private List<LayerData> checkStyleValidAndBuildLayerDataList( org.deegree.protocol.wms.ops.GetMap gm,
                                                                   List<String> headers, double scale,
                                                                   ListIterator<LayerQuery> queryIter )
@@ -51,6 +51,7 @@ import org.deegree.rendering.r2d.context.MapOptions.Antialias;
 import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
 import org.deegree.rendering.r2d.context.MapOptions.Quality;
 import org.deegree.services.jaxb.wms.LayerOptionsType;
+import org.deegree.services.jaxb.wms.ParallelRenderingType;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.workspace.Workspace;
 import org.slf4j.Logger;
@@ -104,11 +105,29 @@ class MapServiceBuilder {
             } else {
                 LOG.debug( "Using default feature info radius of {}.", featureInfoRadius );
             }
-            return new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            MapOptions options = new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            options.setGeneralization( sf != null && sf.isGeneralization() != null && sf.isGeneralization() );
+            return options;
         }
         return null;
     }
 
+    /**
+     * @return the maximum number of layers to be rendered concurrently, 0 if parallel rendering is disabled
+     */
+    int buildParallelRenderingThreads() {
+        if ( conf == null || conf.getParallelRendering() == null ) {
+            return 0;
+        }
+        ParallelRenderingType pr = conf.getParallelRendering();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if ( pr.getMaxThreads() != null ) {
+            threads = pr.getMaxThreads().intValue();
+        }
+        LOG.debug( "Using parallel rendering with up to {} threads.", threads );
+        return threads;
+    }
+
     private static <T extends Enum<T>> T handleDefaultValue( String val, Class<T> enumType, T defaultValue ) {
         if ( val == null ) {
             return defaultValue;
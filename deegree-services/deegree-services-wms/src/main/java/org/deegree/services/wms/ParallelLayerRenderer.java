@@ -0,0 +1,192 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.deegree.commons.utils.RequestUtils;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.style.utils.ImageUtils;
+
+/**
+ * Renders layers concurrently, each into an off-screen image of its own, and composites the images onto a target
+ * context in layer order.
+ * <p>
+ * Only a limited number of layers is in flight at a time: the next layer is submitted when the oldest one has been
+ * painted onto the target, so at most <code>maxInFlight</code> layer images are held in memory per request. Point
+ * labels are handed over to the target context, so they are still placed and drawn by
+ * {@link RenderContext#optimizeAndDrawLabels()}.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class ParallelLayerRenderer {
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    /**
+     * @param executor
+     *            executor for rendering the layers, must not be <code>null</code>
+     * @param maxInFlight
+     *            maximum number of layers that are rendered (or wait for compositing) at the same time, at least 1
+     */
+    ParallelLayerRenderer( ExecutorService executor, int maxInFlight ) {
+        this.executor = executor;
+        this.maxInFlight = Math.max( 1, maxInFlight );
+    }
+
+    /**
+     * Renders the given layers onto the target context.
+     * 
+     * @param layers
+     *            layers to render, in painting order, must not be <code>null</code>
+     * @param options
+     *            options for each layer, same size as layers, must not be <code>null</code>
+     * @param info
+     *            settings for the layer images (size, envelope, pixel size), must not be <code>null</code>
+     * @param ctx
+     *            target context, must not be <code>null</code>
+     * @throws InterruptedException
+     *             if the calling thread has been interrupted
+     * @throws ExecutionException
+     *             if rendering a layer failed
+     */
+    void render( List<LayerData> layers, List<MapOptions> options, RenderingInfo info, RenderContext ctx )
+                            throws InterruptedException, ExecutionException {
+        Double scale = ScaleFunction.getCurrentScaleValue().get();
+        Map<String, String> parameters = RequestUtils.getCurrentThreadRequestParameters().get();
+
+        // obtaining the label renderer also makes sure that lazy contexts use their own (background) image
+        List<Label> labels = ctx.getLabelRenderer().getLabels();
+        Iterator<LayerData> layerIter = layers.iterator();
+        Iterator<MapOptions> optIter = options.iterator();
+        Deque<Future<LayerImage>> inFlight = new ArrayDeque<Future<LayerImage>>( maxInFlight );
+        try {
+            while ( layerIter.hasNext() || !inFlight.isEmpty() ) {
+                while ( layerIter.hasNext() && inFlight.size() < maxInFlight ) {
+                    LayerRenderTask task = new LayerRenderTask( layerIter.next(), optIter.next(), info, scale,
+                                                                parameters );
+                    inFlight.add( executor.submit( task ) );
+                }
+                LayerImage layerImage = inFlight.peek().get();
+                inFlight.poll();
+                ctx.applyOptions( layerImage.options );
+                ctx.paintImage( layerImage.image );
+                labels.addAll( layerImage.labels );
+            }
+        } finally {
+            for ( Future<LayerImage> future : inFlight ) {
+                future.cancel( true );
+            }
+        }
+    }
+
+    private static class LayerImage {
+
+        final MapOptions options;
+
+        final BufferedImage image;
+
+        final List<Label> labels;
+
+        LayerImage( MapOptions options, BufferedImage image, List<Label> labels ) {
+            this.options = options;
+            this.image = image;
+            this.labels = labels;
+        }
+    }
+
+    private static class LayerRenderTask implements Callable<LayerImage> {
+
+        private final LayerData data;
+
+        private final MapOptions options;
+
+        private final RenderingInfo info;
+
+        private final Double scale;
+
+        private final Map<String, String> parameters;
+
+        LayerRenderTask( LayerData data, MapOptions options, RenderingInfo info, Double scale,
+                         Map<String, String> parameters ) {
+            this.data = data;
+            this.options = options;
+            this.info = info;
+            this.scale = scale;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public LayerImage call()
+                                throws Exception {
+            ScaleFunction.getCurrentScaleValue().set( scale );
+            RequestUtils.getCurrentThreadRequestParameters().set( parameters );
+            BufferedImage image = ImageUtils.prepareImage( info.getFormat(), info.getWidth(), info.getHeight(),
+                                                           true, null );
+            RenderContext layerCtx = ImageRenderContext.createInstance( info, image, null );
+            try {
+                layerCtx.applyOptions( options );
+                data.render( layerCtx );
+                List<Label> labels = new ArrayList<Label>( layerCtx.getLabelRenderer().getLabels() );
+                return new LayerImage( options, image, labels );
+            } finally {
+                layerCtx.close();
+                ScaleFunction.getCurrentScaleValue().remove();
+                RequestUtils.getCurrentThreadRequestParameters().remove();
+            }
+        }
+    }
+
+}
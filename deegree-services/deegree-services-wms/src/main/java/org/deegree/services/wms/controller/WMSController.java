@@ -137,6 +137,7 @@ import org.deegree.services.controller.ImplementationMetadata;
 import org.deegree.services.controller.OGCFrontController;
 import org.deegree.services.controller.exception.serializer.ExceptionSerializer;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.controller.utils.StandardFeatureInfoContext;
 import org.deegree.services.encoding.SupportedEncodings;
@@ -217,6 +218,9 @@ public class WMSController extends AbstractOWS {
 
     private final GetMapLimitChecker getMapLimitChecker = new GetMapLimitChecker();
 
+    // null, if capabilities caching is disabled
+    private final CapabilitiesCache capabilitiesCache = CapabilitiesCache.create();
+
     private SupportedEncodings supportedEncodings;    
 
     public WMSController( ResourceMetadata<OWS> metadata, Workspace workspace, DeegreeWMS jaxbConfig ) {
@@ -577,7 +581,7 @@ public class WMSController extends AbstractOWS {
             version = map.get( "WMTVER" );
         }
         GetCapabilities req = new GetCapabilities( version );
-        doGetCapabilities( map, response, updateSequence, req );
+        doGetCapabilities( map, response, updateSequence, req, true );
     }
 
     @Override
@@ -602,7 +606,7 @@ public class WMSController extends AbstractOWS {
                 getCapabilitiesXMLAdapter.setRootElement( new XMLAdapter( xmlStream ).getRootElement() );
                 GetCapabilities getCapabilities = getCapabilitiesXMLAdapter.parse( requestVersion );
                 String updateSequence = getCapabilities.getUpdateSequence();
-                doGetCapabilities( new HashMap<String, String>(), response, updateSequence, getCapabilities );
+                doGetCapabilities( new HashMap<String, String>(), response, updateSequence, getCapabilities, true );
                 break;
             case GetMap:
                 GetMapParser getMapParser = new GetMapParser();
@@ -662,7 +666,8 @@ public class WMSController extends AbstractOWS {
                     getCapabilitiesXMLAdapter.setRootElement( body );
                     GetCapabilities getCapabilities = getCapabilitiesXMLAdapter.parse( requestVersion );
                     String updateSequence = getCapabilities.getUpdateSequence();
-                    doGetCapabilities( new HashMap<String, String>(), response, updateSequence, getCapabilities );
+                    doGetCapabilities( new HashMap<String, String>(), response, updateSequence, getCapabilities,
+                                       false );
                     break;
                 case GetFeatureInfo:
                     GetFeatureInfoParser getFeatureInfoParser = new GetFeatureInfoParser();
@@ -800,14 +805,31 @@ public class WMSController extends AbstractOWS {
         validateAndSetOfferedVersions( versions );
     }
 
+    /**
+     * @param useCache
+     *            <code>false</code>, if the response must not be served from/stored in the capabilities cache (e.g.
+     *            because it is wrapped in a SOAP envelope)
+     */
     private void doGetCapabilities( Map<String, String> map, HttpResponseBuffer response, String updateSequence,
-                                    GetCapabilities req )
+                                    GetCapabilities req, boolean useCache )
                             throws OWSException, IOException {
         Version myVersion = negotiateVersion( req );
 
         String getUrl = OGCFrontController.getHttpGetURL();
         String postUrl = OGCFrontController.getHttpPostURL();
 
+        // requests with update sequence are not cached, as they may have to be answered with an exception
+        String cacheKey = null;
+        if ( useCache && capabilitiesCache != null && ( updateSequence == null || updateSequence.trim().isEmpty() ) ) {
+            // only the format parameter affects the document, other (e.g. cache busting) parameters are ignored
+            cacheKey = CapabilitiesCache.createKey( myVersion, service.getCurrentUpdateSequence(), getUrl, postUrl,
+                                                    map.get( "FORMAT" ) );
+            if ( capabilitiesCache.send( cacheKey, response ) ) {
+                response.flushBuffer();
+                return;
+            }
+        }
+
         if ( metadataProvider != null ) {
             controllers.get( myVersion ).getCapabilities( getUrl, postUrl, updateSequence, service, response,
                                                           metadataProvider.getServiceIdentification(),
@@ -818,6 +840,9 @@ public class WMSController extends AbstractOWS {
                                                           identification, provider, map, this, null );
         }
 
+        if ( cacheKey != null ) {
+            capabilitiesCache.put( cacheKey, response );
+        }
         response.flushBuffer(); // TODO remove this to enable validation, enable validation on a DTD basis...
     }
 
@@ -1208,7 +1233,12 @@ public class WMSController extends AbstractOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( capabilitiesCache != null ) {
+            capabilitiesCache.clear();
+        }
+        if ( service != null ) {
+            service.destroy();
+        }
     }
 
 }
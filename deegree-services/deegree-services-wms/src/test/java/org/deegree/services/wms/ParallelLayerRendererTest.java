@@ -0,0 +1,210 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.LayerData;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.MapOptions.Antialias;
+import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
+import org.deegree.rendering.r2d.context.MapOptions.Quality;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ParallelLayerRenderer}.
+ * 
+ * @since 3.4
+ */
+public class ParallelLayerRendererTest {
+
+    private static final int SIZE = 64;
+
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW, Color.CYAN,
+                                           Color.MAGENTA, Color.ORANGE, Color.PINK };
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool( 8 );
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMatchesSequentialRendering()
+                            throws Exception {
+        List<LayerData> layers = new ArrayList<LayerData>();
+        List<MapOptions> options = new ArrayList<MapOptions>();
+        for ( int i = 0; i < COLORS.length; i++ ) {
+            // earlier layers take longer, so they finish last
+            layers.add( new RectLayer( i, ( COLORS.length - i ) * 10, null ) );
+            options.add( createOptions() );
+        }
+
+        BufferedImage sequential = createImage();
+        RenderContext ctx = createContext( sequential );
+        for ( int i = 0; i < layers.size(); i++ ) {
+            ctx.applyOptions( options.get( i ) );
+            layers.get( i ).render( ctx );
+        }
+        ctx.optimizeAndDrawLabels();
+        ctx.close();
+
+        BufferedImage parallel = createImage();
+        ctx = createContext( parallel );
+        new ParallelLayerRenderer( executor, 4 ).render( layers, options, createInfo(), ctx );
+        ctx.optimizeAndDrawLabels();
+        ctx.close();
+
+        // overlapping areas show the last layer
+        assertEquals( COLORS[COLORS.length - 1].getRGB(), parallel.getRGB( SIZE - 1, SIZE - 1 ) );
+        assertEquals( COLORS[0].getRGB(), parallel.getRGB( 0, 0 ) );
+        assertArrayEquals( getPixels( sequential ), getPixels( parallel ) );
+    }
+
+    @Test
+    public void testLayersInFlightAreBounded()
+                            throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        List<LayerData> layers = new ArrayList<LayerData>();
+        List<MapOptions> options = new ArrayList<MapOptions>();
+        for ( int i = 0; i < COLORS.length; i++ ) {
+            layers.add( new RectLayer( i, i == 0 ? 200 : 0, started ) );
+            options.add( createOptions() );
+        }
+        RectLayer first = (RectLayer) layers.get( 0 );
+
+        BufferedImage image = createImage();
+        RenderContext ctx = createContext( image );
+        new ParallelLayerRenderer( executor, 2 ).render( layers, options, createInfo(), ctx );
+        ctx.close();
+
+        // while the first layer was rendered, only one more layer may have been submitted
+        assertTrue( first.startedWhenFinished <= 2 );
+        assertEquals( COLORS.length, started.get() );
+    }
+
+    private static MapOptions createOptions() {
+        return new MapOptions( Quality.NORMAL, Interpolation.NEARESTNEIGHBOR, Antialias.NONE, -1, 1 );
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_ARGB );
+    }
+
+    private static RenderingInfo createInfo() {
+        return new RenderingInfo( "image/png", SIZE, SIZE, true, null,
+                                  new GeometryFactory().createEnvelope( 0, 0, SIZE, SIZE, null ), 0.00028, null );
+    }
+
+    private static RenderContext createContext( BufferedImage image ) {
+        return ImageRenderContext.createInstance( createInfo(), image, null );
+    }
+
+    private static int[] getPixels( BufferedImage image ) {
+        return image.getRGB( 0, 0, SIZE, SIZE, null, 0, SIZE );
+    }
+
+    /**
+     * Paints an opaque square, layer i is shifted by 4 * i pixels, so all layers overlap.
+     */
+    private static class RectLayer implements LayerData {
+
+        private final int index;
+
+        private final long delay;
+
+        private final AtomicInteger started;
+
+        volatile int startedWhenFinished;
+
+        RectLayer( int index, long delay, AtomicInteger started ) {
+            this.index = index;
+            this.delay = delay;
+            this.started = started;
+        }
+
+        @Override
+        public void render( RenderContext context )
+                                throws InterruptedException {
+            if ( started != null ) {
+                started.incrementAndGet();
+            }
+            Thread.sleep( delay );
+            BufferedImage img = createImage();
+            Graphics2D g = img.createGraphics();
+            g.setColor( COLORS[index] );
+            g.fillRect( index * 4, index * 4, SIZE / 2, SIZE / 2 );
+            if ( index == COLORS.length - 1 ) {
+                g.fillRect( SIZE / 2, SIZE / 2, SIZE / 2, SIZE / 2 );
+            }
+            g.dispose();
+            context.paintImage( img );
+            if ( started != null ) {
+                startedWhenFinished = started.get();
+            }
+        }
+
+        @Override
+        public FeatureCollection info() {
+            return null;
+        }
+    }
+
+}
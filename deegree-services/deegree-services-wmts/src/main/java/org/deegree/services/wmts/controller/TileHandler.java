@@ -46,23 +46,29 @@ import static org.apache.commons.io.IOUtils.copy;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 
+import java.io.File;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
 import org.deegree.layer.persistence.tile.TileLayer;
 import org.deegree.protocol.wmts.ops.GetTile;
+import org.deegree.services.controller.compression.CompressingHttpServletResponse;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TransferableTile;
 
 /**
  * Responsible for handling GetTile requests.
@@ -75,6 +81,14 @@ import org.deegree.tile.TileDataSet;
 
 class TileHandler {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private Map<String, TileLayer> layers;
 
     TileHandler( List<Theme> themes ) {
@@ -88,13 +102,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( final GetTile op, final HttpResponseBuffer response )
+    private void getTile( final GetTile op, final HttpServletRequest request, final HttpResponseBuffer response )
                             throws OWSException, ServletException {
         final TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -134,6 +148,11 @@ class TileHandler {
             throw new OWSException( "No such tile found.", INVALID_PARAMETER_VALUE );
         }
 
+        if ( t instanceof TransferableTile ) {
+            transferTile( (TransferableTile) t, format, request, response );
+            return;
+        }
+
         InputStream in = null;
         try {
             in = t.getAsStream();
@@ -149,4 +168,41 @@ class TileHandler {
         }
     }
 
+    /**
+     * Lets the container send file backed tiles if it supports it (Tomcat's sendfile), otherwise writes the tile
+     * directly to the (unbuffered) servlet output, so the tile is not read into a byte array.
+     */
+    private void transferTile( TransferableTile t, String format, HttpServletRequest request,
+                               HttpResponseBuffer response )
+                            throws OWSException {
+        try {
+            long length = t.getEncodedLength();
+            response.disableBuffering();
+            response.setContentType( format );
+            File file = t.getFile();
+            boolean sendfile = file != null && length >= 0 && length <= Integer.MAX_VALUE
+                               && Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORT ) );
+            if ( sendfile ) {
+                // the container writes the body, so it must neither be compressed nor sent chunked
+                CompressingHttpServletResponse compression = CompressingHttpServletResponse.lookup( response );
+                if ( compression != null ) {
+                    compression.disableCompression();
+                }
+            }
+            if ( length >= 0 && length <= Integer.MAX_VALUE ) {
+                response.setContentLength( (int) length );
+            }
+            if ( sendfile ) {
+                request.setAttribute( SENDFILE_FILENAME, file.getCanonicalPath() );
+                request.setAttribute( SENDFILE_START, Long.valueOf( 0 ) );
+                request.setAttribute( SENDFILE_END, Long.valueOf( length ) );
+                return;
+            }
+            WritableByteChannel channel = Channels.newChannel( response.getOutputStream() );
+            t.transferTo( channel );
+        } catch ( Throwable e ) {
+            throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+        }
+    }
+
 }
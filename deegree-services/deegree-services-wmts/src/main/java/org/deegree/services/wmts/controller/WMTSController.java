@@ -127,7 +127,7 @@ public class WMTSController extends AbstractOWS {
             }
 
             try {
-                dispatcher.handleRequest( req, response, map, version );
+                dispatcher.handleRequest( req, request, response, map, version );
             } catch ( OWSException e ) {
                 LOG.debug( "The response is an exception with the message '{}'", e.getLocalizedMessage() );
                 LOG.trace( "Stack trace of OWSException being sent", e );
@@ -0,0 +1,144 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import java.io.File;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.tools.CommandUtils;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreProvider;
+import org.deegree.feature.persistence.sql.BlobMigrator;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.tools.i18n.Messages;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultWorkspace;
+
+/**
+ * Re-encodes the BLOB table of an SQL feature store with the encoding that is currently configured for the store.
+ * 
+ * @since 3.4
+ */
+@Tool("Re-encodes the BLOB table of an SQL feature store with its configured encoding (e.g. BINARY)")
+public class BlobTableMigrator {
+
+    // command line parameters
+    private static final String OPT_WORKSPACE = "workspace";
+
+    private static final String OPT_FS_CONFIG_FILE = "fsconfig";
+
+    private static final String OPT_BATCH_SIZE = "batchsize";
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main( String[] args )
+                            throws Exception {
+
+        // for the moment, using the CLI API there is no way to respond to a help argument; see
+        // https://issues.apache.org/jira/browse/CLI-179
+        if ( args.length == 0 || ( args.length > 0 && ( args[0].contains( "help" ) || args[0].contains( "?" ) ) ) ) {
+            printHelp( initOptions() );
+        }
+
+        try {
+            CommandLine cmdline = new PosixParser().parse( initOptions(), args );
+
+            String workspace = cmdline.getOptionValue( OPT_WORKSPACE );
+            String fsConfigId = cmdline.getOptionValue( OPT_FS_CONFIG_FILE );
+            int batchSize = DEFAULT_BATCH_SIZE;
+            if ( cmdline.hasOption( OPT_BATCH_SIZE ) ) {
+                try {
+                    batchSize = Integer.parseInt( cmdline.getOptionValue( OPT_BATCH_SIZE ) );
+                } catch ( NumberFormatException e ) {
+                    batchSize = -1;
+                }
+                if ( batchSize < 1 ) {
+                    System.out.println( "Invalid batch size '" + cmdline.getOptionValue( OPT_BATCH_SIZE )
+                                        + "'. Must be a positive number." );
+                    System.exit( 0 );
+                }
+            }
+
+            Workspace ws = new DefaultWorkspace( new File( workspace ) );
+            ws.initAll();
+
+            FeatureStore fs = ws.getResource( FeatureStoreProvider.class, fsConfigId );
+            if ( !( fs instanceof SQLFeatureStore ) ) {
+                System.out.println( "Feature store '" + fsConfigId + "' is not an SQL feature store." );
+                System.exit( 0 );
+            }
+
+            System.out.print( "- Re-encoding BLOB table of feature store '" + fsConfigId + "'..." );
+            int migrated = new BlobMigrator( (SQLFeatureStore) fs, batchSize ).migrate();
+            System.out.println( "done (" + migrated + " objects re-encoded)." );
+        } catch ( ParseException exp ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
+        }
+    }
+
+    private static Options initOptions() {
+
+        Options opts = new Options();
+
+        Option opt = new Option( OPT_WORKSPACE, true, "workspace name" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_FS_CONFIG_FILE, true, "feature store config id" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_BATCH_SIZE, true, "number of rows per update batch (default: " + DEFAULT_BATCH_SIZE
+                                                + ")" );
+        opts.addOption( opt );
+
+        CommandUtils.addDefaultOptions( opts );
+        return opts;
+    }
+
+    private static void printHelp( Options options ) {
+        CommandUtils.printHelp( options, BlobTableMigrator.class.getSimpleName(), null, null );
+    }
+}
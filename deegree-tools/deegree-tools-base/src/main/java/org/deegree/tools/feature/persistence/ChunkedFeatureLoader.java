@@ -0,0 +1,430 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.MappedGmlIdIndex;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams features from a {@link StreamFeatureCollection} into a {@link FeatureStore} using one transaction per chunk.
+ * <p>
+ * Features are decoded on the calling thread and grouped into chunks that are handed to a configurable number of
+ * insert threads via a bounded queue, so the memory footprint is limited to a few chunks regardless of the dataset
+ * size. Xlinks across chunks are tracked using a disk-backed {@link MappedGmlIdIndex}:
+ * <ul>
+ * <li>A chunk that references features of an earlier chunk is only inserted after that chunk has been committed.
+ * Resolving such references requires {@link IDGenMode#USE_EXISTING} and is only enabled for the transactions of the
+ * loader (see {@link SQLFeatureStoreTransaction#setResolveStoredReferences(boolean)}).</li>
+ * <li>A chunk with forward references (to features that have not been read yet) is extended until the referenced
+ * features have been read (up to {@value #MAX_CHUNK_GROWTH} times the chunk size).</li>
+ * </ul>
+ * </p>
+ * <p>
+ * If a progress file is used, the committed feature ranges are appended to it after every commit. Loading the same
+ * dataset again with the same progress file skips these features, so an aborted load can be resumed.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class ChunkedFeatureLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ChunkedFeatureLoader.class );
+
+    static final int MAX_CHUNK_GROWTH = 10;
+
+    // pseudo chunk for features that have been committed by a previous (resumed) load
+    private static final int STORED_CHUNK = 0;
+
+    private static final Chunk END = new Chunk( -1, -1 );
+
+    private final FeatureStore fs;
+
+    private final IDGenMode mode;
+
+    private final int chunkSize;
+
+    private final int insertThreads;
+
+    private final File progressFile;
+
+    private final Set<Integer> committedChunks = new HashSet<Integer>();
+
+    private volatile Exception failure;
+
+    private long insertedFeatures;
+
+    /**
+     * Creates a new {@link ChunkedFeatureLoader} instance.
+     * 
+     * @param fs
+     *            feature store to insert into, must not be <code>null</code>
+     * @param mode
+     *            id generation mode, must not be <code>null</code>
+     * @param chunkSize
+     *            number of features per transaction, must be positive
+     * @param insertThreads
+     *            number of threads (and transactions) used for inserting, must be positive
+     * @param progressFile
+     *            file for tracking the committed features, may be <code>null</code> (not resumable)
+     */
+    public ChunkedFeatureLoader( FeatureStore fs, IDGenMode mode, int chunkSize, int insertThreads, File progressFile ) {
+        this.fs = fs;
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.insertThreads = insertThreads;
+        this.progressFile = progressFile;
+    }
+
+    /**
+     * Inserts all features from the given stream.
+     * 
+     * @param features
+     *            features to be inserted, must not be <code>null</code>
+     * @return number of features inserted by this invocation (excluding features skipped due to resumption)
+     * @throws IOException
+     *             if reading the features or accessing the progress file fails
+     * @throws FeatureStoreException
+     *             if inserting a chunk fails, all chunks committed before are recorded in the progress file
+     */
+    public long load( StreamFeatureCollection features )
+                            throws IOException, FeatureStoreException {
+
+        long begin = System.currentTimeMillis();
+        List<long[]> skipRanges = readProgress();
+        committedChunks.add( STORED_CHUNK );
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>( insertThreads * 2 );
+        List<Thread> inserters = new ArrayList<Thread>();
+        for ( int i = 0; i < insertThreads; i++ ) {
+            Thread inserter = new Thread( new Inserter( queue ), "feature-store-loader-" + i );
+            inserter.start();
+            inserters.add( inserter );
+        }
+
+        File indexDir = progressFile != null ? progressFile.getAbsoluteFile().getParentFile() : null;
+        MappedGmlIdIndex index = new MappedGmlIdIndex( indexDir, 1 << 16 );
+        long skipped = 0;
+        try {
+            int chunkNo = STORED_CHUNK + 1;
+            Chunk chunk = new Chunk( chunkNo, 0 );
+            Set<String> openRefs = new HashSet<String>();
+            int skipRange = 0;
+            long ordinal = 0;
+            Feature feature = null;
+            while ( failure == null && ( feature = features.read() ) != null ) {
+                Set<String> ids = new HashSet<String>();
+                Set<String> refs = new HashSet<String>();
+                scan( feature, ids, refs );
+
+                while ( skipRange < skipRanges.size() && skipRanges.get( skipRange )[1] <= ordinal ) {
+                    skipRange++;
+                }
+                if ( skipRange < skipRanges.size() && skipRanges.get( skipRange )[0] <= ordinal ) {
+                    // committed by a previous load
+                    for ( String id : ids ) {
+                        index.put( id, STORED_CHUNK );
+                        openRefs.remove( id );
+                    }
+                    skipped++;
+                    ordinal++;
+                    if ( !chunk.features.isEmpty() ) {
+                        dispatch( queue, chunk, openRefs );
+                        chunk = new Chunk( ++chunkNo, ordinal );
+                    } else {
+                        chunk.first = ordinal;
+                    }
+                    continue;
+                }
+
+                for ( String id : ids ) {
+                    index.put( id, chunk.number );
+                    openRefs.remove( id );
+                }
+                for ( String ref : refs ) {
+                    int refChunk = (int) index.get( ref );
+                    if ( refChunk == -1 ) {
+                        openRefs.add( ref );
+                    } else if ( refChunk != chunk.number ) {
+                        if ( mode != IDGenMode.USE_EXISTING && chunk.dependencies.isEmpty() ) {
+                            LOG.warn( "Chunk " + chunk.number + " references features of earlier chunks (e.g. '" + ref
+                                      + "'). Such references can only be resolved with id generation mode "
+                                      + IDGenMode.USE_EXISTING + " (or a larger chunk size)." );
+                        }
+                        chunk.dependencies.add( refChunk );
+                    }
+                }
+                chunk.features.add( feature );
+                ordinal++;
+
+                if ( chunk.features.size() >= chunkSize
+                     && ( openRefs.isEmpty() || chunk.features.size() >= chunkSize * MAX_CHUNK_GROWTH ) ) {
+                    dispatch( queue, chunk, openRefs );
+                    chunk = new Chunk( ++chunkNo, ordinal );
+                }
+            }
+            if ( failure == null && !chunk.features.isEmpty() ) {
+                dispatch( queue, chunk, openRefs );
+            }
+        } catch ( InterruptedException e ) {
+            throw new IOException( "Interrupted while waiting for insert threads.", e );
+        } finally {
+            try {
+                for ( int i = 0; i < insertThreads; i++ ) {
+                    queue.put( END );
+                }
+                for ( Thread inserter : inserters ) {
+                    inserter.join();
+                }
+            } catch ( InterruptedException e ) {
+                LOG.warn( "Interrupted while waiting for insert threads." );
+            }
+            index.close();
+        }
+
+        if ( failure != null ) {
+            String msg = "Load aborted: " + failure.getMessage();
+            if ( progressFile != null ) {
+                msg += " Committed features have been recorded in '" + progressFile + "', load can be resumed.";
+            }
+            throw new FeatureStoreException( msg, failure );
+        }
+
+        long elapsed = System.currentTimeMillis() - begin;
+        long perSecond = elapsed > 0 ? insertedFeatures * 1000 / elapsed : insertedFeatures;
+        LOG.info( "Inserted " + insertedFeatures + " features (" + skipped + " skipped as already committed) in "
+                  + elapsed + " [ms] (" + perSecond + " features/s)." );
+        return insertedFeatures;
+    }
+
+    private void dispatch( BlockingQueue<Chunk> queue, Chunk chunk, Set<String> openRefs )
+                            throws InterruptedException {
+        if ( !openRefs.isEmpty() ) {
+            LOG.warn( "Chunk " + chunk.number + " contains " + openRefs.size()
+                      + " references to features that have not been read yet (e.g. '" + openRefs.iterator().next()
+                      + "'). They will be assumed to be stored already." );
+            openRefs.clear();
+        }
+        LOG.debug( "Dispatching chunk " + chunk.number + " (" + chunk.features.size() + " features)." );
+        queue.put( chunk );
+    }
+
+    private void scan( TypedObjectNode node, Set<String> ids, Set<String> refs ) {
+        if ( node instanceof FeatureReference ) {
+            FeatureReference ref = (FeatureReference) node;
+            if ( ref.isLocal() ) {
+                refs.add( ref.getId() );
+            }
+        } else if ( node instanceof Feature ) {
+            Feature feature = (Feature) node;
+            if ( feature.getId() != null ) {
+                ids.add( feature.getId() );
+            }
+            for ( Property prop : feature.getProperties() ) {
+                scan( prop, ids, refs );
+            }
+        } else if ( node instanceof ElementNode ) {
+            if ( node instanceof Property ) {
+                scan( ( (Property) node ).getValue(), ids, refs );
+            }
+            List<TypedObjectNode> children = ( (ElementNode) node ).getChildren();
+            if ( children != null ) {
+                for ( TypedObjectNode child : children ) {
+                    scan( child, ids, refs );
+                }
+            }
+        }
+    }
+
+    private void insert( Chunk chunk )
+                            throws Exception {
+        synchronized ( committedChunks ) {
+            while ( failure == null && !committedChunks.containsAll( chunk.dependencies ) ) {
+                committedChunks.wait();
+            }
+        }
+        if ( failure != null ) {
+            return;
+        }
+        FeatureStoreTransaction ta = fs.acquireTransaction();
+        if ( ta instanceof SQLFeatureStoreTransaction ) {
+            ( (SQLFeatureStoreTransaction) ta ).setResolveStoredReferences( true );
+        }
+        try {
+            ta.performInsert( new GenericFeatureCollection( null, chunk.features ), mode );
+            ta.commit();
+        } catch ( Exception e ) {
+            ta.rollback();
+            throw e;
+        }
+        recordProgress( chunk );
+        LOG.info( "Committed chunk " + chunk.number + " (" + chunk.features.size() + " features)." );
+        synchronized ( committedChunks ) {
+            insertedFeatures += chunk.features.size();
+            committedChunks.add( chunk.number );
+            committedChunks.notifyAll();
+        }
+    }
+
+    private void fail( Chunk chunk, Exception e ) {
+        LOG.error( "Error inserting chunk " + chunk.number + ": " + e.getMessage() );
+        LOG.trace( "Stack trace:", e );
+        synchronized ( committedChunks ) {
+            if ( failure == null ) {
+                failure = e;
+            }
+            committedChunks.notifyAll();
+        }
+    }
+
+    private List<long[]> readProgress()
+                            throws IOException {
+        List<long[]> ranges = new ArrayList<long[]>();
+        if ( progressFile == null || !progressFile.exists() ) {
+            return ranges;
+        }
+        BufferedReader reader = new BufferedReader( new FileReader( progressFile ) );
+        try {
+            String line = null;
+            while ( ( line = reader.readLine() ) != null ) {
+                String[] tokens = line.trim().split( "\\s+" );
+                if ( tokens.length == 2 ) {
+                    long first = Long.parseLong( tokens[0] );
+                    ranges.add( new long[] { first, first + Long.parseLong( tokens[1] ) } );
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        Collections.sort( ranges, new Comparator<long[]>() {
+            @Override
+            public int compare( long[] o1, long[] o2 ) {
+                return Long.compare( o1[0], o2[0] );
+            }
+        } );
+        LOG.info( "Resuming load, " + ranges.size() + " committed chunks recorded in '" + progressFile + "'." );
+        return ranges;
+    }
+
+    private void recordProgress( Chunk chunk )
+                            throws IOException {
+        if ( progressFile == null ) {
+            return;
+        }
+        synchronized ( progressFile ) {
+            Writer writer = new FileWriter( progressFile, true );
+            try {
+                writer.write( chunk.first + " " + chunk.features.size() + "\n" );
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private class Inserter implements Runnable {
+
+        private final BlockingQueue<Chunk> queue;
+
+        private Inserter( BlockingQueue<Chunk> queue ) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk = null;
+                while ( ( chunk = queue.take() ) != END ) {
+                    if ( failure != null ) {
+                        // drain remaining chunks
+                        continue;
+                    }
+                    try {
+                        insert( chunk );
+                    } catch ( Exception e ) {
+                        fail( chunk, e );
+                    }
+                }
+            } catch ( InterruptedException e ) {
+                LOG.warn( "Insert thread interrupted." );
+            }
+        }
+    }
+
+    private static class Chunk {
+
+        private final int number;
+
+        // ordinal of the first feature (in document order)
+        private long first;
+
+        private final List<Feature> features = new ArrayList<Feature>();
+
+        private final Set<Integer> dependencies = new HashSet<Integer>();
+
+        private Chunk( int number, long first ) {
+            this.number = number;
+            this.first = first;
+        }
+    }
+
+}
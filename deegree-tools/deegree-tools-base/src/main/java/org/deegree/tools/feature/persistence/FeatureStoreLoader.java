@@ -38,7 +38,6 @@ package org.deegree.tools.feature.persistence;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.List;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
@@ -53,14 +52,13 @@ import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tools.CommandUtils;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.UnknownCRSException;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreProvider;
-import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
+import org.deegree.gml.feature.StreamFeatureCollection;
 import org.deegree.protocol.wfs.transaction.action.IDGenMode;
 import org.deegree.tools.i18n.Messages;
 import org.deegree.workspace.Workspace;
@@ -90,39 +88,44 @@ public class FeatureStoreLoader {
 
     private static final String OPT_IDGEN_MODE = "idgen";
 
+    private static final String OPT_CHUNK_SIZE = "chunksize";
+
+    private static final String OPT_THREADS = "threads";
+
+    private static final String OPT_PROGRESS_FILE = "progress";
+
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // number of parsed GML objects kept in memory for resolving xlinks
+    private static final int MAX_CACHED_OBJECTS = 10000;
+
     private enum Action {
         insert, stats
     }
 
-    private static void insert( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode )
+    private static void insert( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode,
+                                int chunkSize, int threads, File progressFile )
                             throws XMLStreamException, FactoryConfigurationError, IOException, XMLParsingException,
                             UnknownCRSException, FeatureStoreException {
 
         File f = new File( datasetFile );
         URL url = f.toURI().toURL();
-        System.out.print( "- Reading dataset: '" + datasetFile + "'..." );
+        System.out.println( "- Streaming dataset: '" + datasetFile + "' (chunk size: " + chunkSize + ", insert threads: "
+                            + threads + ")" );
         GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, url );
         gmlReader.setApplicationSchema( fs.getSchema() );
-        FeatureCollection fc = gmlReader.readFeatureCollection();
-        System.out.println( "done." );
-
-        FeatureStoreTransaction ta = null;
+        File spillDir = progressFile != null ? progressFile.getAbsoluteFile().getParentFile() : null;
+        gmlReader.setBoundedIdContext( MAX_CACHED_OBJECTS, spillDir );
         try {
-            ta = fs.acquireTransaction();
-            System.out.print( "- Inserting features..." );
-            List<String> fids = ta.performInsert( fc, mode );
-            System.out.println( "done." );
-            for ( String fid : fids ) {
-                System.out.println( "- Inserted: " + fid );
-            }
-            System.out.println( "\n- Insert succeeded (" + fids.size() + " features). Committing transaction." );
-            ta.commit();
-        } catch ( Exception e ) {
+            StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+            ChunkedFeatureLoader loader = new ChunkedFeatureLoader( fs, mode, chunkSize, threads, progressFile );
+            long inserted = loader.load( fc );
+            System.out.println( "\n- Insert succeeded (" + inserted + " features)." );
+        } catch ( FeatureStoreException e ) {
             e.printStackTrace();
             System.err.println( "Error performing insert: " + e.getMessage() );
-            if ( ta != null ) {
-                ta.rollback();
-            }
+        } finally {
+            gmlReader.close();
         }
     }
 
@@ -184,6 +187,27 @@ public class FeatureStoreLoader {
 
             String inputFileName = cmdline.getOptionValue( OPT_DATASET_FILE );
 
+            int chunkSize = DEFAULT_CHUNK_SIZE;
+            int threads = 1;
+            try {
+                if ( cmdline.hasOption( OPT_CHUNK_SIZE ) ) {
+                    chunkSize = Integer.parseInt( cmdline.getOptionValue( OPT_CHUNK_SIZE ) );
+                }
+                if ( cmdline.hasOption( OPT_THREADS ) ) {
+                    threads = Integer.parseInt( cmdline.getOptionValue( OPT_THREADS ) );
+                }
+                if ( chunkSize < 1 || threads < 1 ) {
+                    throw new NumberFormatException();
+                }
+            } catch ( NumberFormatException e ) {
+                System.out.println( "Invalid chunk size or number of threads. Must be positive integers." );
+                System.exit( 0 );
+            }
+            File progressFile = null;
+            if ( cmdline.hasOption( OPT_PROGRESS_FILE ) ) {
+                progressFile = new File( cmdline.getOptionValue( OPT_PROGRESS_FILE ) );
+            }
+
             Workspace ws = new DefaultWorkspace( new File( workspace ) );
             ws.initAll();
 
@@ -191,7 +215,7 @@ public class FeatureStoreLoader {
 
             switch ( action ) {
             case insert:
-                insert( fs, inputFileName, format, idGenMode );
+                insert( fs, inputFileName, format, idGenMode, chunkSize, threads, progressFile );
                 break;
             case stats:
                 System.out.println( "TODO: Stats..." );
@@ -245,6 +269,17 @@ public class FeatureStoreLoader {
         opt.setRequired( true );
         opts.addOption( opt );
 
+        opt = new Option( OPT_CHUNK_SIZE, true, "number of features per transaction (default: " + DEFAULT_CHUNK_SIZE
+                                                + ")" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_THREADS, true, "number of insert threads/transactions (default: 1)" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_PROGRESS_FILE, true,
+                          "file that records the committed features, an aborted load is resumed if it exists" );
+        opts.addOption( opt );
+
         CommandUtils.addDefaultOptions( opts );
         return opts;
     }
@@ -0,0 +1,289 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.synchronizedList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link ChunkedFeatureLoader}.
+ * 
+ * @since 3.4
+ */
+public class ChunkedFeatureLoaderTest {
+
+    private static final QName REF = new QName( "http://www.deegree.org/app", "ref", "app" );
+
+    private final FeatureType ft = new GenericFeatureType( new QName( "http://www.deegree.org/app", "Parcel", "app" ),
+                                                           Collections.<PropertyType> singletonList( createRefPt() ),
+                                                           false );
+
+    // "insert <first id>" and "commit <first id>" in the order of the transaction calls
+    private final List<String> events = synchronizedList( new ArrayList<String>() );
+
+    // ids of the committed chunks
+    private final List<List<String>> committed = synchronizedList( new ArrayList<List<String>>() );
+
+    // released by the commit of a chunk that does not contain the slow feature
+    private final CountDownLatch otherChunkCommitted = new CountDownLatch( 1 );
+
+    @Test
+    public void testChunking()
+                            throws Exception {
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( null, 0 ), IDGenMode.USE_EXISTING, 2, 1,
+                                                                null );
+
+        assertEquals( 5, loader.load( createFeatures( "F0", "F1", "F2", "F3", "F4" ) ) );
+
+        assertEquals( asList( asList( "F0", "F1" ), asList( "F2", "F3" ), asList( "F4" ) ), committed );
+    }
+
+    @Test
+    public void testWaitForReferencedChunk()
+                            throws Exception {
+        // F2 (second chunk) references F0 (first chunk), the first chunk is slow to insert (no other chunk can be
+        // committed before, so it waits for the full delay, giving the second chunk the chance to be inserted early)
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( "F0", 200 ), IDGenMode.USE_EXISTING, 2,
+                                                                2, null );
+        StreamFeatureCollection features = createFeatures( createFeature( "F0", null ), createFeature( "F1", null ),
+                                                           createFeature( "F2", "F0" ), createFeature( "F3", null ) );
+
+        assertEquals( 4, loader.load( features ) );
+
+        assertTrue( events.indexOf( "commit F0" ) < events.indexOf( "insert F2" ) );
+    }
+
+    @Test
+    public void testIndependentChunksDoNotWait()
+                            throws Exception {
+        // the first chunk is only inserted after the second chunk has been committed
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( "F0", 10000 ), IDGenMode.USE_EXISTING,
+                                                                2, 2, null );
+
+        assertEquals( 4, loader.load( createFeatures( "F0", "F1", "F2", "F3" ) ) );
+
+        assertTrue( events.indexOf( "commit F2" ) < events.indexOf( "commit F0" ) );
+    }
+
+    @Test
+    public void testForwardReferenceGrowsChunk()
+                            throws Exception {
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( null, 0 ), IDGenMode.USE_EXISTING, 2, 1,
+                                                                null );
+        StreamFeatureCollection features = createFeatures( createFeature( "F0", "F3" ), createFeature( "F1", null ),
+                                                           createFeature( "F2", null ), createFeature( "F3", null ),
+                                                           createFeature( "F4", null ) );
+
+        assertEquals( 5, loader.load( features ) );
+
+        assertEquals( asList( asList( "F0", "F1", "F2", "F3" ), asList( "F4" ) ), committed );
+    }
+
+    @Test
+    public void testForwardReferenceGrowthIsBounded()
+                            throws Exception {
+        int chunkSize = 2;
+        int maxChunk = chunkSize * ChunkedFeatureLoader.MAX_CHUNK_GROWTH;
+        List<Feature> features = new ArrayList<Feature>();
+        features.add( createFeature( "F0", "F" + ( maxChunk + 5 ) ) );
+        for ( int i = 1; i <= maxChunk + 5; i++ ) {
+            features.add( createFeature( "F" + i, null ) );
+        }
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( null, 0 ), IDGenMode.USE_EXISTING,
+                                                                chunkSize, 1, null );
+
+        assertEquals( features.size(), loader.load( createFeatures( features.toArray( new Feature[0] ) ) ) );
+
+        assertEquals( maxChunk, committed.get( 0 ).size() );
+    }
+
+    @Test
+    public void testResume()
+                            throws Exception {
+        File progressFile = File.createTempFile( "progress", ".txt" );
+        progressFile.deleteOnExit();
+        FileWriter writer = new FileWriter( progressFile );
+        try {
+            // first chunk and the last feature have been committed by an earlier load
+            writer.write( "0 2\n4 1\n" );
+        } finally {
+            writer.close();
+        }
+        ChunkedFeatureLoader loader = new ChunkedFeatureLoader( createStore( null, 0 ), IDGenMode.USE_EXISTING, 2, 1,
+                                                                progressFile );
+
+        assertEquals( 2, loader.load( createFeatures( "F0", "F1", "F2", "F3", "F4" ) ) );
+
+        assertEquals( asList( asList( "F2", "F3" ) ), committed );
+        assertEquals( asList( "0 2", "4 1", "2 2" ), readLines( progressFile ) );
+    }
+
+    /**
+     * @param slowId
+     *            id of the feature whose chunk is slow to insert, may be <code>null</code>
+     * @param maxDelay
+     *            maximum time (in milliseconds) that the slow chunk waits for another chunk to be committed
+     */
+    private FeatureStore createStore( final String slowId, final long maxDelay )
+                            throws Exception {
+        FeatureStore fs = mock( FeatureStore.class );
+        when( fs.acquireTransaction() ).thenAnswer( new Answer<FeatureStoreTransaction>() {
+            @Override
+            public FeatureStoreTransaction answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                return createTransaction( slowId, maxDelay );
+            }
+        } );
+        return fs;
+    }
+
+    private FeatureStoreTransaction createTransaction( final String slowId, final long maxDelay )
+                            throws Exception {
+        final FeatureStoreTransaction ta = mock( FeatureStoreTransaction.class );
+        final List<String> ids = new ArrayList<String>();
+        Answer<List<String>> insert = new Answer<List<String>>() {
+            @Override
+            public List<String> answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                for ( Feature feature : (FeatureCollection) invocation.getArguments()[0] ) {
+                    ids.add( feature.getId() );
+                }
+                events.add( "insert " + ids.get( 0 ) );
+                if ( ids.contains( slowId ) ) {
+                    otherChunkCommitted.await( maxDelay, MILLISECONDS );
+                }
+                return ids;
+            }
+        };
+        when( ta.performInsert( any( FeatureCollection.class ), any( IDGenMode.class ) ) ).thenAnswer( insert );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                events.add( "commit " + ids.get( 0 ) );
+                committed.add( ids );
+                if ( !ids.contains( slowId ) ) {
+                    otherChunkCommitted.countDown();
+                }
+                return null;
+            }
+        } ).when( ta ).commit();
+        return ta;
+    }
+
+    private StreamFeatureCollection createFeatures( String... ids )
+                            throws Exception {
+        Feature[] features = new Feature[ids.length];
+        for ( int i = 0; i < ids.length; i++ ) {
+            features[i] = createFeature( ids[i], null );
+        }
+        return createFeatures( features );
+    }
+
+    private StreamFeatureCollection createFeatures( Feature... features )
+                            throws Exception {
+        StreamFeatureCollection fc = mock( StreamFeatureCollection.class );
+        // followed by null (end of stream)
+        Feature[] remaining = new Feature[features.length];
+        System.arraycopy( features, 1, remaining, 0, features.length - 1 );
+        when( fc.read() ).thenReturn( features[0], remaining );
+        return fc;
+    }
+
+    private Feature createFeature( String id, String refId ) {
+        List<Property> props = new ArrayList<Property>();
+        if ( refId != null ) {
+            props.add( new GenericProperty( ft.getPropertyDeclaration( REF ), new FeatureReference( null, "#" + refId,
+                                                                                                    null ) ) );
+        }
+        return new GenericFeature( ft, id, props, null );
+    }
+
+    private static PropertyType createRefPt() {
+        return new FeaturePropertyType( REF, 0, 1, null, null, null, BOTH );
+    }
+
+    private List<String> readLines( File file )
+                            throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader( new FileReader( file ) );
+        try {
+            String line = null;
+            while ( ( line = reader.readLine() ) != null ) {
+                lines.add( line );
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}